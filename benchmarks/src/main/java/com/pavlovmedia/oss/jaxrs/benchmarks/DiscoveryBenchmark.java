@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.PublisherHarness;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.PublisherConfig;
+import com.pavlovmedia.oss.jaxrs.simulation.ServiceEventTrace;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+/**
+ * Measures discovery end to end: a trace of service events is replayed into a
+ * {@link SimulatedFramework} with a running publisher, and the time is taken once
+ * the tracker has handled every event. Each run starts from a fresh framework.
+ * <br /><br />
+ * The built in traces are a bundle start storm (5000 services from 100 bundles, a
+ * third of which are not JAX-RS) and churn (services coming and going). A trace
+ * recorded with {@link ServiceEventTrace.Recorder} can be run by passing its file,
+ * e.g. <code>-p trace=/tmp/startup.trace</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DiscoveryBenchmark {
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+    
+    @Param({ "storm", "churn" })
+    public String trace;
+    
+    /** Maps to discovery.queue.capacity, 0 handles events on the thread that delivers them */
+    @Param({ "0", "10000" })
+    public int queueCapacity;
+    
+    private ServiceEventTrace events;
+    private SimulatedFramework framework;
+    private PublisherHarness harness;
+    
+    @Setup(Level.Trial)
+    public void loadTrace() throws IOException {
+        switch (trace) {
+            case "storm":
+                events = ServiceEventTrace.startStorm(5000, 100, 
+                        SyntheticResource.class, InheritedResource.class, Object.class);
+                break;
+            case "churn":
+                events = ServiceEventTrace.churn(500, 10, SyntheticResource.class, Object.class);
+                break;
+            default:
+                try (Reader reader = Files.newBufferedReader(Paths.get(trace), StandardCharsets.UTF_8)) {
+                    events = ServiceEventTrace.read(reader);
+                }
+                break;
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void setup() throws Exception {
+        framework = new SimulatedFramework();
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("discovery_queue_capacity", queueCapacity);
+        harness = new PublisherHarness(framework.installBundle("publisher").getBundleContext(), 
+                Stubs.config(PublisherConfig.class, overrides));
+    }
+    
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        harness.close();
+    }
+    
+    @Benchmark
+    public int replay() throws InterruptedException {
+        events.replay(framework);
+        
+        // The tracker's listener was there from the start and every service matches it
+        long delivered = framework.getServiceEventCount();
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (handled() < delivered) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(String.format("Only %d of %d events were handled", 
+                        handled(), delivered));
+            }
+            Thread.yield();
+        }
+        return harness.getTracker().getJaxrsTargets().size();
+    }
+    
+    /**
+     * @return the number of events the tracker is done with, an event pair that was
+     *   cancelled counts for both events
+     */
+    private long handled() {
+        return harness.getTracker().getPipeline()
+                .map(pipeline -> pipeline.getProcessed() + 2 * pipeline.getCancelled())
+                .orElse(framework.getServiceEventCount());
+    }
+}
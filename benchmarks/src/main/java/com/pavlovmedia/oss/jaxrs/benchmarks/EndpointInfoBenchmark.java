@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+
+/**
+ * Measures {@link EndpointInfo#parseEndpoint(Object)}, from the per class
+ * cache and from scratch, for a plain resource and for one that needs
+ * the inheritance rules and a sub-resource locator followed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointInfoBenchmark {
+    private final SyntheticResource simple = new SyntheticResource();
+    private final InheritedResource inherited = new InheritedResource();
+    
+    @Benchmark
+    public List<EndpointInfo> simpleCached() {
+        return EndpointInfo.parseEndpoint(simple);
+    }
+    
+    @Benchmark
+    public List<EndpointInfo> simpleUncached() {
+        EndpointInfo.release(SyntheticResource.class);
+        return EndpointInfo.parseEndpoint(simple);
+    }
+    
+    @Benchmark
+    public List<EndpointInfo> inheritedCached() {
+        return EndpointInfo.parseEndpoint(inherited);
+    }
+    
+    @Benchmark
+    public List<EndpointInfo> inheritedUncached() {
+        EndpointInfo.release(InheritedResource.class);
+        return EndpointInfo.parseEndpoint(inherited);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * The annotations for {@link InheritedResource}
+ */
+@Path("inherited")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public interface InheritedApi {
+    @GET
+    String list();
+    
+    @GET
+    @Path("{id}")
+    String get(@PathParam("id") String id);
+    
+    @POST
+    String create(String body);
+    
+    @PUT
+    @Path("{id}")
+    String update(@PathParam("id") String id, String body);
+    
+    @DELETE
+    @Path("{id}")
+    void delete(@PathParam("id") String id);
+    
+    @Path("{id}/child")
+    SyntheticResource child(@PathParam("id") String id);
+}
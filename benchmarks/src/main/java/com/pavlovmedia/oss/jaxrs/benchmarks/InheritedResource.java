@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+/**
+ * A resource that gets its annotations from an interface and has a
+ * sub-resource locator, so parsing it has to follow both.
+ */
+public class InheritedResource implements InheritedApi {
+    @Override
+    public String list() {
+        return "[]";
+    }
+    
+    @Override
+    public String get(final String id) {
+        return id;
+    }
+    
+    @Override
+    public String create(final String body) {
+        return body;
+    }
+    
+    @Override
+    public String update(final String id, final String body) {
+        return body;
+    }
+    
+    @Override
+    public void delete(final String id) {
+        // Nothing to delete
+    }
+    
+    @Override
+    public SyntheticResource child(final String id) {
+        return new SyntheticResource();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.JerseyPublisher;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.PublisherHarness;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.PublisherConfig;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+/**
+ * Measures what the publisher hands out to Jersey and to tools like the
+ * webconsole, both when nothing changed (the snapshot is reused) and
+ * right after a change (the snapshot is rebuilt).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublisherBenchmark {
+    private static final int BUNDLES = 50;
+    
+    @Param({ "100", "1000", "10000" })
+    public int size;
+    
+    private PublisherHarness harness;
+    private JerseyPublisher publisher;
+    private ServiceReference<?> churnReference;
+    private SyntheticResource churn;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SimulatedFramework framework = new SimulatedFramework();
+        BundleContext[] bundles = new BundleContext[BUNDLES];
+        for (int i = 0; i < BUNDLES; i++) {
+            bundles[i] = framework.installBundle("bundle" + i).getBundleContext();
+        }
+        for (int i = 0; i < size; i++) {
+            bundles[i % BUNDLES].registerService(SyntheticResource.class, new SyntheticResource(), null);
+        }
+        
+        // The churn service is added by hand, so discovery has to leave it alone
+        churn = new SyntheticResource();
+        Hashtable<String, Object> skip = new Hashtable<>();
+        skip.put(Publisher.SCAN_IGNORE, true);
+        BundleContext system = framework.getSystemBundle().getBundleContext();
+        churnReference = system.registerService(SyntheticResource.class, churn, skip).getReference();
+        
+        harness = new PublisherHarness(framework.installBundle("publisher").getBundleContext(), 
+                Stubs.config(PublisherConfig.class, Collections.emptyMap()));
+        publisher = harness.getPublisher();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+    
+    @Benchmark
+    public Set<Object> getSingletons() {
+        return publisher.getSingletons();
+    }
+    
+    @Benchmark
+    public Map<String, List<EndpointInfo>> getEndpoints() {
+        return publisher.getEndpoints();
+    }
+    
+    /**
+     * A target comes and goes, each of which means the next read builds a new snapshot
+     */
+    @Benchmark
+    public Map<String, List<EndpointInfo>> churnAndGetEndpoints() {
+        harness.addTarget(churnReference, churn);
+        publisher.getEndpoints();
+        harness.removeTarget(churnReference);
+        return publisher.getEndpoints();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+/**
+ * Measures what Jersey does with what the publisher hands it: building an
+ * application out of a given number of resources, and reloading a running
+ * servlet container with one. This is the cost every reload pays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceConfigBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int size;
+    
+    private final Container container = Stubs.nothing(Container.class);
+    private ServletContainer servlet;
+    
+    @Setup(Level.Trial)
+    public void setup() throws ServletException {
+        ServletContext context = Stubs.nothing(ServletContext.class);
+        ServletConfig servletConfig = (ServletConfig) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { ServletConfig.class }, 
+                (proxy, method, args) -> "getServletContext".equals(method.getName()) 
+                    ? context 
+                    : Stubs.defaultFor(method.getReturnType()));
+        servlet = new ServletContainer(config(size));
+        servlet.init(servletConfig);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servlet.destroy();
+    }
+    
+    /**
+     * Builds the application and shuts it down again, without the shut down
+     * the injection manager of every build would be kept around.
+     */
+    @Benchmark
+    public ApplicationHandler build() {
+        ApplicationHandler handler = new ApplicationHandler(config(size));
+        handler.onShutdown(container);
+        return handler;
+    }
+    
+    @Benchmark
+    public ServletContainer reload() {
+        servlet.reload(config(size));
+        return servlet;
+    }
+    
+    /**
+     * @return an application with the resource mounted at as many paths as asked for
+     */
+    private static ResourceConfig config(final int size) {
+        ResourceConfig config = new ResourceConfig();
+        for (int i = 0; i < size; i++) {
+            config.registerResources(Resource.builder(SyntheticResource.class).path("r" + i).build());
+        }
+        return config;
+    }
+}
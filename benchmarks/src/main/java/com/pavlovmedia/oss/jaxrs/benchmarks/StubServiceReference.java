@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+/**
+ * A bare bones {@link ServiceReference} that carries a service id and a
+ * bundle, which is all the tracker code looks at on the hot paths.
+ */
+public class StubServiceReference implements ServiceReference<Object> {
+    private final Hashtable<String, Object> properties = new Hashtable<>();
+    private final Bundle bundle;
+    
+    public StubServiceReference(final long serviceId, final Bundle bundle) {
+        this.bundle = bundle;
+        properties.put(Constants.SERVICE_ID, serviceId);
+        properties.put(Constants.OBJECTCLASS, new String[] { Object.class.getName() });
+    }
+    
+    /**
+     * Makes a bundle that only knows its id, anything else returns a default
+     * 
+     * @param bundleId the id of the bundle
+     * @return a stand in bundle
+     */
+    public static Bundle bundle(final long bundleId) {
+        return (Bundle) Proxy.newProxyInstance(StubServiceReference.class.getClassLoader(), 
+                new Class<?>[] { Bundle.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBundleId":
+                            return bundleId;
+                        case "hashCode":
+                            return Long.hashCode(bundleId);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "bundle " + bundleId;
+                        case "getSymbolicName":
+                            return "bundle" + bundleId;
+                        default:
+                            return Stubs.defaultFor(method.getReturnType());
+                    }
+                });
+    }
+    
+    @Override
+    public Object getProperty(final String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public String[] getPropertyKeys() {
+        return properties.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Bundle getBundle() {
+        return bundle;
+    }
+
+    @Override
+    public Bundle[] getUsingBundles() {
+        return null;
+    }
+
+    @Override
+    public boolean isAssignableTo(final Bundle bundle, final String className) {
+        return true;
+    }
+
+    @Override
+    public int compareTo(final Object reference) {
+        return Long.compare((Long) ((ServiceReference<?>) reference).getProperty(Constants.SERVICE_ID),
+                (Long) getProperty(Constants.SERVICE_ID));
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof StubServiceReference 
+                && getProperty(Constants.SERVICE_ID).equals(((StubServiceReference) obj).getProperty(Constants.SERVICE_ID));
+    }
+    
+    @Override
+    public int hashCode() {
+        return getProperty(Constants.SERVICE_ID).hashCode();
+    }
+}
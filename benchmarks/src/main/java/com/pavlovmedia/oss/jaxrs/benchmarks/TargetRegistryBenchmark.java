@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.JaxReference;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.TargetRegistry;
+
+/**
+ * Measures the cost of one service coming and going while a given
+ * number of targets are already tracked. With the indexed registry this
+ * should stay flat as the size grows, the copy-on-write set it replaced
+ * is kept here for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetRegistryBenchmark {
+    private static final int BUNDLES = 50;
+    
+    @Param({ "100", "1000", "10000" })
+    public int size;
+    
+    private TargetRegistry registry;
+    private Set<JaxReference> copyOnWrite;
+    private JaxReference churn;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Bundle[] bundles = new Bundle[BUNDLES];
+        for (int i = 0; i < BUNDLES; i++) {
+            bundles[i] = StubServiceReference.bundle(i);
+        }
+        
+        registry = new TargetRegistry();
+        copyOnWrite = new CopyOnWriteArraySet<>();
+        for (int i = 0; i < size; i++) {
+            JaxReference reference = new JaxReference(
+                    new StubServiceReference(i, bundles[i % BUNDLES]), new SyntheticResource());
+            registry.add(reference);
+            copyOnWrite.add(reference);
+        }
+        churn = new JaxReference(new StubServiceReference(size + 1, bundles[0]), new SyntheticResource());
+    }
+    
+    @Benchmark
+    public boolean registryAddRemove() {
+        registry.add(churn);
+        return registry.remove(churn.serivceReference).isPresent();
+    }
+    
+    @Benchmark
+    public boolean copyOnWriteAddRemove() {
+        copyOnWrite.add(churn);
+        return copyOnWrite.remove(churn);
+    }
+}
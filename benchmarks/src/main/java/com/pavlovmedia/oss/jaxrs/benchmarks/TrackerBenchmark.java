@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.BaseObjectTracker;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+/**
+ * Measures a target coming and going through {@link BaseObjectTracker}, which
+ * on top of the registry does the JAX-RS check (from the verdict cache after
+ * the first time) and signals the change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerBenchmark {
+    private static final int BUNDLES = 50;
+    
+    @Param({ "100", "1000", "10000" })
+    public int size;
+    
+    private QuietTracker tracker;
+    private ServiceReference<?> churnReference;
+    private SyntheticResource churn;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        SimulatedFramework framework = new SimulatedFramework();
+        BundleContext[] bundles = new BundleContext[BUNDLES];
+        for (int i = 0; i < BUNDLES; i++) {
+            bundles[i] = framework.installBundle("bundle" + i).getBundleContext();
+        }
+        
+        tracker = new QuietTracker();
+        for (int i = 0; i < size; i++) {
+            SyntheticResource resource = new SyntheticResource();
+            tracker.add(bundles[i % BUNDLES].registerService(SyntheticResource.class, resource, null).getReference(), 
+                    resource);
+        }
+        churn = new SyntheticResource();
+        churnReference = bundles[0].registerService(SyntheticResource.class, churn, null).getReference();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tracker = null;
+    }
+    
+    @Benchmark
+    public boolean addRemove() {
+        tracker.add(churnReference, churn);
+        return tracker.remove(churnReference);
+    }
+    
+    @Benchmark
+    public boolean isJaxrsTarget() {
+        return tracker.isJaxrsTarget(SyntheticResource.class, churn);
+    }
+    
+    /**
+     * The base tracker with logging turned off and the add and remove calls opened up
+     */
+    static class QuietTracker extends BaseObjectTracker {
+        QuietTracker() {
+            onTargetChange = Optional.of(trigger -> { });
+        }
+        
+        boolean add(final ServiceReference<?> reference, final Object target) {
+            return addTarget(reference, target);
+        }
+        
+        boolean remove(final ServiceReference<?> reference) {
+            return removeTarget(reference);
+        }
+        
+        @Override
+        public void logDebug(final String format, final Object... args) {
+            // Quiet
+        }
+        
+        @Override
+        public void logInfo(final String format, final Object... args) {
+            // Quiet
+        }
+    }
+}
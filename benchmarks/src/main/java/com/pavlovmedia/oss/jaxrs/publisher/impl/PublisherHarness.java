@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.ComponentFactory;
+import org.osgi.service.component.ComponentInstance;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.PublisherConfig;
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+/**
+ * Wires a {@link JerseyPublisher} and its {@link WidcardServiceTracker} together
+ * the way DS would, but against any {@link BundleContext}. This lives in the
+ * impl package so it can reach the package level fields DS normally fills in.
+ * <br /><br />
+ * The HttpService is a stub, so the Jersey container is never initialized and
+ * reloads are skipped. That keeps the benchmarks on the publisher's own code.
+ */
+public class PublisherHarness implements AutoCloseable {
+    private final BundleContext bundleContext;
+    private final JerseyPublisher publisher = new JerseyPublisher();
+    private WidcardServiceTracker tracker;
+    
+    /**
+     * @param bundleContext the context, with the services to discover already registered
+     * @param config the publisher configuration
+     */
+    public PublisherHarness(final BundleContext bundleContext, final PublisherConfig config) throws Exception {
+        this.bundleContext = bundleContext;
+        
+        publisher.logger = Stubs.logger();
+        publisher.httpService = Stubs.httpService();
+        publisher.wildcardTrackerFactory = trackerFactory();
+        Field configField = JerseyPublisher.class.getDeclaredField("config");
+        configField.setAccessible(true);
+        configField.set(publisher, config);
+        publisher.activate(config, bundleContext);
+    }
+    
+    public JerseyPublisher getPublisher() {
+        return publisher;
+    }
+    
+    public WidcardServiceTracker getTracker() {
+        return tracker;
+    }
+    
+    /**
+     * Adds a target straight to the tracker, as if its service event came in
+     * 
+     * @param reference the reference of the service
+     * @param target the service object
+     * @return true if it was taken
+     */
+    public boolean addTarget(final ServiceReference<?> reference, final Object target) {
+        return tracker.addTarget(reference, target);
+    }
+    
+    /**
+     * @param reference the reference of the service to drop
+     * @return true if it was a target
+     */
+    public boolean removeTarget(final ServiceReference<?> reference) {
+        return tracker.removeTarget(reference);
+    }
+    
+    @Override
+    public void close() {
+        publisher.deactivate();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private ComponentFactory<WidcardServiceTracker> trackerFactory() {
+        return (ComponentFactory<WidcardServiceTracker>) Proxy.newProxyInstance(getClass().getClassLoader(), 
+                new Class<?>[] { ComponentFactory.class }, (proxy, method, args) -> {
+                    if ("newInstance".equals(method.getName())) {
+                        return newTracker((Dictionary<String, ?>) args[0]);
+                    }
+                    return "hashCode".equals(method.getName()) ? System.identityHashCode(proxy) : null;
+                });
+    }
+    
+    private ComponentInstance<WidcardServiceTracker> newTracker(final Dictionary<String, ?> properties) 
+            throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            map.put(key, properties.get(key));
+        }
+        
+        tracker = new WidcardServiceTracker();
+        tracker.logger = Stubs.logger();
+        tracker.activate(map, bundleContext);
+        
+        @SuppressWarnings("unchecked")
+        ComponentInstance<WidcardServiceTracker> instance = (ComponentInstance<WidcardServiceTracker>) 
+                Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ComponentInstance.class }, 
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getInstance":
+                                return tracker;
+                            case "dispose":
+                                tracker.deactivate();
+                                return null;
+                            default:
+                                return null;
+                        }
+                    });
+        return instance;
+    }
+}
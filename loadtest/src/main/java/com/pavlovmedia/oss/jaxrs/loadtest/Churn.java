@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.ChurnFilter;
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.ChurnResource;
+
+/**
+ * Registers and unregisters services at a fixed rate. Each tick flips the
+ * next service in turn, a resource and a provider, so every tick is a
+ * change the publisher has to reload for.
+ */
+class Churn implements AutoCloseable {
+    private final BundleContext context;
+    private final List<Object> services = Arrays.asList(new ChurnResource(), new ChurnFilter());
+    private final ServiceRegistration<?>[] registrations = new ServiceRegistration<?>[services.size()];
+    private final ScheduledExecutorService executor;
+    private final AtomicLong events = new AtomicLong();
+    private int next;
+    
+    /**
+     * @param context the context to register services with
+     * @param rate changes per second, 0 or less for none
+     */
+    Churn(final BundleContext context, final double rate) {
+        this.context = context;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Churn");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (rate > 0) {
+            long period = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            executor.scheduleAtFixedRate(this::flip, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * @return the number of registrations and unregistrations so far
+     */
+    long getEvents() {
+        return events.get();
+    }
+    
+    /**
+     * Registers the next service if it isn't, unregisters it if it is
+     */
+    private void flip() {
+        int index = next++ % services.size();
+        if (null == registrations[index]) {
+            Object service = services.get(index);
+            registrations[index] = context.registerService(service.getClass().getName(), service, null);
+        } else {
+            registrations[index].unregister();
+            registrations[index] = null;
+        }
+        events.incrementAndGet();
+    }
+    
+    /**
+     * Stops churning and unregisters anything that is still registered
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        for (ServiceRegistration<?> registration : registrations) {
+            if (null != registration) {
+                registration.unregister();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.felix.framework.Felix;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.http.HttpService;
+import org.osgi.util.tracker.ServiceTracker;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+
+/**
+ * A Felix framework with the publisher and what it needs to run: SCR, the
+ * log service, configuration admin and a {@link LocalHttpService}. The
+ * bundles are taken from the {@code bundles} directory next to the load
+ * test jar.
+ */
+class EmbeddedFramework implements AutoCloseable {
+    /** The factory PID publishers are configured with */
+    static final String PUBLISHER_PID = "com.pavlovmedia.oss.jaxrs.publisher.impl.JerseyPublisher";
+    
+    private static final long WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    private final Path storage;
+    private final Framework framework;
+    private final LocalHttpService httpService;
+    private final List<ServiceTracker<?, ?>> trackers = new ArrayList<>();
+    
+    /**
+     * Starts the framework and everything in it, and waits for the publisher
+     * 
+     * @param bundles the directory the bundles are in
+     * @param options the options the publisher is configured from
+     * @throws Exception if anything doesn't start
+     */
+    EmbeddedFramework(final File bundles, final Options options) throws Exception {
+        storage = Files.createTempDirectory("jaxrs-loadtest");
+        
+        Map<String, String> properties = new HashMap<>();
+        properties.put(Constants.FRAMEWORK_STORAGE, storage.toString());
+        properties.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        properties.put(Constants.FRAMEWORK_SYSTEMPACKAGES_EXTRA, SystemPackages.exports());
+        framework = new Felix(properties);
+        framework.start();
+        
+        httpService = new LocalHttpService(options.port);
+        BundleContext context = framework.getBundleContext();
+        context.registerService(HttpService.class, httpService, null);
+        
+        // Everything but the publisher first, so it is configured before it starts
+        List<Bundle> installed = new ArrayList<>();
+        File[] jars = bundles.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (null == jars || 0 == jars.length) {
+            throw new IOException("No bundles found in " + bundles);
+        }
+        for (File jar : jars) {
+            installed.add(context.installBundle(jar.toURI().toString()));
+        }
+        Bundle publisher = null;
+        for (Bundle bundle : installed) {
+            if (bundle.getSymbolicName().startsWith("com.pavlovmedia.oss.jaxrs.publisher")) {
+                publisher = bundle;
+            } else {
+                bundle.start();
+            }
+        }
+        if (null == publisher) {
+            throw new BundleException("The publisher bundle is not in " + bundles);
+        }
+        
+        if (!options.config.isEmpty()) {
+            ConfigurationAdmin configAdmin = waitFor(ConfigurationAdmin.class);
+            Configuration configuration = configAdmin.createFactoryConfiguration(PUBLISHER_PID, "?");
+            configuration.update(options.config);
+        }
+        publisher.start();
+    }
+    
+    /**
+     * @return the bundle context of the system bundle, which the load test registers its services with
+     */
+    BundleContext getBundleContext() {
+        return framework.getBundleContext();
+    }
+    
+    /**
+     * @return the port requests go to
+     */
+    int getPort() {
+        return httpService.getPort();
+    }
+    
+    /**
+     * @return the publisher, once it is running
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Publisher getPublisher() throws InterruptedException {
+        return waitFor(Publisher.class);
+    }
+    
+    private <T> T waitFor(final Class<T> type) throws InterruptedException {
+        ServiceTracker<T, T> tracker = new ServiceTracker<>(framework.getBundleContext(), type, null);
+        // Kept open until the end, closing it would release the service
+        trackers.add(tracker);
+        tracker.open();
+        T service = tracker.waitForService(WAIT_MILLIS);
+        if (null == service) {
+            throw new IllegalStateException(type.getSimpleName() + " did not start in time, "
+                    + "these bundles are not active: " + inactiveBundles());
+        }
+        return service;
+    }
+    
+    /**
+     * Stops the framework and the server, and removes the framework storage
+     */
+    @Override
+    public void close() throws Exception {
+        trackers.forEach(ServiceTracker::close);
+        framework.stop();
+        framework.waitForStop(WAIT_MILLIS);
+        httpService.close();
+        try (Stream<Path> files = Files.walk(storage)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+    
+    /**
+     * @return the bundles that did not make it to active, for reporting
+     */
+    List<String> inactiveBundles() {
+        List<String> inactive = new ArrayList<>();
+        Arrays.stream(framework.getBundleContext().getBundles())
+            .filter(b -> Bundle.ACTIVE != b.getState())
+            .forEach(b -> inactive.add(b.getSymbolicName()));
+        return inactive;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Sends GET requests to a set of URLs from a number of threads, each of
+ * which waits for its response before sending the next. Latencies and
+ * errors are only recorded once {@link #startRecording()} is called, so
+ * the warmup doesn't count.
+ * <br /><br />
+ * Anything other than a 2xx response is an error, as is a request that
+ * fails outright.
+ */
+class LoadDriver implements AutoCloseable {
+    private static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+    private static final int READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(60);
+    
+    private final List<URL> targets;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder intervalErrors = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private volatile boolean recording;
+    
+    /**
+     * Starts sending requests
+     * 
+     * @param targets the URLs to send requests to, in turn
+     * @param threads the number of threads sending requests
+     */
+    LoadDriver(final List<URL> targets, final int threads) {
+        this.targets = targets;
+        for (int i = 0; i < threads; i++) {
+            int offset = i;
+            Thread worker = new Thread(() -> drive(offset), "Load " + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+    
+    void startRecording() {
+        recording = true;
+    }
+    
+    /**
+     * @return the latencies, in nanoseconds, recorded since the last call
+     */
+    Histogram nextInterval() {
+        return recorder.getIntervalHistogram();
+    }
+    
+    /**
+     * @return the number of errors since the last call
+     */
+    long nextErrors() {
+        return intervalErrors.sumThenReset();
+    }
+    
+    /**
+     * @return the number of errors over the whole run, by their cause
+     */
+    Map<String, Long> getErrors() {
+        Map<String, Long> ret = new TreeMap<>();
+        errors.forEach((cause, count) -> ret.put(cause, count.sum()));
+        return ret;
+    }
+    
+    private void drive(final int offset) {
+        int next = offset;
+        while (running) {
+            URL target = targets.get(next++ % targets.size());
+            long start = System.nanoTime();
+            String error = send(target);
+            long took = System.nanoTime() - start;
+            if (recording) {
+                recorder.recordValue(took);
+                if (null != error) {
+                    intervalErrors.increment();
+                    errors.computeIfAbsent(error, e -> new LongAdder()).increment();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sends a single request and reads the response
+     * 
+     * @param target where to send it
+     * @return what went wrong, or null if nothing did
+     */
+    static String send(final URL target) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            int status = connection.getResponseCode();
+            // Reading everything lets the connection be kept alive
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (null != in) {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) >= 0) {
+                        // Discard
+                    }
+                }
+            }
+            return status / 100 == 2 ? null : "HTTP " + status;
+        } catch (IOException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+    
+    /**
+     * Stops sending requests, waiting for the ones in flight
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(READ_TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.osgi.framework.BundleContext;
+
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.ChurnFilter;
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.ChurnResource;
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.EchoResource;
+import com.pavlovmedia.oss.jaxrs.loadtest.resources.ItemResource;
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+
+/**
+ * Starts the publisher in an embedded framework, sends requests to the GET
+ * endpoints it reports and keeps registering and unregistering services
+ * while it does, reporting throughput, latency and errors as it goes.
+ * This is to see what reloads cost the requests that are running when
+ * they happen.
+ */
+public final class LoadTest {
+    private static final String USAGE = "Usage: java -jar loadtest.jar [--duration seconds] [--warmup seconds] "
+            + "[--threads n] [--churn-rate per second] [--interval millis] [--port port] [--config name=value]...";
+    
+    /** Churned classes are not sent load, they are not always there */
+    private static final List<String> CHURNED = Arrays.asList(
+            ChurnResource.class.getName(), ChurnFilter.class.getName());
+    
+    private static final String JETTY_LEVEL = "org.eclipse.jetty.LEVEL";
+    
+    /** Held on to so the level set on it sticks */
+    private static final Logger PROVIDERS_LOG = Logger.getLogger("org.glassfish.jersey.internal.inject.Providers");
+    
+    private static final long READY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    private LoadTest() {
+        // Entry point only
+    }
+    
+    public static void main(final String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        
+        // Failed requests are counted, Jetty logging each of them would bury the report
+        if (null == System.getProperty(JETTY_LEVEL)) {
+            System.setProperty(JETTY_LEVEL, "OFF");
+        }
+        // As would Jersey warning about every resource on every reload
+        PROVIDERS_LOG.setLevel(Level.SEVERE);
+        
+        File home = new File(LoadTest.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getParentFile();
+        // Jetty and the framework keep the JVM running, so exiting is explicit either way
+        try (EmbeddedFramework framework = new EmbeddedFramework(new File(home, "bundles"), options)) {
+            BundleContext context = framework.getBundleContext();
+            context.registerService(EchoResource.class.getName(), new EchoResource(), null);
+            context.registerService(ItemResource.class.getName(), new ItemResource(), null);
+            
+            Publisher publisher = framework.getPublisher();
+            String base = String.format("http://127.0.0.1:%d%s", framework.getPort(), options.publisherPath());
+            List<URL> targets = awaitTargets(publisher, base);
+            System.out.printf("Sending requests to %d endpoints under %s%n", targets.size(), base);
+            
+            run(options, context, publisher, targets);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+    
+    private static void run(final Options options, final BundleContext context, final Publisher publisher,
+            final List<URL> targets) throws InterruptedException {
+        Report report = new Report(System.out);
+        long startReloads = publisher.getReloadStats().reloads;
+        long reloads = startReloads;
+        
+        LoadDriver driver = new LoadDriver(targets, options.threads);
+        long churned = 0;
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmup));
+            driver.startRecording();
+            driver.nextInterval();
+            
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.duration);
+            try (Churn churn = new Churn(context, options.churnRate)) {
+                long last = System.nanoTime();
+                while (last < end) {
+                    Thread.sleep(options.interval);
+                    long now = System.nanoTime();
+                    long nowReloads = publisher.getReloadStats().reloads;
+                    long nowChurned = churn.getEvents();
+                    report.interval(now - last, driver.nextInterval(), driver.nextErrors(), 
+                            nowReloads - reloads, nowChurned - churned);
+                    last = now;
+                    reloads = nowReloads;
+                    churned = nowChurned;
+                }
+            }
+        } finally {
+            driver.close();
+        }
+        // The requests that were still running when the last interval was taken
+        report.remainder(driver.nextInterval(), driver.nextErrors());
+        report.summary(driver.getErrors(), publisher.getReloadStats(), reloads - startReloads, churned);
+    }
+    
+    /**
+     * Works out the URLs of the GET endpoints and waits for all of them to answer
+     * 
+     * @param publisher where the endpoints come from
+     * @param base the URL the publisher serves from
+     * @return the URLs to send load to
+     */
+    private static List<URL> awaitTargets(final Publisher publisher, final String base) 
+            throws InterruptedException, MalformedURLException {
+        long deadline = System.currentTimeMillis() + READY_MILLIS;
+        List<URL> targets = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline) {
+            targets.clear();
+            for (Map.Entry<String, List<EndpointInfo>> entry : publisher.getEndpoints().entrySet()) {
+                if (CHURNED.contains(entry.getKey())) {
+                    continue;
+                }
+                for (EndpointInfo endpoint : entry.getValue()) {
+                    if ("GET".equals(endpoint.verb)) {
+                        // The synthetic resources answer 1 for any of their templates
+                        targets.add(new URL(base + endpoint.path.replaceAll("\\{[^}]*\\}", "1")));
+                    }
+                }
+            }
+            if (!targets.isEmpty() && targets.stream().allMatch(t -> null == LoadDriver.send(t))) {
+                return targets;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("The endpoints were not all published in time: " + targets);
+    }
+}
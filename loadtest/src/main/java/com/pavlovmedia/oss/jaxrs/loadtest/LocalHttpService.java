@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.osgi.service.http.HttpContext;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+/**
+ * Just enough of an {@link HttpService} to serve the publisher, backed by an
+ * embedded Jetty on the loopback interface. Servlets are matched by the
+ * longest alias that is a prefix of the request path, the same way the
+ * spec does it. Resources are not supported.
+ */
+public class LocalHttpService implements HttpService, AutoCloseable {
+    private final Server server;
+    private final Map<String, Servlet> servlets = new ConcurrentHashMap<>();
+    private final Dispatcher dispatcher = new Dispatcher();
+    
+    /**
+     * Starts the server
+     * 
+     * @param port the port to listen on, 0 picks a free one
+     * @throws Exception if Jetty doesn't start
+     */
+    public LocalHttpService(final int port) throws Exception {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(port);
+        server.addConnector(connector);
+        
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(dispatcher), "/*");
+        server.setHandler(context);
+        server.start();
+    }
+    
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+    
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void registerServlet(final String alias, final Servlet servlet, final Dictionary initparams,
+            final HttpContext context) throws ServletException, NamespaceException {
+        if (servlets.containsKey(alias)) {
+            throw new NamespaceException("Alias " + alias + " is already in use");
+        }
+        servlet.init(new Config(alias, dispatcher.getServletContext(), initparams));
+        if (null != servlets.putIfAbsent(alias, servlet)) {
+            servlet.destroy();
+            throw new NamespaceException("Alias " + alias + " is already in use");
+        }
+    }
+    
+    @Override
+    public void registerResources(final String alias, final String name, final HttpContext context)
+            throws NamespaceException {
+        throw new NamespaceException("Resources are not supported");
+    }
+    
+    @Override
+    public void unregister(final String alias) {
+        Servlet servlet = servlets.remove(alias);
+        if (null != servlet) {
+            servlet.destroy();
+        }
+    }
+    
+    @Override
+    public HttpContext createDefaultHttpContext() {
+        return new HttpContext() {
+            @Override
+            public boolean handleSecurity(final HttpServletRequest request, final HttpServletResponse response) {
+                return true;
+            }
+            
+            @Override
+            public URL getResource(final String name) {
+                return null;
+            }
+            
+            @Override
+            public String getMimeType(final String name) {
+                return null;
+            }
+        };
+    }
+    
+    /**
+     * Stops the server and destroys anything still registered
+     */
+    @Override
+    public void close() throws Exception {
+        servlets.keySet().forEach(this::unregister);
+        server.stop();
+    }
+    
+    /**
+     * Hands each request to the servlet with the longest matching alias
+     */
+    private class Dispatcher extends HttpServlet {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected void service(final HttpServletRequest request, final HttpServletResponse response)
+                throws ServletException, IOException {
+            String path = null == request.getPathInfo() ? "/" : request.getPathInfo();
+            String alias = path;
+            while (true) {
+                Servlet servlet = servlets.get(alias);
+                if (null != servlet) {
+                    servlet.service(new Aliased(request, alias, path), response);
+                    return;
+                }
+                if ("/".equals(alias)) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                int slash = alias.lastIndexOf('/');
+                alias = 0 == slash ? "/" : alias.substring(0, slash);
+            }
+        }
+    }
+    
+    /**
+     * The request as the servlet registered at an alias sees it
+     */
+    private static class Aliased extends HttpServletRequestWrapper {
+        private final String servletPath;
+        private final String pathInfo;
+        
+        Aliased(final HttpServletRequest request, final String alias, final String path) {
+            super(request);
+            this.servletPath = "/".equals(alias) ? "" : alias;
+            this.pathInfo = path.length() > servletPath.length() ? path.substring(servletPath.length()) : null;
+        }
+        
+        @Override
+        public String getServletPath() {
+            return servletPath;
+        }
+        
+        @Override
+        public String getPathInfo() {
+            return pathInfo;
+        }
+    }
+    
+    /**
+     * The configuration a registered servlet is initialized with
+     */
+    private static class Config implements ServletConfig {
+        private final String name;
+        private final ServletContext context;
+        private final Dictionary<?, ?> initparams;
+        
+        Config(final String name, final ServletContext context, final Dictionary<?, ?> initparams) {
+            this.name = name;
+            this.context = context;
+            this.initparams = initparams;
+        }
+        
+        @Override
+        public String getServletName() {
+            return name;
+        }
+        
+        @Override
+        public ServletContext getServletContext() {
+            return context;
+        }
+        
+        @Override
+        public String getInitParameter(final String key) {
+            Object value = null == initparams ? null : initparams.get(key);
+            return null == value ? null : value.toString();
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public Enumeration<String> getInitParameterNames() {
+            return null == initparams 
+                    ? Collections.emptyEnumeration() 
+                    : (Enumeration<String>) initparams.keys();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.util.Hashtable;
+
+/**
+ * The command line options, all of them are {@code --name value}
+ */
+final class Options {
+    /** How long the load runs for, in seconds */
+    long duration = 60;
+    
+    /** How long the load runs before anything is recorded or churned, in seconds */
+    long warmup = 5;
+    
+    /** Number of threads sending requests, each waits for its response before sending the next */
+    int threads = 8;
+    
+    /** Services registered or unregistered per second, 0 turns churn off */
+    double churnRate = 2;
+    
+    /** How often a line is reported, in milliseconds */
+    long interval = 1000;
+    
+    /** The port to serve on, 0 picks a free one */
+    int port;
+    
+    /** Publisher configuration, given as repeated {@code --config name=value} */
+    final Hashtable<String, Object> config = new Hashtable<>();
+    
+    /**
+     * @param args the command line
+     * @return the parsed options
+     * @throws IllegalArgumentException if an option isn't known or is missing its value
+     */
+    static Options parse(final String... args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--duration":
+                    options.duration = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    options.warmup = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(value);
+                    break;
+                case "--churn-rate":
+                    options.churnRate = Double.parseDouble(value);
+                    break;
+                case "--interval":
+                    options.interval = Long.parseLong(value);
+                    break;
+                case "--port":
+                    options.port = Integer.parseInt(value);
+                    break;
+                case "--config":
+                    int equals = value.indexOf('=');
+                    if (equals < 1) {
+                        throw new IllegalArgumentException("Expected name=value for --config, got " + value);
+                    }
+                    options.config.put(value.substring(0, equals), value.substring(equals + 1));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        return options;
+    }
+    
+    /**
+     * @return the path the publisher serves from
+     */
+    String publisherPath() {
+        return config.getOrDefault("path", "/services").toString();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadStats;
+
+/**
+ * Prints a line for each interval and a summary at the end. Intervals in
+ * which Jersey finished a reload are kept apart from the ones where it
+ * didn't, so the cost of reloading shows up in the summary.
+ */
+class Report {
+    private static final String HEADER = "%8s %9s %7s %9s %9s %9s %9s %8s %6s%n";
+    private static final String LINE = "%8.1f %9.0f %7d %9.2f %9.2f %9.2f %9.2f %8d %6d%n";
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    
+    private final PrintStream out;
+    private final Histogram all = new Histogram(3);
+    private final Histogram reloading = new Histogram(3);
+    private final Histogram quiet = new Histogram(3);
+    private long errors;
+    private long nanos;
+    
+    Report(final PrintStream out) {
+        this.out = out;
+        out.printf(HEADER, "time s", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "reloads", "churn");
+    }
+    
+    /**
+     * Reports on an interval
+     * 
+     * @param elapsedNanos how long the interval was
+     * @param latencies the latencies recorded in it
+     * @param intervalErrors the errors in it
+     * @param reloads the reloads that finished in it
+     * @param churn the services that came or went in it
+     */
+    void interval(final long elapsedNanos, final Histogram latencies, final long intervalErrors,
+            final long reloads, final long churn) {
+        nanos += elapsedNanos;
+        errors += intervalErrors;
+        all.add(latencies);
+        (reloads > 0 ? reloading : quiet).add(latencies);
+        
+        double seconds = elapsedNanos / 1e9;
+        out.printf(LINE, nanos / 1e9, latencies.getTotalCount() / seconds, intervalErrors, 
+                millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(90)), 
+                millis(latencies.getValueAtPercentile(99)), millis(latencies.getMaxValue()), reloads, churn);
+    }
+    
+    /**
+     * Counts requests that finished after the last interval, without a line of their own
+     * 
+     * @param latencies the latencies recorded since the last interval
+     * @param remainingErrors the errors since the last interval
+     */
+    void remainder(final Histogram latencies, final long remainingErrors) {
+        errors += remainingErrors;
+        all.add(latencies);
+    }
+    
+    /**
+     * Reports on the whole run
+     * 
+     * @param errorsByCause what the errors were
+     * @param stats the publisher's reload statistics at the end of the run
+     * @param reloads how many reloads finished during the run
+     * @param churn how many services came or went during the run
+     */
+    void summary(final Map<String, Long> errorsByCause, final ReloadStats stats, final long reloads,
+            final long churn) {
+        out.println();
+        out.printf("Requests: %d (%.0f/s), errors: %d%n", all.getTotalCount(), 
+                all.getTotalCount() / (nanos / 1e9), errors);
+        errorsByCause.forEach((cause, count) -> out.printf("  %s: %d%n", cause, count));
+        
+        out.println();
+        out.printf("%-16s %10s %9s %9s %9s %9s %9s%n", "Latency ms", "requests", "p50", "p90", "p99", "p99.9", "max");
+        latencies("all", all);
+        latencies("with reload", reloading);
+        latencies("without reload", quiet);
+        
+        out.println();
+        out.printf("Services changed: %d, reloads: %d (%d failed overall)%n", churn, reloads, stats.failures);
+        out.printf("Reload build ms: mean %.2f, max %.2f%n", millis(stats.meanBuildNanos()), 
+                millis(stats.maxBuildNanos));
+    }
+    
+    private void latencies(final String name, final Histogram histogram) {
+        out.printf("%-16s %10d", name, histogram.getTotalCount());
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.2f", millis(histogram.getValueAtPercentile(percentile)));
+        }
+        out.printf(" %9.2f%n", millis(histogram.getMaxValue()));
+    }
+    
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
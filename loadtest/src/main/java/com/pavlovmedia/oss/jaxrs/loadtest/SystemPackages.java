@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.Constants;
+
+/**
+ * Works out what the system bundle exports. Jersey, the servlet API, the OSGi
+ * compendium and the publisher API live on the classpath so that the load test
+ * and the bundles see the same classes, so every package a jar on the classpath
+ * exports is exported by the framework as well. The framework resolves against
+ * the system bundle before anything else, so the bundles pick these up over
+ * their own copies.
+ */
+final class SystemPackages {
+    /** The framework exports its own packages */
+    private static final String FRAMEWORK = "org.apache.felix.framework";
+    
+    private SystemPackages() {
+        // Static utility
+    }
+    
+    /**
+     * @return the value for {@link Constants#FRAMEWORK_SYSTEMPACKAGES_EXTRA}
+     * @throws IOException if a manifest can't be read
+     */
+    static String exports() throws IOException {
+        Map<String, String> packages = new TreeMap<>();
+        Enumeration<URL> manifests = SystemPackages.class.getClassLoader().getResources("META-INF/MANIFEST.MF");
+        while (manifests.hasMoreElements()) {
+            Attributes attributes;
+            try (InputStream in = manifests.nextElement().openStream()) {
+                attributes = new Manifest(in).getMainAttributes();
+            }
+            String name = attributes.getValue(Constants.BUNDLE_SYMBOLICNAME);
+            String exports = attributes.getValue(Constants.EXPORT_PACKAGE);
+            if (null == exports || (null != name && name.startsWith(FRAMEWORK))) {
+                continue;
+            }
+            for (String clause : split(exports, ',')) {
+                String version = null;
+                List<String> names = new ArrayList<>();
+                for (String part : split(clause, ';')) {
+                    if (part.startsWith("version=")) {
+                        version = part.substring("version=".length()).replace("\"", "");
+                    } else if (!part.contains("=")) {
+                        names.add(part);
+                    }
+                }
+                for (String pkg : names) {
+                    packages.putIfAbsent(pkg, null == version ? pkg : pkg + ";version=\"" + version + "\"");
+                }
+            }
+        }
+        return packages.values().stream().collect(Collectors.joining(","));
+    }
+    
+    /**
+     * Splits a manifest header on a separator that is not inside quotes
+     */
+    private static List<String> split(final String header, final char separator) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char c : header.toCharArray()) {
+            if ('"' == c) {
+                quoted = !quoted;
+            }
+            if (separator == c && !quoted) {
+                parts.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString().trim());
+        return parts;
+    }
+}
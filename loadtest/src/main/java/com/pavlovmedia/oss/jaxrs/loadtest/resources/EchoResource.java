@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest.resources;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Answers with what it was given, about as cheap as a resource gets
+ */
+@Path("echo")
+public class EchoResource {
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String echo() {
+        return "echo";
+    }
+    
+    @GET
+    @Path("{value}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String echo(@PathParam("value") final String value) {
+        return value;
+    }
+}
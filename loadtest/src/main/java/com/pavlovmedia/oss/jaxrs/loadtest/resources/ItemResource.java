@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.loadtest.resources;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * A small in memory collection, so there is a little work behind each request
+ */
+@Path("items")
+public class ItemResource {
+    private final Map<String, String> items = new ConcurrentHashMap<>();
+    
+    public ItemResource() {
+        for (int i = 0; i < 100; i++) {
+            items.put(Integer.toString(i), "item " + i);
+        }
+    }
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String list() {
+        return String.join("\n", items.values());
+    }
+    
+    @GET
+    @Path("{id}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get(@PathParam("id") final String id) {
+        String item = items.get(id);
+        if (null == item) {
+            throw new NotFoundException();
+        }
+        return item;
+    }
+    
+    @POST
+    @Path("{id}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String put(@PathParam("id") final String id, final String item) {
+        items.put(id, item);
+        return item;
+    }
+}
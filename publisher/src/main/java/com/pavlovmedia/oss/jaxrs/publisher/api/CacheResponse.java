@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the publisher keep the responses of a GET resource method and serve them
+ * again, without calling the method, until they are older than the time given here.
+ * On a class it applies to every GET method of the resource.
+ * <br /><br />
+ * Responses are kept per path, query and Accept header, so this is only for methods
+ * whose response depends on nothing else (not on the user, cookies or other headers).
+ * Only 200 responses are kept, and not ones that set cookies, are already encoded or
+ * say no-store or private in their Cache-Control.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface CacheResponse {
+    /** How long a response can be served from the cache */
+    long value();
+    
+    /** The unit of {@link #value()} */
+    TimeUnit unit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * How service discovery is doing, the part of the publisher that finds
+ * JAX-RS targets among the OSGi services. Durations are in nanoseconds.
+ */
+public final class DiscoveryStats {
+    /** Targets currently handed to Jersey */
+    public final int targets;
+    /** Service events waiting to be looked at */
+    public final int queueDepth;
+    /** Service events looked at so far */
+    public final long eventsProcessed;
+    /** Services that came and went before they were looked at */
+    public final long eventsCancelled;
+    /** How long the last service event waited */
+    public final long lastLagNanos;
+    /** The longest any service event waited */
+    public final long maxLagNanos;
+    /** Classes whose target check came from the cache */
+    public final long verdictCacheHits;
+    /** Classes that had to be inspected */
+    public final long verdictCacheMisses;
+    
+    public DiscoveryStats(final int targets, final int queueDepth, final long eventsProcessed, 
+            final long eventsCancelled, final long lastLagNanos, final long maxLagNanos, 
+            final long verdictCacheHits, final long verdictCacheMisses) {
+        this.targets = targets;
+        this.queueDepth = queueDepth;
+        this.eventsProcessed = eventsProcessed;
+        this.eventsCancelled = eventsCancelled;
+        this.lastLagNanos = lastLagNanos;
+        this.maxLagNanos = maxLagNanos;
+        this.verdictCacheHits = verdictCacheHits;
+        this.verdictCacheMisses = verdictCacheMisses;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("DiscoveryStats: targets: %d, queued: %d, processed: %d, cancelled: %d, "
+                + "lag last/max: %d/%d ms, verdict cache hits/misses: %d/%d", targets, queueDepth, 
+                eventsProcessed, eventsCancelled, lastLagNanos / 1_000_000, maxLagNanos / 1_000_000,
+                verdictCacheHits, verdictCacheMisses);
+    }
+}
@@ -15,21 +15,20 @@
  */
 package com.pavlovmedia.oss.jaxrs.publisher.api;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import javax.ws.rs.Consumes;
-import javax.ws.rs.DELETE;
-import javax.ws.rs.GET;
-import javax.ws.rs.HEAD;
-import javax.ws.rs.OPTIONS;
-import javax.ws.rs.POST;
-import javax.ws.rs.PUT;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
@@ -43,15 +42,44 @@ import javax.ws.rs.Produces;
  * Note that has a similar structure to a DTO where all the properties
  * are final, and you can only construct this using a utility method,
  * in this case {@link #parseEndpoint(Object)}
+ * <br /><br />
+ * Parsing follows the JAX-RS annotation inheritance rules, so methods
+ * that pick up their annotations from a superclass or an interface are
+ * found, although the class level {@link Path} has to be on the class itself.
+ * Class level {@link Produces} and {@link Consumes} act as defaults,
+ * and sub-resource locators are listed along with the resource methods
+ * of the class they return. The result is cached per class, see
+ * {@link #release(Class)}.
  * 
  * @author Shawn Dempsay {@literal <sdempsay@pavlovmedia.com>}
  *
  */
 public final class EndpointInfo {
+    /** The verb used for sub-resource locators, they match any verb */
+    public static final String LOCATOR_VERB = "*";
+    
     public final String path;
     public final List<String> acceptTypes;
     public final List<String> responseTypes;
     public final String verb;
+    /** True if this is a sub-resource locator rather than a resource method */
+    public final boolean subResourceLocator;
+    
+    /**
+     * The parsed model for each class. A {@link ClassValue} does not keep the
+     * class from being collected, so entries go away with the bundle class
+     * loader that defined them.
+     */
+    private static final ClassValue<List<EndpointInfo>> MODEL_CACHE = new ClassValue<List<EndpointInfo>>() {
+        @Override
+        protected List<EndpointInfo> computeValue(final Class<?> type) {
+            return Collections.unmodifiableList(buildModel(type));
+        }
+    };
+    
+    private static final Comparator<EndpointInfo> ORDER = Comparator
+            .comparing((EndpointInfo e) -> e.path)
+            .thenComparing(e -> e.verb);
     
     private EndpointInfo(final String path, final String verb, 
             final List<String> acceptTypes, final List<String> responseTypes) { 
@@ -59,12 +87,16 @@ public final class EndpointInfo {
         this.verb = verb;
         this.acceptTypes = Collections.unmodifiableList(acceptTypes);
         this.responseTypes = Collections.unmodifiableList(responseTypes);
+        this.subResourceLocator = LOCATOR_VERB.equals(verb);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("EndpointInfo: ");
         sb.append(String.format("path: %s, verb: %s", path, verb));
+        if (subResourceLocator) {
+            sb.append(" (locator)");
+        }
         if (!acceptTypes.isEmpty()) {
             String flat = acceptTypes.stream().reduce((t, u) -> t + "," + u).get();
             sb.append(String.format(", accept: [ %s ]", flat));
@@ -90,74 +122,241 @@ public final class EndpointInfo {
     
     /**
      * Takes a potential JAX-RS endpoint and turns it into a list of
-     * endpoints represented inside the class.
+     * endpoints represented inside the class. The reflection is only
+     * done the first time a class is seen.
      * 
      * @param clazz the class of the endpoint to parse
-     * @return a list of {@link EndpointInfo} objects
+     * @return an unmodifiable list of {@link EndpointInfo} objects
      */
     public static List<EndpointInfo> parseEndpoint(final Class<?> clazz) {
+        return MODEL_CACHE.get(clazz);
+    }
+    
+    /**
+     * Drops the cached model for a class. This is called when the bundle
+     * that provided the class is refreshed or uninstalled so we don't hang
+     * on to anything from the old class loader any longer than needed.
+     * 
+     * @param clazz the class to forget about
+     */
+    public static void release(final Class<?> clazz) {
+        MODEL_CACHE.remove(clazz);
+    }
+    
+    /**
+     * Does the actual reflection for {@link #parseEndpoint(Class)}
+     * 
+     * @param clazz the class to parse
+     * @return all of the endpoints in the class, sorted by path and verb
+     */
+    private static List<EndpointInfo> buildModel(final Class<?> clazz) {
+        // The class level path is not inherited, Jersey and the trackers only
+        // publish a class that carries it itself
         Path pathAnnotation = clazz.getDeclaredAnnotation(Path.class);
         if (null == pathAnnotation) {
             return Collections.emptyList();
         }
         
-        return Arrays.asList(clazz.getDeclaredMethods()).stream()
-            .map(m -> methodToInfo(m, pathAnnotation.value()))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .collect(Collectors.toList());
+        ArrayList<EndpointInfo> ret = new ArrayList<>();
+        collect(clazz, joinPath("", pathAnnotation.value()), new HashSet<>(), ret);
+        ret.sort(ORDER);
+        return ret;
+    }
+    
+    /**
+     * Adds the endpoints of a resource class to a list, following any
+     * sub-resource locators into the classes they return.
+     * 
+     * @param clazz the resource class
+     * @param basePath the path the class is served from
+     * @param visiting classes we are already in the middle of, to stop loops
+     * @param out where the endpoints go
+     */
+    private static void collect(final Class<?> clazz, final String basePath, 
+            final Set<Class<?>> visiting, final List<EndpointInfo> out) {
+        if (!visiting.add(clazz)) {
+            return;
+        }
+        
+        List<String> classConsumes = findClassAnnotation(clazz, Consumes.class)
+                .map(c -> Arrays.asList(c.value()))
+                .orElse(Collections.emptyList());
+        List<String> classProduces = findClassAnnotation(clazz, Produces.class)
+                .map(p -> Arrays.asList(p.value()))
+                .orElse(Collections.emptyList());
+        
+        for (Method method : clazz.getMethods()) {
+            if (method.isBridge() || method.isSynthetic() || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            
+            Optional<Method> annotated = findAnnotatedMethod(method);
+            if (!annotated.isPresent()) {
+                continue;
+            }
+            
+            Method source = annotated.get();
+            Optional<EndpointInfo> info = methodToInfo(source, basePath, classConsumes, classProduces);
+            info.ifPresent(out::add);
+            
+            // Locators hand back another resource, so list what it serves as well
+            if (info.isPresent() && info.get().subResourceLocator) {
+                Class<?> returned = method.getReturnType();
+                if (!returned.isPrimitive() && Object.class != returned && Class.class != returned) {
+                    collect(returned, info.get().path, visiting, out);
+                }
+            }
+        }
+        
+        visiting.remove(clazz);
     }
     
     /**
      * A method that can take in a method and create an EndpointInfo from it.
      * 
-     * @param target the method to parse
+     * @param target the method to parse, this is the one that carries the annotations
      * @param parentPath the path of the parent class to use if a new path annotation
      *   is not present
+     * @param classConsumes the accept types from the class, used if the method has none
+     * @param classProduces the response types from the class, used if the method has none
      * @return an {@link EndpointInfo} wrapped in an {@link Optional}, or {@link Optional#empty()}
      *   if this method is not a JAX-RS method
      */
-    private static Optional<EndpointInfo> methodToInfo(final Method target, final String parentPath) {
-        String verb;
-        String path;
-        ArrayList<String> acceptTypes = new ArrayList<>();
-        ArrayList<String> responseTypes = new ArrayList<>();
+    private static Optional<EndpointInfo> methodToInfo(final Method target, final String parentPath,
+            final List<String> classConsumes, final List<String> classProduces) {
+        Optional<String> httpVerb = httpVerb(target);
+        Path additional = target.getAnnotation(Path.class);
         
-        // We need a method first
-        if (target.isAnnotationPresent(GET.class)) {
-            verb = "GET";
-        } else if (target.isAnnotationPresent(POST.class)) {
-            verb = "POST";
-        } else if (target.isAnnotationPresent(PUT.class)) {
-            verb = "PUT";
-        } else if (target.isAnnotationPresent(DELETE.class)) {
-            verb = "DELETE";
-        } else if (target.isAnnotationPresent(HEAD.class)) {
-            verb = "HEAD";
-        } else if (target.isAnnotationPresent(OPTIONS.class)) {
-            verb = "OPTIONS";
-        } else {
+        // We need a verb, or a path which makes this a sub-resource locator
+        if (!httpVerb.isPresent() && null == additional) {
             return Optional.empty();
         }
         
-        // We can have an additional path marker here
-        if (target.isAnnotationPresent(Path.class)) {
-            Path additional = target.getAnnotation(Path.class);
-            path = String.format("%s/%s", parentPath, additional.value());
-        } else {
-            path = parentPath;
-        }
+        String verb = httpVerb.orElse(LOCATOR_VERB);
+        String path = null == additional ? parentPath : joinPath(parentPath, additional.value());
+        
+        // Request and response types, the method overrides the class
+        List<String> responseTypes = target.isAnnotationPresent(Produces.class)
+                ? Arrays.asList(target.getAnnotation(Produces.class).value())
+                : classProduces;
+        List<String> acceptTypes = target.isAnnotationPresent(Consumes.class)
+                ? Arrays.asList(target.getAnnotation(Consumes.class).value())
+                : classConsumes;
         
-        // Request and response types
-        if (target.isAnnotationPresent(Produces.class)) {
-            responseTypes.addAll(Arrays.asList(target.getAnnotation(Produces.class).value()));
+        return Optional.of(new EndpointInfo(path, verb, new ArrayList<>(acceptTypes), new ArrayList<>(responseTypes)));
+    }
+    
+    /**
+     * Finds the HTTP verb of a method, this is any annotation that is
+     * itself annotated with {@link HttpMethod} so custom verbs work too.
+     */
+    private static Optional<String> httpVerb(final Method method) {
+        for (Annotation annotation : method.getDeclaredAnnotations()) {
+            HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (null != httpMethod) {
+                return Optional.of(httpMethod.value());
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private static boolean hasJaxrsAnnotations(final Method method) {
+        return method.isAnnotationPresent(Path.class) || httpVerb(method).isPresent();
+    }
+    
+    /**
+     * JAX-RS lets a method pick up its annotations from the method it
+     * overrides, as long as it has none of its own. Superclasses win over
+     * interfaces.
+     * 
+     * @param method the method as found on the resource class
+     * @return the method that holds the annotations, if there is one
+     */
+    private static Optional<Method> findAnnotatedMethod(final Method method) {
+        if (hasJaxrsAnnotations(method)) {
+            return Optional.of(method);
         }
         
-        if (target.isAnnotationPresent(Consumes.class)) {
-            acceptTypes.addAll(Arrays.asList(target.getAnnotation(Consumes.class).value()));
+        Class<?> declaring = method.getDeclaringClass();
+        for (Class<?> current = declaring.getSuperclass(); null != current; current = current.getSuperclass()) {
+            Optional<Method> found = annotatedDeclaredMethod(current, method);
+            if (found.isPresent()) {
+                return found;
+            }
         }
         
-        return Optional.of(new EndpointInfo(path, verb, acceptTypes, responseTypes));
+        for (Class<?> current = declaring; null != current; current = current.getSuperclass()) {
+            for (Class<?> iface : current.getInterfaces()) {
+                Optional<Method> found = findInInterface(iface, method);
+                if (found.isPresent()) {
+                    return found;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private static Optional<Method> findInInterface(final Class<?> iface, final Method method) {
+        Optional<Method> found = annotatedDeclaredMethod(iface, method);
+        if (found.isPresent()) {
+            return found;
+        }
+        for (Class<?> parent : iface.getInterfaces()) {
+            found = findInInterface(parent, method);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private static Optional<Method> annotatedDeclaredMethod(final Class<?> clazz, final Method method) {
+        try {
+            Method candidate = clazz.getDeclaredMethod(method.getName(), method.getParameterTypes());
+            return hasJaxrsAnnotations(candidate) ? Optional.of(candidate) : Optional.empty();
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Looks for a class level annotation on the class first, then up
+     * the superclasses and finally the interfaces.
+     */
+    private static <A extends Annotation> Optional<A> findClassAnnotation(final Class<?> clazz, 
+            final Class<A> annotationClass) {
+        for (Class<?> current = clazz; null != current; current = current.getSuperclass()) {
+            A annotation = current.getDeclaredAnnotation(annotationClass);
+            if (null != annotation) {
+                return Optional.of(annotation);
+            }
+        }
+        for (Class<?> current = clazz; null != current; current = current.getSuperclass()) {
+            for (Class<?> iface : current.getInterfaces()) {
+                A annotation = iface.getDeclaredAnnotation(annotationClass);
+                if (null != annotation) {
+                    return Optional.of(annotation);
+                }
+            }
+        }
+        return Optional.empty();
     }
     
+    /**
+     * Joins two path pieces with exactly one slash between them, the
+     * result always starts with a slash. Anything else keyed by endpoint
+     * path should build its paths with this so they line up.
+     * 
+     * @param parent the path so far
+     * @param child the piece to add
+     * @return the joined path
+     */
+    public static String joinPath(final String parent, final String child) {
+        String left = parent.endsWith("/") ? parent.substring(0, parent.length() - 1) : parent;
+        String right = child.startsWith("/") ? child.substring(1) : child;
+        if (right.isEmpty()) {
+            return left.isEmpty() ? "/" : left;
+        }
+        return left + "/" + right;
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * This is a point in time look at the concurrency limit of a single resource
+ * method. It is keyed the same way as {@link EndpointInfo}, by path and verb.
+ * <br /><br />
+ * The limit moves with the latency the method shows: it grows slowly while
+ * requests are quick and is cut back when they slow down or fail. Requests
+ * over the limit are turned away with a 503. Latencies are in nanoseconds.
+ */
+public final class EndpointLimit {
+    public final String path;
+    public final String verb;
+    /** How many requests can run at once right now */
+    public final int limit;
+    /** Requests that are running right now */
+    public final int inFlight;
+    /** Requests that were let through */
+    public final long accepted;
+    /** Requests that were turned away */
+    public final long rejected;
+    /** The latency over the long run, what recent latency is compared to */
+    public final long baselineNanos;
+    /** The latency of the last few requests */
+    public final long recentNanos;
+    
+    public EndpointLimit(final String path, final String verb, final int limit, final int inFlight, 
+            final long accepted, final long rejected, final long baselineNanos, final long recentNanos) {
+        this.path = path;
+        this.verb = verb;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.baselineNanos = baselineNanos;
+        this.recentNanos = recentNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s %s limit=%d inFlight=%d accepted=%d rejected=%d baseline=%dus recent=%dus", 
+                verb, path, limit, inFlight, accepted, rejected, baselineNanos / 1000, recentNanos / 1000);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * This is a point in time look at how a single resource method has been
+ * doing. It is keyed the same way as {@link EndpointInfo}, by path and
+ * verb, so the two can be matched up.
+ * <br /><br />
+ * Like {@link EndpointInfo} this is DTO-like, all the properties are final.
+ * Latencies are in nanoseconds and come from a histogram, so they are
+ * accurate to within a few percent.
+ */
+public final class EndpointMetrics {
+    public final String path;
+    public final String verb;
+    /** Requests that have finished */
+    public final long requests;
+    /** Requests that finished with a 5xx or an unmapped exception */
+    public final long errors;
+    /** Requests that are running right now */
+    public final long inFlight;
+    /** Time taken by all the finished requests put together */
+    public final long totalNanos;
+    public final long meanNanos;
+    public final long p50Nanos;
+    public final long p90Nanos;
+    public final long p99Nanos;
+    public final long p999Nanos;
+    public final long maxNanos;
+    
+    public EndpointMetrics(final String path, final String verb, final long requests, final long errors, 
+            final long inFlight, final long totalNanos, final long meanNanos, final long p50Nanos, 
+            final long p90Nanos, final long p99Nanos, final long p999Nanos, final long maxNanos) {
+        this.path = path;
+        this.verb = verb;
+        this.requests = requests;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.totalNanos = totalNanos;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s %s requests=%d errors=%d inFlight=%d p50=%dus p99=%dus max=%dus", 
+                verb, path, requests, errors, inFlight, 
+                p50Nanos / 1000, p99Nanos / 1000, maxNanos / 1000);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.pavlovmedia.oss.jaxrs.publisher.api;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,13 @@ public interface Publisher {
      */
     String SCAN_IGNORE = "jaxSkip";
     
+    /**
+     * This is used as an OSGi property on a service to tie it to the
+     * publisher serving on this path. Services without it are picked
+     * up by every publisher that discovers them.
+     */
+    String PUBLISHER_PATH = "jaxrs.publisher.path";
+    
     /**
      * Gets a list of the current endpoints that have been
      * passed along to Jersey
@@ -92,12 +100,63 @@ public interface Publisher {
      */
     Set<Class<?>> getReaderListeners();
     
-    /** Gets the web path of this publisher */
+    /**
+     * Gets how each resource method has been doing since the publisher
+     * started, see {@link EndpointMetrics}.
+     * 
+     * @return the metrics ordered by path and verb
+     */
+    default List<EndpointMetrics> getEndpointMetrics() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Gets the concurrency limit of each resource method, see {@link EndpointLimit}.
+     * 
+     * @return the limits ordered by path and verb, empty if limiting is turned off
+     */
+    default List<EndpointLimit> getEndpointLimits() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * Gets the most recent reloads of Jersey, how many are kept is
+     * configured on the publisher.
+     * 
+     * @return the reloads, oldest first
+     */
+    default List<ReloadRecord> getReloadHistory() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * @return totals over every reload since the publisher started
+     */
+    default ReloadStats getReloadStats() {
+        return new ReloadStats(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+    
+    /**
+     * @return how service discovery is doing
+     */
+    default DiscoveryStats getDiscoveryStats() {
+        return new DiscoveryStats(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+    
+    /**
+     * @return how the response cache is doing, all zeros if it is turned off
+     */
+    default ResponseCacheStats getResponseCacheStats() {
+        return new ResponseCacheStats(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+    
+    /** Gets the web path of this publisher, null if it was inhibited from starting */
     String getPath();
     
     /**
      * This is used to pass along a lambda that will be triggered
-     * whenever service changes cause us to reconfigure Jersey.
+     * whenever service changes cause us to reconfigure Jersey, or
+     * the reader listeners change.
      * 
      * @param onChange a callback that notes a change
      * @return an id used by {@link #unsubscribe(String)} that
@@ -111,4 +170,15 @@ public interface Publisher {
      * @param id a key returned from {@link #subscribe(Runnable)}
      */
     void unsubscribe(String id);
+    
+    /**
+     * Starts a batch of registrations. Any services that are added or
+     * removed while a batch is open are staged, and then published with
+     * a single reload of Jersey when the last open batch is closed.
+     * 
+     * @return a handle that ends the batch when it is closed
+     */
+    default RegistrationBatch beginBatch() {
+        return () -> { };
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * A handle returned from {@link Publisher#beginBatch()}. While it is open
+ * services that come and go are staged instead of each one reloading
+ * Jersey. Closing it publishes everything that was staged with a single
+ * reload.
+ * <br /><br />
+ * This is meant to be used with try-with-resources around code that 
+ * registers a lot of services:
+ * <pre>
+ * try (RegistrationBatch batch = publisher.beginBatch()) {
+ *     context.registerService(...);
+ *     context.registerService(...);
+ * }
+ * </pre>
+ */
+public interface RegistrationBatch extends AutoCloseable {
+    /**
+     * Ends this batch. When services are discovered in the background this
+     * waits for the ones registered during the batch to be seen first, so
+     * it should not be called while holding a lock that activating one of
+     * them needs. Closing more than once has no effect.
+     */
+    @Override
+    void close();
+}
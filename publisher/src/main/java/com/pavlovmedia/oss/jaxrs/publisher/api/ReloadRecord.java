@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * What happened during a single reload of Jersey. Like {@link EndpointInfo}
+ * this is DTO-like, all the properties are final. Durations are in nanoseconds.
+ */
+public final class ReloadRecord {
+    /** When the reload finished, in milliseconds since the epoch */
+    public final long timestamp;
+    /** The first change that asked for this reload, e.g. the service that was added */
+    public final String trigger;
+    /** How many changes were merged into this reload */
+    public final int mergedChanges;
+    /** How many targets were handed to Jersey */
+    public final int targets;
+    /** How long building the new Jersey application took */
+    public final long buildNanos;
+    /** How long an old container took to finish its requests, only used when swapping */
+    public final long drainNanos;
+    /** How long the change watchers took */
+    public final long watcherNanos;
+    /** Why the reload failed, or null if it worked */
+    public final String failure;
+    
+    public ReloadRecord(final long timestamp, final String trigger, final int mergedChanges, final int targets,
+            final long buildNanos, final long drainNanos, final long watcherNanos, final String failure) {
+        this.timestamp = timestamp;
+        this.trigger = trigger;
+        this.mergedChanges = mergedChanges;
+        this.targets = targets;
+        this.buildNanos = buildNanos;
+        this.drainNanos = drainNanos;
+        this.watcherNanos = watcherNanos;
+        this.failure = failure;
+    }
+    
+    /** @return true if Jersey took the new targets */
+    public boolean succeeded() {
+        return null == failure;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ReloadRecord: %tFT%<tT trigger: %s, changes: %d, targets: %d, build: %d ms, "
+                + "drain: %d ms, watchers: %d ms, %s", timestamp, trigger, mergedChanges, targets, 
+                buildNanos / 1_000_000, drainNanos / 1_000_000, watcherNanos / 1_000_000,
+                succeeded() ? "ok" : "failed: " + failure);
+    }
+}
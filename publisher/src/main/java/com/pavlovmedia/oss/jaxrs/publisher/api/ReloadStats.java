@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * Totals over every reload since the publisher started, as opposed to the
+ * limited history of {@link ReloadRecord}s. Durations are in nanoseconds.
+ */
+public final class ReloadStats {
+    public final long reloads;
+    public final long failures;
+    /** How many changes were merged into those reloads */
+    public final long mergedChanges;
+    public final long totalBuildNanos;
+    public final long maxBuildNanos;
+    public final long totalWatcherNanos;
+    public final long maxWatcherNanos;
+    /** When the last reload finished in milliseconds since the epoch, 0 if there hasn't been one */
+    public final long lastReload;
+    
+    public ReloadStats(final long reloads, final long failures, final long mergedChanges, 
+            final long totalBuildNanos, final long maxBuildNanos, final long totalWatcherNanos, 
+            final long maxWatcherNanos, final long lastReload) {
+        this.reloads = reloads;
+        this.failures = failures;
+        this.mergedChanges = mergedChanges;
+        this.totalBuildNanos = totalBuildNanos;
+        this.maxBuildNanos = maxBuildNanos;
+        this.totalWatcherNanos = totalWatcherNanos;
+        this.maxWatcherNanos = maxWatcherNanos;
+        this.lastReload = lastReload;
+    }
+    
+    /** @return the average time to build the Jersey application */
+    public long meanBuildNanos() {
+        return reloads == 0 ? 0 : totalBuildNanos / reloads;
+    }
+    
+    /** @return the average time spent in change watchers */
+    public long meanWatcherNanos() {
+        return reloads == 0 ? 0 : totalWatcherNanos / reloads;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ReloadStats: reloads: %d, failures: %d, changes: %d, build mean/max: %d/%d ms, "
+                + "watchers mean/max: %d/%d ms", reloads, failures, mergedChanges, 
+                meanBuildNanos() / 1_000_000, maxBuildNanos / 1_000_000,
+                meanWatcherNanos() / 1_000_000, maxWatcherNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+/**
+ * How the response cache is doing, see {@link CacheResponse}. Sizes are in bytes.
+ */
+public final class ResponseCacheStats {
+    /** Responses in the cache right now */
+    public final int entries;
+    /** The size of the responses in the cache */
+    public final long bytes;
+    /** The most the cache will hold, 0 if it is turned off */
+    public final long maxBytes;
+    /** Requests that were served from the cache */
+    public final long hits;
+    /** Requests that had to go to the resource */
+    public final long misses;
+    /** Responses that were put in the cache */
+    public final long stores;
+    /** Responses that were dropped to make room */
+    public final long evictions;
+    /** Responses that were dropped because they were too old */
+    public final long expirations;
+    
+    public ResponseCacheStats(final int entries, final long bytes, final long maxBytes, final long hits, 
+            final long misses, final long stores, final long evictions, final long expirations) {
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.stores = stores;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+    
+    /** @return the share of lookups that were served from the cache, 0 to 1 */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ResponseCacheStats: entries: %d, size: %d of %d kB, hits/misses: %d/%d (%.1f%%), "
+                + "stores: %d, evictions: %d, expirations: %d", entries, bytes / 1024, maxBytes / 1024, 
+                hits, misses, hitRate() * 100, stores, evictions, expirations);
+    }
+}
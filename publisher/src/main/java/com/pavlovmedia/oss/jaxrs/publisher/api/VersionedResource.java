@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+import javax.ws.rs.container.ContainerRequestContext;
+
+/**
+ * A resource that can tell what version of its data a request would get, far more
+ * cheaply than building the response. When the publisher has entity tags turned on
+ * it asks for the version before calling a GET method, and if the client already
+ * has that version it gets a 304 without the method being called at all.
+ * <br /><br />
+ * The version has to change whenever the response would, for every path and query
+ * the resource serves. A counter or a last modified stamp of the backing data is
+ * usually enough.
+ */
+public interface VersionedResource {
+    /**
+     * @param request the request, matched to a method of this resource but not run yet
+     * @return the version of the data it would get, or null to build the response and 
+     *   hash that instead
+     */
+    String getVersion(ContainerRequestContext request);
+}
@@ -16,9 +16,15 @@
 package com.pavlovmedia.oss.jaxrs.publisher.command;
  
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.log.Logger;
 import org.osgi.service.log.LoggerFactory;
 import org.osgi.service.metatype.annotations.Designate;
@@ -28,6 +34,9 @@ import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ProviderCommandConfig;
 
 /**
  * Commands to facilitate debugging of the JAX-RS system.
+ * <br /><br />
+ * Every command works on all of the publishers, or on just one if it is
+ * given the path of that publisher.
  * 
  * @author Shawn Dempsay {@literal <sdempsay@pavlovmedia.com>}
  *
@@ -38,22 +47,46 @@ import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ProviderCommandConfig;
     }) 
 @Designate(ocd = ProviderCommandConfig.class)
 public class ProviderCommands {
-    @Reference
-    Publisher publisher;
+    /** The publishers by path */
+    private final Map<String, Publisher> publishers = new ConcurrentSkipListMap<>();
     
     @Reference(service = LoggerFactory.class)
     Logger logger;
     
     @Activate
     private ProviderCommandConfig config;
+    
+    @Reference(name="publisher", cardinality=ReferenceCardinality.MULTIPLE, policy=ReferencePolicy.DYNAMIC)
+    protected void bindPublisher(final Publisher publisher) {
+        // An inhibited publisher never started, so it has nothing to show
+        if (null != publisher.getPath()) {
+            publishers.put(publisher.getPath(), publisher);
+        }
+    }
+    
+    protected void unbindPublisher(final Publisher publisher) {
+        publishers.values().remove(publisher);
+    }
+    
     /**
      * Lists all the registred endpoints
      */
     public void getEndpoints() {
-        logger.debug("JAX-RS Endpoint mappings: ");
-        publisher.getEndpoints().forEach((k,v) -> {
-            logger.debug(k);
-            v.forEach(e -> logger.debug(String.format("\t%s", e)));
+        getEndpoints(null);
+    }
+    
+    /**
+     * Lists all the registred endpoints of one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getEndpoints(final String path) {
+        forPublishers(path, publisher -> {
+            logger.debug("JAX-RS Endpoint mappings: ");
+            publisher.getEndpoints().forEach((k,v) -> {
+                logger.debug(k);
+                v.forEach(e -> logger.debug(String.format("\t%s", e)));
+            });
         });
     }
     
@@ -61,20 +94,151 @@ public class ProviderCommands {
      * Lists all the registered features
      */
     public void getFeatures() {
-        logger.debug("JAX-RS Features:");
-        publisher.getFeatures().forEach(f -> logger.debug(f.getClass().getName()));
+        getFeatures(null);
+    }
+    
+    /**
+     * Lists all the registered features of one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getFeatures(final String path) {
+        forPublishers(path, publisher -> {
+            logger.debug("JAX-RS Features:");
+            publisher.getFeatures().forEach(f -> logger.debug(f.getClass().getName()));
+        });
     }
     
     /**
      * Lists all the registered providers
      */
     public void getProviders() {
-        logger.debug("JAX-RS Providers:");
-        publisher.getProviders().forEach(p -> {
-            logger.debug(String.format("%s with the following interfaces:", p.getClass().getName()));
-            for (Class<?> i :p.getClass().getInterfaces()) {
-                logger.debug(String.format("\t%s", i.getName()));
+        getProviders(null);
+    }
+    
+    /**
+     * Lists all the registered providers of one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getProviders(final String path) {
+        forPublishers(path, publisher -> {
+            logger.debug("JAX-RS Providers:");
+            publisher.getProviders().forEach(p -> {
+                logger.debug(String.format("%s with the following interfaces:", p.getClass().getName()));
+                for (Class<?> i :p.getClass().getInterfaces()) {
+                    logger.debug(String.format("\t%s", i.getName()));
+                }
+            });
+        });
+    }
+    
+    /**
+     * Lists the most recent reloads of Jersey
+     */
+    public void getReloads() {
+        getReloads(null);
+    }
+    
+    /**
+     * Lists the most recent reloads of Jersey for one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getReloads(final String path) {
+        forPublishers(path, publisher -> {
+            logger.debug("JAX-RS Reloads:");
+            publisher.getReloadHistory().forEach(r -> logger.debug(r.toString()));
+        });
+    }
+    
+    /**
+     * Shows the totals over all reloads of Jersey
+     */
+    public void getReloadStats() {
+        getReloadStats(null);
+    }
+    
+    /**
+     * Shows the totals over all reloads of Jersey for one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getReloadStats(final String path) {
+        forPublishers(path, publisher -> logger.debug(publisher.getReloadStats().toString()));
+    }
+    
+    /**
+     * Shows how service discovery is doing
+     */
+    public void getDiscoveryStats() {
+        getDiscoveryStats(null);
+    }
+    
+    /**
+     * Shows how service discovery is doing for one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getDiscoveryStats(final String path) {
+        forPublishers(path, publisher -> logger.debug(publisher.getDiscoveryStats().toString()));
+    }
+    
+    /**
+     * Shows how the response cache is doing
+     */
+    public void getResponseCacheStats() {
+        getResponseCacheStats(null);
+    }
+    
+    /**
+     * Shows how the response cache of one publisher is doing
+     * 
+     * @param path the path of the publisher
+     */
+    public void getResponseCacheStats(final String path) {
+        forPublishers(path, publisher -> logger.debug(publisher.getResponseCacheStats().toString()));
+    }
+    
+    /**
+     * Lists the concurrency limit of each resource method
+     */
+    public void getEndpointLimits() {
+        getEndpointLimits(null);
+    }
+    
+    /**
+     * Lists the concurrency limit of each resource method of one publisher
+     * 
+     * @param path the path of the publisher
+     */
+    public void getEndpointLimits(final String path) {
+        forPublishers(path, publisher -> {
+            logger.debug("JAX-RS Endpoint limits:");
+            publisher.getEndpointLimits().forEach(l -> logger.debug(l.toString()));
+        });
+    }
+    
+    /**
+     * Runs a command against the publisher on a path, or against all of them
+     * 
+     * @param path the path of the publisher, null for all of them
+     * @param command what to do with each publisher
+     */
+    private void forPublishers(final String path, final Consumer<Publisher> command) {
+        if (null != path) {
+            Publisher publisher = publishers.get(path);
+            if (null == publisher) {
+                logger.debug(String.format("No JAX-RS publisher on %s, there are %s", path, publishers.keySet()));
+            } else {
+                command.accept(publisher);
             }
+            return;
+        }
+        
+        publishers.forEach((p, publisher) -> {
+            logger.debug(String.format("JAX-RS publisher %s", p));
+            command.accept(publisher);
         });
     }
 }
@@ -19,11 +19,12 @@ import java.lang.annotation.Annotation;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Feature;
 import javax.ws.rs.ext.Provider;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 
 /**
@@ -37,19 +38,37 @@ import org.osgi.framework.ServiceReference;
  *
  */
 public class BaseObjectTracker {
-    /** This is a configuration property used to add a reconfiguration callback */
+    /** 
+     * This is a configuration property used to add a reconfiguration callback, it
+     * is a {@link Consumer} that is told what changed
+     */
     public static final String CALLBACK = "callback";
     
     /**
      * This holds the set of targets that we provide to Jersey
      */
-    protected final Set<JaxReference> jaxrsTargets = new CopyOnWriteArraySet<>();
+    protected final TargetRegistry jaxrsTargets = new TargetRegistry();
+    
+    /**
+     * Remembers which classes are targets so we don't keep
+     * reflecting on the same classes
+     */
+    protected VerdictCache verdictCache = new VerdictCache(VerdictCache.DEFAULT_SIZE);
     
     /**
      * This is the callback registered during the factory creation
      * that will be signaled when a target is added or removed
      */
-    protected Optional<Runnable> onTargetChange = Optional.empty();
+    protected Optional<Consumer<String>> onTargetChange = Optional.empty();
+    
+    /**
+     * While this is set changes are not signaled, the code that set it
+     * is responsible for signaling once it is done
+     */
+    protected volatile boolean quiet;
+    
+    /** Set when a change was held back because we were quiet */
+    protected volatile boolean suppressed;
     
     /**
      * This is a very brain-dead logging method, it really needs
@@ -96,9 +115,35 @@ public class BaseObjectTracker {
      * @return
      */
     public Set<Object> getJaxrsTargets() {
-        return jaxrsTargets.stream()
-                .map(JaxReference::getJaxObject)
-                .collect(Collectors.toSet());
+        return jaxrsTargets.targets();
+    }
+    
+    /**
+     * This returns the targets along with the service references
+     * they came from, for callers that need to know who provided
+     * a target.
+     * 
+     * @return a read only view of the tracked targets
+     */
+    public Set<JaxReference> getJaxrsReferences() {
+        return jaxrsTargets.references();
+    }
+    
+    /**
+     * @return the registry of targets, for lookups by service id and the generation
+     */
+    public TargetRegistry getRegistry() {
+        return jaxrsTargets;
+    }
+    
+    /**
+     * Gets the generation of the target set, this changes any time
+     * a target is added or removed.
+     * 
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return jaxrsTargets.getGeneration();
     }
     
     /**
@@ -109,7 +154,7 @@ public class BaseObjectTracker {
         if (isJaxrsTarget(target.getClass(), target)) {
             logInfo("Adding target %s", target);
             if (jaxrsTargets.add(new JaxReference(serviceReference, target))) {
-                onTargetChange.ifPresent(Runnable::run);
+                signalChange("added " + describe(serviceReference));
                 return true;
             }
         }
@@ -119,19 +164,40 @@ public class BaseObjectTracker {
     /**
      * This is called from the implementing class to remove a JAX-RS target
      * @param target the service to be removed
+     * @return true if the service was one of our targets
      */
     protected boolean removeTarget(final ServiceReference<?> target) {
         // Sometimes service tracking gets us null objects
-        if (null != target) {
+        if (null != target && jaxrsTargets.remove(target).isPresent()) {
             logDebug("Removing target %s", target);
-            // JaxReference is keyed by the service reference, so we can leave the jaxObject null for this
-            jaxrsTargets.remove(new JaxReference(target, null));
-            onTargetChange.ifPresent(Runnable::run);
+            signalChange("removed " + describe(target));
             return true;
         }
         return false;
     }
     
+    /**
+     * Tells the callback something changed, unless we are being quiet
+     * 
+     * @param trigger what changed
+     */
+    protected void signalChange(final String trigger) {
+        if (!quiet) {
+            onTargetChange.ifPresent(c -> c.accept(trigger));
+        } else {
+            suppressed = true;
+        }
+    }
+    
+    /**
+     * @return the service id and the bundle that registered it, for reporting
+     */
+    private static String describe(final ServiceReference<?> reference) {
+        Bundle bundle = reference.getBundle();
+        return String.format("service %s from %s", reference.getProperty(Constants.SERVICE_ID), 
+                null == bundle ? "an unregistered bundle" : bundle.getSymbolicName());
+    }
+    
     /**
      * The goal of this method is to see if this object is something
      * that JAX-RS can use, it does so by looking at the class of the
@@ -141,6 +207,28 @@ public class BaseObjectTracker {
      * @return true if this is a class type that jaxrs will use
      */
     public boolean isJaxrsTarget(final Class<?> clazz, final Object target) {
+        return isJaxrsClass(clazz);
+    }
+    
+    /**
+     * This is the same check as {@link #isJaxrsTarget(Class, Object)} but
+     * works from the class alone, for when we don't have the object yet.
+     * Results are kept in the {@link VerdictCache}.
+     * 
+     * @param clazz class to inspect
+     * @return true if this is a class type that jaxrs will use
+     */
+    public boolean isJaxrsClass(final Class<?> clazz) {
+        return verdictCache.test(clazz, this::inspectClass);
+    }
+    
+    /**
+     * Does the reflection behind {@link #isJaxrsClass(Class)}
+     * 
+     * @param clazz class to inspect
+     * @return true if this is a class type that jaxrs will use
+     */
+    protected boolean inspectClass(final Class<?> clazz) {
         Annotation[] annotations = clazz.getDeclaredAnnotations();
         if (null != annotations) {
             Arrays.asList(annotations).forEach(a -> logDebug("%s", a.annotationType()));
@@ -149,6 +237,13 @@ public class BaseObjectTracker {
         // To be a jax target we can be a Feature, annotated with Path, or annotated with Provider
         return null != clazz.getDeclaredAnnotation(Path.class) 
                 || null != clazz.getDeclaredAnnotation(Provider.class)
-                || target instanceof Feature;
+                || Feature.class.isAssignableFrom(clazz);
+    }
+    
+    /**
+     * @return the cache of target verdicts
+     */
+    public VerdictCache getVerdictCache() {
+        return verdictCache;
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.DiscoveryMode;
+
+/**
+ * This builds the LDAP filter the tracker uses to pick which services
+ * it looks at. Whatever the mode, services marked with 
+ * {@link Publisher#SCAN_IGNORE} are always left out.
+ */
+public final class DiscoveryFilter {
+    /** The legacy filter, this grabs everything that isn't marked with ignore */
+    public static final String WILDCARD = "(&(objectClass=*)(!(" + Publisher.SCAN_IGNORE + "=*)))";
+    
+    /** Properties that mark a service as meant for JAX-RS */
+    static final String MARKED = "(|(osgi.jaxrs.resource=true)(osgi.jaxrs.extension=true)"
+            + "(com.eclipsesource.jaxrs.publish=true))";
+    
+    private DiscoveryFilter() {
+        // Static utility
+    }
+    
+    /**
+     * Builds a discovery filter.
+     * 
+     * @param mode which services to consider in the first place
+     * @param userFilter the LDAP filter used by {@link DiscoveryMode#FILTER}
+     * @param includeClasses if not empty, only services with one of these object classes are considered
+     * @param excludeClasses services with any of these object classes are never considered
+     * @return the filter to hand to the framework
+     * @throws InvalidSyntaxException if the user filter is broken
+     */
+    public static String build(final DiscoveryMode mode, final String userFilter,
+            final String[] includeClasses, final String[] excludeClasses) throws InvalidSyntaxException {
+        StringBuilder sb = new StringBuilder("(&");
+        switch (mode) {
+            case MARKED:
+                sb.append(MARKED);
+                break;
+            case FILTER:
+                if (null == userFilter || userFilter.trim().isEmpty()) {
+                    throw new InvalidSyntaxException("FILTER discovery needs a filter", userFilter);
+                }
+                // Make sure it is sane before we splice it in
+                sb.append(FrameworkUtil.createFilter(userFilter.trim()).toString());
+                break;
+            case WILDCARD:
+            default:
+                sb.append("(objectClass=*)");
+                break;
+        }
+        
+        objectClassFilter(includeClasses).ifPresent(sb::append);
+        objectClassFilter(excludeClasses).ifPresent(f -> sb.append("(!").append(f).append(")"));
+        
+        sb.append("(!(").append(Publisher.SCAN_IGNORE).append("=*)))");
+        
+        String filter = sb.toString();
+        FrameworkUtil.createFilter(filter);
+        return filter;
+    }
+    
+    /**
+     * Narrows a discovery filter down to what a single publisher should see. Services
+     * tied to another publisher with {@link Publisher#PUBLISHER_PATH} are left out.
+     * 
+     * @param filter the filter from {@link #build(DiscoveryMode, String, String[], String[])}
+     * @param targetFilter an extra LDAP filter for this publisher, may be empty
+     * @param publisherPath the path of the publisher
+     * @return the filter to hand to the framework
+     * @throws InvalidSyntaxException if the target filter is broken
+     */
+    public static String forPublisher(final String filter, final String targetFilter, 
+            final String publisherPath) throws InvalidSyntaxException {
+        StringBuilder sb = new StringBuilder("(&").append(filter);
+        if (null != targetFilter && !targetFilter.trim().isEmpty()) {
+            sb.append(FrameworkUtil.createFilter(targetFilter.trim()).toString());
+        }
+        sb.append("(|(!(").append(Publisher.PUBLISHER_PATH).append("=*))(")
+            .append(Publisher.PUBLISHER_PATH).append("=").append(escape(publisherPath)).append(")))");
+        
+        String result = sb.toString();
+        FrameworkUtil.createFilter(result);
+        return result;
+    }
+    
+    /**
+     * Turns a list of class names into a filter matching any of them
+     * 
+     * @param classes the class names, may be null
+     * @return the filter, or {@link Optional#empty()} if there were no class names
+     */
+    private static Optional<String> objectClassFilter(final String[] classes) {
+        if (null == classes) {
+            return Optional.empty();
+        }
+        List<String> terms = Arrays.stream(classes)
+                .map(String::trim)
+                .filter(c -> !c.isEmpty())
+                .map(c -> "(objectClass=" + escape(c) + ")")
+                .collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(terms.stream().collect(Collectors.joining("", "(|", ")")));
+    }
+    
+    /** Escapes the characters that mean something inside an LDAP value */
+    private static String escape(final String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '\\' || c == '*' || c == '(' || c == ')') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
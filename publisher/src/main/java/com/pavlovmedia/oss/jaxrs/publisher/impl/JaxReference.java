@@ -1,6 +1,7 @@
 package com.pavlovmedia.oss.jaxrs.publisher.impl;
 
 import java.util.Objects;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.ServiceReference;
 
 /**
@@ -11,6 +12,11 @@ import org.osgi.framework.ServiceReference;
 public class JaxReference {
     public final ServiceReference<?> serivceReference;
     public final Object jaxObject;
+    /** 
+     * The id of the bundle that registered the service, kept because the 
+     * reference forgets its bundle once the service is unregistered
+     */
+    public final long bundleId;
     
     public Object getJaxObject() {
         return this.jaxObject;
@@ -22,6 +28,8 @@ public class JaxReference {
         
         this.serivceReference = serivceReference;
         this.jaxObject = jaxObject;
+        Bundle bundle = serivceReference.getBundle();
+        this.bundleId = null == bundle ? -1 : bundle.getBundleId();
     }
     
     @Override
@@ -16,8 +16,8 @@
 package com.pavlovmedia.oss.jaxrs.publisher.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -26,18 +26,18 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import javax.servlet.ServletException;
-import javax.ws.rs.Path;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.Feature;
-import javax.ws.rs.ext.Provider;
 
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.glassfish.jersey.media.sse.SseFeature;
@@ -56,9 +56,31 @@ import org.osgi.service.log.Logger;
 import org.osgi.service.log.LoggerFactory;
 import org.osgi.service.metatype.annotations.Designate;
 import com.pavlovmedia.osgi.oss.utilities.api.component.ComponentHolder;
+import com.pavlovmedia.oss.jaxrs.publisher.api.DiscoveryStats;
 import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointLimit;
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
 import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.api.RegistrationBatch;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadRecord;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadStats;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ResponseCacheStats;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.AsyncMode;
 import com.pavlovmedia.oss.jaxrs.publisher.impl.config.PublisherConfig;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ReloadMode;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.async.AsyncExecutors;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.cache.ResponseCache;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.cache.ResponseCacheFeature;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.compression.CompressionFeature;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.etag.ETagFeature;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.limit.LimitFeature;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.limit.LimitListener;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.limit.LimitRegistry;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.metrics.EndpointMetricsRegistry;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.metrics.MetricsExposition;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.metrics.MetricsListener;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ShardMode;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.shard.ShardManager;
 import com.pavlovmedia.oss.jaxrs.publisher.impl.swagger.SwaggerEndpoint;
 
 /**
@@ -69,14 +91,15 @@ import com.pavlovmedia.oss.jaxrs.publisher.impl.swagger.SwaggerEndpoint;
  * @author Shawn Dempsay {@literal <sdempsay@pavlovmedia.com>}
  *
  */
-@Component(immediate=true,
+@Component(immediate=true, configurationPolicy=ConfigurationPolicy.OPTIONAL,
     //OSGi properties that do not require editting via the ConfigMgr by declaring them in this property array.
     property= {
         Publisher.SCAN_IGNORE + "=true",
         "com.eclipsesource.jaxrs.publish=" + false
     })
-// With @Designate, mark this OSGi service as taking the Configuration class as the config to be passed into @Activate, @Deactivate and @Modified methods
-@Designate(ocd = PublisherConfig.class)
+// With @Designate, mark this OSGi service as taking the Configuration class as the config to be passed into @Activate, @Deactivate and @Modified methods.
+// Each factory configuration gets its own publisher, with no configuration at all there is a single one on the default path
+@Designate(ocd = PublisherConfig.class, factory = true)
 public class JerseyPublisher extends Application implements Publisher {
     public static final String PATH = "path";
     public static final String INHIBIT_START = "pavlovStackInhibit";
@@ -114,12 +137,52 @@ public class JerseyPublisher extends Application implements Publisher {
     /** The servlet that is used to provide JAX-RS */
     private ServletContainer container; 
     
+    /** Used instead of the container when reloads swap in a new container */
+    private Optional<SwappingServlet> swappingServlet = Optional.empty();
+    
+    /**
+     * @return the swapping servlet, if reloads swap in a new container
+     */
+    Optional<SwappingServlet> getSwappingServlet() {
+        return swappingServlet;
+    }
+    
+    /** Used instead of the single container when sharding is turned on */
+    private Optional<ShardManager> shardManager = Optional.empty();
+    
     /** 
      * Used to track if the servlet has been initialized and can get
      * configuration reloads
      */
     private final AtomicBoolean initialized = new AtomicBoolean();
     
+    /** Keeps the request metrics, across reloads */
+    private final EndpointMetricsRegistry metricsRegistry = new EndpointMetricsRegistry();
+    
+    /** Feeds {@link #metricsRegistry} from every container we run */
+    private final MetricsListener metricsListener = new MetricsListener(metricsRegistry);
+    
+    /** Keeps the concurrency limits, across reloads, when they are turned on */
+    private Optional<LimitRegistry> limitRegistry = Optional.empty();
+    
+    /** Compresses responses in every container we run, when it is turned on */
+    private Optional<CompressionFeature> compression = Optional.empty();
+    
+    /** Keeps the responses of methods that opt in, shared by every container we run */
+    private Optional<ResponseCache> responseCache = Optional.empty();
+    
+    /** Runs managed async work for every container we run, unless Jersey's own executors are used */
+    private Optional<AsyncExecutors> asyncExecutors = Optional.empty();
+    
+    /** The last few reloads, for reporting */
+    private ReloadHistory reloadHistory = new ReloadHistory(ReloadHistory.DEFAULT_SIZE);
+    
+    /** Collapses bursts of service changes into a single reload */
+    private ReloadScheduler reloadScheduler;
+    
+    /** What we last built from the tracker, see {@link #getSnapshot()} */
+    private volatile TargetSnapshot snapshot = TargetSnapshot.EMPTY;
+    
     /** Used to track the swagger support */
     private Optional<ServiceReference<?>> swaggerEndpoint = Optional.empty();
     
@@ -151,12 +214,43 @@ public class JerseyPublisher extends Application implements Publisher {
         jaxPath = (String) config.path();
         info("JerseyPublisher activating at root %s", jaxPath);
         
+        reloadHistory = new ReloadHistory(config.reload_history_size());
+        reloadScheduler = new ReloadScheduler("JAX-RS reload " + jaxPath, 
+                config.reload_quiet_period(), config.reload_max_delay(), this::reload);
+        if (config.compression_enabled()) {
+            compression = Optional.of(new CompressionFeature(config.compression_min_size(), 
+                    config.compression_media_types(), config.compression_level(), config.compression_pool_size()));
+        }
+        if (config.response_cache_size() > 0) {
+            responseCache = Optional.of(new ResponseCache(config.response_cache_size(), 
+                    config.response_cache_off_heap()));
+        }
+        if (AsyncMode.JERSEY != config.async_mode()) {
+            AsyncExecutors executors = new AsyncExecutors("JAX-RS " + jaxPath, 
+                    AsyncMode.VIRTUAL == config.async_mode(), config.async_core_pool_size(), 
+                    config.async_max_pool_size(), config.async_queue_capacity(), config.async_rejection_policy(), 
+                    config.async_scheduler_pool_size());
+            if (AsyncMode.VIRTUAL == config.async_mode() && !executors.isVirtual()) {
+                info("Virtual threads are not available on this JVM, using a pool for async work");
+            }
+            asyncExecutors = Optional.of(executors);
+        }
+        if (config.limiter_enabled()) {
+            limitRegistry = Optional.of(new LimitRegistry(config.limiter_initial_limit(), config.limiter_min_limit(),
+                    config.limiter_max_limit(), config.limiter_backoff_ratio(), config.limiter_latency_tolerance()));
+        }
+        
         // XXX: is this needed?
         System.setProperty("javax.ws.rs.ext.RuntimeDelegate", 
                 "org.glassfish.jersey.server.internal.RuntimeDelegateImpl");
         
         HashMap<String,Object> serviceProperties = new HashMap<>();
-        serviceProperties.put(BaseObjectTracker.CALLBACK, (Runnable) this::onChange);
+        serviceProperties.put(BaseObjectTracker.CALLBACK, (Consumer<String>) this::onChange);
+        serviceProperties.put(WidcardServiceTracker.FILTER, discoveryFilter(config));
+        serviceProperties.put(WidcardServiceTracker.PRECLASSIFY, config.discovery_preclassify());
+        serviceProperties.put(WidcardServiceTracker.VERDICT_CACHE_SIZE, config.discovery_verdict_cache_size());
+        serviceProperties.put(WidcardServiceTracker.QUEUE_CAPACITY, config.discovery_queue_capacity());
+        serviceProperties.put(WidcardServiceTracker.SCAN_PARALLELISM, config.discovery_scan_parallelism());
         
         debug("Starting Wildcard tracker");
         wildcardTracker.setFactory(wildcardTrackerFactory);
@@ -181,6 +275,32 @@ public class JerseyPublisher extends Application implements Publisher {
         }
     }
     
+    /**
+     * Works out the filter the tracker should use to discover services. A broken
+     * configuration falls back to the legacy wildcard so JAX-RS still comes up.
+     * 
+     * @param config our configuration
+     * @return the LDAP filter for the tracker
+     */
+    private String discoveryFilter(final PublisherConfig config) {
+        String filter;
+        try {
+            filter = DiscoveryFilter.build(config.discovery_mode(), config.discovery_filter(),
+                    config.discovery_include_classes(), config.discovery_exclude_classes());
+        } catch (InvalidSyntaxException e) {
+            error(e, "Bad discovery configuration, falling back to %s", DiscoveryFilter.WILDCARD);
+            filter = DiscoveryFilter.WILDCARD;
+        }
+        
+        try {
+            return DiscoveryFilter.forPublisher(filter, config.target_filter(), jaxPath);
+        } catch (InvalidSyntaxException e) {
+            // Picking up everything here could leak services meant for another publisher
+            error(e, "Bad target filter, this publisher will not pick up any services");
+            return "(&(objectClass=*)(!(objectClass=*)))";
+        }
+    }
+    
     /**
      * This attempts to register a feature if it is provided by
      * another bundle. It is done in this manner to catch the 
@@ -195,7 +315,13 @@ public class JerseyPublisher extends Application implements Publisher {
     private void tryRegisterFeature(final Supplier<Class<?>> featureClassSupplier) {
         try {
             Object feature = featureClassSupplier.get().newInstance();
-            ServiceRegistration<?> reg = bundleContext.registerService(featureClassSupplier.get().getName(), feature, null);
+            // Marked so it is found even when discovery is limited to marked services, and
+            // tied to us so other publishers don't end up with a copy of it
+            Hashtable<String, Object> properties = new Hashtable<>();
+            properties.put("osgi.jaxrs.extension", true);
+            properties.put(Publisher.PUBLISHER_PATH, jaxPath);
+            ServiceRegistration<?> reg = bundleContext.registerService(featureClassSupplier.get().getName(), 
+                    feature, properties);
             featureRegistrations.add(reg);
         } catch (NoClassDefFoundError | InstantiationException | IllegalAccessException e) {
             info("Failed to register feature if you don't need it, don't worry: %s",
@@ -246,28 +372,127 @@ public class JerseyPublisher extends Application implements Publisher {
      * ok, as soon as the scanner starts up, it will reconfigure.
      */
     private void startServlet() {
-        try {
-            container = new ServletContainer(ResourceConfig.forApplication(this));
+        if (ShardMode.NONE != config.shard_mode()) {
+            info("Sharding JAX-RS by %s", config.shard_mode());
+            shardManager = Optional.of(new ShardManager(httpService, jaxPath, config.shard_mode(),
+                    this::getProperties, this::buildConfig, logger));
             initialized.set(true);
+            shardManager.get().update(wildcardTracker.withService(BaseObjectTracker::getJaxrsReferences));
+            return;
+        }
+        
+        try {
             Hashtable<String,String> jerseyParams = new Hashtable<>();
             jerseyParams.put("javax.ws.rs.Application", JerseyPublisher.class.getName());
             
+            if (ReloadMode.SWAP == config.reload_mode()) {
+                info("Reloads will swap in a new container");
+                swappingServlet = Optional.of(new SwappingServlet(() -> buildConfig(this, true), 
+                        config.reload_drain_timeout(), config.reload_async_drain_timeout()));
+                initialized.set(true);
+                httpService.registerServlet(jaxPath, swappingServlet.get(), jerseyParams, null);
+                return;
+            }
+            
+            container = new ServletContainer(buildConfig(this, true));
+            initialized.set(true);
             httpService.registerServlet(jaxPath, container, jerseyParams, null);
         } catch (ServletException | NamespaceException e) {
             error(e, "Failed to start up JAX-RS: %s", e.getMessage());
         }
     }
     
+    /**
+     * Builds the Jersey configuration for an application, adding the request
+     * metrics, concurrency limits, compression, the response cache, entity tags
+     * and our async executors when they are turned on. The metrics text is only served from the root container.
+     * 
+     * @param application what to serve
+     * @param root true if this is the container at the publisher path
+     * @return the configuration to hand to Jersey
+     */
+    private ResourceConfig buildConfig(final Application application, final boolean root) {
+        ResourceConfig resourceConfig = ResourceConfig.forApplication(application);
+        limitRegistry.ifPresent(r -> resourceConfig.register(new LimitFeature(r, config.limiter_retry_after()))
+                .register(new LimitListener(r)));
+        compression.ifPresent(resourceConfig::register);
+        responseCache.ifPresent(c -> resourceConfig.register(
+                new ResponseCacheFeature(c, config.response_cache_max_entry_size())));
+        if (config.etag_enabled()) {
+            resourceConfig.register(new ETagFeature());
+        }
+        asyncExecutors.ifPresent(e -> resourceConfig.register(e.managedAsyncProvider())
+                .register(e.schedulerProvider()));
+        if (config.metrics_enabled()) {
+            resourceConfig.register(metricsListener);
+            String metricsPath = config.metrics_path().trim();
+            if (root && !metricsPath.isEmpty()) {
+                resourceConfig.registerResources(
+                        MetricsExposition.resource(metricsPath, jaxPath, this::getEndpointMetrics));
+            }
+        }
+        return resourceConfig;
+    }
+    
     /**
      * Called whenever a change is made that would affect the servlet operation
-     * aka add a new service, remove a service.
+     * aka add a new service, remove a service. The actual reload is handed off
+     * to the {@link ReloadScheduler} so a burst of changes only reloads once.
      */
-    protected void onChange() {
-        if (initialized.get() && (container.getWebComponent() != null)) {
-            debug("Reloading configuration");
-            container.reload(ResourceConfig.forApplication(this));
-            changeWatchers.values().forEach(Runnable::run);
+    protected void onChange(final String trigger) {
+        reloadScheduler.requestReload(trigger);
+    }
+    
+    /**
+     * Does the actual work of reloading Jersey, this is called from the
+     * reload thread.
+     * 
+     * @param mergedChanges the number of changes that are part of this reload
+     */
+    private void reload(final String trigger, final int mergedChanges) {
+        if (!initialized.get() || (!shardManager.isPresent() && !swappingServlet.isPresent() 
+                && (null == container || null == container.getWebComponent()))) {
+            return;
         }
+        
+        int targets = 0;
+        long start = System.nanoTime();
+        long buildNanos;
+        long drainNanos = 0;
+        String failure = null;
+        try {
+            // The tracker can go away under us while we are shutting down
+            targets = wildcardTracker.withService(t -> t.getRegistry().size());
+            if (shardManager.isPresent()) {
+                info("Reloading shards, merged %d changes", mergedChanges);
+                shardManager.get().update(wildcardTracker.withService(BaseObjectTracker::getJaxrsReferences));
+            } else if (swappingServlet.isPresent()) {
+                SwappingServlet servlet = swappingServlet.get();
+                servlet.swap();
+                drainNanos = servlet.getLastDrainNanos();
+                info("Swapped in a new container, merged %d changes, build %d ms, drain %d ms%s", mergedChanges,
+                        TimeUnit.NANOSECONDS.toMillis(servlet.getLastBuildNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(drainNanos),
+                        servlet.isLastDrainTimedOut() ? " (timed out)" : "");
+            } else {
+                info("Reloading configuration, merged %d changes", mergedChanges);
+                container.reload(buildConfig(this, true));
+            }
+        } catch (ServletException | RuntimeException e) {
+            error(e, "Failed to reload Jersey, keeping what we had: %s", e.getMessage());
+            failure = e.toString();
+        }
+        buildNanos = System.nanoTime() - start - drainNanos;
+        
+        // What was kept may have come from code that just went away
+        responseCache.ifPresent(ResponseCache::clear);
+        
+        long watchStart = System.nanoTime();
+        changeWatchers.values().forEach(Runnable::run);
+        long watcherNanos = System.nanoTime() - watchStart;
+        
+        reloadHistory.record(new ReloadRecord(System.currentTimeMillis(), trigger, mergedChanges, targets,
+                buildNanos, drainNanos, watcherNanos, failure));
     }
     
     @Deactivate
@@ -276,24 +501,65 @@ public class JerseyPublisher extends Application implements Publisher {
         initialized.set(false);
 
         wildcardTracker.close();
+        if (null != reloadScheduler) {
+            reloadScheduler.close();
+        }
         
-        container = null;
-        httpService.unregister(jaxPath);
+        if (shardManager.isPresent()) {
+            shardManager.get().close();
+            shardManager = Optional.empty();
+        } else {
+            container = null;
+            swappingServlet = Optional.empty();
+            httpService.unregister(jaxPath);
+        }
         
         featureRegistrations.forEach(ServiceRegistration::unregister);
         swaggerEndpoint.ifPresent(bundleContext::ungetService);
+        compression.ifPresent(CompressionFeature::close);
+        compression = Optional.empty();
+        responseCache.ifPresent(ResponseCache::clear);
+        responseCache = Optional.empty();
+        asyncExecutors.ifPresent(AsyncExecutors::close);
+        asyncExecutors = Optional.empty();
+        limitRegistry = Optional.empty();
     }
     
     @Override
     public Set<Object> getSingletons() {
-        HashSet<Object> ret = new HashSet<Object>(super.getSingletons());
-        if (initialized.get()) {
-            ret.addAll(wildcardTracker.withService(BaseObjectTracker::getJaxrsTargets));
-        } else {
+        return getSnapshot().singletons;
+    }
+    
+    /**
+     * Gets the current snapshot of our targets. This only does work when
+     * the tracker has changed since the last time it was built, otherwise
+     * it is just a read.
+     * 
+     * @return the current snapshot
+     */
+    TargetSnapshot getSnapshot() {
+        if (!initialized.get()) {
             debug("Jersey not up yet");
+            return TargetSnapshot.EMPTY;
+        }
+        
+        TargetSnapshot current = snapshot;
+        long generation = wildcardTracker.withService(BaseObjectTracker::getGeneration);
+        if (current.generation == generation) {
+            return current;
+        }
+        
+        synchronized (this) {
+            current = snapshot;
+            if (current.generation != generation) {
+                // The generation is read before the targets, so if things change
+                // while we build, the next read will just build again
+                current = new TargetSnapshot(generation, 
+                        wildcardTracker.withService(BaseObjectTracker::getJaxrsTargets));
+                snapshot = current;
+            }
+            return current;
         }
-        System.out.println("singletons = " + ret);
-        return ret;
     }
    
     private void debug(final String format, final Object...args) {
@@ -313,43 +579,81 @@ public class JerseyPublisher extends Application implements Publisher {
         Map<String, Object> properties = new HashMap<>();
         properties.put(ServerProperties.METAINF_SERVICES_LOOKUP_DISABLE, false);
         properties.put(ServerProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true);
+        if (null != config) {
+            for (String property : config.jersey_properties()) {
+                int split = property.indexOf('=');
+                if (split > 0) {
+                    properties.put(property.substring(0, split).trim(), property.substring(split + 1).trim());
+                }
+            }
+        }
         return properties;
     }
     
     @Override
     public Set<Object> getRawEndpoints() {
-        return getSingletons().stream()
-                .filter(o -> null != o.getClass().getDeclaredAnnotation(Path.class))
-                .collect(Collectors.toSet());
+        return getSnapshot().endpoints;
     }
     
     @Override
     public Map<String,List<EndpointInfo>> getEndpoints() {
-        return getRawEndpoints().stream()
-                .collect(Collectors.toMap(o -> o.getClass().getName(), EndpointInfo::parseEndpoint));
+        return getSnapshot().endpointInfo;
+    }
+
+    @Override
+    public List<EndpointMetrics> getEndpointMetrics() {
+        return metricsRegistry.snapshot();
+    }
+
+    @Override
+    public List<ReloadRecord> getReloadHistory() {
+        return reloadHistory.records();
+    }
+    
+    @Override
+    public ReloadStats getReloadStats() {
+        return reloadHistory.stats();
+    }
+    
+    @Override
+    public DiscoveryStats getDiscoveryStats() {
+        if (!initialized.get()) {
+            return new DiscoveryStats(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return wildcardTracker.withService(WidcardServiceTracker::getDiscoveryStats);
+    }
+    
+    @Override
+    public List<EndpointLimit> getEndpointLimits() {
+        return limitRegistry.map(LimitRegistry::snapshot).orElse(Collections.emptyList());
+    }
+    
+    @Override
+    public ResponseCacheStats getResponseCacheStats() {
+        return responseCache.map(ResponseCache::getStats)
+                .orElseGet(() -> new ResponseCacheStats(0, 0, 0, 0, 0, 0, 0, 0));
     }
 
     @Override
     public Set<Object> getProviders() {
-        return getSingletons().stream()
-                .filter(o -> null != o.getClass().getDeclaredAnnotation(Provider.class))
-                .collect(Collectors.toSet());
+        return getSnapshot().providers;
     }
 
     @Override
     public Set<Feature> getFeatures() {
-        return getSingletons().stream()
-                .filter(o -> o instanceof Feature)
-                .map(o -> (Feature) o)
-                .collect(Collectors.toSet());
+        return getSnapshot().features;
     }
 
     public void addReaderListener(final Class<?> clazz) {
-        readerListenerSet.add(clazz);
+        if (readerListenerSet.add(clazz)) {
+            changeWatchers.values().forEach(Runnable::run);
+        }
     }
     
     public void removeReaderListener(final Class<?> clazz) {
-        readerListenerSet.remove(clazz);
+        if (readerListenerSet.remove(clazz)) {
+            changeWatchers.values().forEach(Runnable::run);
+        }
     }
     
     @Override
@@ -368,4 +672,24 @@ public class JerseyPublisher extends Application implements Publisher {
     public void unsubscribe(final String id) {
         changeWatchers.remove(id);
     }
+    
+    @Override
+    public RegistrationBatch beginBatch() {
+        if (null == reloadScheduler) {
+            // We never started, so there is nothing to hold back
+            return () -> { };
+        }
+        RegistrationBatch hold = reloadScheduler.hold(config.batch_max_hold());
+        return () -> {
+            // Events from the batch can still be waiting on the discovery pipeline, they
+            // have to reach the tracker first or they would cause a reload of their own
+            try {
+                wildcardTracker.withService(WidcardServiceTracker::getPipeline)
+                        .ifPresent(p -> p.awaitQueued(config.batch_max_hold()));
+            } catch (IllegalStateException e) {
+                // We are on our way out, there is nothing left to reload
+            }
+            hold.close();
+        };
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadRecord;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadStats;
+
+/**
+ * Keeps the last few {@link ReloadRecord}s in a ring, along with totals
+ * over every reload. Reloads are rare enough that a lock is fine here.
+ */
+public class ReloadHistory {
+    public static final int DEFAULT_SIZE = 100;
+    
+    private final ReloadRecord[] ring;
+    
+    /** Where the next record goes, guarded by this */
+    private int next;
+    
+    /** How many records are in the ring, guarded by this */
+    private int size;
+    
+    private long reloads;
+    private long failures;
+    private long mergedChanges;
+    private long totalBuildNanos;
+    private long maxBuildNanos;
+    private long totalWatcherNanos;
+    private long maxWatcherNanos;
+    private long lastReload;
+    
+    /**
+     * @param capacity how many records to keep
+     */
+    public ReloadHistory(final int capacity) {
+        this.ring = new ReloadRecord[Math.max(1, capacity)];
+    }
+    
+    /**
+     * @param record the reload that just happened
+     */
+    public synchronized void record(final ReloadRecord record) {
+        ring[next] = record;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+        
+        reloads++;
+        if (!record.succeeded()) {
+            failures++;
+        }
+        mergedChanges += record.mergedChanges;
+        totalBuildNanos += record.buildNanos;
+        maxBuildNanos = Math.max(maxBuildNanos, record.buildNanos);
+        totalWatcherNanos += record.watcherNanos;
+        maxWatcherNanos = Math.max(maxWatcherNanos, record.watcherNanos);
+        lastReload = record.timestamp;
+    }
+    
+    /**
+     * @return the records we still have, oldest first
+     */
+    public synchronized List<ReloadRecord> records() {
+        List<ReloadRecord> ret = new ArrayList<>(size);
+        int start = (next - size + ring.length) % ring.length;
+        for (int i = 0; i < size; i++) {
+            ret.add(ring[(start + i) % ring.length]);
+        }
+        return ret;
+    }
+    
+    /**
+     * @return totals over every reload
+     */
+    public synchronized ReloadStats stats() {
+        return new ReloadStats(reloads, failures, mergedChanges, totalBuildNanos, maxBuildNanos, 
+                totalWatcherNanos, maxWatcherNanos, lastReload);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.RegistrationBatch;
+
+/**
+ * This collapses bursts of change notifications into a single Jersey
+ * reload. Every call to {@link #requestReload(String)} pushes the reload back
+ * by the quiet period, but never further than the max delay from the
+ * first change of the burst, so a steady trickle of changes still
+ * gets published.
+ * <br /><br />
+ * Reloads run on a single dedicated thread, so they never overlap and
+ * never run on the thread that delivered the service event.
+ * <br /><br />
+ * Reloads can also be held back explicitly with {@link #hold(long)}, which
+ * is what backs {@link RegistrationBatch}.
+ */
+public class ReloadScheduler implements AutoCloseable {
+    private final ScheduledExecutorService executor;
+    private final long quietPeriodMillis;
+    private final long maxDelayMillis;
+    private final ObjIntConsumer<String> reloadAction;
+    private final LongSupplier nanoClock;
+
+    /** Number of changes since the last reload, guarded by this */
+    private int pendingChanges;
+
+    /** What the first change of the current burst was, guarded by this */
+    private String burstTrigger;
+
+    /** When the first change of the current burst came in, guarded by this */
+    private long burstStartNanos;
+
+    /** The reload that is currently waiting to run, guarded by this */
+    private ScheduledFuture<?> scheduled;
+    
+    /** Number of holds that are currently open, guarded by this */
+    private int holds;
+
+    /**
+     * @param threadName the name of the thread reloads will run on
+     * @param quietPeriodMillis how long things need to be quiet before reloading
+     * @param maxDelayMillis the longest a reload can be pushed back from the first change
+     * @param reloadAction the reload, it is passed the first change of the burst and the 
+     *   number of changes that were merged into it
+     */
+    public ReloadScheduler(final String threadName, final long quietPeriodMillis, final long maxDelayMillis,
+            final ObjIntConsumer<String> reloadAction) {
+        this(Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        }), System::nanoTime, quietPeriodMillis, maxDelayMillis, reloadAction);
+    }
+    
+    /**
+     * Runs reloads on a given executor and tells time with a given clock, this
+     * is how tests drive the scheduler without waiting on the wall clock.
+     * 
+     * @param executor runs the reloads, it has to run one task at a time and is shut down on close
+     * @param nanoClock the time in nanoseconds, like {@link System#nanoTime()}
+     * @param quietPeriodMillis how long things need to be quiet before reloading
+     * @param maxDelayMillis the longest a reload can be pushed back from the first change
+     * @param reloadAction the reload
+     */
+    ReloadScheduler(final ScheduledExecutorService executor, final LongSupplier nanoClock, 
+            final long quietPeriodMillis, final long maxDelayMillis, final ObjIntConsumer<String> reloadAction) {
+        this.quietPeriodMillis = Math.max(0, quietPeriodMillis);
+        this.maxDelayMillis = Math.max(this.quietPeriodMillis, maxDelayMillis);
+        this.reloadAction = reloadAction;
+        this.executor = executor;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Notes that something changed and a reload is needed. This never
+     * blocks on the reload itself.
+     * 
+     * @param trigger what changed, for reporting
+     */
+    public synchronized void requestReload(final String trigger) {
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+        if (pendingChanges++ == 0) {
+            burstStartNanos = now;
+            burstTrigger = trigger;
+        }
+
+        if (null != scheduled) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        
+        // Someone is holding reloads back, just count it and
+        // the release will take care of it
+        if (holds > 0) {
+            return;
+        }
+
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(now - burstStartNanos);
+        long delay = Math.max(0, Math.min(quietPeriodMillis, maxDelayMillis - waitedMillis));
+        scheduled = executor.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Holds back reloads until the returned handle is closed. Changes that
+     * come in during the hold are merged into a single reload that runs as
+     * soon as the last hold is released.
+     * <br /><br />
+     * A hold that is never closed is dropped after maxHoldMillis so that
+     * a misbehaving caller can't freeze the publisher.
+     * 
+     * @param maxHoldMillis the longest this hold can stay open
+     * @return a handle that releases the hold when closed
+     */
+    public synchronized RegistrationBatch hold(final long maxHoldMillis) {
+        if (executor.isShutdown()) {
+            return () -> { };
+        }
+        
+        holds++;
+        if (null != scheduled) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        
+        Hold hold = new Hold();
+        hold.timeout = executor.schedule(hold::close, maxHoldMillis, TimeUnit.MILLISECONDS);
+        return hold;
+    }
+    
+    /**
+     * Drops one hold, and if it was the last one kicks off a reload
+     * of anything that piled up behind it.
+     */
+    private synchronized void release() {
+        if (--holds == 0 && pendingChanges > 0 && !executor.isShutdown()) {
+            scheduled = executor.schedule(this::fire, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs on the reload thread, takes everything that is pending and
+     * hands it to the reload action in one go.
+     */
+    private void fire() {
+        int merged;
+        String trigger;
+        synchronized (this) {
+            merged = pendingChanges;
+            trigger = burstTrigger;
+            pendingChanges = 0;
+            burstTrigger = null;
+        }
+
+        // A request can sneak in after we were picked to run, in that
+        // case the one we were replaced with has nothing left to do
+        if (merged > 0) {
+            reloadAction.accept(trigger, merged);
+        }
+    }
+
+    /**
+     * Stops the reload thread, waiting a bit for a reload that is
+     * already running to finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            executor.shutdownNow();
+        }
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * The handle for a single hold, it can only be released once
+     * no matter if that comes from the caller or the timeout.
+     */
+    private class Hold implements RegistrationBatch {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+        
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                if (null != timeout) {
+                    timeout.cancel(false);
+                }
+                release();
+            }
+        }
+    }
+}
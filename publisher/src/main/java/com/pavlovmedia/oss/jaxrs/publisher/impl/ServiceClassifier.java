@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * This decides if a service is worth getting, working only from its
+ * {@link ServiceReference}. Getting a service can be expensive, for a
+ * delayed DS component it means activating it, so we try to load the
+ * implementation class through the bundle that provides the service and
+ * look at that instead.
+ * <br /><br />
+ * The implementation class is taken from <code>component.name</code>, which
+ * DS sets to the class name unless the component was given a name, and is
+ * only trusted if it is concrete and really implements every registered
+ * object class. Failing that we look at the object classes themselves,
+ * which covers services registered under their own class.
+ */
+public class ServiceClassifier {
+    /** This is set on every service registered by DS */
+    static final String COMPONENT_NAME = "component.name";
+    
+    /** What we think of a service before getting it */
+    public enum Verdict {
+        /** It looks like a JAX-RS target, go get it */
+        ACCEPT,
+        /** We know the implementation and it is not a JAX-RS target */
+        REJECT,
+        /** We can't tell, the service has to be looked at directly */
+        UNKNOWN
+    }
+    
+    private final Predicate<Class<?>> isTargetClass;
+    
+    /**
+     * @param isTargetClass tells if a class is something JAX-RS will use
+     */
+    public ServiceClassifier(final Predicate<Class<?>> isTargetClass) {
+        this.isTargetClass = isTargetClass;
+    }
+    
+    /**
+     * Classifies a service without getting it.
+     * 
+     * @param reference the service to look at
+     * @return the verdict
+     */
+    public Verdict classify(final ServiceReference<?> reference) {
+        Bundle bundle = reference.getBundle();
+        if (null == bundle) {
+            // Already unregistered
+            return Verdict.REJECT;
+        }
+        
+        List<Class<?>> objectClasses = new ArrayList<>();
+        Object rawObjectClasses = reference.getProperty(Constants.OBJECTCLASS);
+        if (rawObjectClasses instanceof String[]) {
+            for (String name : (String[]) rawObjectClasses) {
+                Optional<Class<?>> loaded = load(bundle, name);
+                if (!loaded.isPresent()) {
+                    // Can't see all of it, so we can't vouch for the implementation
+                    return Verdict.UNKNOWN;
+                }
+                objectClasses.add(loaded.get());
+            }
+        }
+        
+        Object componentName = reference.getProperty(COMPONENT_NAME);
+        if (componentName instanceof String) {
+            Optional<Class<?>> implementation = load(bundle, (String) componentName)
+                    .filter(c -> isImplementationOf(c, objectClasses));
+            if (implementation.isPresent()) {
+                return isTargetClass.test(implementation.get()) ? Verdict.ACCEPT : Verdict.REJECT;
+            }
+        }
+        
+        // A service registered under a class that is already a target is good enough
+        if (objectClasses.stream().anyMatch(isTargetClass)) {
+            return Verdict.ACCEPT;
+        }
+        return Verdict.UNKNOWN;
+    }
+    
+    private static boolean isImplementationOf(final Class<?> candidate, final List<Class<?>> objectClasses) {
+        if (candidate.isInterface() || Modifier.isAbstract(candidate.getModifiers())) {
+            return false;
+        }
+        return objectClasses.stream().allMatch(oc -> oc.isAssignableFrom(candidate));
+    }
+    
+    /**
+     * Loads a class the same way the providing bundle sees it
+     */
+    private static Optional<Class<?>> load(final Bundle bundle, final String className) {
+        try {
+            return Optional.of(bundle.loadClass(className));
+        } catch (ClassNotFoundException | NoClassDefFoundError | IllegalStateException e) {
+            return Optional.empty();
+        }
+    }
+}
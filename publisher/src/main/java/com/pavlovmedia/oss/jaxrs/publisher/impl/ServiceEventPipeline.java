@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+
+/**
+ * This moves {@link ServiceEvent} handling off of the thread the framework
+ * delivers the event on. Events go into a queue that a single dedicated
+ * thread works through in order, so events for the same service are always
+ * handled in the order they happened.
+ * <br /><br />
+ * A service that is registered and unregistered again before we got to it
+ * is never got or looked at. The unregistration is still handled, since the
+ * scan of existing services may have found the service before its
+ * registration came up in the queue.
+ * <br /><br />
+ * The queue is bounded for the threads that deliver events, once it is full
+ * they wait for room. Events that are raised by our own thread (getting a
+ * delayed component can register more services) skip the bound, otherwise
+ * the thread would end up waiting on itself.
+ * <br /><br />
+ * Holding up a delivering thread is not free of risk though. If it holds a
+ * lock our thread needs, say it registers a service in the middle of
+ * activating a component that handling an earlier event is waiting on, the
+ * two wait on each other for good. The capacity should be large enough that
+ * the queue never fills in normal running, and 0 avoids the queue entirely.
+ */
+public class ServiceEventPipeline implements AutoCloseable {
+    private static final int PENDING = 0;
+    private static final int CLAIMED = 1;
+    private static final int CANCELLED = 2;
+    
+    private final BlockingQueue<QueuedEvent> queue = new LinkedBlockingQueue<>();
+    private final Semaphore room;
+    private final Map<Long, QueuedEvent> pendingRegistrations = new ConcurrentHashMap<>();
+    private final Consumer<ServiceEvent> handler;
+    private final BiConsumer<ServiceEvent, RuntimeException> errorHandler;
+    private final ExecutorService executor;
+    
+    private volatile Thread worker;
+    private volatile boolean closed;
+    
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private volatile long lastLagNanos;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    
+    /**
+     * @param threadName the name of the thread that handles events
+     * @param capacity how many events can be waiting before delivery blocks
+     * @param handler handles each event, on the pipeline thread
+     * @param errorHandler told about anything the handler throws
+     */
+    public ServiceEventPipeline(final String threadName, final int capacity, 
+            final Consumer<ServiceEvent> handler, final BiConsumer<ServiceEvent, RuntimeException> errorHandler) {
+        this.room = new Semaphore(Math.max(1, capacity));
+        this.handler = handler;
+        this.errorHandler = errorHandler;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Starts handling events
+     */
+    public void start() {
+        executor.execute(this::run);
+    }
+    
+    /**
+     * Queues up an event. This is called on the framework thread that
+     * delivers the event, and only blocks if the queue is full.
+     * 
+     * @param event the event to handle
+     */
+    public void submit(final ServiceEvent event) {
+        if (closed) {
+            return;
+        }
+        
+        Long serviceId = (Long) event.getServiceReference().getProperty(Constants.SERVICE_ID);
+        if (ServiceEvent.UNREGISTERING == event.getType()) {
+            // If we never got to the registration it can go, the unregistration
+            // still has to be handled in case the service was found some other way
+            QueuedEvent registration = pendingRegistrations.remove(serviceId);
+            if (null != registration && registration.cancel()) {
+                cancelled.increment();
+            }
+        }
+        
+        boolean bounded = Thread.currentThread() != worker;
+        if (bounded) {
+            room.acquireUninterruptibly();
+            // We may have been let go by close, which does not want the event anymore
+            if (closed) {
+                room.release();
+                return;
+            }
+        }
+        
+        QueuedEvent queued = new QueuedEvent(event, serviceId, bounded);
+        if (ServiceEvent.REGISTERED == event.getType()) {
+            pendingRegistrations.put(serviceId, queued);
+        }
+        queue.add(queued);
+    }
+    
+    /**
+     * Waits for every event that is already queued to be handled, so whatever
+     * they change is seen by the time this returns. This does not wait on our
+     * own thread, where it would only be waiting on itself.
+     * 
+     * @param timeoutMillis the longest to wait
+     * @return true if the events were handled, false if we gave up or are closed
+     */
+    public boolean awaitQueued(final long timeoutMillis) {
+        if (closed || Thread.currentThread() == worker) {
+            return false;
+        }
+        
+        CountDownLatch reached = new CountDownLatch(1);
+        queue.add(new QueuedEvent(reached));
+        try {
+            return reached.await(timeoutMillis, TimeUnit.MILLISECONDS) && !closed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private void run() {
+        worker = Thread.currentThread();
+        while (!closed) {
+            QueuedEvent next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            
+            if (null != next.marker) {
+                next.marker.countDown();
+                continue;
+            }
+            if (next.bounded) {
+                room.release();
+            }
+            if (!next.claim()) {
+                continue;
+            }
+            if (ServiceEvent.REGISTERED == next.event.getType()) {
+                pendingRegistrations.remove(next.serviceId, next);
+            }
+            
+            long lag = System.nanoTime() - next.queuedNanos;
+            lastLagNanos = lag;
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            
+            try {
+                handler.accept(next.event);
+            } catch (RuntimeException e) {
+                errorHandler.accept(next.event, e);
+            }
+            processed.increment();
+        }
+    }
+    
+    /** @return how many events are waiting to be handled */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    /** @return how many events have been handled */
+    public long getProcessed() {
+        return processed.sum();
+    }
+    
+    /** @return how many registrations were dropped because the service was already unregistering */
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+    
+    /** @return how long the last event handled waited in the queue */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+    
+    /** @return the longest any event waited in the queue */
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+    
+    /**
+     * Stops handling events, anything still queued is dropped
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        // Let anyone waiting for room go, they see we are closed and drop their event
+        room.release(Short.MAX_VALUE);
+        queue.forEach(q -> {
+            if (null != q.marker) {
+                q.marker.countDown();
+            }
+        });
+        queue.clear();
+        pendingRegistrations.clear();
+    }
+    
+    /**
+     * An event waiting in the queue
+     */
+    private static final class QueuedEvent {
+        final ServiceEvent event;
+        final Long serviceId;
+        final boolean bounded;
+        final long queuedNanos = System.nanoTime();
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        /** Set on the markers {@link ServiceEventPipeline#awaitQueued(long)} waits on, which are not events */
+        final CountDownLatch marker;
+        
+        QueuedEvent(final ServiceEvent event, final Long serviceId, final boolean bounded) {
+            this.event = event;
+            this.serviceId = serviceId;
+            this.bounded = bounded;
+            this.marker = null;
+        }
+        
+        QueuedEvent(final CountDownLatch marker) {
+            this.event = null;
+            this.serviceId = null;
+            this.bounded = false;
+            this.marker = marker;
+        }
+        
+        boolean claim() {
+            return state.compareAndSet(PENDING, CLAIMED);
+        }
+        
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+
+/**
+ * This is registered with the HttpService in place of a plain {@link ServletContainer}
+ * when reloads should not disturb traffic. A reload builds a whole new container next
+ * to the one that is serving, then switches requests over to it in one step. The old
+ * container finishes the requests it already has and is then destroyed.
+ * <br /><br />
+ * Requests that go async (suspended responses, managed async methods, event streams)
+ * are followed until their async context completes. They get a shorter wait of their
+ * own, since a long poll or an event stream may never end by itself, and event streams
+ * are not waited for at all. Whatever is still open after that is ended, so its client
+ * comes back to the new container.
+ * <br /><br />
+ * Only one swap runs at a time, they come from the reload thread anyway.
+ */
+public class SwappingServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    private final transient Supplier<ResourceConfig> configSupplier;
+    private final long drainTimeoutMillis;
+    private final long asyncDrainTimeoutMillis;
+    private final transient AtomicReference<Generation> current = new AtomicReference<>();
+    
+    private volatile long reloads;
+    private volatile long lastBuildNanos;
+    private volatile long lastDrainNanos;
+    private volatile boolean lastDrainTimedOut;
+    
+    /**
+     * @param configSupplier builds the configuration for a new container
+     * @param drainTimeoutMillis the longest we wait on an old container before destroying it anyway
+     * @param asyncDrainTimeoutMillis the longest we wait on async requests of an old container once
+     *   its other requests are done, before ending them
+     */
+    public SwappingServlet(final Supplier<ResourceConfig> configSupplier, final long drainTimeoutMillis,
+            final long asyncDrainTimeoutMillis) {
+        this.configSupplier = configSupplier;
+        this.drainTimeoutMillis = Math.max(0, drainTimeoutMillis);
+        this.asyncDrainTimeoutMillis = Math.max(0, asyncDrainTimeoutMillis);
+    }
+    
+    @Override
+    public void init(final ServletConfig config) throws ServletException {
+        super.init(config);
+        current.set(new Generation(build()));
+    }
+    
+    @Override
+    protected void service(final HttpServletRequest req, final HttpServletResponse resp)
+            throws ServletException, IOException {
+        Generation generation = acquire();
+        if (null == generation) {
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            generation.container.service(new TrackedRequest(req, generation), resp);
+        } finally {
+            generation.release();
+        }
+    }
+    
+    /**
+     * Gets the current generation and counts us as in flight on it. If a swap
+     * sneaks in between the two we try again, so a request is never counted
+     * against a generation that is already draining.
+     */
+    private Generation acquire() {
+        while (true) {
+            Generation generation = current.get();
+            if (null == generation) {
+                return null;
+            }
+            generation.inFlight.incrementAndGet();
+            if (generation == current.get()) {
+                return generation;
+            }
+            generation.release();
+        }
+    }
+    
+    /**
+     * @return true once the HttpService has initialized us
+     */
+    public boolean isInitialized() {
+        return null != current.get();
+    }
+    
+    /**
+     * Builds a new container from the current configuration, switches over to
+     * it, then drains and destroys the old one. This blocks for the whole
+     * thing, so it should be called from the reload thread.
+     * 
+     * @throws ServletException if Jersey fails to start, the old container keeps serving
+     */
+    public synchronized void swap() throws ServletException {
+        if (!isInitialized()) {
+            return;
+        }
+        
+        long start = System.nanoTime();
+        ServletContainer next = build();
+        long built = System.nanoTime();
+        
+        Generation old = current.getAndSet(new Generation(next));
+        lastDrainTimedOut = !old.drain(drainTimeoutMillis, asyncDrainTimeoutMillis);
+        old.container.destroy();
+        
+        lastBuildNanos = built - start;
+        lastDrainNanos = System.nanoTime() - built;
+        reloads++;
+    }
+    
+    private ServletContainer build() throws ServletException {
+        ServletContainer container = new ServletContainer(configSupplier.get());
+        try {
+            container.init(getServletConfig());
+        } catch (ServletException | RuntimeException e) {
+            // Don't leave whatever Jersey got started running
+            try {
+                container.destroy();
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return container;
+    }
+    
+    @Override
+    public synchronized void destroy() {
+        Generation old = current.getAndSet(null);
+        if (null != old) {
+            old.drain(drainTimeoutMillis, asyncDrainTimeoutMillis);
+            old.container.destroy();
+        }
+        super.destroy();
+    }
+    
+    /** @return how many times a new container was swapped in */
+    public long getReloads() {
+        return reloads;
+    }
+    
+    /** @return how long building the last new container took */
+    public long getLastBuildNanos() {
+        return lastBuildNanos;
+    }
+    
+    /** @return how long the last old container took to finish its requests */
+    public long getLastDrainNanos() {
+        return lastDrainNanos;
+    }
+    
+    /** @return true if the last old container was destroyed with requests still running */
+    public boolean isLastDrainTimedOut() {
+        return lastDrainTimedOut;
+    }
+    
+    /**
+     * A container along with the requests it is working on. Requests are in flight
+     * while they are in {@link #service}, and those that go async are held in
+     * {@link #async} until their async context completes.
+     */
+    private static final class Generation {
+        final ServletContainer container;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Set<AsyncContext> async = ConcurrentHashMap.newKeySet();
+        
+        Generation(final ServletContainer container) {
+            this.container = container;
+        }
+        
+        void release() {
+            if (inFlight.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+        
+        void startAsync(final AsyncContext context) {
+            async.add(context);
+            context.addListener(new AsyncTracker(this, context));
+        }
+        
+        void endAsync(final AsyncContext context) {
+            if (async.remove(context)) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+        
+        /**
+         * Waits for in flight requests to finish, then for async requests that are
+         * not event streams, and ends whatever is still open. This is only called
+         * once we are no longer the current generation.
+         * 
+         * @param timeoutMillis how long to wait for the requests in flight
+         * @param asyncTimeoutMillis how long to wait for async requests after that
+         * @return false if we gave up waiting on anything but an event stream
+         */
+        synchronized boolean drain(final long timeoutMillis, final long asyncTimeoutMillis) {
+            boolean drained = await(timeoutMillis, () -> inFlight.get() == 0)
+                    && await(asyncTimeoutMillis, () -> async.stream().allMatch(Generation::isEventStream));
+            
+            for (AsyncContext context : new ArrayList<>(async)) {
+                end(context);
+            }
+            return drained;
+        }
+        
+        private boolean await(final long timeoutMillis, final Supplier<Boolean> done) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!done.get()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static boolean isEventStream(final AsyncContext context) {
+            String type = context.getResponse().getContentType();
+            return null != type && type.startsWith(MediaType.SERVER_SENT_EVENTS);
+        }
+        
+        /**
+         * Ends an async request we are done waiting on. If nothing was sent yet
+         * the client is told to try again, otherwise the response is just closed.
+         */
+        private void end(final AsyncContext context) {
+            async.remove(context);
+            try {
+                ServletResponse response = context.getResponse();
+                if (!response.isCommitted() && response instanceof HttpServletResponse) {
+                    ((HttpServletResponse) response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                }
+                context.complete();
+            } catch (IllegalStateException e) {
+                // It completed while we were at it
+            }
+        }
+    }
+    
+    /**
+     * Counts the async context of a request against its generation until it
+     * completes. It follows the request if the async context is started again.
+     */
+    private static final class AsyncTracker implements AsyncListener {
+        private final Generation generation;
+        private final AsyncContext context;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        
+        AsyncTracker(final Generation generation, final AsyncContext context) {
+            this.generation = generation;
+            this.context = context;
+        }
+        
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            end();
+        }
+        
+        @Override
+        public void onError(final AsyncEvent event) {
+            end();
+        }
+        
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // Whoever started it handles the timeout, then it completes
+        }
+        
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+        
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                generation.endAsync(context);
+            }
+        }
+    }
+    
+    /**
+     * Hands the async context of a request to its generation as soon as it is
+     * started, so it is counted before anything can complete it.
+     */
+    private static final class TrackedRequest extends HttpServletRequestWrapper {
+        private final Generation generation;
+        
+        TrackedRequest(final HttpServletRequest request, final Generation generation) {
+            super(request);
+            this.generation = generation;
+        }
+        
+        @Override
+        public AsyncContext startAsync() {
+            AsyncContext context = super.startAsync();
+            generation.startAsync(context);
+            return context;
+        }
+        
+        @Override
+        public AsyncContext startAsync(final ServletRequest request, final ServletResponse response) {
+            AsyncContext context = super.startAsync(request, response);
+            generation.startAsync(context);
+            return context;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * This holds the targets a tracker has found, indexed by <code>service.id</code>
+ * so adding, removing and looking up a target is constant time no matter
+ * how many services there are.
+ * <br /><br />
+ * Readers get an immutable view that is only rebuilt when they ask for it
+ * after something changed, so a storm of registrations does not copy the
+ * whole set on every add the way a copy-on-write collection would.
+ */
+public class TargetRegistry {
+    private final Map<Long, JaxReference> byServiceId = new ConcurrentHashMap<>();
+    
+    /** Bumped after every change to the registry */
+    private final AtomicLong generation = new AtomicLong();
+    
+    /** The last view handed out */
+    private volatile View view = new View(0, Collections.emptySet());
+    
+    /**
+     * Adds a target, if its service is not already here
+     * 
+     * @param reference the target to add
+     * @return true if it was added
+     */
+    public boolean add(final JaxReference reference) {
+        long serviceId = serviceId(reference.serivceReference);
+        if (null != byServiceId.putIfAbsent(serviceId, reference)) {
+            return false;
+        }
+        generation.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Removes the target for a service
+     * 
+     * @param serviceReference the service to remove
+     * @return the target that was removed, if the service was here
+     */
+    public Optional<JaxReference> remove(final ServiceReference<?> serviceReference) {
+        long serviceId = serviceId(serviceReference);
+        JaxReference removed = byServiceId.remove(serviceId);
+        if (null == removed) {
+            return Optional.empty();
+        }
+        generation.incrementAndGet();
+        return Optional.of(removed);
+    }
+    
+    public boolean contains(final ServiceReference<?> serviceReference) {
+        return byServiceId.containsKey(serviceId(serviceReference));
+    }
+    
+    public int size() {
+        return byServiceId.size();
+    }
+    
+    public boolean isEmpty() {
+        return byServiceId.isEmpty();
+    }
+    
+    public long getGeneration() {
+        return generation.get();
+    }
+    
+    /**
+     * @return an immutable view of all the targets
+     */
+    public Set<JaxReference> references() {
+        return currentView().references;
+    }
+    
+    /**
+     * @return an immutable view of all the target objects
+     */
+    public Set<Object> targets() {
+        return currentView().targets;
+    }
+    
+    /**
+     * Gets the view, rebuilding it if the registry changed since it was made.
+     * The generation is read before the contents, so a view can only ever be
+     * stamped older than what it holds, which just means it gets rebuilt again.
+     */
+    private View currentView() {
+        View current = view;
+        long now = generation.get();
+        if (current.generation == now) {
+            return current;
+        }
+        synchronized (this) {
+            current = view;
+            if (current.generation != now) {
+                current = new View(now, new HashSet<>(byServiceId.values()));
+                view = current;
+            }
+            return current;
+        }
+    }
+    
+    private static long serviceId(final ServiceReference<?> reference) {
+        return (Long) reference.getProperty(Constants.SERVICE_ID);
+    }
+    
+    /**
+     * An immutable picture of the registry
+     */
+    private static final class View {
+        final long generation;
+        final Set<JaxReference> references;
+        final Set<Object> targets;
+        
+        View(final long generation, final Set<JaxReference> references) {
+            this.generation = generation;
+            this.references = Collections.unmodifiableSet(references);
+            this.targets = Collections.unmodifiableSet(references.stream()
+                    .map(JaxReference::getJaxObject)
+                    .collect(Collectors.toSet()));
+        }
+    }
+}
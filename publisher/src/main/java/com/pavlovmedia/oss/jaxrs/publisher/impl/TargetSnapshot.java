@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.ext.Provider;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+
+/**
+ * This is an immutable picture of the targets a publisher is handing to
+ * Jersey, along with the views of it that the {@link com.pavlovmedia.oss.jaxrs.publisher.api.Publisher}
+ * API exposes. It is stamped with the generation of the tracker it was
+ * built from, so it only needs to be rebuilt when the targets change and
+ * everything else can just read it.
+ */
+public final class TargetSnapshot {
+    /** What we hand out before anything has been tracked */
+    public static final TargetSnapshot EMPTY = new TargetSnapshot(-1, Collections.emptySet());
+    
+    public final long generation;
+    public final Set<Object> singletons;
+    public final Set<Object> endpoints;
+    public final Set<Object> providers;
+    public final Set<Feature> features;
+    public final Map<String, List<EndpointInfo>> endpointInfo;
+    
+    /**
+     * @param generation the tracker generation the targets were read at
+     * @param targets the targets to build from
+     */
+    public TargetSnapshot(final long generation, final Collection<Object> targets) {
+        this.generation = generation;
+        
+        Set<Object> allTargets = new HashSet<>();
+        Set<Object> endpointTargets = new HashSet<>();
+        Set<Object> providerTargets = new HashSet<>();
+        Set<Feature> featureTargets = new HashSet<>();
+        Map<String, List<EndpointInfo>> infoByClass = new HashMap<>();
+        
+        for (Object target : targets) {
+            allTargets.add(target);
+            Class<?> clazz = target.getClass();
+            if (null != clazz.getDeclaredAnnotation(Path.class)) {
+                endpointTargets.add(target);
+                infoByClass.computeIfAbsent(clazz.getName(), 
+                        k -> Collections.unmodifiableList(EndpointInfo.parseEndpoint(clazz)));
+            }
+            if (null != clazz.getDeclaredAnnotation(Provider.class)) {
+                providerTargets.add(target);
+            }
+            if (target instanceof Feature) {
+                featureTargets.add((Feature) target);
+            }
+        }
+        
+        this.singletons = Collections.unmodifiableSet(allTargets);
+        this.endpoints = Collections.unmodifiableSet(endpointTargets);
+        this.providers = Collections.unmodifiableSet(providerTargets);
+        this.features = Collections.unmodifiableSet(featureTargets);
+        this.endpointInfo = Collections.unmodifiableMap(infoByClass);
+    }
+}
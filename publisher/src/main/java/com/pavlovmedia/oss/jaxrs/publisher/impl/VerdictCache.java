@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+/**
+ * This remembers whether a class is a JAX-RS target, so services of a
+ * class we have already seen (factory components, config driven instances,
+ * bundle restarts) don't redo the annotation reflection.
+ * <br /><br />
+ * Entries are keyed by the id and last modified stamp of the bundle that
+ * defines the class, plus the class name, so no {@link Class} is held on to.
+ * The stamp only has millisecond resolution and does not move on a refresh,
+ * so it is just a second line of defense. Staying correct depends on
+ * {@link #invalidate(long)} being called whenever a bundle is updated,
+ * refreshed or uninstalled. The cache is bounded and drops the least
+ * recently used entry when it is full.
+ */
+public class VerdictCache {
+    public static final int DEFAULT_SIZE = 4096;
+    
+    private final int maxSize;
+    
+    /** The verdicts, guarded by this */
+    private final LinkedHashMap<Key, Boolean> verdicts;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    /**
+     * @param maxSize the most verdicts to keep, 0 or less turns caching off
+     */
+    public VerdictCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.verdicts = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Boolean> eldest) {
+                return size() > VerdictCache.this.maxSize;
+            }
+        };
+    }
+    
+    /**
+     * Gets the verdict for a class, working it out if we have not seen
+     * this class from this bundle before.
+     * 
+     * @param clazz the class to look up
+     * @param inspector does the real check on a miss
+     * @return true if the class is a JAX-RS target
+     */
+    public boolean test(final Class<?> clazz, final Predicate<Class<?>> inspector) {
+        if (maxSize <= 0) {
+            misses.increment();
+            return inspector.test(clazz);
+        }
+        
+        Key key = new Key(clazz);
+        Boolean verdict;
+        synchronized (this) {
+            verdict = verdicts.get(key);
+        }
+        if (null != verdict) {
+            hits.increment();
+            return verdict;
+        }
+        
+        // Done outside the lock, the worst case is two threads both doing the work
+        misses.increment();
+        boolean computed = inspector.test(clazz);
+        synchronized (this) {
+            verdicts.put(key, computed);
+        }
+        return computed;
+    }
+    
+    /**
+     * Drops everything we know about classes from a bundle
+     * 
+     * @param bundleId the id of the bundle
+     */
+    public synchronized void invalidate(final long bundleId) {
+        verdicts.keySet().removeIf(k -> k.bundleId == bundleId);
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public synchronized int size() {
+        return verdicts.size();
+    }
+    
+    /**
+     * The key, a bundle id, bundle last modified stamp and class name
+     */
+    private static final class Key {
+        final long bundleId;
+        final long lastModified;
+        final String className;
+        
+        Key(final Class<?> clazz) {
+            Bundle bundle = FrameworkUtil.getBundle(clazz);
+            this.bundleId = null == bundle ? -1 : bundle.getBundleId();
+            this.lastModified = null == bundle ? 0 : bundle.getLastModified();
+            this.className = clazz.getName();
+        }
+        
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return bundleId == other.bundleId && lastModified == other.lastModified 
+                        && className.equals(other.className);
+            }
+            return false;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(bundleId, lastModified, className);
+        }
+    }
+}
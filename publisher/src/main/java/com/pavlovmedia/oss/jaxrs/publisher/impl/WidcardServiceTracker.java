@@ -16,15 +16,25 @@
 package com.pavlovmedia.oss.jaxrs.publisher.impl;
 
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -33,7 +43,8 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.log.Logger;
 import org.osgi.service.log.LoggerFactory;
 
-import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.api.DiscoveryStats;
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
 
 /**
  * This is a tracker that will track all services in OSGi. It operates very
@@ -53,8 +64,45 @@ public class WidcardServiceTracker extends BaseObjectTracker {
     public static final String FACTORY_NAME = "com.pavlovmedia.oss.jaxrs.provider.impl.WidcardServiceTracker";
     public static final String FACTORY_FILTER = "(component.factory="+FACTORY_NAME+")";
     
-    /** This service filter grabs everything that isn't marked with ignore */
-    private static final String SERVICE_FILTER = "(&(objectClass=*)(!(" + Publisher.SCAN_IGNORE + "=*)))";
+    /** 
+     * This is a configuration property with the LDAP filter of services to look at,
+     * see {@link DiscoveryFilter}. Without it we look at everything that isn't marked 
+     * with ignore.
+     */
+    public static final String FILTER = "filter";
+    
+    /** The filter we are actually using */
+    private String serviceFilter = DiscoveryFilter.WILDCARD;
+    
+    /** 
+     * This is a configuration property, when true services are classified
+     * from their reference before we get them, see {@link ServiceClassifier}
+     */
+    public static final String PRECLASSIFY = "preclassify";
+    
+    /** Used to skip services we know are not targets without getting them */
+    private final ServiceClassifier classifier = new ServiceClassifier(this::isJaxrsClass);
+    
+    /** If we should use the classifier at all */
+    private boolean preclassify = true;
+    
+    /** This is a configuration property with the number of verdicts the {@link VerdictCache} keeps */
+    public static final String VERDICT_CACHE_SIZE = "verdictCacheSize";
+    
+    /** 
+     * This is a configuration property with the capacity of the {@link ServiceEventPipeline},
+     * 0 or less handles events on the thread that delivers them
+     */
+    public static final String QUEUE_CAPACITY = "queueCapacity";
+    
+    /** Handles service events off of the framework threads, if we are doing that */
+    private Optional<ServiceEventPipeline> pipeline = Optional.empty();
+    
+    /** 
+     * This is a configuration property with the number of threads used to look at
+     * the services that already exist when we start, 0 or less uses one per processor
+     */
+    public static final String SCAN_PARALLELISM = "scanParallelism";
     
     /** This is a blocker to keep us from parsing while we are shutting down */
     private final AtomicBoolean processing = new AtomicBoolean(true);
@@ -80,8 +128,17 @@ public class WidcardServiceTracker extends BaseObjectTracker {
     /** The context is saved so we can get and unget services */
     private BundleContext context;
     
-    /** This is a tracker for any {@link ServiceReference} that we hold */
-    final List<ServiceReference<?>> openReferences = new CopyOnWriteArrayList<>();
+    /** 
+     * The classes of targets we have seen, by the id of the bundle that defines them.
+     * This is used to drop cached {@link EndpointInfo} models when that bundle goes away. 
+     */
+    private final Map<Long, Set<Class<?>>> targetClassesByBundle = new ConcurrentHashMap<>();
+    
+    /** Kept so the exact same listener can be removed */
+    private final BundleListener bundleListener = this::bundleChanged;
+    
+    /** Kept so the exact same listener can be removed */
+    private final ServiceListener serviceListener = this::serviceDelivered;
     
     /**
      * This activate is here to control the service
@@ -92,32 +149,122 @@ public class WidcardServiceTracker extends BaseObjectTracker {
      * @param properties OSGi properties passed along
      * @param context OSGi bundle context for this bundle
      * 
-     * @throws InvalidSyntaxException should never be thrown because the filter is a constant
+     * @throws InvalidSyntaxException should never be thrown because the filter is checked by the publisher
      */
     @Activate
     protected void activate(final Map<String, Object> properties, final BundleContext context) throws InvalidSyntaxException {
         logDebug("Starting %s", this.getClass().getName());
-        onTargetChange = Optional.ofNullable((Runnable) properties.get(CALLBACK));
+        @SuppressWarnings("unchecked")
+        Consumer<String> callback = (Consumer<String>) properties.get(CALLBACK);
+        onTargetChange = Optional.ofNullable(callback);
+        serviceFilter = Optional.ofNullable((String) properties.get(FILTER)).orElse(DiscoveryFilter.WILDCARD);
+        preclassify = !Boolean.FALSE.equals(properties.get(PRECLASSIFY));
+        Object cacheSize = properties.get(VERDICT_CACHE_SIZE);
+        if (cacheSize instanceof Integer) {
+            verdictCache = new VerdictCache((Integer) cacheSize);
+        }
+        Object queueCapacity = properties.get(QUEUE_CAPACITY);
+        if (!(queueCapacity instanceof Integer) || (Integer) queueCapacity > 0) {
+            pipeline = Optional.of(new ServiceEventPipeline("JAX-RS discovery", 
+                    queueCapacity instanceof Integer ? (Integer) queueCapacity : 10000,
+                    this::serviceChanged,
+                    (event, e) -> logError(e, "Failed to handle event for %s", event.getServiceReference())));
+            pipeline.get().start();
+        }
+        logDebug("Discovering services with %s, preclassify %s, queued %s", 
+                serviceFilter, preclassify, pipeline.isPresent());
         
         this.context = context;
-        context.addServiceListener(this::serviceChanged, SERVICE_FILTER);
+        context.addServiceListener(serviceListener, serviceFilter);
+        context.addBundleListener(bundleListener);
         
         // This walks all the existing services so bundle start
         // ordering has no impact on JAX-RS functions
+        scanExisting(properties.get(SCAN_PARALLELISM));
+    }
+    
+    /**
+     * Looks at all the services that exist when we start. Getting services can
+     * be slow (it may activate components) so this is spread over a pool of threads,
+     * with changes held back until the end so they get to Jersey in one go.
+     * 
+     * @param parallelism the configured number of threads, if any
+     */
+    private void scanExisting(final Object parallelism) {
+        int threads = parallelism instanceof Integer && (Integer) parallelism > 0 
+                ? (Integer) parallelism 
+                : Runtime.getRuntime().availableProcessors();
+        
+        long start = System.nanoTime();
+        ServiceReference<?>[] existing = null;
         try {
-            Arrays.asList(context.getAllServiceReferences(null, SERVICE_FILTER))
-                .forEach(this::tryAddService);
+            existing = context.getAllServiceReferences(null, serviceFilter);
         } catch (InvalidSyntaxException e) {
             logError(e, "Failed to pull existing services");
         }
+        long lookedUp = System.nanoTime();
         
-        // If we pre-bound anything, notify now
-        if (!jaxrsTargets.isEmpty()) {
+        // The framework hands back null rather than an empty array
+        if (null != existing) {
+            suppressed = false;
+            quiet = true;
+            try {
+                inspectAll(existing, threads);
+            } finally {
+                quiet = false;
+            }
+        }
+        long inspected = System.nanoTime();
+        
+        // If anything changed while we were quiet, notify now. Events from the
+        // listener can land during the scan too, so this also covers a target
+        // that came and went and left the registry empty again.
+        if (suppressed) {
             logDebug("Kicking initial page set");
-            onTargetChange.ifPresent(Runnable::run);
+            onTargetChange.ifPresent(c -> c.accept("initial scan"));
         } else {
             logDebug("No pages to bind yet");
         }
+        long published = System.nanoTime();
+        
+        logInfo("Initial scan of %d services on %d threads found %d targets: lookup %d ms, inspect %d ms, "
+                + "publish %d ms, verdict cache hits %d misses %d", 
+                null == existing ? 0 : existing.length, threads, jaxrsTargets.size(),
+                TimeUnit.NANOSECONDS.toMillis(lookedUp - start),
+                TimeUnit.NANOSECONDS.toMillis(inspected - lookedUp),
+                TimeUnit.NANOSECONDS.toMillis(published - inspected),
+                verdictCache.getHits(), verdictCache.getMisses());
+    }
+    
+    /**
+     * Runs {@link #tryAddService(ServiceReference)} over all the references, on
+     * a pool of the given size that only lives for the scan.
+     * 
+     * @param references the services to look at
+     * @param threads how many threads to use
+     */
+    private void inspectAll(final ServiceReference<?>[] references, final int threads) {
+        if (threads == 1 || references.length < 2) {
+            Arrays.asList(references).forEach(this::tryAddService);
+            return;
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("JAX-RS scan " + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        try {
+            pool.submit(() -> Arrays.stream(references).parallel().forEach(this::tryAddService)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logError(e, "Interrupted while scanning existing services");
+        } catch (ExecutionException e) {
+            logError(e, "Failed to scan existing services");
+        } finally {
+            pool.shutdown();
+        }
     }
     
     /**
@@ -127,7 +274,68 @@ public class WidcardServiceTracker extends BaseObjectTracker {
     @Deactivate
     protected void deactivate() {
         processing.set(false);
-        context.removeServiceListener(this::serviceChanged);
+        context.removeServiceListener(serviceListener);
+        context.removeBundleListener(bundleListener);
+        pipeline.ifPresent(ServiceEventPipeline::close);
+    }
+    
+    /**
+     * @return the event pipeline, if events are not handled on the delivering thread
+     */
+    public Optional<ServiceEventPipeline> getPipeline() {
+        return pipeline;
+    }
+    
+    /**
+     * @return how discovery is doing, for reporting
+     */
+    public DiscoveryStats getDiscoveryStats() {
+        return new DiscoveryStats(jaxrsTargets.size(),
+                pipeline.map(ServiceEventPipeline::getQueueDepth).orElse(0),
+                pipeline.map(ServiceEventPipeline::getProcessed).orElse(0L),
+                pipeline.map(ServiceEventPipeline::getCancelled).orElse(0L),
+                pipeline.map(ServiceEventPipeline::getLastLagNanos).orElse(0L),
+                pipeline.map(ServiceEventPipeline::getMaxLagNanos).orElse(0L),
+                verdictCache.getHits(), verdictCache.getMisses());
+    }
+    
+    /**
+     * This is what the framework calls, it either queues the event up
+     * or handles it right here.
+     * 
+     * @param event the OSGi service event
+     */
+    private void serviceDelivered(final ServiceEvent event) {
+        if (pipeline.isPresent()) {
+            pipeline.get().submit(event);
+        } else {
+            serviceChanged(event);
+        }
+    }
+    
+    /**
+     * When a bundle is updated, refreshed or uninstalled the classes it defined are
+     * dead, so let go of anything we cached about them.
+     * 
+     * @param event the OSGi bundle event
+     */
+    private void bundleChanged(final BundleEvent event) {
+        switch (event.getType()) {
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNRESOLVED:
+            case BundleEvent.UNINSTALLED:
+                verdictCache.invalidate(event.getBundle().getBundleId());
+                Set<Class<?>> classes = targetClassesByBundle.remove(event.getBundle().getBundleId());
+                if (null != classes) {
+                    logDebug("Releasing %d endpoint models from bundle %s", 
+                            classes.size(), event.getBundle().getSymbolicName());
+                    classes.forEach(EndpointInfo::release);
+                }
+                break;
+            default:
+                // Do nothing
+                break;
+        }
     }
     
     /**
@@ -150,15 +358,20 @@ public class WidcardServiceTracker extends BaseObjectTracker {
                 // See if we really want to use this
                 tryAddService(serviceReference);
                 break;
+            case ServiceEvent.MODIFIED:
+                // The properties changed and it still matches our filter, which it
+                // may not have before
+                if (!jaxrsTargets.contains(serviceReference)) {
+                    tryAddService(serviceReference);
+                }
+                break;
+            case ServiceEvent.MODIFIED_ENDMATCH:
+                // The properties changed so it no longer matches our filter
             case ServiceEvent.UNREGISTERING:
-                if (openReferences.contains(serviceReference)) {
-                    logger.debug(String.format("Removing service %s", serviceReference));
-                    openReferences.remove(serviceReference);
+                // The registry only holds services we got, so that is all we need to unget
+                if (removeTarget(serviceReference)) {
                     context.ungetService(serviceReference);
-                } else {
-                    logger.debug(String.format("Did not find service reference %s in %s", serviceReference, openReferences));
                 }
-                removeTarget(serviceReference);
                 break;
             default:
                 // Do nothing
@@ -168,16 +381,26 @@ public class WidcardServiceTracker extends BaseObjectTracker {
     
     /**
      * Takes an OSGi service and adds it if it matches the
-     * criteria for being a JAX-RS target.
+     * criteria for being a JAX-RS target. The service is only
+     * fetched if the {@link ServiceClassifier} can't rule it out.
      * 
      * @param serviceReference the service reference of the service
      */
     private void tryAddService(final ServiceReference<?> serviceReference) {
+        // Don't get (and maybe activate) services we already know we don't want
+        if (preclassify && ServiceClassifier.Verdict.REJECT == classifier.classify(serviceReference)) {
+            return;
+        }
+        
         try {
             Object jaxPage = context.getService(serviceReference);
             if (null != jaxPage) {
                 if (addTarget(serviceReference, jaxPage)) {
-                    openReferences.add(serviceReference);
+                    Bundle definingBundle = FrameworkUtil.getBundle(jaxPage.getClass());
+                    if (null != definingBundle) {
+                        targetClassesByBundle.computeIfAbsent(definingBundle.getBundleId(), 
+                                k -> ConcurrentHashMap.newKeySet()).add(jaxPage.getClass());
+                    }
                 } else {
                     context.ungetService(serviceReference);
                 }
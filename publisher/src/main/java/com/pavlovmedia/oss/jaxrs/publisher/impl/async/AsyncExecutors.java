@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.async;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.jersey.server.BackgroundScheduler;
+import org.glassfish.jersey.server.ManagedAsyncExecutor;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+import org.glassfish.jersey.spi.ScheduledExecutorServiceProvider;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.RejectionPolicy;
+
+/**
+ * The executors of a publisher: one that runs managed async resource methods and
+ * a scheduler for the timeouts of suspended responses. They are shared by every
+ * container the publisher runs and live as long as the publisher, so a reload
+ * doesn't cut off async work that is still running.
+ * <br /><br />
+ * Virtual threads are looked up by reflection, so this still builds and runs on
+ * Java 8. When they are asked for but the JVM doesn't have them, a pool is used.
+ */
+public class AsyncExecutors implements AutoCloseable {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean virtual;
+    
+    /**
+     * @param name used in thread names
+     * @param virtual true to run each task on a virtual thread if the JVM can
+     * @param corePoolSize threads the pool keeps while it is busy
+     * @param maxPoolSize most threads the pool runs, once the queue is full
+     * @param queueCapacity how much work can wait for a thread, 0 hands work straight to a thread
+     * @param rejection what to do with work that doesn't fit
+     * @param schedulerPoolSize threads for timeouts
+     */
+    public AsyncExecutors(final String name, final boolean virtual, final int corePoolSize, final int maxPoolSize, 
+            final int queueCapacity, final RejectionPolicy rejection, final int schedulerPoolSize) {
+        ExecutorService virtualExecutor = virtual ? newVirtualExecutor(name + " async ") : null;
+        this.virtual = null != virtualExecutor;
+        if (this.virtual) {
+            executor = virtualExecutor;
+        } else {
+            int core = Math.max(1, corePoolSize);
+            BlockingQueue<Runnable> queue = queueCapacity > 0 
+                    ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(core, Math.max(core, maxPoolSize), 
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, threadFactory(name + " async "), handler(rejection));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        
+        ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(Math.max(1, schedulerPoolSize), 
+                threadFactory(name + " scheduler "));
+        // Most timeouts are cancelled because the response came first
+        timeouts.setRemoveOnCancelPolicy(true);
+        scheduler = timeouts;
+    }
+    
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+    
+    /**
+     * @return the provider to register with Jersey for managed async methods
+     */
+    public ExecutorServiceProvider managedAsyncProvider() {
+        return new ManagedAsyncProvider(executor);
+    }
+    
+    /**
+     * @return the provider to register with Jersey for background scheduling
+     */
+    public ScheduledExecutorServiceProvider schedulerProvider() {
+        return new SchedulerProvider(scheduler);
+    }
+    
+    /**
+     * Stops taking work and waits a bit for running work to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        scheduler.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static ThreadFactory threadFactory(final String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static RejectedExecutionHandler handler(final RejectionPolicy rejection) {
+        if (RejectionPolicy.CALLER_RUNS == rejection) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+    
+    /**
+     * Does {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())}
+     * 
+     * @return the executor, or null if this JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualExecutor(final String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Hands Jersey our executor. Jersey disposes of it with the application, which
+     * happens on every reload, so that is left to {@link AsyncExecutors#close()}.
+     */
+    @ManagedAsyncExecutor
+    private static final class ManagedAsyncProvider implements ExecutorServiceProvider {
+        private final ExecutorService executor;
+        
+        ManagedAsyncProvider(final ExecutorService executor) {
+            this.executor = executor;
+        }
+        
+        @Override
+        public ExecutorService getExecutorService() {
+            return executor;
+        }
+        
+        @Override
+        public void dispose(final ExecutorService executorService) {
+            // We own it
+        }
+    }
+    
+    /**
+     * Hands Jersey our scheduler, see {@link ManagedAsyncProvider}
+     */
+    @BackgroundScheduler
+    private static final class SchedulerProvider implements ScheduledExecutorServiceProvider {
+        private final ScheduledExecutorService scheduler;
+        
+        SchedulerProvider(final ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+        }
+        
+        @Override
+        public ScheduledExecutorService getExecutorService() {
+            return scheduler;
+        }
+        
+        @Override
+        public void dispose(final ExecutorService executorService) {
+            // We own it
+        }
+    }
+}
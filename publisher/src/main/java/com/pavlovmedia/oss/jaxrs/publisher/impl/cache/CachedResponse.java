@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * A response kept in the {@link ResponseCache}: its media type, the headers to
+ * send with it, its entity tag if it had one and the bytes of the entity. The bytes are either on the heap or
+ * in a direct buffer, so large caches don't have to be walked by the collector.
+ */
+public final class CachedResponse {
+    private static final int CHUNK_SIZE = 8192;
+    
+    private final String mediaType;
+    private final Map<String, List<String>> headers;
+    private final EntityTag entityTag;
+    private final byte[] heapBody;
+    private final ByteBuffer directBody;
+    private final long expiresNanos;
+    
+    /**
+     * @param mediaType the media type the entity was written as
+     * @param headers the headers to send with it
+     * @param entityTag the tag of the entity, or null if it has none
+     * @param body the entity
+     * @param length how much of body is the entity
+     * @param offHeap true to copy the entity into a direct buffer
+     * @param expiresNanos when this is too old to serve, in {@link System#nanoTime()} terms
+     */
+    public CachedResponse(final String mediaType, final Map<String, List<String>> headers, 
+            final EntityTag entityTag, final byte[] body, final int length, final boolean offHeap, 
+            final long expiresNanos) {
+        this.mediaType = mediaType;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.entityTag = entityTag;
+        this.expiresNanos = expiresNanos;
+        if (offHeap) {
+            directBody = ByteBuffer.allocateDirect(length);
+            directBody.put(body, 0, length).flip();
+            heapBody = null;
+        } else {
+            heapBody = length == body.length ? body : Arrays.copyOf(body, length);
+            directBody = null;
+        }
+    }
+    
+    public String getMediaType() {
+        return mediaType;
+    }
+    
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+    
+    public EntityTag getEntityTag() {
+        return entityTag;
+    }
+    
+    /** @return the size of the entity */
+    public int size() {
+        return null == heapBody ? directBody.capacity() : heapBody.length;
+    }
+    
+    /**
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return true if this can't be served anymore
+     */
+    public boolean isExpired(final long nowNanos) {
+        return nowNanos - expiresNanos >= 0;
+    }
+    
+    /**
+     * Writes the entity, this can be called by many threads at once
+     * 
+     * @param out where to write it
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        if (null != heapBody) {
+            out.write(heapBody);
+            return;
+        }
+        
+        ByteBuffer body = directBody.duplicate();
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, body.remaining())];
+        while (body.hasRemaining()) {
+            int count = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, count);
+            out.write(chunk, 0, count);
+        }
+    }
+}
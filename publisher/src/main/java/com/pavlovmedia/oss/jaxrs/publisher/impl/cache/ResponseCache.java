@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.ResponseCacheStats;
+
+/**
+ * Holds the cached responses of a publisher, bounded by the total size of their
+ * entities. When a new response doesn't fit, the least recently used ones are
+ * dropped until it does. Responses that are too old are dropped when they are
+ * looked up.
+ * <br /><br />
+ * One of these is shared by every container of a publisher, and it is cleared
+ * on every reload so nothing from code that has gone away is served.
+ */
+public class ResponseCache {
+    private final long maxBytes;
+    private final boolean offHeap;
+    
+    /** The responses, in least recently used order, guarded by this */
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    /** The total size of the entries, guarded by this */
+    private long bytes;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    
+    /**
+     * @param maxBytes the most entity bytes to hold
+     * @param offHeap true to keep the entities in direct buffers
+     */
+    public ResponseCache(final long maxBytes, final boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+    
+    /** @return true if entities are kept off of the heap */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    /**
+     * @param key the key of the response
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return the response, or null if there isn't one that is fresh enough
+     */
+    public CachedResponse get(final String key, final long nowNanos) {
+        CachedResponse response;
+        synchronized (this) {
+            response = entries.get(key);
+            if (null != response && response.isExpired(nowNanos)) {
+                remove(key);
+                expirations.increment();
+                response = null;
+            }
+        }
+        
+        if (null == response) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return response;
+    }
+    
+    /**
+     * Keeps a response, replacing any that was there for the key and making room
+     * if needed. Responses bigger than the whole cache are not kept.
+     * 
+     * @param key the key of the response
+     * @param response what to keep
+     * @return true if it was kept
+     */
+    public synchronized boolean put(final String key, final CachedResponse response) {
+        if (response.size() > maxBytes) {
+            return false;
+        }
+        
+        remove(key);
+        Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+        while (bytes + response.size() > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions.increment();
+        }
+        
+        entries.put(key, response);
+        bytes += response.size();
+        stores.increment();
+        return true;
+    }
+    
+    /** Guarded by this */
+    private void remove(final String key) {
+        CachedResponse old = entries.remove(key);
+        if (null != old) {
+            bytes -= old.size();
+        }
+    }
+    
+    /**
+     * Drops every response
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+    
+    /**
+     * @return how the cache is doing
+     */
+    public ResponseCacheStats getStats() {
+        int size;
+        long total;
+        synchronized (this) {
+            size = entries.size();
+            total = bytes;
+        }
+        return new ResponseCacheStats(size, total, maxBytes, hits.sum(), misses.sum(), stores.sum(), 
+                evictions.sum(), expirations.sum());
+    }
+}
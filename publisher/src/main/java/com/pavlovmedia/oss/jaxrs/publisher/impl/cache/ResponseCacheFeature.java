@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import java.lang.reflect.Method;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.CacheResponse;
+
+/**
+ * Puts a {@link ResponseCacheFilter} on every GET resource method that is marked
+ * with {@link CacheResponse}, either itself or through its class. The annotation
+ * on the method wins.
+ */
+public class ResponseCacheFeature implements DynamicFeature {
+    private final ResponseCache cache;
+    private final int maxEntrySize;
+    
+    /**
+     * @param cache where responses are kept
+     * @param maxEntrySize the biggest entity, in bytes, worth keeping
+     */
+    public ResponseCacheFeature(final ResponseCache cache, final int maxEntrySize) {
+        this.cache = cache;
+        this.maxEntrySize = maxEntrySize;
+    }
+    
+    @Override
+    public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        Class<?> resource = resourceInfo.getResourceClass();
+        if (null == method || null == resource || !method.isAnnotationPresent(GET.class)) {
+            return;
+        }
+        
+        CacheResponse cached = method.isAnnotationPresent(CacheResponse.class)
+                ? method.getAnnotation(CacheResponse.class)
+                : resource.getAnnotation(CacheResponse.class);
+        if (null != cached && cached.value() > 0) {
+            context.register(new ResponseCacheFilter(cache, cached.unit().toNanos(cached.value()), maxEntrySize),
+                    Priorities.USER);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.etag.EntityTags;
+
+/**
+ * Serves a resource method from the {@link ResponseCache}. A hit aborts the request
+ * with the kept response before the method is called. On a miss the response filter
+ * decides if the response can be kept, and the interceptor copies the entity bytes
+ * as they are written and keeps them once writing is done.
+ * <br /><br />
+ * This is registered to run inside of compression, so the bytes that are kept are never encoded
+ * and a hit is compressed like any other response.
+ * <br /><br />
+ * The entity tag is taken as the entity is written, after every response filter has run,
+ * so a tag from the method or from the ETag filter is kept with the response. A hit is
+ * sent with that tag, or answered with a 304 if it matches If-None-Match, without the
+ * entity being hashed again.
+ */
+public class ResponseCacheFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    /** The request property that carries the key from the request filter to the response filter */
+    static final String KEY_PROPERTY = ResponseCacheFilter.class.getName() + ".key";
+    
+    /** The request property that carries what to keep from the response filter to the interceptor */
+    static final String PENDING_PROPERTY = ResponseCacheFilter.class.getName() + ".pending";
+    
+    private final ResponseCache cache;
+    private final long ttlNanos;
+    private final int maxEntrySize;
+    
+    /**
+     * @param cache where responses are kept
+     * @param ttlNanos how long a response can be served for
+     * @param maxEntrySize the biggest entity, in bytes, worth keeping
+     */
+    public ResponseCacheFilter(final ResponseCache cache, final long ttlNanos, final int maxEntrySize) {
+        this.cache = cache;
+        this.ttlNanos = ttlNanos;
+        this.maxEntrySize = maxEntrySize;
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request) {
+        String key = key(request);
+        CachedResponse cached = cache.get(key, System.nanoTime());
+        if (null == cached) {
+            request.setProperty(KEY_PROPERTY, key);
+            return;
+        }
+        
+        EntityTag tag = cached.getEntityTag();
+        if (null != tag && EntityTags.matches(request.getHeaderString(HttpHeaders.IF_NONE_MATCH), tag)) {
+            request.abortWith(Response.notModified(tag).build());
+            return;
+        }
+        
+        ResponseBuilder response = Response.ok((StreamingOutput) cached::writeTo, cached.getMediaType());
+        cached.getHeaders().forEach((name, values) -> values.forEach(v -> response.header(name, v)));
+        request.abortWith(response.tag(tag).build());
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request, final ContainerResponseContext response) {
+        Object key = request.getProperty(KEY_PROPERTY);
+        if (null == key || !isCacheable(response)) {
+            return;
+        }
+        request.removeProperty(KEY_PROPERTY);
+        
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        response.getStringHeaders().forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+                    && !HttpHeaders.DATE.equalsIgnoreCase(name) && !HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                headers.put(name, new ArrayList<>(values));
+            }
+        });
+        request.setProperty(PENDING_PROPERTY, new Pending((String) key, response.getMediaType().toString(), headers));
+    }
+    
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Object pending = context.getProperty(PENDING_PROPERTY);
+        if (null == pending) {
+            context.proceed();
+            return;
+        }
+        
+        context.removeProperty(PENDING_PROPERTY);
+        // Compression adds its coding to the tag once it starts, so take it before that
+        EntityTag tag = entityTagOf(context.getHeaders().getFirst(HttpHeaders.ETAG));
+        CapturingOutputStream capture = new CapturingOutputStream(context.getOutputStream(), maxEntrySize);
+        context.setOutputStream(capture);
+        context.proceed();
+        
+        if (!capture.isOverflowed()) {
+            Pending p = (Pending) pending;
+            cache.put(p.key, new CachedResponse(p.mediaType, p.headers, tag, capture.getBytes(), 
+                    capture.getCount(), cache.isOffHeap(), System.nanoTime() + ttlNanos));
+        }
+    }
+    
+    private static EntityTag entityTagOf(final Object header) {
+        if (null == header || header instanceof EntityTag) {
+            return (EntityTag) header;
+        }
+        return EntityTag.valueOf(header.toString());
+    }
+    
+    /**
+     * @param request a request for the method this filters
+     * @return the key of its response: the path, the query and what it accepts
+     */
+    static String key(final ContainerRequestContext request) {
+        String accept = request.getHeaderString(HttpHeaders.ACCEPT);
+        String query = request.getUriInfo().getRequestUri().getRawQuery();
+        return request.getUriInfo().getRequestUri().getRawPath() 
+                + (null == query ? "" : "?" + query) 
+                + "\n" + (null == accept ? "" : accept);
+    }
+    
+    private static boolean isCacheable(final ContainerResponseContext response) {
+        if (response.getStatus() != Response.Status.OK.getStatusCode() || !response.hasEntity()
+                || null == response.getMediaType()
+                || response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+                || response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        
+        String cacheControl = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        if (null != cacheControl) {
+            String directives = cacheControl.toLowerCase();
+            return !directives.contains("no-store") && !directives.contains("private");
+        }
+        return true;
+    }
+    
+    /**
+     * What the response filter found out about a response that is to be kept
+     */
+    private static final class Pending {
+        final String key;
+        final String mediaType;
+        final Map<String, List<String>> headers;
+        
+        Pending(final String key, final String mediaType, final Map<String, List<String>> headers) {
+            this.key = key;
+            this.mediaType = mediaType;
+            this.headers = headers;
+        }
+    }
+    
+    /**
+     * Passes everything along and keeps a copy, until the copy gets too big
+     */
+    private static final class CapturingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        
+        CapturingOutputStream(final OutputStream out, final int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+        
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            keep(new byte[] { (byte) b }, 0, 1);
+        }
+        
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+            keep(bytes, offset, length);
+        }
+        
+        private void keep(final byte[] bytes, final int offset, final int length) {
+            if (null != copy) {
+                if (copy.size() + length > limit) {
+                    copy = null;
+                } else {
+                    copy.write(bytes, offset, length);
+                }
+            }
+        }
+        
+        boolean isOverflowed() {
+            return null == copy;
+        }
+        
+        byte[] getBytes() {
+            return copy.toByteArray();
+        }
+        
+        int getCount() {
+            return copy.size();
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+/**
+ * Reads the Accept-Encoding request header
+ */
+public final class AcceptEncoding {
+    /** The gzip content coding */
+    public static final String GZIP = "gzip";
+    
+    /** The deflate (zlib) content coding */
+    public static final String DEFLATE = "deflate";
+    
+    private AcceptEncoding() { }
+    
+    /**
+     * Works out if a coding is acceptable, either by name or through a wildcard,
+     * and not turned down with a zero quality
+     * 
+     * @param acceptEncoding the Accept-Encoding header, may be null
+     * @param coding the coding to look for
+     * @return true if it can be used
+     */
+    public static boolean accepts(final String acceptEncoding, final String coding) {
+        return quality(acceptEncoding, coding) > 0;
+    }
+    
+    /**
+     * Picks gzip or deflate, whichever the client prefers, gzip if it likes both the same
+     * 
+     * @param acceptEncoding the Accept-Encoding header, may be null
+     * @return the coding to use, or null if the client takes neither
+     */
+    public static String preferred(final String acceptEncoding) {
+        double gzip = quality(acceptEncoding, GZIP);
+        double deflate = quality(acceptEncoding, DEFLATE);
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+    
+    /**
+     * @return the quality the header gives a coding, a named entry beats the wildcard
+     *   and 0 means it is not acceptable
+     */
+    private static double quality(final String acceptEncoding, final String coding) {
+        if (null == acceptEncoding) {
+            return 0;
+        }
+        
+        double wildcard = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = parts[0].trim();
+            if (coding.equalsIgnoreCase(name)) {
+                return quality(parts);
+            } else if ("*".equals(name)) {
+                wildcard = quality(parts);
+            }
+        }
+        return wildcard;
+    }
+    
+    private static double quality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
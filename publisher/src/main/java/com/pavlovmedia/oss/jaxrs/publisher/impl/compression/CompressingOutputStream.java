@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.etag.EntityTags;
+
+/**
+ * Compresses an entity as it is written. Nothing is compressed until the entity
+ * reaches the minimum size, if it ends before that it goes out as it is. Once
+ * compression starts the Content-Encoding header is set, which works because the
+ * headers are only sent with the first byte that reaches the underlying stream.
+ * A strong entity tag gets the coding added to it, see {@link EntityTags}.
+ * <br /><br />
+ * Flushing passes compressed data along right away, but a flush before the
+ * minimum size is reached does nothing (writers like to flush at the end).
+ */
+class CompressingOutputStream extends OutputStream {
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    
+    private final OutputStream out;
+    private final MultivaluedMap<String, Object> headers;
+    private final String coding;
+    private final DeflaterPool pool;
+    private final byte[] pending;
+    private final byte[] buffer = new byte[4096];
+    private int pendingCount;
+    private Deflater deflater;
+    private CRC32 crc;
+    private int totalIn;
+    private boolean finished;
+    
+    /**
+     * @param out where the entity goes
+     * @param headers the response headers, still open to changes
+     * @param coding {@link AcceptEncoding#GZIP} or {@link AcceptEncoding#DEFLATE}
+     * @param pool where to borrow a deflater of the right kind from
+     * @param minSize the smallest entity worth compressing
+     */
+    CompressingOutputStream(final OutputStream out, final MultivaluedMap<String, Object> headers, 
+            final String coding, final DeflaterPool pool, final int minSize) {
+        this.out = out;
+        this.headers = headers;
+        this.coding = coding;
+        this.pool = pool;
+        this.pending = new byte[Math.max(0, minSize)];
+    }
+    
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+    
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (finished) {
+            throw new IOException("The stream is already finished");
+        }
+        if (null == deflater) {
+            if (pendingCount + length < pending.length) {
+                System.arraycopy(bytes, offset, pending, pendingCount, length);
+                pendingCount += length;
+                return;
+            }
+            start();
+        }
+        deflate(bytes, offset, length);
+    }
+    
+    /**
+     * Big enough, switch the response over to compressed
+     */
+    private void start() throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, coding);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        Object tag = headers.getFirst(HttpHeaders.ETAG);
+        if (null != tag) {
+            headers.putSingle(HttpHeaders.ETAG, EntityTags.encoded(tag, coding));
+        }
+        deflater = pool.borrow();
+        if (AcceptEncoding.GZIP.equals(coding)) {
+            crc = new CRC32();
+            out.write(GZIP_HEADER);
+        }
+        deflate(pending, 0, pendingCount);
+        pendingCount = 0;
+    }
+    
+    private void deflate(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (0 == length) {
+            return;
+        }
+        if (null != crc) {
+            crc.update(bytes, offset, length);
+        }
+        totalIn += length;
+        deflater.setInput(bytes, offset, length);
+        while (!deflater.needsInput()) {
+            drain(Deflater.NO_FLUSH);
+        }
+    }
+    
+    private int drain(final int flush) throws IOException {
+        int count = deflater.deflate(buffer, 0, buffer.length, flush);
+        if (count > 0) {
+            out.write(buffer, 0, count);
+        }
+        return count;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        if (null != deflater && !finished) {
+            while (drain(Deflater.SYNC_FLUSH) == buffer.length) {
+                // Keep going until the deflater has nothing left
+            }
+            out.flush();
+        }
+    }
+    
+    /**
+     * Writes out whatever is left and gives the deflater back, the underlying
+     * stream is left open. Calling this more than once does nothing.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        
+        if (null == deflater) {
+            out.write(pending, 0, pendingCount);
+            return;
+        }
+        
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            if (null != crc) {
+                writeInt((int) crc.getValue());
+                writeInt(totalIn);
+            }
+        } finally {
+            release();
+        }
+    }
+    
+    /**
+     * Gives the deflater back without writing anything more, for when writing failed
+     */
+    void abort() {
+        finished = true;
+        release();
+    }
+    
+    private void release() {
+        if (null != deflater) {
+            pool.release(deflater);
+            deflater = null;
+        }
+    }
+    
+    /** The gzip trailer is little endian */
+    private void writeInt(final int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.NoCompression;
+
+/**
+ * Turns on response compression for every resource method that can take it.
+ * Methods (or classes) marked with {@link NoCompression} are left alone, and so
+ * is anything that streams events: methods that produce text/event-stream,
+ * return a {@link ChunkedOutput} or take an {@link SseEventSink}.
+ * <br /><br />
+ * One of these is shared by every container of a publisher, so the deflater
+ * pools are too.
+ */
+public class CompressionFeature implements DynamicFeature, AutoCloseable {
+    private final DeflaterPool gzipPool;
+    private final DeflaterPool deflatePool;
+    private final CompressionFilter filter;
+    
+    /**
+     * @param minSize the smallest entity, in bytes, worth compressing
+     * @param mediaTypes the media types to compress
+     * @param level the compression level, 1 (fastest) to 9 (smallest) or -1 for the default
+     * @param poolSize how many idle deflaters of each kind to keep
+     */
+    public CompressionFeature(final int minSize, final String[] mediaTypes, final int level, final int poolSize) {
+        int checkedLevel = level < -1 || level > 9 ? -1 : level;
+        gzipPool = new DeflaterPool(checkedLevel, true, poolSize);
+        deflatePool = new DeflaterPool(checkedLevel, false, poolSize);
+        filter = new CompressionFilter(minSize, mediaTypes, gzipPool, deflatePool);
+    }
+    
+    @Override
+    public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        Class<?> resource = resourceInfo.getResourceClass();
+        if (null == method || null == resource
+                || method.isAnnotationPresent(NoCompression.class) 
+                || resource.isAnnotationPresent(NoCompression.class)
+                || isStreaming(method, resource)) {
+            return;
+        }
+        // Ahead of the user's interceptors, so they see (and the response cache keeps) the plain entity
+        context.register(filter, Priorities.ENTITY_CODER);
+    }
+    
+    private static boolean isStreaming(final Method method, final Class<?> resource) {
+        if (ChunkedOutput.class.isAssignableFrom(method.getReturnType())
+                || Arrays.asList(method.getParameterTypes()).contains(SseEventSink.class)) {
+            return true;
+        }
+        Produces produces = method.isAnnotationPresent(Produces.class) 
+                ? method.getAnnotation(Produces.class) 
+                : resource.getAnnotation(Produces.class);
+        if (null != produces) {
+            for (String value : produces.value()) {
+                for (String type : value.split(",")) {
+                    if (MediaType.SERVER_SENT_EVENTS.equalsIgnoreCase(type.trim())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Ends the pooled deflaters
+     */
+    @Override
+    public void close() {
+        gzipPool.close();
+        deflatePool.close();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Decides per response if it gets compressed and then does it. The filter looks at
+ * the request and the response, and leaves the coding to use as a request property
+ * that the interceptor picks up when the entity is written.
+ * <br /><br />
+ * A response is only compressed if it has an entity of a compressible media type,
+ * isn't already encoded and the client accepts gzip or deflate.
+ */
+public class CompressionFilter implements ContainerResponseFilter, WriterInterceptor {
+    /** The request property that carries the coding from the filter to the interceptor */
+    static final String CODING_PROPERTY = CompressionFilter.class.getName() + ".coding";
+    
+    private final int minSize;
+    private final List<MediaType> mediaTypes = new ArrayList<>();
+    private final DeflaterPool gzipPool;
+    private final DeflaterPool deflatePool;
+    
+    /**
+     * @param minSize the smallest entity, in bytes, worth compressing
+     * @param mediaTypes the media types to compress, these can be wildcards like text/* or application/*+json
+     * @param gzipPool deflaters for gzip
+     * @param deflatePool deflaters for deflate
+     */
+    public CompressionFilter(final int minSize, final String[] mediaTypes, final DeflaterPool gzipPool,
+            final DeflaterPool deflatePool) {
+        this.minSize = minSize;
+        this.gzipPool = gzipPool;
+        this.deflatePool = deflatePool;
+        for (String type : mediaTypes) {
+            if (null != type && !type.trim().isEmpty()) {
+                this.mediaTypes.add(MediaType.valueOf(type.trim()));
+            }
+        }
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request, final ContainerResponseContext response) {
+        if (!response.hasEntity() || !isCompressible(response.getMediaType())) {
+            return;
+        }
+        
+        // Whether or not this one is compressed, the answer depends on the header
+        if (!varies(response)) {
+            response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return;
+        }
+        
+        String coding = AcceptEncoding.preferred(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (null != coding) {
+            request.setProperty(CODING_PROPERTY, coding);
+        }
+    }
+    
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Object coding = context.getProperty(CODING_PROPERTY);
+        if (null == coding || context.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+        
+        context.removeProperty(CODING_PROPERTY);
+        CompressingOutputStream compressing = new CompressingOutputStream(context.getOutputStream(), 
+                context.getHeaders(), (String) coding, 
+                AcceptEncoding.GZIP.equals(coding) ? gzipPool : deflatePool, minSize);
+        context.setOutputStream(compressing);
+        boolean written = false;
+        try {
+            context.proceed();
+            compressing.finish();
+            written = true;
+        } finally {
+            if (!written) {
+                compressing.abort();
+            }
+        }
+    }
+    
+    /**
+     * @param type the media type of a response
+     * @return true if it is in the configured list, SSE never is
+     */
+    boolean isCompressible(final MediaType type) {
+        if (null == type || MediaType.SERVER_SENT_EVENTS_TYPE.isCompatible(type)) {
+            return false;
+        }
+        for (MediaType candidate : mediaTypes) {
+            if (matches(candidate, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean matches(final MediaType pattern, final MediaType type) {
+        if (!pattern.isWildcardType() && !pattern.getType().equalsIgnoreCase(type.getType())) {
+            return false;
+        }
+        String subtype = pattern.getSubtype();
+        if (pattern.isWildcardSubtype() || subtype.equalsIgnoreCase(type.getSubtype())) {
+            return true;
+        }
+        // Suffix patterns like *+json
+        return subtype.startsWith("*+") 
+                && type.getSubtype().toLowerCase().endsWith(subtype.substring(1).toLowerCase());
+    }
+    
+    private static boolean varies(final ContainerResponseContext response) {
+        List<String> vary = response.getStringHeaders().get(HttpHeaders.VARY);
+        if (null != vary) {
+            for (String value : vary) {
+                for (String header : value.split(",")) {
+                    if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(header.trim()) || "*".equals(header.trim())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
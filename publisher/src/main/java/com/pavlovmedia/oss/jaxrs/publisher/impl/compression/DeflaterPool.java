@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps deflaters around between responses. A deflater holds on to native
+ * memory that is only freed when it is ended (or much later by the garbage
+ * collector), so making a new one for every response is expensive.
+ * <br /><br />
+ * Borrowing never blocks, when the pool is empty a new deflater is made.
+ * Deflaters that come back to a full pool are ended.
+ */
+public class DeflaterPool implements AutoCloseable {
+    private final int level;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> idle;
+    private volatile boolean closed;
+    
+    /**
+     * @param level the compression level, see {@link Deflater}
+     * @param nowrap true for raw deflate (as gzip needs), false for the zlib format
+     * @param size how many idle deflaters to keep
+     */
+    public DeflaterPool(final int level, final boolean nowrap, final int size) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+    }
+    
+    public Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return null == deflater ? new Deflater(level, nowrap) : deflater;
+    }
+    
+    /**
+     * Hands a deflater back, it must not be used after this
+     * 
+     * @param deflater a deflater from {@link #borrow()}
+     */
+    public void release(final Deflater deflater) {
+        deflater.reset();
+        if (closed || !idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * @return how many deflaters are waiting to be borrowed
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+    
+    /**
+     * Ends every idle deflater, ones that are out are ended when they come back
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Deflater deflater;
+        while (null != (deflater = idle.poll())) {
+            deflater.end();
+        }
+    }
+}
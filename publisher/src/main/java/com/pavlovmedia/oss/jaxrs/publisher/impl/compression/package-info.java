@@ -0,0 +1,22 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package holds the response compression of the publisher. A Jersey
+ * dynamic feature picks the resource methods that can be compressed, and
+ * their responses are deflated as they are written, with deflaters that are
+ * pooled between requests.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
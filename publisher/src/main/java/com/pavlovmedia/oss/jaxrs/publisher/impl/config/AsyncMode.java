@@ -0,0 +1,29 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.config;
+
+/**
+ * What runs {@code @ManagedAsync} resource methods and the timeouts of suspended
+ * {@code AsyncResponse}s.
+ */
+public enum AsyncMode {
+    /** Jersey's own executors, this is the classic behavior */
+    JERSEY,
+    /** A thread pool owned by the publisher, sized by its configuration */
+    POOL,
+    /** A virtual thread per task, on a JVM that has them, otherwise the same as POOL */
+    VIRTUAL
+}
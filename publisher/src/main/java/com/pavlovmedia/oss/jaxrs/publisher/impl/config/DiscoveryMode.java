@@ -0,0 +1,14 @@
+package com.pavlovmedia.oss.jaxrs.publisher.impl.config;
+
+/**
+ * How the publisher decides which services are worth looking at
+ * as JAX-RS targets.
+ */
+public enum DiscoveryMode {
+    /** Look at every service that is not marked to be skipped, this is the classic behavior */
+    WILDCARD,
+    /** Only look at services that carry one of the well known JAX-RS marker properties */
+    MARKED,
+    /** Only look at services that match a user supplied LDAP filter */
+    FILTER
+}
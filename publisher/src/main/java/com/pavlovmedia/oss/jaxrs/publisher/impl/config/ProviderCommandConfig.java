@@ -9,5 +9,7 @@ public @interface ProviderCommandConfig {
     String osgi_command_scope() default "jax";
     
     @AttributeDefinition(name="osgi.command.function")
-    String[] osgi_command_function() default { "getEndpoints", "getFeatures", "getProviders" };
+    String[] osgi_command_function() default { "getEndpoints", "getFeatures", "getProviders", 
+        "getReloads", "getReloadStats", "getDiscoveryStats", "getResponseCacheStats", 
+        "getEndpointLimits" };
 }
\ No newline at end of file
@@ -17,4 +17,190 @@ public @interface PublisherConfig {
     // Example: max_size -> max.size, user_name_default -> user.name.default
     @AttributeDefinition(name=JerseyPublisher.PATH, description = "Path to serve JAX-RS endpoints from")
     String path() default "/services";
+    
+    @AttributeDefinition(name="target.filter", required = false,
+            description = "An LDAP filter that limits which services this publisher picks up, on top of the "
+                    + "discovery settings. Used to split services between several publishers")
+    String target_filter() default "";
+    
+    @AttributeDefinition(name="jersey.properties", required = false,
+            description = "Extra Jersey properties for this publisher, as name=value")
+    String[] jersey_properties() default {};
+    
+    @AttributeDefinition(name="reload.quiet.period", 
+            description = "Milliseconds without service changes before Jersey is reloaded")
+    long reload_quiet_period() default 100;
+    
+    @AttributeDefinition(name="reload.max.delay", 
+            description = "Most milliseconds a steady stream of service changes can hold back a reload")
+    long reload_max_delay() default 1000;
+    
+    @AttributeDefinition(name="batch.max.hold", 
+            description = "Most milliseconds a registration batch can hold back reloads before it is dropped")
+    long batch_max_hold() default 60000;
+    
+    @AttributeDefinition(name="reload.mode", 
+            description = "How new targets get to Jersey. IN_PLACE reloads the running container, SWAP builds "
+                    + "a new container while the old one keeps serving and switches over once it is ready")
+    ReloadMode reload_mode() default ReloadMode.IN_PLACE;
+    
+    @AttributeDefinition(name="reload.drain.timeout", 
+            description = "In SWAP mode, most milliseconds to let the old container finish its requests "
+                    + "before it is destroyed")
+    long reload_drain_timeout() default 30000;
+    
+    @AttributeDefinition(name="reload.async.drain.timeout", 
+            description = "In SWAP mode, most milliseconds to let async requests of the old container (like long "
+                    + "polls) finish once its other requests are done. Ones still open, and event streams, are then "
+                    + "ended so their clients come back to the new container")
+    long reload_async_drain_timeout() default 2000;
+    
+    @AttributeDefinition(name="reload.history.size", 
+            description = "How many past reloads to keep for reporting")
+    int reload_history_size() default 100;
+    
+    @AttributeDefinition(name="metrics.enabled", 
+            description = "Time every request against the resource method it matched")
+    boolean metrics_enabled() default false;
+    
+    @AttributeDefinition(name="metrics.path", required = false,
+            description = "Path under the publisher to serve metrics from as Prometheus text, empty to not serve them")
+    String metrics_path() default "jaxrs-metrics";
+    
+    @AttributeDefinition(name="compression.enabled", 
+            description = "Compress responses with gzip or deflate for clients that accept it")
+    boolean compression_enabled() default false;
+    
+    @AttributeDefinition(name="compression.min.size", 
+            description = "Smallest response entity, in bytes, that gets compressed")
+    int compression_min_size() default 1024;
+    
+    @AttributeDefinition(name="compression.media.types", 
+            description = "Media types that get compressed, wildcards like text/* and application/*+json work")
+    String[] compression_media_types() default { "application/json", "application/*+json", "application/xml", 
+            "application/*+xml", "application/javascript", "application/yaml", "text/*", "image/svg+xml" };
+    
+    @AttributeDefinition(name="compression.level", 
+            description = "Compression level from 1 (fastest) to 9 (smallest)")
+    int compression_level() default 6;
+    
+    @AttributeDefinition(name="compression.pool.size", 
+            description = "How many idle compressors of each kind to keep around")
+    int compression_pool_size() default 32;
+    
+    @AttributeDefinition(name="response.cache.size", 
+            description = "Most bytes of responses to keep for methods marked with @CacheResponse, 0 turns it off")
+    long response_cache_size() default 33554432;
+    
+    @AttributeDefinition(name="response.cache.max.entry.size", 
+            description = "Biggest response, in bytes, that is worth keeping")
+    int response_cache_max_entry_size() default 1048576;
+    
+    @AttributeDefinition(name="response.cache.off.heap", 
+            description = "Keep cached responses in direct buffers, out of the heap")
+    boolean response_cache_off_heap() default false;
+    
+    @AttributeDefinition(name="etag.enabled", 
+            description = "Give GET responses of versioned resources and of methods marked @HashEntityTag a strong "
+                    + "entity tag and answer a matching If-None-Match with a 304")
+    boolean etag_enabled() default false;
+    
+    @AttributeDefinition(name="async.mode", 
+            description = "What runs @ManagedAsync methods and response timeouts. JERSEY uses Jersey's own "
+                    + "executors, POOL a pool sized here and VIRTUAL a virtual thread per task when the JVM has them")
+    AsyncMode async_mode() default AsyncMode.JERSEY;
+    
+    @AttributeDefinition(name="async.core.pool.size", 
+            description = "Threads the async pool keeps while it is busy")
+    int async_core_pool_size() default 8;
+    
+    @AttributeDefinition(name="async.max.pool.size", 
+            description = "Most threads the async pool runs, more than the core size are only started once the "
+                    + "queue is full")
+    int async_max_pool_size() default 64;
+    
+    @AttributeDefinition(name="async.queue.capacity", 
+            description = "How many tasks can wait for an async thread, 0 hands each one straight to a thread")
+    int async_queue_capacity() default 1000;
+    
+    @AttributeDefinition(name="async.rejection.policy", 
+            description = "What happens to async work that doesn't fit in the pool or its queue")
+    RejectionPolicy async_rejection_policy() default RejectionPolicy.ABORT;
+    
+    @AttributeDefinition(name="async.scheduler.pool.size", 
+            description = "Threads that handle the timeouts of suspended responses")
+    int async_scheduler_pool_size() default 2;
+    
+    @AttributeDefinition(name="limiter.enabled", 
+            description = "Limit how many requests each resource method runs at once, adapting the limit to its "
+                    + "latency, and turn away requests over the limit with a 503")
+    boolean limiter_enabled() default false;
+    
+    @AttributeDefinition(name="limiter.initial.limit", 
+            description = "How many requests a resource method can run at once to start with")
+    int limiter_initial_limit() default 20;
+    
+    @AttributeDefinition(name="limiter.min.limit", 
+            description = "The limit of a resource method never goes below this")
+    int limiter_min_limit() default 1;
+    
+    @AttributeDefinition(name="limiter.max.limit", 
+            description = "The limit of a resource method never goes above this")
+    int limiter_max_limit() default 200;
+    
+    @AttributeDefinition(name="limiter.backoff.ratio", 
+            description = "What a limit is multiplied by when its method slows down or fails")
+    double limiter_backoff_ratio() default 0.9;
+    
+    @AttributeDefinition(name="limiter.latency.tolerance", 
+            description = "How many times its usual latency a method can take before it counts as slowed down")
+    double limiter_latency_tolerance() default 2.0;
+    
+    @AttributeDefinition(name="limiter.retry.after", 
+            description = "Seconds turned away clients are told to wait, in the Retry-After header")
+    int limiter_retry_after() default 1;
+    
+    @AttributeDefinition(name="shard.mode", 
+            description = "Split resources into separate Jersey containers so a change only reloads "
+                    + "its own slice. NONE serves everything from one container, PATH gives each top "
+                    + "level path segment its own, BUNDLE groups segments by the bundles providing them")
+    ShardMode shard_mode() default ShardMode.NONE;
+    
+    @AttributeDefinition(name="discovery.mode", 
+            description = "Which services are looked at as JAX-RS targets. WILDCARD looks at every service, "
+                    + "MARKED only at services with osgi.jaxrs.resource=true, osgi.jaxrs.extension=true or "
+                    + "com.eclipsesource.jaxrs.publish=true, FILTER only at services matching discovery.filter")
+    DiscoveryMode discovery_mode() default DiscoveryMode.WILDCARD;
+    
+    @AttributeDefinition(name="discovery.filter", required = false,
+            description = "LDAP filter used when discovery.mode is FILTER")
+    String discovery_filter() default "";
+    
+    @AttributeDefinition(name="discovery.include.classes", required = false,
+            description = "If set, only services registered under one of these object classes are looked at")
+    String[] discovery_include_classes() default {};
+    
+    @AttributeDefinition(name="discovery.exclude.classes", required = false,
+            description = "Services registered under any of these object classes are never looked at")
+    String[] discovery_exclude_classes() default {};
+    
+    @AttributeDefinition(name="discovery.preclassify", 
+            description = "Load the implementation class of a service from its bundle and skip services that "
+                    + "are clearly not JAX-RS targets without getting (and activating) them")
+    boolean discovery_preclassify() default true;
+    
+    @AttributeDefinition(name="discovery.verdict.cache.size", 
+            description = "How many classes to remember the JAX-RS target check for, 0 turns the cache off")
+    int discovery_verdict_cache_size() default 4096;
+    
+    @AttributeDefinition(name="discovery.queue.capacity", 
+            description = "How many service events can wait to be looked at before the framework threads "
+                    + "delivering them are held up, 0 looks at them on the delivering thread. Keep this well "
+                    + "above the number of services, a held up thread can deadlock against component activation")
+    int discovery_queue_capacity() default 10000;
+    
+    @AttributeDefinition(name="discovery.scan.parallelism", 
+            description = "How many threads look at the services that already exist when the publisher starts, "
+                    + "0 uses one per processor")
+    int discovery_scan_parallelism() default 0;
 }
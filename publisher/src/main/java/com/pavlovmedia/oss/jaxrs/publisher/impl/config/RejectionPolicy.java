@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.config;
+
+/**
+ * What the publisher's async pool does with work once its threads are busy and
+ * its queue is full. These are the policies of {@link java.util.concurrent.ThreadPoolExecutor}
+ * that still end the request, dropping the work would leave its response hanging.
+ */
+public enum RejectionPolicy {
+    /** The work fails, which fails the request */
+    ABORT,
+    /** The work runs on the thread that handed it over */
+    CALLER_RUNS
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.config;
+
+/**
+ * How the publisher puts a new set of targets in front of Jersey.
+ */
+public enum ReloadMode {
+    /** The container reloads itself, requests during the reload wait or fail, this is the classic behavior */
+    IN_PLACE,
+    /** A new container is built next to the old one, which keeps serving until it is swapped out */
+    SWAP
+}
@@ -0,0 +1,13 @@
+package com.pavlovmedia.oss.jaxrs.publisher.impl.config;
+
+/**
+ * How the publisher splits its targets up into separate Jersey containers.
+ */
+public enum ShardMode {
+    /** Everything is served from one container, this is the classic behavior */
+    NONE,
+    /** Resources get a container per top level path segment */
+    PATH,
+    /** Resources are grouped into containers by the bundles that contribute them */
+    BUNDLE
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
+
+import java.lang.reflect.Method;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.HashEntityTag;
+
+/**
+ * Puts an {@link ETagFilter} on every GET resource method, one that hashes entities
+ * on the methods marked with {@link HashEntityTag} (or whose class is). It runs ahead of the
+ * response cache on the way in, so a version check can skip the cache lookup too.
+ * On the way out response filters run the other way around, so this runs after the
+ * cache has looked at the response; the cache picks the tag up when the entity is
+ * written and keeps it with the response, so hits are never hashed again.
+ */
+public class ETagFeature implements DynamicFeature {
+    private final ETagFilter hashing = new ETagFilter(true);
+    private final ETagFilter tagging = new ETagFilter(false);
+    
+    @Override
+    public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        Class<?> resource = resourceInfo.getResourceClass();
+        if (null == method || null == resource || !method.isAnnotationPresent(GET.class)) {
+            return;
+        }
+        
+        boolean hash = method.isAnnotationPresent(HashEntityTag.class) 
+                || resource.isAnnotationPresent(HashEntityTag.class);
+        context.register(hash ? hashing : tagging, Priorities.HEADER_DECORATOR);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.List;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+import org.glassfish.jersey.server.ContainerResponse;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.HashEntityTag;
+import com.pavlovmedia.oss.jaxrs.publisher.api.VersionedResource;
+
+/**
+ * Gives the 200 responses of a GET method a strong entity tag and answers a matching
+ * If-None-Match with a 304.
+ * <br /><br />
+ * If the resource is a {@link VersionedResource} the tag comes from its version and
+ * is checked before the method is called. A tag the method set itself is left as it is.
+ * <br /><br />
+ * Otherwise, for methods marked with {@link HashEntityTag}, the entity is serialized up
+ * front and hashed, and the serialized bytes are what get written, so the entity is only
+ * serialized once. This buffers the whole entity, and it is serialized by the writer alone,
+ * without the writer interceptors registered with Jersey, so it is only done for methods
+ * that ask for it. Entities that are streams or files are never hashed.
+ */
+public class ETagFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    /** The request property that carries a version tag from the request filter to the response filter */
+    static final String TAG_PROPERTY = ETagFilter.class.getName() + ".tag";
+    
+    private final boolean hashEntities;
+    
+    /**
+     * @param hashEntities true to hash entities that have no other tag
+     */
+    public ETagFilter(final boolean hashEntities) {
+        this.hashEntities = hashEntities;
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request) {
+        List<Object> matched = request.getUriInfo().getMatchedResources();
+        if (matched.isEmpty() || !(matched.get(0) instanceof VersionedResource)) {
+            return;
+        }
+        
+        String version = ((VersionedResource) matched.get(0)).getVersion(request);
+        if (null == version) {
+            return;
+        }
+        
+        URI uri = request.getUriInfo().getRequestUri();
+        EntityTag tag = EntityTags.of(version, uri.getRawPath(), uri.getRawQuery(), 
+                request.getHeaderString(HttpHeaders.ACCEPT));
+        if (EntityTags.matches(request.getHeaderString(HttpHeaders.IF_NONE_MATCH), tag)) {
+            request.abortWith(Response.notModified(tag).build());
+        } else {
+            request.setProperty(TAG_PROPERTY, tag);
+        }
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request, final ContainerResponseContext response) 
+            throws IOException {
+        if (response.getStatus() != Response.Status.OK.getStatusCode() || !response.hasEntity()) {
+            return;
+        }
+        
+        EntityTag tag = response.getEntityTag();
+        if (null == tag) {
+            tag = (EntityTag) request.getProperty(TAG_PROPERTY);
+        }
+        if (null == tag && hashEntities) {
+            tag = hash(response);
+        }
+        if (null == tag) {
+            return;
+        }
+        
+        response.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+        if (EntityTags.matches(request.getHeaderString(HttpHeaders.IF_NONE_MATCH), tag)) {
+            response.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+            response.setEntity(null);
+            response.getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+            response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        }
+    }
+    
+    /**
+     * Serializes the entity, puts the bytes in its place and hashes them
+     * 
+     * @return the tag of the entity, or null if it can't be hashed
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private EntityTag hash(final ContainerResponseContext response) throws IOException {
+        Object entity = response.getEntity();
+        MediaType type = response.getMediaType();
+        if (null == type || !(response instanceof ContainerResponse) || entity instanceof InputStream 
+                || entity instanceof Reader || entity instanceof File || entity instanceof ChunkedOutput) {
+            return null;
+        }
+        
+        // The writer Jersey would pick, without the interceptors that run around it
+        MessageBodyWriter writer = ((ContainerResponse) response).getRequestContext().getWorkers()
+                .getMessageBodyWriter(response.getEntityClass(), response.getEntityType(), 
+                        response.getEntityAnnotations(), type);
+        if (null == writer) {
+            return null;
+        }
+        
+        // A copy so the writer can't change the real headers
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putAll(response.getHeaders());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.writeTo(entity, response.getEntityClass(), response.getEntityType(), 
+                response.getEntityAnnotations(), type, headers, bytes);
+        
+        byte[] serialized = bytes.toByteArray();
+        response.setEntity(serialized, response.getEntityAnnotations(), type);
+        MessageDigest digest = EntityTags.digest();
+        digest.update(serialized);
+        return EntityTags.of(digest);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import javax.ws.rs.core.EntityTag;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.compression.AcceptEncoding;
+
+/**
+ * Builds strong entity tags and checks them against If-None-Match.
+ * <br /><br />
+ * Compression gives a tag a suffix with the coding (e.g. {@code "abc-gzip"}) since
+ * the compressed bytes are a different representation. The suffix is ignored when
+ * matching, so a client that got the compressed response still gets its 304.
+ */
+public final class EntityTags {
+    private EntityTags() {
+        // Static utility
+    }
+    
+    /**
+     * @return a digest to hash an entity with
+     */
+    public static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to have SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * @param digest the digest an entity was hashed with
+     * @return a strong tag for the hash
+     */
+    public static EntityTag of(final MessageDigest digest) {
+        return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()));
+    }
+    
+    /**
+     * @param parts what the representation depends on
+     * @return a strong tag for them
+     */
+    public static EntityTag of(final String... parts) {
+        MessageDigest digest = digest();
+        for (String part : parts) {
+            digest.update((null == part ? "" : part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return of(digest);
+    }
+    
+    /**
+     * @param tag a tag, as an {@link EntityTag} or a header value
+     * @param coding the content coding the representation was compressed with
+     * @return the tag of the compressed representation, or the tag as it was if it is weak
+     */
+    public static Object encoded(final Object tag, final String coding) {
+        EntityTag parsed = tag instanceof EntityTag ? (EntityTag) tag : EntityTag.valueOf(tag.toString());
+        return parsed.isWeak() ? tag : new EntityTag(parsed.getValue() + "-" + coding);
+    }
+    
+    /**
+     * Does the weak comparison If-None-Match calls for
+     * 
+     * @param ifNoneMatch the If-None-Match header, may be null
+     * @param tag the current tag
+     * @return true if the client already has the current representation
+     */
+    public static boolean matches(final String ifNoneMatch, final EntityTag tag) {
+        if (null == ifNoneMatch || null == tag) {
+            return false;
+        }
+        
+        String current = plain(tag.getValue());
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value)) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                    && current.equals(plain(value.substring(1, value.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /** Takes off the suffix compression adds */
+    private static String plain(final String value) {
+        for (String coding : new String[] { AcceptEncoding.GZIP, AcceptEncoding.DEFLATE }) {
+            if (value.endsWith("-" + coding)) {
+                return value.substring(0, value.length() - coding.length() - 1);
+            }
+        }
+        return value;
+    }
+}
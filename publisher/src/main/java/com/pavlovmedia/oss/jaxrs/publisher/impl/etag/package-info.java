@@ -0,0 +1,21 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package holds the entity tag support of the publisher. GET responses get
+ * a strong tag, from a version the resource supplies or from a hash of the
+ * entity, and a request that already has the current tag gets a 304.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointLimit;
+
+/**
+ * The concurrency limit of a single resource method, adjusted additive increase,
+ * multiplicative decrease (AIMD) style from the latency of the requests it lets through.
+ * <br /><br />
+ * Two moving averages of latency are kept, a slow one as the baseline and a quick one
+ * for what is happening now. While the recent latency stays within the tolerance of
+ * the baseline and the limit is actually being used, the limit grows by about one for
+ * every limit's worth of requests. When recent latency goes past the tolerance, or a
+ * request fails, the limit is multiplied by the backoff ratio, at most once per recent
+ * latency so a single slow spell doesn't cut it back over and over.
+ * <br /><br />
+ * Letting a request in is a compare and set on the in flight count, only finishing a
+ * request takes the lock.
+ */
+public class AdaptiveLimit {
+    /** The weight of a new sample in the baseline, as a shift: 1/256 */
+    private static final int BASELINE_SHIFT = 8;
+    /** The weight of a new sample in the recent latency, as a shift: 1/8 */
+    private static final int RECENT_SHIFT = 3;
+    
+    private final String path;
+    private final String verb;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    
+    /** The limit, only changed under this */
+    private volatile double limit;
+    
+    /** Latency averages, 0 until the first request finishes, guarded by this */
+    private long baselineNanos;
+    private long recentNanos;
+    
+    /** When the limit was last cut back, guarded by this */
+    private long lastBackoffNanos;
+    
+    /**
+     * @param path the path of the method
+     * @param verb the HTTP verb of the method
+     * @param initialLimit where the limit starts
+     * @param minLimit the limit never goes below this
+     * @param maxLimit the limit never goes above this
+     * @param backoffRatio what the limit is multiplied by when latency goes up, below 1
+     * @param tolerance how many times the baseline recent latency can be before it counts as slow
+     */
+    public AdaptiveLimit(final String path, final String verb, final int initialLimit, final int minLimit, 
+            final int maxLimit, final double backoffRatio, final double tolerance) {
+        this.path = path;
+        this.verb = verb;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+    
+    /**
+     * Lets a request in if there is room for it
+     * 
+     * @return true if the request can run, it has to be {@link #release(long, boolean) released} later
+     */
+    public boolean tryAcquire() {
+        int max = (int) limit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= max) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Marks a request as finished and adjusts the limit from how it went
+     * 
+     * @param latencyNanos how long the request took
+     * @param failed true if it ended with a server error
+     */
+    public void release(final long latencyNanos, final boolean failed) {
+        int running = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        
+        synchronized (this) {
+            if (0 == baselineNanos) {
+                baselineNanos = latencyNanos;
+                recentNanos = latencyNanos;
+            } else {
+                baselineNanos += (latencyNanos - baselineNanos) >> BASELINE_SHIFT;
+                recentNanos += (latencyNanos - recentNanos) >> RECENT_SHIFT;
+            }
+            
+            double current = limit;
+            if (failed || recentNanos > baselineNanos * tolerance) {
+                if (now - lastBackoffNanos >= recentNanos) {
+                    limit = Math.max(minLimit, current * backoffRatio);
+                    lastBackoffNanos = now;
+                }
+            } else if (running * 2 >= current) {
+                limit = Math.min(maxLimit, current + 1 / current);
+            }
+        }
+    }
+    
+    /**
+     * @return how this limit is doing
+     */
+    public EndpointLimit toLimit() {
+        long baseline;
+        long recent;
+        synchronized (this) {
+            baseline = baselineNanos;
+            recent = recentNanos;
+        }
+        return new EndpointLimit(path, verb, (int) limit, inFlight.get(), accepted.sum(), rejected.sum(), 
+                baseline, recent);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+/**
+ * Puts a {@link LimitFilter} on every resource method. The filter runs ahead of
+ * authentication, so shedding a request costs as little as possible.
+ * <br /><br />
+ * Methods that hold on to their connection, ones that take an {@link SseEventSink}
+ * or a {@link Suspended} response or return a {@link ChunkedOutput}, are left alone.
+ * They would hold a permit for as long as the client stays connected, and their
+ * latency says nothing about how loaded the method is.
+ */
+public class LimitFeature implements DynamicFeature {
+    private static final String JERSEY_PACKAGE = "org.glassfish.jersey.";
+    
+    private final LimitFilter filter;
+    
+    /**
+     * @param registry where the limits are kept
+     * @param retryAfterSeconds what to tell turned away clients to wait
+     */
+    public LimitFeature(final LimitRegistry registry, final int retryAfterSeconds) {
+        this.filter = new LimitFilter(registry, retryAfterSeconds);
+    }
+    
+    @Override
+    public void configure(final ResourceInfo resourceInfo, final FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        Class<?> resource = resourceInfo.getResourceClass();
+        // Jersey's own resources (like the WADL) are left alone
+        if (null == method || null == resource || resource.getName().startsWith(JERSEY_PACKAGE) 
+                || isLongLived(method)) {
+            return;
+        }
+        context.register(filter, Priorities.AUTHENTICATION - 1);
+    }
+    
+    private static boolean isLongLived(final Method method) {
+        if (ChunkedOutput.class.isAssignableFrom(method.getReturnType())
+                || Arrays.asList(method.getParameterTypes()).contains(SseEventSink.class)) {
+            return true;
+        }
+        for (Annotation[] annotations : method.getParameterAnnotations()) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof Suspended) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+
+/**
+ * Lets a request for a resource method through if its {@link AdaptiveLimit} has
+ * room, and turns it away with a 503 and a Retry-After right away if it doesn't.
+ * The limit is found from the templates the request matched, the same way as the
+ * request metrics, so methods reached through sub-resource locators get their full
+ * path. The request is released by the {@link LimitListener} once it is finished,
+ * however it finishes.
+ */
+public class LimitFilter implements ContainerRequestFilter {
+    /** The request property that carries the {@link Permit} to the listener */
+    static final String PERMIT_PROPERTY = LimitFilter.class.getName() + ".permit";
+    
+    private final LimitRegistry registry;
+    private final String retryAfter;
+    
+    /**
+     * @param registry where the limits are kept
+     * @param retryAfterSeconds what to tell turned away clients to wait
+     */
+    public LimitFilter(final LimitRegistry registry, final int retryAfterSeconds) {
+        this.registry = registry;
+        this.retryAfter = String.valueOf(Math.max(0, retryAfterSeconds));
+    }
+    
+    @Override
+    public void filter(final ContainerRequestContext request) {
+        AdaptiveLimit limit = registry.limitFor((ExtendedUriInfo) request.getUriInfo());
+        if (null == limit) {
+            return;
+        }
+        if (limit.tryAcquire()) {
+            request.setProperty(PERMIT_PROPERTY, new Permit(limit, System.nanoTime()));
+        } else {
+            request.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                    .build());
+        }
+    }
+    
+    /**
+     * A request that was let through, and when
+     */
+    static final class Permit {
+        final AdaptiveLimit limit;
+        final long start;
+        
+        Permit(final AdaptiveLimit limit, final long start) {
+            this.limit = limit;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Releases the requests {@link LimitFilter} let through. This listens for Jersey's
+ * finished event rather than filtering the response, since that comes for every
+ * request: ones that end in an exception nothing mapped, and async ones once their
+ * response is sent. It holds no state per request, so one listener does for all.
+ */
+public class LimitListener implements ApplicationEventListener, RequestEventListener {
+    private final LimitRegistry registry;
+    
+    /**
+     * @param registry where the limits are kept
+     */
+    public LimitListener(final LimitRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public void onEvent(final ApplicationEvent event) {
+        switch (event.getType()) {
+            case RELOAD_FINISHED:
+            case DESTROY_FINISHED:
+                registry.forgetMethods();
+                break;
+            default:
+                // Do nothing
+                break;
+        }
+    }
+    
+    @Override
+    public RequestEventListener onRequest(final RequestEvent requestEvent) {
+        return this;
+    }
+    
+    @Override
+    public void onEvent(final RequestEvent event) {
+        if (RequestEvent.Type.FINISHED != event.getType()) {
+            return;
+        }
+        
+        ContainerRequest request = event.getContainerRequest();
+        Object permit = null == request ? null : request.getProperty(LimitFilter.PERMIT_PROPERTY);
+        if (permit instanceof LimitFilter.Permit) {
+            request.removeProperty(LimitFilter.PERMIT_PROPERTY);
+            LimitFilter.Permit p = (LimitFilter.Permit) permit;
+            ContainerResponse response = event.getContainerResponse();
+            p.limit.release(System.nanoTime() - p.start, null == response || response.getStatus() >= 500);
+        }
+    }
+}
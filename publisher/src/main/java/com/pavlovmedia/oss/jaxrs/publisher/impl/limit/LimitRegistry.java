@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointLimit;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.metrics.EndpointMetricsRegistry;
+
+/**
+ * Holds the {@link AdaptiveLimit}s of a publisher. Like the request metrics they
+ * are kept by path and verb, so a limit carries on across reloads instead of
+ * starting over every time a service comes or goes, and Jersey's resource methods
+ * are mapped onto them the first time each one is matched. As with the metrics,
+ * methods reached through a sub-resource locator are not mapped, since Jersey
+ * shares them between every locator that returns the same class.
+ */
+public class LimitRegistry {
+    private static final Comparator<EndpointLimit> ORDER = Comparator
+            .comparing((EndpointLimit l) -> l.path)
+            .thenComparing(l -> l.verb);
+    
+    /** Limits by verb and path */
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+    
+    /** Jersey's resource methods, these are thrown away with the container */
+    private final Map<ResourceMethod, AdaptiveLimit> byMethod = new ConcurrentHashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    
+    /**
+     * @param initialLimit where each limit starts
+     * @param minLimit no limit goes below this
+     * @param maxLimit no limit goes above this
+     * @param backoffRatio what a limit is multiplied by when latency goes up
+     * @param tolerance how many times its baseline recent latency can be before it counts as slow
+     */
+    public LimitRegistry(final int initialLimit, final int minLimit, final int maxLimit, 
+            final double backoffRatio, final double tolerance) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+    }
+    
+    /**
+     * Finds the limit for the method a request was matched to. After the
+     * first request for a method this is a single map lookup, unless the
+     * method was reached through a locator.
+     * 
+     * @param uriInfo the matching information of the request
+     * @return the limit, or null if no resource method was matched
+     */
+    AdaptiveLimit limitFor(final ExtendedUriInfo uriInfo) {
+        ResourceMethod method = uriInfo.getMatchedResourceMethod();
+        if (null == method) {
+            return null;
+        }
+        boolean direct = uriInfo.getMatchedResourceLocators().isEmpty();
+        AdaptiveLimit limit = direct ? byMethod.get(method) : null;
+        if (null == limit) {
+            limit = limitFor(EndpointMetricsRegistry.pathOf(uriInfo.getMatchedTemplates()), method.getHttpMethod());
+            if (direct) {
+                byMethod.put(method, limit);
+            }
+        }
+        return limit;
+    }
+    
+    /**
+     * @param path the path of a resource method
+     * @param verb its HTTP verb
+     * @return its limit, made the first time it is asked for
+     */
+    AdaptiveLimit limitFor(final String path, final String verb) {
+        return limits.computeIfAbsent(verb + " " + path, 
+                k -> new AdaptiveLimit(path, verb, initialLimit, minLimit, maxLimit, backoffRatio, tolerance));
+    }
+    
+    /**
+     * Lets go of Jersey's resource methods, called when a container
+     * is reloaded or destroyed. They get mapped again as they are used.
+     */
+    void forgetMethods() {
+        byMethod.clear();
+    }
+    
+    /**
+     * @return every limit, by path and verb
+     */
+    public List<EndpointLimit> snapshot() {
+        return limits.values().stream()
+                .map(AdaptiveLimit::toLimit)
+                .sorted(ORDER)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package holds the concurrency limits of the publisher. Every resource
+ * method gets a limit on the requests it can run at once, which adapts to the
+ * latency it shows, and requests over the limit are shed with a 503 right away
+ * instead of waiting for a thread that a slow method is holding.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
+
+/**
+ * Holds the {@link MethodRecorder}s of a publisher. Recorders are kept by
+ * path and verb so they carry on across reloads, and Jersey's resource
+ * methods are mapped onto them the first time each one is matched.
+ * <br /><br />
+ * Jersey shares the resource methods of a class between every sub-resource
+ * locator that returns it, so a method reached through a locator is not
+ * mapped, its path is worked out from the matched templates every time.
+ */
+public class EndpointMetricsRegistry {
+    private static final Comparator<EndpointMetrics> ORDER = Comparator
+            .comparing((EndpointMetrics m) -> m.path)
+            .thenComparing(m -> m.verb);
+    
+    /** Recorders by verb and path */
+    private final Map<String, MethodRecorder> recorders = new ConcurrentHashMap<>();
+    
+    /** Jersey's resource methods matched without a locator, these are thrown away with the container */
+    private final Map<ResourceMethod, MethodRecorder> byMethod = new ConcurrentHashMap<>();
+    
+    /**
+     * Finds the recorder for the method a request was matched to. After the
+     * first request for a method this is a single map lookup, unless it was
+     * reached through a sub-resource locator.
+     * 
+     * @param uriInfo the matching information of the request
+     * @return the recorder, or null if no resource method was matched
+     */
+    MethodRecorder recorderFor(final ExtendedUriInfo uriInfo) {
+        ResourceMethod method = uriInfo.getMatchedResourceMethod();
+        if (null == method) {
+            return null;
+        }
+        boolean direct = uriInfo.getMatchedResourceLocators().isEmpty();
+        MethodRecorder recorder = direct ? byMethod.get(method) : null;
+        if (null == recorder) {
+            String path = pathOf(uriInfo.getMatchedTemplates());
+            String verb = method.getHttpMethod();
+            recorder = recorders.computeIfAbsent(verb + " " + path, k -> new MethodRecorder(path, verb));
+            if (direct) {
+                byMethod.put(method, recorder);
+            }
+        }
+        return recorder;
+    }
+    
+    /**
+     * The matched templates run from the method up to the resource class,
+     * so this puts them back together the other way around. Anything else
+     * kept per resource method uses this so it lines up with the metrics.
+     * 
+     * @param templates the matched templates of a request
+     * @return the path of the method that was matched
+     */
+    public static String pathOf(final List<UriTemplate> templates) {
+        String path = "";
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            path = EndpointInfo.joinPath(path, templates.get(i).getTemplate());
+        }
+        return path.isEmpty() ? "/" : path;
+    }
+    
+    /**
+     * Lets go of Jersey's resource methods, called when a container
+     * is reloaded or destroyed. They get mapped again as they are used.
+     */
+    void forgetMethods() {
+        byMethod.clear();
+    }
+    
+    /**
+     * @return the metrics of every method that has seen a request, by path and verb
+     */
+    public List<EndpointMetrics> snapshot() {
+        return recorders.values().stream()
+                .map(MethodRecorder::toMetrics)
+                .sorted(ORDER)
+                .collect(Collectors.toList());
+    }
+}
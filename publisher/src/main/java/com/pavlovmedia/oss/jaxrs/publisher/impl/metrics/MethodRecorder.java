@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
+
+/**
+ * Everything we keep about a single resource method
+ */
+public class MethodRecorder {
+    private final String path;
+    private final String verb;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    
+    /**
+     * @param path the full path of the method, built like {@link com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo}
+     * @param verb the HTTP verb of the method
+     */
+    public MethodRecorder(final String path, final String verb) {
+        this.path = path;
+        this.verb = verb;
+    }
+    
+    /** Called once a request has been matched to this method */
+    void begin() {
+        inFlight.increment();
+    }
+    
+    /**
+     * Called when a request that was matched to this method is done
+     * 
+     * @param nanos how long the whole request took
+     * @param failed true if this counts as an error
+     */
+    void end(final long nanos, final boolean failed) {
+        inFlight.decrement();
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+    
+    /**
+     * @return what this method has been doing so far
+     */
+    public EndpointMetrics toMetrics() {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        return new EndpointMetrics(path, verb, snapshot.getCount(), errors.sum(), 
+                Math.max(0, inFlight.sum()), snapshot.getTotal(), snapshot.getMean(), 
+                snapshot.getValueAt(0.5), snapshot.getValueAt(0.9), 
+                snapshot.getValueAt(0.99), snapshot.getValueAt(0.999), snapshot.getMax());
+    }
+}
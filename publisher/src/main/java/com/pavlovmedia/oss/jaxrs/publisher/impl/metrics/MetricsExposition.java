@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.jersey.process.Inflector;
+import org.glassfish.jersey.server.model.Resource;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
+
+/**
+ * Serves the endpoint metrics as text in the Prometheus exposition format,
+ * so they can be scraped straight off of the publisher.
+ */
+public final class MetricsExposition {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    
+    private MetricsExposition() {
+        // Static utility
+    }
+    
+    /**
+     * Builds a resource that serves the metrics. This is built by hand
+     * rather than annotated so the path can come from configuration.
+     * 
+     * @param path where to serve the metrics, relative to the publisher
+     * @param publisherPath the publisher path, used as a label
+     * @param metrics gets the current metrics
+     * @return a resource to register with Jersey
+     */
+    public static Resource resource(final String path, final String publisherPath, 
+            final Supplier<List<EndpointMetrics>> metrics) {
+        Resource.Builder builder = Resource.builder(path);
+        builder.addMethod("GET")
+            .produces(MediaType.TEXT_PLAIN_TYPE)
+            // Jersey can't work out the types of a lambda, so this has to be a class
+            .handledBy(new Inflector<ContainerRequestContext, String>() {
+                @Override
+                public String apply(final ContainerRequestContext context) {
+                    return format(publisherPath, metrics.get());
+                }
+            });
+        return builder.build();
+    }
+    
+    /**
+     * @param publisherPath the publisher path, used as a label
+     * @param metrics the metrics to write out
+     * @return the metrics in the Prometheus text format
+     */
+    public static String format(final String publisherPath, final List<EndpointMetrics> metrics) {
+        StringBuilder sb = new StringBuilder();
+        
+        sb.append("# HELP jaxrs_requests_total Requests handled by a resource method\n");
+        sb.append("# TYPE jaxrs_requests_total counter\n");
+        metrics.forEach(m -> line(sb, "jaxrs_requests_total", publisherPath, m, null, m.requests));
+        
+        sb.append("# HELP jaxrs_errors_total Requests that ended with a 5xx or an unmapped exception\n");
+        sb.append("# TYPE jaxrs_errors_total counter\n");
+        metrics.forEach(m -> line(sb, "jaxrs_errors_total", publisherPath, m, null, m.errors));
+        
+        sb.append("# HELP jaxrs_in_flight Requests running right now\n");
+        sb.append("# TYPE jaxrs_in_flight gauge\n");
+        metrics.forEach(m -> line(sb, "jaxrs_in_flight", publisherPath, m, null, m.inFlight));
+        
+        sb.append("# HELP jaxrs_request_duration_seconds Time taken by requests\n");
+        sb.append("# TYPE jaxrs_request_duration_seconds summary\n");
+        metrics.forEach(m -> {
+            line(sb, "jaxrs_request_duration_seconds", publisherPath, m, "0.5", m.p50Nanos / NANOS_PER_SECOND);
+            line(sb, "jaxrs_request_duration_seconds", publisherPath, m, "0.9", m.p90Nanos / NANOS_PER_SECOND);
+            line(sb, "jaxrs_request_duration_seconds", publisherPath, m, "0.99", m.p99Nanos / NANOS_PER_SECOND);
+            line(sb, "jaxrs_request_duration_seconds", publisherPath, m, "0.999", m.p999Nanos / NANOS_PER_SECOND);
+            line(sb, "jaxrs_request_duration_seconds_sum", publisherPath, m, null, 
+                    m.totalNanos / NANOS_PER_SECOND);
+            line(sb, "jaxrs_request_duration_seconds_count", publisherPath, m, null, m.requests);
+        });
+        
+        return sb.toString();
+    }
+    
+    private static void line(final StringBuilder sb, final String name, final String publisherPath, 
+            final EndpointMetrics metrics, final String quantile, final Number value) {
+        sb.append(name)
+            .append("{publisher=\"").append(escape(publisherPath))
+            .append("\",verb=\"").append(escape(metrics.verb))
+            .append("\",path=\"").append(escape(metrics.path)).append('"');
+        if (null != quantile) {
+            sb.append(",quantile=\"").append(quantile).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+    
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
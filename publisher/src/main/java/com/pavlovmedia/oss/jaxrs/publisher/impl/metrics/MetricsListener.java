@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * This is registered with every Jersey container of a publisher and times
+ * each request against the resource method it matched.
+ * <br /><br />
+ * Jersey wants a listener object per request, so those are pooled and
+ * handed back once the request is done. That way a busy publisher reuses
+ * the same few objects instead of allocating on every request.
+ */
+public class MetricsListener implements ApplicationEventListener {
+    private static final int POOL_SIZE = 1024;
+    
+    private final EndpointMetricsRegistry registry;
+    private final BlockingQueue<RequestTimer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    
+    /**
+     * @param registry where the recorders live
+     */
+    public MetricsListener(final EndpointMetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public void onEvent(final ApplicationEvent event) {
+        switch (event.getType()) {
+            case RELOAD_FINISHED:
+            case DESTROY_FINISHED:
+                registry.forgetMethods();
+                break;
+            default:
+                // Do nothing
+                break;
+        }
+    }
+    
+    @Override
+    public RequestEventListener onRequest(final RequestEvent requestEvent) {
+        RequestTimer timer = pool.poll();
+        if (null == timer) {
+            timer = new RequestTimer();
+        }
+        timer.start = System.nanoTime();
+        return timer;
+    }
+    
+    /**
+     * Follows a single request, then goes back in the pool
+     */
+    private final class RequestTimer implements RequestEventListener {
+        private long start;
+        private MethodRecorder recorder;
+        
+        @Override
+        public void onEvent(final RequestEvent event) {
+            switch (event.getType()) {
+                case REQUEST_MATCHED:
+                    recorder = registry.recorderFor(event.getUriInfo());
+                    if (null != recorder) {
+                        recorder.begin();
+                    }
+                    break;
+                case FINISHED:
+                    if (null != recorder) {
+                        ContainerResponse response = event.getContainerResponse();
+                        boolean failed = null == response || response.getStatus() >= 500;
+                        recorder.end(System.nanoTime() - start, failed);
+                        recorder = null;
+                    }
+                    pool.offer(this);
+                    break;
+                default:
+                    // Do nothing
+                    break;
+            }
+        }
+    }
+}
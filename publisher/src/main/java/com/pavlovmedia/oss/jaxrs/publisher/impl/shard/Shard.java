@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.ws.rs.core.Application;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+/**
+ * A single slice of the published resources. Each shard has its own
+ * Jersey container that can be served from one or more aliases, and
+ * is only reloaded when its own set of singletons changes.
+ */
+public class Shard {
+    private volatile String key;
+    private final String rootPath;
+    private final HttpService httpService;
+    private final ShardApplication application;
+    private final ServletContainer container;
+    private final Function<Application, ResourceConfig> configFactory;
+    
+    /** The aliases this shard is registered under */
+    private final Set<String> aliases = new HashSet<>();
+    
+    /** What we last handed to Jersey */
+    private Set<Object> singletons = Collections.emptySet();
+    
+    /** Set once the HttpService has initialized our container, guarded by this */
+    private boolean initialized;
+    
+    /**
+     * @param key the key of this shard, used for logging
+     * @param rootPath the path of the publisher this shard is part of
+     * @param httpService the service to register aliases with
+     * @param properties the Jersey properties to use
+     * @param configFactory turns our application into a Jersey configuration
+     */
+    public Shard(final String key, final String rootPath, final HttpService httpService, 
+            final Map<String, Object> properties, final Function<Application, ResourceConfig> configFactory) {
+        this.key = key;
+        this.rootPath = rootPath;
+        this.httpService = httpService;
+        this.application = new ShardApplication(properties);
+        this.configFactory = configFactory;
+        this.container = new ServletContainer(configFactory.apply(application));
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * Gives this shard a new key, for when the set of bundles behind
+     * its segments changed but the shard itself can be kept.
+     * 
+     * @param key the new key
+     */
+    void setKey(final String key) {
+        this.key = key;
+    }
+    
+    public Set<String> getAliases() {
+        return Collections.unmodifiableSet(aliases);
+    }
+    
+    public Set<Object> getSingletons() {
+        return singletons;
+    }
+    
+    ServletContainer getContainer() {
+        return container;
+    }
+    
+    /**
+     * Called by each {@link ShardServlet} as it is registered, only
+     * the first one really initializes the container.
+     * 
+     * @param config the servlet config from the HttpService
+     * @throws ServletException if Jersey fails to start
+     */
+    synchronized void init(final ServletConfig config) throws ServletException {
+        if (!initialized) {
+            container.init(config);
+            initialized = true;
+        }
+    }
+    
+    /**
+     * Hands a new set of singletons to this shard, reloading the
+     * container only if something actually changed.
+     * 
+     * @param newSingletons everything this shard should serve
+     * @return true if the shard was reloaded
+     */
+    public boolean update(final Set<Object> newSingletons) {
+        if (newSingletons.equals(singletons)) {
+            return false;
+        }
+        
+        singletons = newSingletons;
+        application.setSingletons(newSingletons);
+        synchronized (this) {
+            // If we are not up yet, the init will pick up the new set
+            if (initialized) {
+                container.reload(configFactory.apply(application));
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Registers and unregisters aliases so that this shard is served
+     * from exactly the aliases passed in.
+     * 
+     * @param wanted the aliases this shard should be registered under
+     * @return the aliases that the HttpService would not let us register
+     */
+    public Set<String> updateAliases(final Set<String> wanted) {
+        new ArrayList<>(aliases).stream()
+            .filter(alias -> !wanted.contains(alias))
+            .forEach(this::unregister);
+        
+        Set<String> failed = new HashSet<>();
+        for (String alias : wanted) {
+            if (!aliases.contains(alias)) {
+                try {
+                    Hashtable<String,String> jerseyParams = new Hashtable<>();
+                    jerseyParams.put("javax.ws.rs.Application", ShardApplication.class.getName());
+                    httpService.registerServlet(alias, new ShardServlet(this, rootPath), jerseyParams, null);
+                    aliases.add(alias);
+                } catch (ServletException | NamespaceException e) {
+                    failed.add(alias);
+                }
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * Takes this shard out of service and shuts down its container
+     */
+    public void dispose() {
+        new ArrayList<>(aliases).forEach(this::unregister);
+        synchronized (this) {
+            if (initialized) {
+                container.destroy();
+                initialized = false;
+            }
+        }
+    }
+    
+    private void unregister(final String alias) {
+        aliases.remove(alias);
+        try {
+            httpService.unregister(alias);
+        } catch (IllegalArgumentException e) {
+            // The HttpService already let go of it
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.core.Application;
+
+/**
+ * This is the JAX-RS application behind a single shard. It is just a
+ * holder for the slice of singletons the shard serves plus the same
+ * properties the publisher itself hands to Jersey.
+ */
+public class ShardApplication extends Application {
+    private final Map<String, Object> properties;
+    private volatile Set<Object> singletons = Collections.emptySet();
+    
+    public ShardApplication(final Map<String, Object> properties) {
+        this.properties = properties;
+    }
+    
+    /**
+     * Swaps in a new set of singletons, this only takes effect for
+     * Jersey on the next reload.
+     * 
+     * @param singletons the objects this shard serves
+     */
+    void setSingletons(final Set<Object> singletons) {
+        this.singletons = Collections.unmodifiableSet(singletons);
+    }
+    
+    @Override
+    public Set<Object> getSingletons() {
+        return singletons;
+    }
+    
+    @Override
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Application;
+
+import org.glassfish.jersey.server.ResourceConfig;
+
+import org.osgi.service.http.HttpService;
+import org.osgi.service.log.Logger;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.JaxReference;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ShardMode;
+
+/**
+ * This splits the targets of a publisher up into {@link Shard}s. Resources
+ * are grouped by the first segment of their {@link Path}, and each segment
+ * is served from its own alias under the publisher path. Depending on the
+ * {@link ShardMode} segments either get a shard each, or segments that are
+ * provided by the same set of bundles share one. When the bundles behind
+ * a shard change it keeps its container and is reloaded under a new key.
+ * <br /><br />
+ * Providers and features apply to everything, so they are handed to every
+ * shard, which also means a change to one of them reloads all shards.
+ * <br /><br />
+ * Resources that can't get an alias of their own (a root path, a template
+ * in the first segment, or an alias the HttpService refuses) are served by
+ * the root shard that sits on the publisher path itself. A refused alias is
+ * tried again the next time the set of segments changes.
+ */
+public class ShardManager implements AutoCloseable {
+    /** The segment and shard key used for the root of the publisher */
+    private static final String ROOT = "";
+    
+    private final HttpService httpService;
+    private final String rootPath;
+    private final ShardMode mode;
+    private final Supplier<Map<String, Object>> properties;
+    private final BiFunction<Application, Boolean, ResourceConfig> configFactory;
+    private final Logger logger;
+    
+    /** The live shards by key, guarded by this */
+    private final Map<String, Shard> shards = new HashMap<>();
+    
+    /** 
+     * Segments the HttpService has refused an alias for, guarded by this. They
+     * are tried again whenever the set of segments changes.
+     */
+    private final Set<String> blockedSegments = new HashSet<>();
+    
+    /** The segments of the last update, guarded by this */
+    private Set<String> lastSegments = Collections.emptySet();
+    
+    /**
+     * @param httpService the service to register shards with
+     * @param rootPath the path of the publisher
+     * @param mode how to group segments into shards
+     * @param properties gets the Jersey properties for a new shard
+     * @param configFactory turns a shard application into a Jersey configuration, it
+     *   is also told if this is the root shard
+     * @param logger where to log
+     */
+    public ShardManager(final HttpService httpService, final String rootPath, final ShardMode mode,
+            final Supplier<Map<String, Object>> properties, 
+            final BiFunction<Application, Boolean, ResourceConfig> configFactory, final Logger logger) {
+        this.httpService = httpService;
+        this.rootPath = rootPath;
+        this.mode = mode;
+        this.properties = properties;
+        this.configFactory = configFactory;
+        this.logger = logger;
+    }
+    
+    /**
+     * Lays out the shards for the current set of targets. Shards whose
+     * slice did not change are left alone, new ones are registered and
+     * ones that are empty now are taken down.
+     * 
+     * @param references everything the publisher is tracking
+     */
+    public synchronized void update(final Collection<JaxReference> references) {
+        Set<Object> shared = new HashSet<>();
+        Map<String, Set<JaxReference>> bySegment = new HashMap<>();
+        bySegment.put(ROOT, new HashSet<>());
+        
+        Map<JaxReference, String> segments = new HashMap<>();
+        references.forEach(ref -> {
+            Optional<String> segment = segmentOf(ref.getJaxObject());
+            if (segment.isPresent()) {
+                segments.put(ref, segment.get());
+            } else {
+                shared.add(ref.getJaxObject());
+            }
+        });
+        
+        // A refused alias may have been taken by something that is gone by now, so
+        // give them another go when the layout changes
+        Set<String> currentSegments = new HashSet<>(segments.values());
+        if (!currentSegments.equals(lastSegments)) {
+            blockedSegments.clear();
+            lastSegments = currentSegments;
+        }
+        segments.forEach((ref, segment) -> bySegment.computeIfAbsent(
+                blockedSegments.contains(segment) ? ROOT : segment, k -> new HashSet<>()).add(ref));
+        
+        // Group the segments into shards
+        Map<String, Set<String>> wantedAliases = new HashMap<>();
+        Map<String, Set<Object>> wantedSingletons = new HashMap<>();
+        bySegment.forEach((segment, refs) -> {
+            String key = keyOf(segment, refs);
+            wantedAliases.computeIfAbsent(key, k -> new HashSet<>()).add(aliasOf(segment));
+            Set<Object> singletons = wantedSingletons.computeIfAbsent(key, k -> new HashSet<>(shared));
+            refs.forEach(ref -> singletons.add(ref.getJaxObject()));
+        });
+        
+        // A shard whose segments are now provided by a different set of bundles
+        // keeps serving them under its new key, so only it gets reloaded
+        rekey(wantedAliases);
+        
+        // Take down the shards nobody needs anymore
+        Iterator<Entry<String, Shard>> it = shards.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, Shard> entry = it.next();
+            if (!wantedAliases.containsKey(entry.getKey())) {
+                logger.debug(String.format("Removing shard %s", entry.getKey()));
+                entry.getValue().dispose();
+                it.remove();
+            }
+        }
+        
+        int reloaded = 0;
+        Set<String> failedSegments = new HashSet<>();
+        for (Entry<String, Set<String>> entry : wantedAliases.entrySet()) {
+            String key = entry.getKey();
+            Shard shard = shards.computeIfAbsent(key, 
+                    k -> new Shard(k, rootPath, httpService, properties.get(), 
+                            app -> configFactory.apply(app, ROOT.equals(k))));
+            if (shard.update(wantedSingletons.get(key))) {
+                reloaded++;
+            }
+            shard.updateAliases(entry.getValue()).forEach(alias -> {
+                logger.error(String.format("Unable to register shard %s at %s", key, alias));
+                failedSegments.add(segmentOfAlias(alias));
+            });
+        }
+        
+        logger.debug(String.format("Updated %d of %d shards", reloaded, shards.size()));
+        
+        // Anything that could not get its own alias gets folded into
+        // the root shard, one more pass will take care of that
+        failedSegments.remove(ROOT);
+        if (!failedSegments.isEmpty() && blockedSegments.addAll(failedSegments)) {
+            update(references);
+        }
+    }
+    
+    /**
+     * @return the live shards by key
+     */
+    public synchronized Map<String, Shard> getShards() {
+        return Collections.unmodifiableMap(new HashMap<>(shards));
+    }
+    
+    /**
+     * Takes down all of the shards
+     */
+    @Override
+    public synchronized void close() {
+        shards.values().forEach(Shard::dispose);
+        shards.clear();
+    }
+    
+    /**
+     * Figures out the first segment of the path of a resource.
+     * 
+     * @param target the object to look at
+     * @return the segment, {@link #ROOT} if it belongs in the root shard, or
+     *   {@link Optional#empty()} if this is not a resource at all
+     */
+    private Optional<String> segmentOf(final Object target) {
+        Path path = target.getClass().getDeclaredAnnotation(Path.class);
+        if (null == path) {
+            return Optional.empty();
+        }
+        
+        String value = path.value();
+        while (value.startsWith("/")) {
+            value = value.substring(1);
+        }
+        int slash = value.indexOf('/');
+        String segment = slash < 0 ? value : value.substring(0, slash);
+        
+        // Templates and regular expressions can't be turned into an alias
+        if (segment.contains("{")) {
+            return Optional.of(ROOT);
+        }
+        return Optional.of(segment);
+    }
+    
+    /**
+     * Moves shards that are no longer wanted under their key over to a new
+     * key that wants one of the aliases they already serve, instead of
+     * disposing of them and starting a new container for the same alias.
+     * 
+     * @param wantedAliases the aliases wanted by each shard key
+     */
+    private void rekey(final Map<String, Set<String>> wantedAliases) {
+        if (ShardMode.PATH == mode) {
+            return;
+        }
+        
+        for (Entry<String, Set<String>> entry : wantedAliases.entrySet()) {
+            String key = entry.getKey();
+            if (shards.containsKey(key)) {
+                continue;
+            }
+            shards.values().stream()
+                .filter(shard -> !wantedAliases.containsKey(shard.getKey()))
+                .filter(shard -> !Collections.disjoint(shard.getAliases(), entry.getValue()))
+                .findFirst()
+                .ifPresent(shard -> {
+                    logger.debug(String.format("Moving shard %s to %s", shard.getKey(), key));
+                    shards.remove(shard.getKey());
+                    shard.setKey(key);
+                    shards.put(key, shard);
+                });
+        }
+    }
+    
+    private String keyOf(final String segment, final Set<JaxReference> refs) {
+        if (ROOT.equals(segment) || ShardMode.PATH == mode) {
+            return segment;
+        }
+        
+        // Segments provided by the same set of bundles share a shard
+        return refs.stream()
+                .map(ref -> ref.bundleId)
+                .collect(Collectors.toCollection(TreeSet::new))
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "bundles:", ""));
+    }
+    
+    private String aliasOf(final String segment) {
+        if (ROOT.equals(segment)) {
+            return rootPath;
+        }
+        return "/".equals(rootPath) ? "/" + segment : rootPath + "/" + segment;
+    }
+    
+    private String segmentOfAlias(final String alias) {
+        if (rootPath.equals(alias)) {
+            return ROOT;
+        }
+        return alias.substring(alias.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
+
+import java.io.IOException;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This is what actually gets registered with the HttpService for each
+ * alias of a shard. It hands requests over to the container of its
+ * shard, but first rewrites the request so Jersey still sees the
+ * publisher root as the servlet path. That way a resource with
+ * {@literal @}Path("foo") served from the alias /services/foo still
+ * matches /services/foo/bar.
+ */
+public class ShardServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+    
+    private final transient Shard shard;
+    private final String rootServletPath;
+    
+    /**
+     * @param shard the shard we serve for
+     * @param rootPath the path of the publisher this shard is part of
+     */
+    public ShardServlet(final Shard shard, final String rootPath) {
+        this.shard = shard;
+        // A servlet mounted at the root reports an empty servlet path
+        this.rootServletPath = "/".equals(rootPath) ? "" : rootPath;
+    }
+    
+    @Override
+    public void init(final ServletConfig config) throws ServletException {
+        super.init(config);
+        shard.init(config);
+    }
+    
+    @Override
+    protected void service(final HttpServletRequest req, final HttpServletResponse resp)
+            throws ServletException, IOException {
+        shard.getContainer().service(new RootedRequest(req, rootServletPath), resp);
+    }
+    
+    /**
+     * Unregistering a single alias must not take down the container,
+     * that is handled by {@link Shard#dispose()}
+     */
+    @Override
+    public void destroy() {
+        // Nothing to do here
+    }
+    
+    /**
+     * Moves the part of the servlet path below the publisher root
+     * over to the path info.
+     */
+    private static class RootedRequest extends HttpServletRequestWrapper {
+        private final String servletPath;
+        private final String pathInfo;
+        
+        RootedRequest(final HttpServletRequest request, final String rootServletPath) {
+            super(request);
+            String originalPath = request.getServletPath();
+            String originalInfo = null == request.getPathInfo() ? "" : request.getPathInfo();
+            
+            this.servletPath = rootServletPath;
+            if (originalPath.startsWith(rootServletPath)) {
+                this.pathInfo = originalPath.substring(rootServletPath.length()) + originalInfo;
+            } else {
+                this.pathInfo = originalInfo;
+            }
+        }
+        
+        @Override
+        public String getServletPath() {
+            return servletPath;
+        }
+        
+        @Override
+        public String getPathInfo() {
+            return pathInfo.isEmpty() ? null : pathInfo;
+        }
+    }
+}
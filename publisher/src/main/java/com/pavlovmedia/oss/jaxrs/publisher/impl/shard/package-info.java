@@ -0,0 +1,23 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package holds the optional sharding support for the publisher.
+ * When it is turned on resources are split across several Jersey
+ * containers, each registered with the {@link org.osgi.service.http.HttpService}
+ * on its own, so that a service change only reloads the container
+ * it belongs to.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.swagger.models.Swagger;
+import io.swagger.util.Json;
+import io.swagger.util.Yaml;
+
+/**
+ * A swagger document that is already serialized, as JSON and as YAML and each
+ * of those both plain and gzipped, so serving it is just writing out bytes.
+ */
+public final class SwaggerDocument {
+    /** The media type the YAML document is served as */
+    public static final MediaType APPLICATION_YAML_TYPE = new MediaType("application", "yaml");
+    
+    private final Representation json;
+    private final Representation yaml;
+    private final long builtMillis = System.currentTimeMillis();
+    
+    private SwaggerDocument(final Representation json, final Representation yaml) {
+        this.json = json;
+        this.yaml = yaml;
+    }
+    
+    /**
+     * Serializes a swagger model
+     * 
+     * @param swagger the model
+     * @param pretty true to pretty print
+     * @return the serialized document
+     * @throws IOException if the model can't be serialized
+     */
+    public static SwaggerDocument of(final Swagger swagger, final boolean pretty) throws IOException {
+        return new SwaggerDocument(
+                Representation.of(serialize(Json.mapper(), swagger, pretty), MediaType.APPLICATION_JSON_TYPE),
+                Representation.of(serialize(Yaml.mapper(), swagger, pretty), APPLICATION_YAML_TYPE));
+    }
+    
+    private static byte[] serialize(final ObjectMapper mapper, final Swagger swagger, final boolean pretty) 
+            throws IOException {
+        return pretty 
+                ? mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(swagger)
+                : mapper.writeValueAsBytes(swagger);
+    }
+    
+    /**
+     * @param type json or yaml, as in the listing path
+     * @return the document in that format
+     */
+    public Representation get(final String type) {
+        return "yaml".equalsIgnoreCase(type) ? yaml : json;
+    }
+    
+    /**
+     * @return when this was built
+     */
+    public long getBuiltMillis() {
+        return builtMillis;
+    }
+    
+    /**
+     * One format of the document. Each form has its own strong ETag made from
+     * a hash of its bytes, so the same document always gets the same tag.
+     */
+    public static final class Representation {
+        private final MediaType type;
+        private final byte[] identity;
+        private final byte[] gzipped;
+        private final EntityTag identityTag;
+        private final EntityTag gzippedTag;
+        
+        private Representation(final MediaType type, final byte[] identity, final byte[] gzipped, 
+                final String hash) {
+            this.type = type;
+            this.identity = identity;
+            this.gzipped = gzipped;
+            this.identityTag = new EntityTag(hash);
+            this.gzippedTag = new EntityTag(hash + "-gzip");
+        }
+        
+        static Representation of(final byte[] identity, final MediaType type) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(identity.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(identity);
+            }
+            return new Representation(type, identity, buffer.toByteArray(), hash(identity));
+        }
+        
+        private static String hash(final byte[] bytes) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+            } catch (NoSuchAlgorithmException e) {
+                // Every JVM is required to have SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        public MediaType getType() {
+            return type;
+        }
+        
+        /**
+         * @param gzip true for the gzipped bytes
+         * @return the bytes, these are shared and must not be changed
+         */
+        public byte[] getBytes(final boolean gzip) {
+            return gzip ? gzipped : identity;
+        }
+        
+        /**
+         * @param gzip true for the tag of the gzipped bytes
+         * @return the strong entity tag of that form
+         */
+        public EntityTag getTag(final boolean gzip) {
+            return gzip ? gzippedTag : identityTag;
+        }
+    }
+}
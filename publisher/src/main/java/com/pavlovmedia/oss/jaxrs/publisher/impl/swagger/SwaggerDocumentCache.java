@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Holds the current {@link SwaggerDocument} and rebuilds it in the background
+ * when it is invalidated. Until the new one is ready requests keep getting the
+ * one that was there, so nobody waits on the swagger reader after the first build.
+ * <br /><br />
+ * Invalidations that come in while a rebuild is waiting to start are merged into it,
+ * and builds run one at a time so a newer document is never replaced by an older one.
+ */
+public class SwaggerDocumentCache implements AutoCloseable {
+    private final Callable<SwaggerDocument> generator;
+    private final Consumer<Exception> onFailure;
+    private final ExecutorService executor;
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final AtomicLong builds = new AtomicLong();
+    private volatile long lastBuildNanos;
+    private volatile SwaggerDocument current;
+    
+    /**
+     * @param generator builds a new document
+     * @param onFailure told when a build fails, the previous document is kept
+     */
+    public SwaggerDocumentCache(final Callable<SwaggerDocument> generator, final Consumer<Exception> onFailure) {
+        this.generator = generator;
+        this.onFailure = onFailure;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Swagger document");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Notes that the document is out of date and starts a rebuild, this never blocks
+     */
+    public void invalidate() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::rebuild);
+            } catch (RejectedExecutionException e) {
+                // We are closed, there is nobody left to build for
+                rebuildPending.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Gets the current document. If there isn't one yet this waits for the
+     * build that is under way.
+     * 
+     * @return the document, or null if it could not be built
+     */
+    public SwaggerDocument get() {
+        SwaggerDocument document = current;
+        if (null != document) {
+            return document;
+        }
+        
+        try {
+            // This runs after any build that is already queued
+            return executor.submit(() -> current).get();
+        } catch (RejectedExecutionException | ExecutionException e) {
+            return current;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return current;
+        }
+    }
+    
+    private void rebuild() {
+        // Cleared before building, so a change that comes in while we build gets a build of its own
+        rebuildPending.set(false);
+        long start = System.nanoTime();
+        try {
+            current = generator.call();
+            builds.incrementAndGet();
+            lastBuildNanos = System.nanoTime() - start;
+        } catch (Exception e) {
+            onFailure.accept(e);
+        }
+    }
+    
+    /**
+     * @return the number of documents built
+     */
+    public long getBuilds() {
+        return builds.get();
+    }
+    
+    /**
+     * @return how long the last successful build took
+     */
+    public long getLastBuildNanos() {
+        return lastBuildNanos;
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -15,8 +15,13 @@
  */
 package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
 
+import java.io.IOException;
 import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import javax.servlet.ServletConfig;
@@ -28,6 +33,7 @@ import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.log.Logger;
@@ -38,8 +44,6 @@ import io.swagger.annotations.Api;
 import io.swagger.config.SwaggerConfig;
 import io.swagger.jaxrs.config.DefaultJaxrsScanner;
 import io.swagger.jaxrs.config.SwaggerScannerLocator;
-import io.swagger.jaxrs.listing.ApiListingResource;
-import io.swagger.jaxrs.listing.SwaggerSerializers;
 import io.swagger.models.Contact;
 import io.swagger.models.Info;
 import io.swagger.models.License;
@@ -48,6 +52,12 @@ import io.swagger.models.Swagger;
 /**
  * This is a service that sets up all the plumbing needed to serve
  * swagger documents from JAX-RS.
+ * <br /><br />
+ * Every publisher gets a document of its own, served by a listing resource that is
+ * tied to it with {@link Publisher#PUBLISHER_PATH}. Each document is generated once
+ * and kept serialized in a {@link SwaggerDocumentCache}. It is rebuilt in the background
+ * whenever its publisher reloads, the reader listeners change or the swagger configuration
+ * changes. Rebuilding only reads the classes that changed, see {@link SwaggerFragments}.
  * 
  * @author Shawn Dempsay {@literal <sdempsay@pavlovmedia.com>}
  *
@@ -62,17 +72,16 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
     @Reference
     HttpService httpService;
     
-    @Reference(policy=ReferencePolicy.DYNAMIC)
     volatile SwaggerConfiguration config;
     
-    @Reference
-    Publisher publisher;
-    
     @Reference(service = LoggerFactory.class)
     Logger logger;
     
-    private ServiceRegistration<?> apiResource;
-    private ServiceRegistration<?> serializerResource;
+    /** The documents of each publisher we are bound to */
+    private final Map<Publisher, PublisherDocuments> publishers = new ConcurrentHashMap<>();
+    
+    /** Set while we are active, publishers bound before that are started by activate */
+    private volatile BundleContext context;
     
     @Activate
     /**
@@ -86,8 +95,8 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
         // Add our scanner as the default so it will just fire
         SwaggerScannerLocator.getInstance().putScanner(SCANNER_ID, this);
         
-        serializerResource = context.registerService(SwaggerSerializers.class.getName(), new SwaggerSerializers(), null);
-        apiResource = context.registerService(ApiListingResource.class.getName(), new ApiListingResource(), null);
+        this.context = context;
+        publishers.values().forEach(docs -> docs.start(context));
     }
     
     @Deactivate
@@ -95,24 +104,85 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
         // Clean up our scanner
         SwaggerScannerLocator.getInstance().putScanner(SCANNER_ID, new DefaultJaxrsScanner());
         
-        apiResource.unregister();
-        serializerResource.unregister();
+        context = null;
+        publishers.values().forEach(PublisherDocuments::stop);
+    }
+    
+    @Reference(name="publisher", cardinality=ReferenceCardinality.MULTIPLE, policy=ReferencePolicy.DYNAMIC)
+    protected void bindPublisher(final Publisher publisher) {
+        // An inhibited publisher never started, so there is nothing to document
+        if (null == publisher.getPath()) {
+            return;
+        }
+        PublisherDocuments docs = new PublisherDocuments(publisher);
+        publishers.put(publisher, docs);
+        BundleContext current = context;
+        if (null != current) {
+            docs.start(current);
+        }
+    }
+    
+    protected void unbindPublisher(final Publisher publisher) {
+        PublisherDocuments docs = publishers.remove(publisher);
+        if (null != docs) {
+            docs.stop();
+        }
+    }
+    
+    @Reference(name="config", policy=ReferencePolicy.DYNAMIC, updated="updatedConfig")
+    protected void bindConfig(final SwaggerConfiguration config) {
+        this.config = config;
+        invalidate();
+    }
+    
+    protected void updatedConfig(final SwaggerConfiguration config) {
+        invalidate();
+    }
+    
+    protected void unbindConfig(final SwaggerConfiguration config) {
+        // A replacement is bound before the old one goes, so only forget the one we have
+        if (this.config == config) {
+            this.config = null;
+        }
     }
     
+    private void invalidate() {
+        publishers.values().forEach(PublisherDocuments::invalidate);
+    }
+    
+    /**
+     * Swagger's own scanner has no idea which publisher it is working for,
+     * so it gets the classes of all of them.
+     */
     @Override
     public Set<Class<?>> classesFromContext(final Application app, final ServletConfig sc) {
+        Set<Class<?>> ret = new HashSet<>();
+        publishers.keySet().forEach(publisher -> {
+            ret.addAll(apiClasses(publisher));
+            ret.addAll(publisher.getReaderListeners());
+        });
+        return ret;
+    }
+    
+    /**
+     * @param publisher the publisher to look at
+     * @return the classes of its endpoints that are documented with {@link Api}
+     */
+    private static Set<Class<?>> apiClasses(final Publisher publisher) {
         HashSet<Class<?>> ret = new HashSet<>();
         publisher.getRawEndpoints().stream()
                 .map(o -> o.getClass())
                 .filter(c -> c.isAnnotationPresent(Api.class))
                 .forEach(ret::add);
-        publisher.getReaderListeners().forEach(ret::add);
         return ret;
     }
 
+    /**
+     * Without a publisher to go by this only merges in our configuration,
+     * the documents we serve get the base path of their publisher as well.
+     */
     @Override
     public Swagger configure(final Swagger swagger) {
-        swagger.setBasePath(publisher.getPath());
         return merge(swagger);
     }
 
@@ -128,6 +198,11 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
      * @return the same object with the configuration injected
      */
     public Swagger merge(final Swagger swagger) {
+        SwaggerConfiguration current = config;
+        if (null == current) {
+            return swagger;
+        }
+        
         Info info = swagger.getInfo();
         if (null == info) {
             info = new Info();
@@ -146,14 +221,14 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
             info.license(license);
         }
         
-        ifStringPresent(config.title, info::title);
-        ifStringPresent(config.description, info::description);
-        ifStringPresent(config.apiVersion, info::version);
-        ifStringPresent(config.contactName, contact::name);
-        ifStringPresent(config.contactUrl, contact::url);
-        ifStringPresent(config.contactEmail, contact::email);
-        ifStringPresent(config.licenseName, license::name);
-        ifStringPresent(config.licenseUrl, license::url);
+        ifStringPresent(current.title, info::title);
+        ifStringPresent(current.description, info::description);
+        ifStringPresent(current.apiVersion, info::version);
+        ifStringPresent(current.contactName, contact::name);
+        ifStringPresent(current.contactUrl, contact::url);
+        ifStringPresent(current.contactEmail, contact::email);
+        ifStringPresent(current.licenseName, license::name);
+        ifStringPresent(current.licenseUrl, license::url);
 
         return swagger;
     }
@@ -163,4 +238,85 @@ public class SwaggerEndpoint extends DefaultJaxrsScanner implements SwaggerConfi
             action.accept(str);
         }
     }
+    
+    /**
+     * The swagger document of a single publisher, and the listing resource
+     * that serves it from that publisher
+     */
+    private final class PublisherDocuments {
+        private final Publisher publisher;
+        private final SwaggerFragments fragments = new SwaggerFragments();
+        private volatile SwaggerDocumentCache documents;
+        private String subscription;
+        private ServiceRegistration<?> apiResource;
+        
+        PublisherDocuments(final Publisher publisher) {
+            this.publisher = publisher;
+        }
+        
+        /**
+         * Builds the first document right away, and a new one after every change
+         * 
+         * @param context where to register the listing resource
+         */
+        synchronized void start(final BundleContext context) {
+            if (null != documents) {
+                return;
+            }
+            documents = new SwaggerDocumentCache(this::generate, 
+                    e -> logger.error(String.format("Failed to build the swagger document for %s, "
+                            + "serving the last one", publisher.getPath()), e));
+            subscription = publisher.subscribe(documents::invalidate);
+            documents.invalidate();
+            
+            // This is marked so it is found even when discovery is limited to marked 
+            // services, and tied to the publisher so no other one serves it
+            Hashtable<String, Object> apiProperties = new Hashtable<>();
+            apiProperties.put("osgi.jaxrs.resource", true);
+            apiProperties.put(Publisher.PUBLISHER_PATH, publisher.getPath());
+            
+            apiResource = context.registerService(SwaggerListingResource.class.getName(), 
+                    new SwaggerListingResource(documents::get), apiProperties);
+        }
+        
+        synchronized void stop() {
+            if (null == documents) {
+                return;
+            }
+            try {
+                apiResource.unregister();
+            } catch (IllegalStateException e) {
+                // Our bundle is already on its way out
+            }
+            publisher.unsubscribe(subscription);
+            documents.close();
+            documents = null;
+        }
+        
+        void invalidate() {
+            SwaggerDocumentCache cache = documents;
+            if (null != cache) {
+                cache.invalidate();
+            }
+        }
+        
+        /**
+         * Does what the swagger listing does on a request: reads the classes from the
+         * publisher and applies our configuration, then serializes the result. Only
+         * classes that changed since the last time are actually read.
+         * 
+         * @return the new document
+         * @throws IOException if it can't be serialized
+         */
+        SwaggerDocument generate() throws IOException {
+            long start = System.nanoTime();
+            Swagger swagger = fragments.build(apiClasses(publisher), publisher.getReaderListeners());
+            swagger.setBasePath(publisher.getPath());
+            SwaggerDocument document = SwaggerDocument.of(merge(swagger), getPrettyPrint());
+            logger.debug(String.format("Built the swagger document for %s, read %d of %d classes in %d ms", 
+                    publisher.getPath(), fragments.getLastRead(), fragments.size(), 
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return document;
+        }
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import io.swagger.jaxrs.Reader;
+import io.swagger.models.Info;
+import io.swagger.models.Path;
+import io.swagger.models.SecurityRequirement;
+import io.swagger.models.Swagger;
+import io.swagger.util.Json;
+
+/**
+ * Builds the swagger model one class at a time. Each class is read on its own
+ * into a fragment that is kept until the class goes away or the reader listeners
+ * change, and the document is the fragments merged together. When a bundle is
+ * redeployed only its classes (which are new class objects) get read again.
+ * <br /><br />
+ * Fragments are never changed once they are read, anything that has to be
+ * combined or that callers may change is copied into the merged model.
+ */
+public class SwaggerFragments {
+    /** Classes are merged in name order, so the same classes always give the same document */
+    private static final Comparator<Class<?>> BY_NAME = Comparator.comparing(Class::getName);
+    
+    /** Guarded by this */
+    private final Map<Class<?>, Fragment> fragments = new HashMap<>();
+    
+    /** Guarded by this */
+    private int lastRead;
+    
+    /**
+     * Builds the model for a set of classes
+     * 
+     * @param classes the classes to document
+     * @param readerListeners the reader listeners, these take part in reading every class
+     * @return a new model the caller can change
+     */
+    public synchronized Swagger build(final Set<Class<?>> classes, final Set<Class<?>> readerListeners) {
+        // Forgetting classes that are gone lets go of old bundle class loaders
+        fragments.keySet().retainAll(classes);
+        
+        Set<Class<?>> listeners = new HashSet<>(readerListeners);
+        List<Class<?>> ordered = new ArrayList<>(classes);
+        ordered.sort(BY_NAME);
+        
+        lastRead = 0;
+        Swagger merged = new Swagger();
+        for (Class<?> clazz : ordered) {
+            Fragment fragment = fragments.get(clazz);
+            if (null == fragment || !fragment.listeners.equals(listeners)) {
+                fragment = new Fragment(listeners, read(clazz, listeners));
+                fragments.put(clazz, fragment);
+                lastRead++;
+            }
+            mergeInto(merged, fragment.swagger);
+        }
+        return merged;
+    }
+    
+    /**
+     * @return how many classes the last build had to read
+     */
+    public synchronized int getLastRead() {
+        return lastRead;
+    }
+    
+    /**
+     * @return how many classes have a fragment
+     */
+    public synchronized int size() {
+        return fragments.size();
+    }
+    
+    private static Swagger read(final Class<?> clazz, final Set<Class<?>> listeners) {
+        Set<Class<?>> classes = new HashSet<>(listeners);
+        classes.add(clazz);
+        return new Reader(new Swagger()).read(classes);
+    }
+    
+    /**
+     * Adds a fragment to the merged model. Paths two classes share get their operations
+     * combined, for everything else named the first one in wins.
+     */
+    private static void mergeInto(final Swagger merged, final Swagger fragment) {
+        if (null != fragment.getPaths()) {
+            fragment.getPaths().forEach((name, path) -> {
+                Path existing = merged.getPath(name);
+                merged.path(name, null == existing ? path : combine(existing, path));
+            });
+        }
+        if (null != fragment.getDefinitions()) {
+            fragment.getDefinitions().forEach((name, model) -> {
+                if (null == merged.getDefinitions() || !merged.getDefinitions().containsKey(name)) {
+                    merged.addDefinition(name, model);
+                }
+            });
+        }
+        if (null != fragment.getParameters()) {
+            fragment.getParameters().forEach((name, parameter) -> {
+                if (null == merged.getParameter(name)) {
+                    merged.addParameter(name, parameter);
+                }
+            });
+        }
+        if (null != fragment.getResponses()) {
+            fragment.getResponses().forEach((name, response) -> {
+                if (null == merged.getResponses() || !merged.getResponses().containsKey(name)) {
+                    merged.response(name, response);
+                }
+            });
+        }
+        if (null != fragment.getSecurityDefinitions()) {
+            fragment.getSecurityDefinitions().forEach((name, definition) -> {
+                if (null == merged.getSecurityDefinitions() || !merged.getSecurityDefinitions().containsKey(name)) {
+                    merged.addSecurityDefinition(name, definition);
+                }
+            });
+        }
+        if (null != fragment.getTags()) {
+            fragment.getTags().stream()
+                .filter(tag -> null == merged.getTag(tag.getName()))
+                .forEach(merged::addTag);
+        }
+        if (null != fragment.getSecurity()) {
+            for (SecurityRequirement requirement : fragment.getSecurity()) {
+                if (null == merged.getSecurity() || !merged.getSecurity().contains(requirement)) {
+                    merged.addSecurity(requirement);
+                }
+            }
+        }
+        if (null != fragment.getSchemes()) {
+            fragment.getSchemes().stream()
+                .filter(scheme -> null == merged.getSchemes() || !merged.getSchemes().contains(scheme))
+                .forEach(merged::addScheme);
+        }
+        if (null != fragment.getConsumes()) {
+            fragment.getConsumes().stream()
+                .filter(type -> null == merged.getConsumes() || !merged.getConsumes().contains(type))
+                .forEach(merged::addConsumes);
+        }
+        if (null != fragment.getProduces()) {
+            fragment.getProduces().stream()
+                .filter(type -> null == merged.getProduces() || !merged.getProduces().contains(type))
+                .forEach(merged::addProduces);
+        }
+        if (null != fragment.getVendorExtensions()) {
+            fragment.getVendorExtensions().forEach((name, value) -> {
+                if (null == merged.getVendorExtensions() || !merged.getVendorExtensions().containsKey(name)) {
+                    merged.setVendorExtension(name, value);
+                }
+            });
+        }
+        if (null == merged.getHost()) {
+            merged.setHost(fragment.getHost());
+        }
+        if (null == merged.getExternalDocs()) {
+            merged.setExternalDocs(fragment.getExternalDocs());
+        }
+        if (null == merged.getInfo() && null != fragment.getInfo()) {
+            // The swagger configuration is merged into this later, so it gets a copy of its own.
+            // This goes through a tree, converting to the same type hands back the original
+            merged.setInfo(Json.mapper().convertValue(Json.mapper().valueToTree(fragment.getInfo()), Info.class));
+        }
+    }
+    
+    /**
+     * @return a new path with the operations and parameters of both
+     */
+    private static Path combine(final Path first, final Path second) {
+        Path combined = new Path();
+        for (Path path : new Path[] { first, second }) {
+            path.getOperationMap().forEach((method, operation) -> 
+                combined.set(method.name().toLowerCase(Locale.ROOT), operation));
+            if (null != path.getParameters()) {
+                path.getParameters().forEach(combined::addParameter);
+            }
+            if (null != path.getVendorExtensions()) {
+                path.getVendorExtensions().forEach(combined::setVendorExtension);
+            }
+        }
+        return combined;
+    }
+    
+    /**
+     * What reading a single class gave, and the reader listeners that took part
+     */
+    private static class Fragment {
+        private final Set<Class<?>> listeners;
+        private final Swagger swagger;
+        
+        Fragment(final Set<Class<?>> listeners, final Swagger swagger) {
+            this.listeners = listeners;
+            this.swagger = swagger;
+        }
+    }
+}
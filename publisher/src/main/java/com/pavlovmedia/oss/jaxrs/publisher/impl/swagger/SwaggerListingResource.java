@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import java.util.function.Supplier;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.NoCompression;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.compression.AcceptEncoding;
+
+/**
+ * Serves the swagger document from a {@link SwaggerDocumentCache}, at the same
+ * path swagger's own listing uses. Clients that accept gzip get the gzipped bytes,
+ * and a matching If-None-Match gets a 304 without a body. The document is already
+ * compressed, so the publisher's own compression leaves it alone.
+ */
+@NoCompression
+@Path("/swagger.{type:json|yaml}")
+public class SwaggerListingResource {
+    private final Supplier<SwaggerDocument> documents;
+    
+    /**
+     * @param documents where the current document comes from
+     */
+    public SwaggerListingResource(final Supplier<SwaggerDocument> documents) {
+        this.documents = documents;
+    }
+    
+    @GET
+    @Produces({ MediaType.APPLICATION_JSON, "application/yaml" })
+    public Response getListing(@PathParam("type") final String type, 
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding,
+            @Context final Request request) {
+        SwaggerDocument document = documents.get();
+        if (null == document) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+        
+        SwaggerDocument.Representation representation = document.get(type);
+        boolean gzip = AcceptEncoding.accepts(acceptEncoding, AcceptEncoding.GZIP);
+        EntityTag tag = representation.getTag(gzip);
+        
+        ResponseBuilder response = request.evaluatePreconditions(tag);
+        if (null == response) {
+            response = Response.ok(representation.getBytes(gzip), representation.getType());
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, AcceptEncoding.GZIP);
+            }
+        }
+        return response.tag(tag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+import org.junit.Test;
+
+public class EndpointInfoTest {
+    @Path("/simple")
+    @Produces("application/json")
+    public static class Simple {
+        @GET
+        public String list() {
+            return "";
+        }
+        
+        @POST
+        @Path("item")
+        @Consumes("application/json")
+        @Produces("text/plain")
+        public String create(final String body) {
+            return body;
+        }
+        
+        public String notAnEndpoint() {
+            return "";
+        }
+    }
+    
+    public static class Child {
+        @GET
+        public String get() {
+            return "";
+        }
+    }
+    
+    @Path("parent")
+    public static class Parent {
+        @Path("{id}")
+        public Child child(@PathParam("id") final String id) {
+            return new Child();
+        }
+    }
+    
+    @Path("looping")
+    public static class Looping {
+        @Path("again")
+        public Looping again() {
+            return this;
+        }
+    }
+    
+    public interface Api {
+        @GET
+        @Path("from-interface")
+        String fromInterface();
+    }
+    
+    @Path("implemented")
+    public static class Implemented implements Api {
+        @Override
+        public String fromInterface() {
+            return "";
+        }
+    }
+    
+    @Path("base")
+    public static class Base {
+        @GET
+        public String get() {
+            return "";
+        }
+    }
+    
+    public static class Unannotated extends Base { }
+    
+    private static List<String> describe(final List<EndpointInfo> endpoints) {
+        return endpoints.stream()
+                .map(e -> e.verb + " " + e.path)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void methodsAreParsed() {
+        List<EndpointInfo> endpoints = EndpointInfo.parseEndpoint(Simple.class);
+        
+        assertEquals(Arrays.asList("GET /simple", "POST /simple/item"), describe(endpoints));
+        assertEquals(Collections.emptyList(), endpoints.get(0).acceptTypes);
+        assertEquals(Collections.singletonList("application/json"), endpoints.get(0).responseTypes);
+        assertEquals(Collections.singletonList("application/json"), endpoints.get(1).acceptTypes);
+        assertEquals(Collections.singletonList("text/plain"), endpoints.get(1).responseTypes);
+        assertFalse(endpoints.get(0).subResourceLocator);
+    }
+    
+    @Test
+    public void locatorsListWhatTheyReturn() {
+        List<EndpointInfo> endpoints = EndpointInfo.parseEndpoint(Parent.class);
+        
+        assertEquals(Arrays.asList("* /parent/{id}", "GET /parent/{id}"), describe(endpoints));
+        assertTrue(endpoints.get(0).subResourceLocator);
+    }
+    
+    @Test
+    public void locatorLoopsStop() {
+        assertEquals(Collections.singletonList("* /looping/again"), 
+                describe(EndpointInfo.parseEndpoint(Looping.class)));
+    }
+    
+    @Test
+    public void interfaceAnnotationsAreInherited() {
+        assertEquals(Collections.singletonList("GET /implemented/from-interface"), 
+                describe(EndpointInfo.parseEndpoint(new Implemented())));
+    }
+    
+    @Test
+    public void classPathIsNotInherited() {
+        assertTrue(EndpointInfo.parseEndpoint(Unannotated.class).isEmpty());
+        assertTrue(EndpointInfo.parseEndpoint(Child.class).isEmpty());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void modelCannotChange() {
+        EndpointInfo.parseEndpoint(Simple.class).clear();
+    }
+    
+    @Test
+    public void modelIsCachedUntilReleased() {
+        List<EndpointInfo> first = EndpointInfo.parseEndpoint(Base.class);
+        assertSame(first, EndpointInfo.parseEndpoint(new Base()));
+        
+        EndpointInfo.release(Base.class);
+        List<EndpointInfo> second = EndpointInfo.parseEndpoint(Base.class);
+        assertNotSame(first, second);
+        assertEquals(describe(first), describe(second));
+    }
+    
+    @Test
+    public void pathsAreJoinedWithOneSlash() {
+        assertEquals("/", EndpointInfo.joinPath("", ""));
+        assertEquals("/a", EndpointInfo.joinPath("", "a"));
+        assertEquals("/a/b", EndpointInfo.joinPath("/a/", "/b"));
+        assertEquals("/a", EndpointInfo.joinPath("/a", "/"));
+    }
+}
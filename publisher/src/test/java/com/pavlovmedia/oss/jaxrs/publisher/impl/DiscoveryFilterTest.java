@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.DiscoveryMode;
+
+public class DiscoveryFilterTest {
+    private static Hashtable<String, Object> service(final String... objectClasses) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put("objectClass", objectClasses);
+        return properties;
+    }
+    
+    private static Filter filter(final DiscoveryMode mode, final String userFilter, 
+            final String[] include, final String[] exclude) throws InvalidSyntaxException {
+        return FrameworkUtil.createFilter(DiscoveryFilter.build(mode, userFilter, include, exclude));
+    }
+    
+    @Test
+    public void wildcardTakesAnythingNotIgnored() throws InvalidSyntaxException {
+        Filter wildcard = filter(DiscoveryMode.WILDCARD, null, null, null);
+        Hashtable<String, Object> ignored = service("a.Service");
+        ignored.put(Publisher.SCAN_IGNORE, "true");
+        
+        assertTrue(wildcard.match(service("a.Service")));
+        assertFalse(wildcard.match(ignored));
+        assertFalse(FrameworkUtil.createFilter(DiscoveryFilter.WILDCARD).match(ignored));
+    }
+    
+    @Test
+    public void markedNeedsAJaxrsProperty() throws InvalidSyntaxException {
+        Filter marked = filter(DiscoveryMode.MARKED, null, null, null);
+        Hashtable<String, Object> resource = service("a.Service");
+        resource.put("osgi.jaxrs.resource", "true");
+        Hashtable<String, Object> legacy = service("a.Service");
+        legacy.put("com.eclipsesource.jaxrs.publish", "true");
+        
+        assertFalse(marked.match(service("a.Service")));
+        assertTrue(marked.match(resource));
+        assertTrue(marked.match(legacy));
+        
+        resource.put(Publisher.SCAN_IGNORE, "true");
+        assertFalse(marked.match(resource));
+    }
+    
+    @Test
+    public void userFilterIsSplicedIn() throws InvalidSyntaxException {
+        Filter user = filter(DiscoveryMode.FILTER, " (team=web) ", null, null);
+        Hashtable<String, Object> web = service("a.Service");
+        web.put("team", "web");
+        
+        assertTrue(user.match(web));
+        assertFalse(user.match(service("a.Service")));
+    }
+    
+    @Test(expected = InvalidSyntaxException.class)
+    public void userFilterIsNeeded() throws InvalidSyntaxException {
+        DiscoveryFilter.build(DiscoveryMode.FILTER, " ", null, null);
+    }
+    
+    @Test(expected = InvalidSyntaxException.class)
+    public void brokenUserFilterIsRefused() throws InvalidSyntaxException {
+        DiscoveryFilter.build(DiscoveryMode.FILTER, "(team=web", null, null);
+    }
+    
+    @Test
+    public void objectClassesAreIncludedAndExcluded() throws InvalidSyntaxException {
+        Filter classes = filter(DiscoveryMode.WILDCARD, null, 
+                new String[] { "a.Included", " ", "an.Other " }, new String[] { "a.Excluded" });
+        
+        assertTrue(classes.match(service("a.Included")));
+        assertTrue(classes.match(service("an.Other")));
+        assertFalse(classes.match(service("a.Service")));
+        assertFalse(classes.match(service("a.Included", "a.Excluded")));
+    }
+    
+    @Test
+    public void emptyClassListsAreIgnored() throws InvalidSyntaxException {
+        assertEquals(DiscoveryFilter.build(DiscoveryMode.WILDCARD, null, null, null),
+                DiscoveryFilter.build(DiscoveryMode.WILDCARD, null, new String[] { "" }, new String[0]));
+    }
+    
+    @Test
+    public void publisherPathIsMatched() throws InvalidSyntaxException {
+        Filter forPublisher = FrameworkUtil.createFilter(
+                DiscoveryFilter.forPublisher(DiscoveryFilter.WILDCARD, "(team=web)", "/api(v1)*"));
+        Hashtable<String, Object> shared = service("a.Service");
+        shared.put("team", "web");
+        Hashtable<String, Object> mine = service("a.Service");
+        mine.put("team", "web");
+        mine.put(Publisher.PUBLISHER_PATH, "/api(v1)*");
+        Hashtable<String, Object> theirs = service("a.Service");
+        theirs.put("team", "web");
+        theirs.put(Publisher.PUBLISHER_PATH, "/api(v1)x");
+        
+        assertTrue(forPublisher.match(shared));
+        assertTrue(forPublisher.match(mine));
+        assertFalse(forPublisher.match(theirs));
+        assertFalse(forPublisher.match(service("a.Service")));
+    }
+}
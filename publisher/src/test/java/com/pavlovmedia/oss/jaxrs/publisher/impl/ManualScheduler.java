@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A scheduled executor with a clock that only moves when it is told to. Tasks run
+ * on the thread that calls {@link #advance(long)}, in the order they are due, so
+ * a test sees exactly the same thing every time no matter how loaded the machine is.
+ */
+class ManualScheduler extends AbstractExecutorService implements ScheduledExecutorService, LongSupplier {
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+    private boolean shutdown;
+    
+    /** @return the current time in nanoseconds */
+    @Override
+    public synchronized long getAsLong() {
+        return nowNanos;
+    }
+    
+    /**
+     * Moves the clock forward, running every task that comes due on the way
+     * 
+     * @param millis how far to move
+     */
+    void advance(final long millis) {
+        long target;
+        synchronized (this) {
+            target = nowNanos + TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+        while (true) {
+            Task next;
+            synchronized (this) {
+                next = tasks.peek();
+                if (null == next || next.dueNanos > target) {
+                    nowNanos = target;
+                    return;
+                }
+                tasks.poll();
+                nowNanos = Math.max(nowNanos, next.dueNanos);
+            }
+            next.run();
+        }
+    }
+    
+    /** @return how many tasks are waiting to run, not counting cancelled ones */
+    synchronized int pending() {
+        return (int) tasks.stream().filter(t -> !t.cancelled).count();
+    }
+    
+    @Override
+    public synchronized ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        if (shutdown) {
+            throw new IllegalStateException("Shut down");
+        }
+        Task task = new Task(command, nowNanos + unit.toNanos(Math.max(0, delay)), sequence++);
+        tasks.add(task);
+        return task;
+    }
+    
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, 
+            final long period, final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, 
+            final long delay, final TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+    
+    @Override
+    public void execute(final Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+    }
+    
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> dropped = new ArrayList<>(tasks);
+        tasks.clear();
+        return dropped;
+    }
+    
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+    
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && tasks.isEmpty();
+    }
+    
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+        return isTerminated();
+    }
+    
+    /**
+     * A task waiting for its time
+     */
+    private final class Task implements ScheduledFuture<Object>, Runnable {
+        private final Runnable command;
+        private final long dueNanos;
+        private final long order;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        
+        Task(final Runnable command, final long dueNanos, final long order) {
+            this.command = command;
+            this.dueNanos = dueNanos;
+            this.order = order;
+        }
+        
+        @Override
+        public void run() {
+            if (!cancelled) {
+                command.run();
+            }
+            done = true;
+        }
+        
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(dueNanos - getAsLong(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(final Delayed other) {
+            Task task = (Task) other;
+            int byTime = Long.compare(dueNanos, task.dueNanos);
+            return 0 != byTime ? byTime : Long.compare(order, task.order);
+        }
+        
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+        
+        @Override
+        public Object get() {
+            return null;
+        }
+        
+        @Override
+        public Object get(final long timeout, final TimeUnit unit) {
+            return null;
+        }
+    }
+}
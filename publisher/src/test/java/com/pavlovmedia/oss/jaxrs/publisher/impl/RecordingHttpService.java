@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.servlet.Servlet;
+
+import org.osgi.service.http.HttpContext;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+/**
+ * An HttpService that keeps track of what is registered at which alias and
+ * never starts anything. Aliases can be refused to act like ones that are
+ * already taken by someone else.
+ */
+public class RecordingHttpService implements HttpService {
+    private final Map<String, Servlet> servlets = new TreeMap<>();
+    private final Set<String> refused = new HashSet<>();
+    
+    /** @return the registered servlets by alias */
+    public synchronized Map<String, Servlet> getServlets() {
+        return new TreeMap<>(servlets);
+    }
+    
+    /**
+     * @param alias an alias to turn down from now on, or to let through again
+     * @param refuse true to refuse it
+     */
+    public synchronized void refuse(final String alias, final boolean refuse) {
+        if (refuse) {
+            refused.add(alias);
+        } else {
+            refused.remove(alias);
+        }
+    }
+    
+    @Override
+    public synchronized void registerServlet(final String alias, final Servlet servlet, 
+            @SuppressWarnings("rawtypes") final Dictionary initparams, final HttpContext context) 
+            throws NamespaceException {
+        if (refused.contains(alias) || servlets.containsKey(alias)) {
+            throw new NamespaceException(alias + " is taken");
+        }
+        servlets.put(alias, servlet);
+    }
+    
+    @Override
+    public synchronized void registerResources(final String alias, final String name, final HttpContext context)
+            throws NamespaceException {
+        throw new NamespaceException("Resources are not supported");
+    }
+    
+    @Override
+    public synchronized void unregister(final String alias) {
+        if (null == servlets.remove(alias)) {
+            throw new IllegalArgumentException(alias + " is not registered");
+        }
+    }
+    
+    @Override
+    public HttpContext createDefaultHttpContext() {
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.RegistrationBatch;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+/**
+ * A batch with discovery on the pipeline, wired the way the publisher does it:
+ * every handled event asks for a reload, and closing the batch lets the pipeline
+ * catch up before the hold is released.
+ */
+public class RegistrationBatchTest {
+    private final ManualScheduler clock = new ManualScheduler();
+    private final List<String> reloads = Collections.synchronizedList(new ArrayList<>());
+    private final ReloadScheduler scheduler = new ReloadScheduler(clock, clock, 50, 100, 
+            (trigger, merged) -> reloads.add(trigger + " x" + merged));
+    private final CountDownLatch slow = new CountDownLatch(1);
+    private final ServiceEventPipeline pipeline = new ServiceEventPipeline("test-discovery", 100, 
+            event -> {
+                try {
+                    slow.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                scheduler.requestReload("service " + event.getServiceReference().getProperty("name"));
+            }, (e, ex) -> { });
+    
+    @After
+    public void close() {
+        pipeline.close();
+        scheduler.close();
+    }
+    
+    @Test
+    public void eventsStillQueuedAreMergedIntoTheBatch() throws InterruptedException {
+        SimulatedBundle bundle = new SimulatedFramework().installBundle("test.bundle");
+        bundle.getBundleContext().addServiceListener(pipeline::submit);
+        pipeline.start();
+        
+        RegistrationBatch hold = scheduler.hold(10000);
+        RegistrationBatch batch = () -> {
+            pipeline.awaitQueued(10000);
+            hold.close();
+        };
+        
+        for (int i = 0; i < 3; i++) {
+            bundle.getBundleContext().registerService(Object.class.getName(), "service", 
+                    new Hashtable<>(Collections.singletonMap("name", i)));
+        }
+        
+        // The pipeline is still stuck on the first event when the batch closes
+        Thread closing = new Thread(batch::close);
+        closing.start();
+        slow.countDown();
+        closing.join(10000);
+        assertFalse(closing.isAlive());
+        
+        clock.advance(10000);
+        assertEquals(Arrays.asList("service 0 x3"), reloads);
+    }
+    
+    @Test
+    public void awaitingOnTheClosedPipelineGivesUp() {
+        pipeline.close();
+        assertFalse(pipeline.awaitQueued(10000));
+    }
+}
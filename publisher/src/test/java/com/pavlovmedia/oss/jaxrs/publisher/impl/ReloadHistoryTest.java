@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.DiscoveryStats;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadRecord;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadStats;
+
+public class ReloadHistoryTest {
+    private static ReloadRecord reload(final long timestamp, final int mergedChanges, final long buildNanos, 
+            final long watcherNanos, final String failure) {
+        return new ReloadRecord(timestamp, "trigger " + timestamp, mergedChanges, 1, buildNanos, 0, 
+                watcherNanos, failure);
+    }
+    
+    private static List<Long> timestamps(final ReloadHistory history) {
+        return history.records().stream()
+                .map(r -> r.timestamp)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void recordsAreKeptOldestFirst() {
+        ReloadHistory history = new ReloadHistory(3);
+        assertTrue(history.records().isEmpty());
+        
+        history.record(reload(1, 1, 10, 1, null));
+        history.record(reload(2, 1, 10, 1, null));
+        assertEquals(Arrays.asList(1L, 2L), timestamps(history));
+    }
+    
+    @Test
+    public void oldestRecordsAreDroppedWhenFull() {
+        ReloadHistory history = new ReloadHistory(3);
+        for (long i = 1; i <= 5; i++) {
+            history.record(reload(i, 1, 10, 1, null));
+        }
+        
+        assertEquals(Arrays.asList(3L, 4L, 5L), timestamps(history));
+        // The totals still cover everything
+        assertEquals(5, history.stats().reloads);
+    }
+    
+    @Test
+    public void capacityIsAtLeastOne() {
+        ReloadHistory history = new ReloadHistory(0);
+        history.record(reload(1, 1, 10, 1, null));
+        history.record(reload(2, 1, 10, 1, null));
+        
+        assertEquals(Arrays.asList(2L), timestamps(history));
+    }
+    
+    @Test
+    public void statsAddUp() {
+        ReloadHistory history = new ReloadHistory(10);
+        history.record(reload(1, 2, 100, 5, null));
+        history.record(reload(2, 3, 300, 1, "java.lang.IllegalStateException: gone"));
+        
+        ReloadStats stats = history.stats();
+        assertEquals(2, stats.reloads);
+        assertEquals(1, stats.failures);
+        assertEquals(5, stats.mergedChanges);
+        assertEquals(400, stats.totalBuildNanos);
+        assertEquals(300, stats.maxBuildNanos);
+        assertEquals(200, stats.meanBuildNanos());
+        assertEquals(6, stats.totalWatcherNanos);
+        assertEquals(5, stats.maxWatcherNanos);
+        assertEquals(2, stats.lastReload);
+    }
+    
+    @Test
+    public void publisherThatNeverStartedHasNothingToReport() {
+        JerseyPublisher publisher = new JerseyPublisher();
+        
+        DiscoveryStats discovery = publisher.getDiscoveryStats();
+        assertEquals(0, discovery.targets);
+        assertEquals(0, discovery.eventsProcessed);
+        assertEquals(0, publisher.getReloadStats().reloads);
+        assertTrue(publisher.getReloadHistory().isEmpty());
+    }
+}
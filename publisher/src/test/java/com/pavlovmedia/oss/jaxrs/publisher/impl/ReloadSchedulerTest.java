@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.RegistrationBatch;
+
+public class ReloadSchedulerTest {
+    private final ManualScheduler clock = new ManualScheduler();
+    private final List<String> reloads = new ArrayList<>();
+    
+    private ReloadScheduler schedule(final long quietPeriodMillis, final long maxDelayMillis) {
+        return new ReloadScheduler(clock, clock, quietPeriodMillis, maxDelayMillis, 
+                (trigger, merged) -> reloads.add(trigger + " x" + merged));
+    }
+    
+    @Test
+    public void burstIsMergedIntoOneReload() {
+        ReloadScheduler scheduler = schedule(200, 5000);
+        scheduler.requestReload("first");
+        clock.advance(50);
+        scheduler.requestReload("second");
+        scheduler.requestReload("third");
+        
+        clock.advance(10000);
+        assertEquals(Arrays.asList("first x3"), reloads);
+    }
+    
+    @Test
+    public void everyChangePushesTheReloadBack() {
+        ReloadScheduler scheduler = schedule(300, 5000);
+        scheduler.requestReload("first");
+        clock.advance(200);
+        scheduler.requestReload("second");
+        
+        // The first change alone would have reloaded by now
+        clock.advance(299);
+        assertEquals(Collections.emptyList(), reloads);
+        clock.advance(1);
+        assertEquals(Arrays.asList("first x2"), reloads);
+    }
+    
+    @Test
+    public void steadyTrickleStillReloadsByTheMaxDelay() {
+        ReloadScheduler scheduler = schedule(200, 400);
+        for (int i = 0; i < 12; i++) {
+            scheduler.requestReload("change " + i);
+            clock.advance(50);
+        }
+        
+        // Never quiet for a whole quiet period, still a reload every 400 ms
+        assertEquals(Arrays.asList("change 0 x8"), reloads);
+        clock.advance(10000);
+        assertEquals(Arrays.asList("change 0 x8", "change 8 x4"), reloads);
+    }
+    
+    @Test
+    public void holdMergesEverythingUntilItIsClosed() {
+        ReloadScheduler scheduler = schedule(50, 100);
+        RegistrationBatch batch = scheduler.hold(10000);
+        scheduler.requestReload("first");
+        scheduler.requestReload("second");
+        clock.advance(5000);
+        assertEquals(Collections.emptyList(), reloads);
+        
+        batch.close();
+        clock.advance(0);
+        assertEquals(Arrays.asList("first x2"), reloads);
+        
+        // Closing again does nothing
+        batch.close();
+        clock.advance(10000);
+        assertEquals(Arrays.asList("first x2"), reloads);
+    }
+    
+    @Test
+    public void holdWithoutChangesDoesNotReload() {
+        ReloadScheduler scheduler = schedule(50, 100);
+        scheduler.hold(10000).close();
+        clock.advance(10000);
+        assertEquals(Collections.emptyList(), reloads);
+    }
+    
+    @Test
+    public void nestedHoldsWaitForTheLastOne() {
+        ReloadScheduler scheduler = schedule(50, 100);
+        RegistrationBatch outer = scheduler.hold(10000);
+        RegistrationBatch inner = scheduler.hold(10000);
+        scheduler.requestReload("change");
+        
+        inner.close();
+        clock.advance(5000);
+        assertEquals(Collections.emptyList(), reloads);
+        outer.close();
+        clock.advance(0);
+        assertEquals(Arrays.asList("change x1"), reloads);
+    }
+    
+    @Test
+    public void holdThatIsNeverClosedTimesOut() {
+        ReloadScheduler scheduler = schedule(50, 100);
+        scheduler.hold(300);
+        scheduler.requestReload("change");
+        
+        clock.advance(299);
+        assertEquals(Collections.emptyList(), reloads);
+        clock.advance(1);
+        assertEquals(Arrays.asList("change x1"), reloads);
+    }
+    
+    @Test
+    public void nothingRunsAfterClose() {
+        ReloadScheduler scheduler = schedule(50, 100);
+        scheduler.requestReload("change");
+        scheduler.close();
+        scheduler.requestReload("late");
+        assertTrue(clock.isShutdown());
+        assertEquals(0, clock.pending());
+        assertEquals(Collections.emptyList(), reloads);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Hashtable;
+
+import javax.ws.rs.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.ServiceClassifier.Verdict;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+public class ServiceClassifierTest {
+    public interface Api { }
+    
+    @Path("resource")
+    public static class Resource implements Api { }
+    
+    public static class NotResource implements Api { }
+    
+    public abstract static class AbstractResource implements Api { }
+    
+    private final ServiceClassifier classifier = new ServiceClassifier(c -> null != c.getAnnotation(Path.class));
+    private SimulatedBundle bundle;
+    
+    @Before
+    public void setup() {
+        bundle = new SimulatedFramework().installBundle("services");
+    }
+    
+    private ServiceRegistration<?> register(final String[] classes, final String componentName) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        if (null != componentName) {
+            properties.put(ServiceClassifier.COMPONENT_NAME, componentName);
+        }
+        return bundle.getBundleContext().registerService(classes, new Object(), properties);
+    }
+    
+    private Verdict classify(final String[] classes, final String componentName) {
+        return classifier.classify(register(classes, componentName).getReference());
+    }
+    
+    private static String[] classes(final Class<?>... classes) {
+        String[] names = new String[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            names[i] = classes[i].getName();
+        }
+        return names;
+    }
+    
+    @Test
+    public void componentNameDecides() {
+        assertEquals(Verdict.ACCEPT, classify(classes(Api.class), Resource.class.getName()));
+        assertEquals(Verdict.REJECT, classify(classes(Api.class), NotResource.class.getName()));
+    }
+    
+    @Test
+    public void componentNameHasToImplementEveryClass() {
+        assertEquals(Verdict.UNKNOWN, classify(classes(Api.class, Runnable.class), Resource.class.getName()));
+    }
+    
+    @Test
+    public void abstractComponentNamesAreNotTrusted() {
+        assertEquals(Verdict.UNKNOWN, classify(classes(Api.class), AbstractResource.class.getName()));
+    }
+    
+    @Test
+    public void namedComponentsFallBackToObjectClasses() {
+        assertEquals(Verdict.UNKNOWN, classify(classes(Api.class), "my.component"));
+        assertEquals(Verdict.ACCEPT, classify(classes(Resource.class), "my.component"));
+        assertEquals(Verdict.ACCEPT, classify(classes(Resource.class), null));
+        assertEquals(Verdict.UNKNOWN, classify(classes(NotResource.class), null));
+    }
+    
+    @Test
+    public void missingClassesAreUnknown() {
+        assertEquals(Verdict.UNKNOWN, classify(new String[] { "not.a.RealClass" }, Resource.class.getName()));
+    }
+    
+    @Test
+    public void unregisteredServicesAreRejected() {
+        ServiceRegistration<?> registration = register(classes(Resource.class), null);
+        ServiceReference<?> reference = registration.getReference();
+        registration.unregister();
+        
+        assertEquals(Verdict.REJECT, classifier.classify(reference));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+public class ServiceEventPipelineTest {
+    private final BlockingQueue<ServiceEvent> handled = new LinkedBlockingQueue<>();
+    private final BlockingQueue<RuntimeException> errors = new LinkedBlockingQueue<>();
+    private SimulatedBundle bundle;
+    private ServiceEventPipeline pipeline;
+    
+    @Before
+    public void setup() {
+        bundle = new SimulatedFramework().installBundle("test.bundle");
+    }
+    
+    @After
+    public void close() {
+        if (null != pipeline) {
+            pipeline.close();
+        }
+    }
+    
+    /**
+     * Feeds every service event of the framework into a new pipeline, the way the tracker does
+     */
+    private void pipe(final int capacity, final Consumer<ServiceEvent> handler) {
+        pipeline = new ServiceEventPipeline("test-discovery", capacity, handler, (e, ex) -> errors.add(ex));
+        bundle.getBundleContext().addServiceListener(pipeline::submit);
+    }
+    
+    private ServiceRegistration<?> register(final Object service) {
+        return bundle.getBundleContext().registerService(Object.class.getName(), service, null);
+    }
+    
+    @Test
+    public void registrationIsDroppedIfUnregisteredBeforeHandling() throws InterruptedException {
+        pipe(100, handled::add);
+        ServiceRegistration<?> shortLived = register("short lived");
+        ServiceReference<?> shortLivedReference = shortLived.getReference();
+        shortLived.unregister();
+        ServiceReference<?> kept = register("kept").getReference();
+        assertEquals(1, pipeline.getCancelled());
+        
+        pipeline.start();
+        // The unregistration still comes through, the service may have been found by a scan
+        ServiceEvent event = handled.poll(2, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertSame(shortLivedReference, event.getServiceReference());
+        assertEquals(ServiceEvent.UNREGISTERING, event.getType());
+        event = handled.poll(2, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertSame(kept, event.getServiceReference());
+        assertEquals(ServiceEvent.REGISTERED, event.getType());
+        assertNull(handled.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void registrationThatIsBeingHandledIsNotCancelled() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        pipe(100, event -> {
+            entered.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(event);
+        });
+        pipeline.start();
+        
+        ServiceRegistration<?> registration = register("service");
+        assertTrue(entered.await(2, TimeUnit.SECONDS));
+        // We already have the registration, so the unregistration has to go through as well
+        registration.unregister();
+        proceed.countDown();
+        
+        assertEquals(ServiceEvent.REGISTERED, handled.poll(2, TimeUnit.SECONDS).getType());
+        assertEquals(ServiceEvent.UNREGISTERING, handled.poll(2, TimeUnit.SECONDS).getType());
+        assertEquals(0, pipeline.getCancelled());
+    }
+    
+    @Test
+    public void eventsAreHandledInOrder() throws InterruptedException {
+        pipe(100, handled::add);
+        ServiceRegistration<?> first = register("first");
+        ServiceRegistration<?> second = register("second");
+        first.setProperties(new Hashtable<>(Collections.singletonMap("changed", true)));
+        pipeline.start();
+        
+        ServiceEvent event = handled.poll(2, TimeUnit.SECONDS);
+        assertSame(first.getReference(), event.getServiceReference());
+        assertEquals(ServiceEvent.REGISTERED, event.getType());
+        event = handled.poll(2, TimeUnit.SECONDS);
+        assertSame(second.getReference(), event.getServiceReference());
+        assertEquals(ServiceEvent.REGISTERED, event.getType());
+        event = handled.poll(2, TimeUnit.SECONDS);
+        assertSame(first.getReference(), event.getServiceReference());
+        assertEquals(ServiceEvent.MODIFIED, event.getType());
+    }
+    
+    @Test
+    public void handlerFailuresAreReportedAndHandlingGoesOn() throws InterruptedException {
+        pipe(100, event -> {
+            if ("bad".equals(bundle.getBundleContext().getService(event.getServiceReference()))) {
+                throw new IllegalStateException("bad service");
+            }
+            handled.add(event);
+        });
+        pipeline.start();
+        register("bad");
+        ServiceReference<?> good = register("good").getReference();
+        
+        assertEquals("bad service", errors.poll(2, TimeUnit.SECONDS).getMessage());
+        assertSame(good, handled.poll(2, TimeUnit.SECONDS).getServiceReference());
+    }
+    
+    @Test
+    public void awaitQueuedWaitsForEventsAlreadyQueued() {
+        pipe(100, handled::add);
+        register("first");
+        register("second");
+        pipeline.start();
+        
+        assertTrue(pipeline.awaitQueued(2000));
+        assertEquals(2, handled.size());
+    }
+    
+    @Test
+    public void fullQueueHoldsUpDeliveryUntilClose() throws InterruptedException {
+        pipe(1, handled::add);
+        register("first");
+        
+        CountDownLatch delivered = new CountDownLatch(1);
+        Thread framework = new Thread(() -> {
+            register("second");
+            delivered.countDown();
+        });
+        framework.start();
+        assertFalse(delivered.await(200, TimeUnit.MILLISECONDS));
+        
+        // Closing lets the delivering thread go, and the event is dropped
+        pipeline.close();
+        assertTrue(delivered.await(2, TimeUnit.SECONDS));
+        assertEquals(0, pipeline.getQueueDepth());
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+public class SwappingServletTest {
+    /** Lets a test hold requests inside the resource */
+    private static volatile CountDownLatch entered = new CountDownLatch(1);
+    private static volatile CountDownLatch proceed = new CountDownLatch(0);
+    private static final List<AsyncResponse> suspended = new ArrayList<>();
+    
+    @Path("work")
+    public static class Work {
+        @GET
+        public String get() throws InterruptedException {
+            entered.countDown();
+            proceed.await();
+            return "done";
+        }
+        
+        @GET
+        @Path("async")
+        public void async(@Suspended final AsyncResponse response) {
+            synchronized (suspended) {
+                suspended.add(response);
+            }
+            entered.countDown();
+        }
+    }
+    
+    private final AtomicInteger builds = new AtomicInteger();
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private SwappingServlet servlet;
+    
+    @After
+    public void close() {
+        proceed.countDown();
+        clients.shutdownNow();
+        synchronized (suspended) {
+            suspended.clear();
+        }
+    }
+    
+    private SwappingServlet start(final long drainTimeoutMillis, final long asyncDrainTimeoutMillis) 
+            throws Exception {
+        servlet = new SwappingServlet(() -> {
+            builds.incrementAndGet();
+            return new ResourceConfig(Work.class);
+        }, drainTimeoutMillis, asyncDrainTimeoutMillis);
+        servlet.init(stub(ServletConfig.class, answers("getServletContext", stub(ServletContext.class, 
+                answers("getMajorVersion", 3, "getMinorVersion", 1)))));
+        return servlet;
+    }
+    
+    @Test
+    public void swapWaitsForRequestsInFlight() throws Exception {
+        start(5000, 5000);
+        entered = new CountDownLatch(1);
+        proceed = new CountDownLatch(1);
+        Future<Exchange> request = clients.submit(() -> get("/work"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        
+        Future<?> swap = clients.submit(() -> {
+            servlet.swap();
+            return null;
+        });
+        // New requests go to the new container while the old one drains
+        assertEquals(2, waitFor(builds::get, 2));
+        assertFalse(swap.isDone());
+        
+        proceed.countDown();
+        swap.get(5, TimeUnit.SECONDS);
+        assertEquals(200, request.get(5, TimeUnit.SECONDS).status);
+        assertEquals("done", request.get().body());
+        assertEquals(1, servlet.getReloads());
+        assertFalse(servlet.isLastDrainTimedOut());
+    }
+    
+    @Test
+    public void drainGivesUpAfterTheTimeout() throws Exception {
+        start(50, 0);
+        entered = new CountDownLatch(1);
+        proceed = new CountDownLatch(1);
+        clients.submit(() -> get("/work"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        
+        servlet.swap();
+        assertTrue(servlet.isLastDrainTimedOut());
+        assertEquals(1, servlet.getReloads());
+    }
+    
+    @Test
+    public void openAsyncRequestsAreEndedAfterTheirTimeout() throws Exception {
+        start(5000, 50);
+        entered = new CountDownLatch(1);
+        Exchange exchange = get("/work/async");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        assertFalse(exchange.completed.await(0, TimeUnit.MILLISECONDS));
+        
+        servlet.swap();
+        assertTrue(servlet.isLastDrainTimedOut());
+        assertTrue(exchange.completed.await(0, TimeUnit.MILLISECONDS));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exchange.status);
+    }
+    
+    @Test
+    public void asyncRequestsThatFinishAreWaitedFor() throws Exception {
+        start(5000, 5000);
+        entered = new CountDownLatch(1);
+        Exchange exchange = get("/work/async");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        
+        Future<?> swap = clients.submit(() -> {
+            servlet.swap();
+            return null;
+        });
+        waitFor(builds::get, 2);
+        assertFalse(swap.isDone());
+        synchronized (suspended) {
+            suspended.get(0).resume("later");
+        }
+        
+        swap.get(5, TimeUnit.SECONDS);
+        assertFalse(servlet.isLastDrainTimedOut());
+        assertEquals(200, exchange.status);
+        assertEquals("later", exchange.body());
+    }
+    
+    @Test
+    public void requestsBeforeInitAreTurnedAway() throws Exception {
+        servlet = new SwappingServlet(() -> new ResourceConfig(Work.class), 0, 0);
+        assertFalse(servlet.isInitialized());
+        servlet.swap();
+        assertEquals(0, servlet.getReloads());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, get("/work").status);
+    }
+    
+    private static int waitFor(final Supplier<Integer> value, final int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (value.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        return value.get();
+    }
+    
+    private Exchange get(final String path) throws Exception {
+        Exchange exchange = new Exchange(path);
+        servlet.service(exchange.request, exchange.response);
+        return exchange;
+    }
+    
+    /** What a stubbed method does, given its arguments */
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(Object[] args) throws Exception;
+    }
+    
+    private static Map<String, Answer> answers(final Object... pairs) {
+        Map<String, Answer> answers = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            Object value = pairs[i + 1];
+            answers.put((String) pairs[i], value instanceof Answer ? (Answer) value : args -> value);
+        }
+        return answers;
+    }
+    
+    /**
+     * An interface where the named methods give the answers and everything else does nothing
+     */
+    private static <T> T stub(final Class<T> type, final Map<String, Answer> answers) {
+        return type.cast(Proxy.newProxyInstance(SwappingServletTest.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    Answer answer = answers.get(method.getName());
+                    if (null != answer) {
+                        return answer.answer(args);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return Stubs.defaultFor(method.getReturnType());
+                }));
+    }
+    
+    /**
+     * A request and the response it gets, as the HttpService would hand them to the servlet
+     */
+    private static final class Exchange {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<AsyncListener> listeners = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        HttpServletRequest request;
+        final HttpServletResponse response;
+        AsyncContext context;
+        volatile int status = 200;
+        volatile boolean committed;
+        volatile boolean async;
+        
+        Exchange(final String path) {
+            ServletOutputStream output = new ServletOutputStream() {
+                @Override
+                public void write(final int b) {
+                    committed = true;
+                    out.write(b);
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setWriteListener(final WriteListener listener) {
+                    // Always ready
+                }
+            };
+            response = stub(HttpServletResponse.class, answers(
+                    "getOutputStream", output,
+                    "setStatus", (Answer) args -> {
+                        status = (Integer) args[0];
+                        return null;
+                    },
+                    "sendError", (Answer) args -> {
+                        status = (Integer) args[0];
+                        committed = true;
+                        return null;
+                    },
+                    "getStatus", (Answer) args -> status,
+                    "isCommitted", (Answer) args -> committed));
+            
+            context = stub(AsyncContext.class, answers(
+                    "getRequest", (Answer) args -> request,
+                    "getResponse", response,
+                    "addListener", (Answer) args -> {
+                        synchronized (listeners) {
+                            listeners.add((AsyncListener) args[0]);
+                        }
+                        return null;
+                    },
+                    "complete", (Answer) args -> {
+                        List<AsyncListener> told;
+                        synchronized (listeners) {
+                            told = new ArrayList<>(listeners);
+                        }
+                        for (AsyncListener listener : told) {
+                            listener.onComplete(new AsyncEvent(context));
+                        }
+                        completed.countDown();
+                        return null;
+                    }));
+            
+            ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
+            ServletInputStream input = new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+                
+                @Override
+                public boolean isFinished() {
+                    return true;
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setReadListener(final ReadListener listener) {
+                    // Always ready
+                }
+            };
+            request = stub(HttpServletRequest.class, answers(
+                    "getMethod", "GET",
+                    "getScheme", "http",
+                    "getServerName", "localhost",
+                    "getServerPort", 80,
+                    "getProtocol", "HTTP/1.1",
+                    "getContextPath", "",
+                    "getServletPath", "",
+                    "getPathInfo", path,
+                    "getRequestURI", path,
+                    "getRequestURL", (Answer) args -> new StringBuffer("http://localhost" + path),
+                    "isAsyncSupported", true,
+                    "isAsyncStarted", (Answer) args -> async,
+                    "getAsyncContext", (Answer) args -> context,
+                    "startAsync", (Answer) args -> {
+                        async = true;
+                        return context;
+                    },
+                    "getInputStream", input));
+        }
+        
+        String body() {
+            return new String(out.toByteArray());
+        }
+    }
+}
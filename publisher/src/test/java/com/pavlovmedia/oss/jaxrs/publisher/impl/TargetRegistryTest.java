@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+public class TargetRegistryTest {
+    private SimulatedBundle bundle;
+    private TargetRegistry registry;
+    
+    @Before
+    public void setup() {
+        bundle = new SimulatedFramework().installBundle("test.bundle");
+        registry = new TargetRegistry();
+    }
+    
+    private ServiceReference<?> register(final Object service) {
+        return bundle.getBundleContext().registerService(Object.class.getName(), service, null).getReference();
+    }
+    
+    @Test
+    public void addsEachServiceOnce() {
+        ServiceReference<?> reference = register("a");
+        assertTrue(registry.add(new JaxReference(reference, "a")));
+        assertFalse(registry.add(new JaxReference(reference, "a again")));
+        
+        assertEquals(1, registry.size());
+        assertTrue(registry.contains(reference));
+        assertEquals(1, registry.getGeneration());
+        assertEquals(bundle.getBundleId(), registry.references().iterator().next().bundleId);
+    }
+    
+    @Test
+    public void removesByService() {
+        ServiceReference<?> kept = register("kept");
+        ServiceReference<?> removed = register("removed");
+        registry.add(new JaxReference(kept, "kept"));
+        registry.add(new JaxReference(removed, "removed"));
+        
+        assertEquals("removed", registry.remove(removed).get().jaxObject);
+        assertFalse(registry.remove(removed).isPresent());
+        assertFalse(registry.contains(removed));
+        assertEquals(1, registry.size());
+        // Removing something that isn't there is not a change
+        assertEquals(3, registry.getGeneration());
+    }
+    
+    @Test
+    public void viewIsOnlyRebuiltAfterAChange() {
+        registry.add(new JaxReference(register("a"), "a"));
+        Set<Object> first = registry.targets();
+        assertSame(first, registry.targets());
+        assertTrue(first.contains("a"));
+        
+        registry.add(new JaxReference(register("b"), "b"));
+        Set<Object> second = registry.targets();
+        assertEquals(2, second.size());
+        // The old view is left as it was
+        assertEquals(1, first.size());
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void viewIsReadOnly() {
+        registry.add(new JaxReference(register("a"), "a"));
+        registry.references().clear();
+    }
+    
+    @Test
+    public void concurrentChangesAreAllKept() throws Exception {
+        int threads = 4;
+        int perThread = 500;
+        List<List<ServiceReference<?>>> references = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<ServiceReference<?>> mine = new ArrayList<>();
+            for (int i = 0; i < perThread; i++) {
+                mine.add(register(t + "-" + i));
+            }
+            references.add(mine);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> done = new ArrayList<>();
+            for (List<ServiceReference<?>> mine : references) {
+                done.add(executor.submit(() -> {
+                    go.await();
+                    // Every other service is taken back out, while the views are being read
+                    for (int i = 0; i < mine.size(); i++) {
+                        registry.add(new JaxReference(mine.get(i), i));
+                        registry.targets();
+                        if (i % 2 == 1) {
+                            registry.remove(mine.get(i));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(threads * perThread / 2, registry.size());
+        assertEquals(threads * perThread / 2, registry.references().size());
+        assertEquals(threads * perThread * 3 / 2, registry.getGeneration());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+
+import org.junit.Test;
+
+public class TargetSnapshotTest {
+    @Path("resource")
+    public static class Resource {
+        @GET
+        public String get() {
+            return "resource";
+        }
+    }
+    
+    @Provider
+    public static class SomeProvider { }
+    
+    public static class SomeFeature implements Feature {
+        @Override
+        public boolean configure(final FeatureContext context) {
+            return true;
+        }
+    }
+    
+    @Provider
+    public static class ProvidedFeature extends SomeFeature { }
+    
+    @Test
+    public void emptyHasNoGeneration() {
+        assertEquals(-1, TargetSnapshot.EMPTY.generation);
+        assertTrue(TargetSnapshot.EMPTY.singletons.isEmpty());
+        assertTrue(TargetSnapshot.EMPTY.endpointInfo.isEmpty());
+    }
+    
+    @Test
+    public void targetsAreClassified() {
+        Resource resource = new Resource();
+        SomeProvider provider = new SomeProvider();
+        SomeFeature feature = new SomeFeature();
+        ProvidedFeature providedFeature = new ProvidedFeature();
+        Object plain = new Object();
+        
+        TargetSnapshot snapshot = new TargetSnapshot(7, 
+                Arrays.asList(resource, provider, feature, providedFeature, plain));
+        
+        assertEquals(7, snapshot.generation);
+        assertEquals(5, snapshot.singletons.size());
+        assertEquals(Collections.singleton(resource), snapshot.endpoints);
+        assertEquals(2, snapshot.providers.size());
+        assertTrue(snapshot.providers.contains(provider));
+        assertTrue(snapshot.providers.contains(providedFeature));
+        assertEquals(2, snapshot.features.size());
+        assertTrue(snapshot.features.contains(feature));
+        assertTrue(snapshot.features.contains(providedFeature));
+    }
+    
+    @Test
+    public void endpointInfoIsKeptOncePerClass() {
+        TargetSnapshot snapshot = new TargetSnapshot(1, Arrays.asList(new Resource(), new Resource()));
+        
+        assertEquals(2, snapshot.endpoints.size());
+        assertEquals(Collections.singleton(Resource.class.getName()), snapshot.endpointInfo.keySet());
+        assertEquals(1, snapshot.endpointInfo.get(Resource.class.getName()).size());
+        assertEquals("/resource", snapshot.endpointInfo.get(Resource.class.getName()).get(0).path);
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void singletonsCannotChange() {
+        new TargetSnapshot(1, Collections.singletonList(new Resource())).singletons.clear();
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void endpointInfoCannotChange() {
+        new TargetSnapshot(1, Collections.singletonList(new Resource())).endpointInfo.clear();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleReference;
+
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+
+public class VerdictCacheTest {
+    private final AtomicInteger inspections = new AtomicInteger();
+    private final Predicate<Class<?>> inspector = c -> {
+        inspections.incrementAndGet();
+        return c.getName().endsWith("$Resource");
+    };
+    
+    private SimulatedFramework framework;
+    
+    @Before
+    public void setup() {
+        framework = new SimulatedFramework();
+    }
+    
+    @Test
+    public void classIsOnlyInspectedOnce() {
+        VerdictCache cache = new VerdictCache(10);
+        assertTrue(cache.test(Resource.class, inspector));
+        assertTrue(cache.test(Resource.class, inspector));
+        assertFalse(cache.test(String.class, inspector));
+        
+        assertEquals(2, inspections.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+    
+    @Test
+    public void sameClassFromAnotherBundleIsInspectedAgain() throws Exception {
+        Class<?> first = new BundleClassLoader(framework.installBundle("first")).loadClass(Resource.class.getName());
+        Class<?> second = new BundleClassLoader(framework.installBundle("second")).loadClass(Resource.class.getName());
+        
+        VerdictCache cache = new VerdictCache(10);
+        cache.test(first, inspector);
+        cache.test(second, inspector);
+        assertEquals(2, inspections.get());
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    public void updatedBundleIsInspectedAgain() throws Exception {
+        SimulatedBundle bundle = framework.installBundle("updated");
+        Class<?> clazz = new BundleClassLoader(bundle).loadClass(Resource.class.getName());
+        
+        VerdictCache cache = new VerdictCache(10);
+        cache.test(clazz, inspector);
+        cache.test(clazz, inspector);
+        assertEquals(1, inspections.get());
+        
+        // The same class object, but the bundle it came from has a new last modified stamp
+        bundle.update();
+        cache.test(clazz, inspector);
+        assertEquals(2, inspections.get());
+    }
+    
+    @Test
+    public void invalidateDropsOnlyThatBundle() throws Exception {
+        SimulatedBundle dropped = framework.installBundle("dropped");
+        Class<?> droppedClass = new BundleClassLoader(dropped).loadClass(Resource.class.getName());
+        Class<?> keptClass = new BundleClassLoader(framework.installBundle("kept"))
+                .loadClass(Resource.class.getName());
+        
+        VerdictCache cache = new VerdictCache(10);
+        cache.test(droppedClass, inspector);
+        cache.test(keptClass, inspector);
+        cache.invalidate(dropped.getBundleId());
+        
+        assertEquals(1, cache.size());
+        cache.test(keptClass, inspector);
+        assertEquals(2, inspections.get());
+        cache.test(droppedClass, inspector);
+        assertEquals(3, inspections.get());
+    }
+    
+    @Test
+    public void leastRecentlyUsedIsDroppedWhenFull() {
+        VerdictCache cache = new VerdictCache(2);
+        cache.test(Resource.class, inspector);
+        cache.test(String.class, inspector);
+        cache.test(Resource.class, inspector);
+        cache.test(Integer.class, inspector);
+        
+        assertEquals(2, cache.size());
+        cache.test(Resource.class, inspector);
+        assertEquals(3, inspections.get());
+        cache.test(String.class, inspector);
+        assertEquals(4, inspections.get());
+    }
+    
+    @Test
+    public void zeroSizeTurnsCachingOff() {
+        VerdictCache cache = new VerdictCache(0);
+        cache.test(Resource.class, inspector);
+        cache.test(Resource.class, inspector);
+        assertEquals(2, inspections.get());
+        assertEquals(0, cache.size());
+    }
+    
+    /** What the classes of the bundles are made of */
+    public static class Resource {
+    }
+    
+    /**
+     * Defines its own copy of {@link Resource} the way a bundle class loader would,
+     * so {@link org.osgi.framework.FrameworkUtil#getBundle(Class)} finds the bundle
+     */
+    private static final class BundleClassLoader extends ClassLoader implements BundleReference {
+        private final Bundle bundle;
+        
+        BundleClassLoader(final Bundle bundle) {
+            super(VerdictCacheTest.class.getClassLoader());
+            this.bundle = bundle;
+        }
+        
+        @Override
+        public Bundle getBundle() {
+            return bundle;
+        }
+        
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!Resource.class.getName().equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (null != loaded) {
+                    return loaded;
+                }
+                byte[] bytes = read(name.replace('.', '/') + ".class");
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        }
+        
+        private byte[] read(final String resource) throws ClassNotFoundException {
+            try (InputStream in = getParent().getResourceAsStream(resource)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(resource, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceRegistration;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+public class WidcardServiceTrackerTest {
+    @Path("resource")
+    public static class Resource {
+        @GET
+        public String get() {
+            return "resource";
+        }
+    }
+    
+    private final List<String> triggers = Collections.synchronizedList(new ArrayList<>());
+    /** Runs on whatever thread tells us about a change, after it is recorded */
+    private volatile Runnable onTrigger = () -> { };
+    private final List<WidcardServiceTracker> trackers = new ArrayList<>();
+    private SimulatedFramework framework;
+    private SimulatedBundle publisherBundle;
+    private SimulatedBundle serviceBundle;
+    
+    @Before
+    public void setup() {
+        framework = new SimulatedFramework();
+        publisherBundle = framework.installBundle("publisher");
+        serviceBundle = framework.installBundle("services");
+    }
+    
+    @After
+    public void close() {
+        trackers.forEach(WidcardServiceTracker::deactivate);
+    }
+    
+    /**
+     * Starts a tracker the way a publisher would
+     * 
+     * @param filter the discovery filter
+     * @param queueCapacity the pipeline capacity, 0 handles events as they are delivered
+     */
+    private WidcardServiceTracker track(final String filter, final int queueCapacity) 
+            throws InvalidSyntaxException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(WidcardServiceTracker.FILTER, filter);
+        properties.put(WidcardServiceTracker.QUEUE_CAPACITY, queueCapacity);
+        properties.put(WidcardServiceTracker.SCAN_PARALLELISM, 1);
+        properties.put(BaseObjectTracker.CALLBACK, (Consumer<String>) trigger -> {
+            triggers.add(trigger);
+            onTrigger.run();
+        });
+        
+        WidcardServiceTracker tracker = new WidcardServiceTracker();
+        tracker.logger = Stubs.logger();
+        tracker.activate(properties, publisherBundle.getBundleContext());
+        trackers.add(tracker);
+        return tracker;
+    }
+    
+    private ServiceRegistration<?> register(final Object service, final String publisherPath) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        if (null != publisherPath) {
+            properties.put(Publisher.PUBLISHER_PATH, publisherPath);
+        }
+        return serviceBundle.getBundleContext().registerService(Object.class.getName(), service, properties);
+    }
+    
+    private static Hashtable<String, Object> tiedTo(final String publisherPath) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(Publisher.PUBLISHER_PATH, publisherPath);
+        return properties;
+    }
+    
+    @Test
+    public void modifiedServicesComeAndGo() throws InvalidSyntaxException {
+        WidcardServiceTracker tracker = track(
+                DiscoveryFilter.forPublisher(DiscoveryFilter.WILDCARD, null, "/mine"), 0);
+        Resource resource = new Resource();
+        ServiceRegistration<?> registration = register(resource, "/theirs");
+        assertTrue(tracker.getJaxrsTargets().isEmpty());
+        
+        // Now it matches, which only shows up as a modification
+        registration.setProperties(tiedTo("/mine"));
+        assertEquals(Collections.singleton(resource), tracker.getJaxrsTargets());
+        
+        // Still matching, nothing should change
+        long generation = tracker.getGeneration();
+        registration.setProperties(new Hashtable<>());
+        assertEquals(Collections.singleton(resource), tracker.getJaxrsTargets());
+        assertEquals(generation, tracker.getGeneration());
+        
+        // Now it stops matching
+        registration.setProperties(tiedTo("/theirs"));
+        assertTrue(tracker.getJaxrsTargets().isEmpty());
+        assertFalse(tracker.getRegistry().contains(registration.getReference()));
+    }
+    
+    @Test
+    public void serviceMovesBetweenPublishers() throws InvalidSyntaxException {
+        WidcardServiceTracker one = track(DiscoveryFilter.forPublisher(DiscoveryFilter.WILDCARD, null, "/one"), 0);
+        WidcardServiceTracker two = track(DiscoveryFilter.forPublisher(DiscoveryFilter.WILDCARD, null, "/two"), 0);
+        Resource resource = new Resource();
+        ServiceRegistration<?> registration = register(resource, "/one");
+        assertEquals(Collections.singleton(resource), one.getJaxrsTargets());
+        assertTrue(two.getJaxrsTargets().isEmpty());
+        triggers.clear();
+        
+        registration.setProperties(tiedTo("/two"));
+        assertTrue(one.getJaxrsTargets().isEmpty());
+        assertEquals(Collections.singleton(resource), two.getJaxrsTargets());
+        // Each publisher is told to reload
+        assertEquals(2, triggers.size());
+        
+        // Untied it goes to both
+        registration.setProperties(new Hashtable<>());
+        assertEquals(Collections.singleton(resource), one.getJaxrsTargets());
+        assertEquals(Collections.singleton(resource), two.getJaxrsTargets());
+    }
+    
+    @Test
+    public void unregisteringWhileQueuedRemovesAScannedService() throws InterruptedException, InvalidSyntaxException {
+        WidcardServiceTracker tracker = track(DiscoveryFilter.WILDCARD, 100);
+        
+        // Hold the pipeline up inside the change for the first service
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        onTrigger = () -> {
+            onTrigger = () -> { };
+            stalled.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Resource first = new Resource();
+        register(first, null);
+        assertTrue(stalled.await(2, TimeUnit.SECONDS));
+        
+        // The registration is queued, but the service is found the way the initial scan would find it
+        Resource second = new Resource();
+        ServiceRegistration<?> registration = register(second, null);
+        assertTrue(tracker.addTarget(registration.getReference(), second));
+        registration.unregister();
+        
+        release.countDown();
+        assertTrue(tracker.getPipeline().get().awaitQueued(2000));
+        assertEquals(Collections.singleton(first), tracker.getJaxrsTargets());
+        assertEquals(1, tracker.getPipeline().get().getCancelled());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.CacheResponse;
+
+public class ResponseCacheFilterTest {
+    private static final AtomicInteger CALLS = new AtomicInteger();
+    
+    @Path("cached")
+    @CacheResponse(60)
+    public static class Cached {
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String get(@QueryParam("q") final String q) {
+            return "call " + CALLS.incrementAndGet() + " " + q;
+        }
+        
+        @GET
+        @Path("tagged")
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response tagged() {
+            return Response.ok("call " + CALLS.incrementAndGet()).tag("v1").header("X-Kept", "yes").build();
+        }
+        
+        @GET
+        @Path("private")
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response secret() {
+            CacheControl control = new CacheControl();
+            control.setPrivate(true);
+            return Response.ok("call " + CALLS.incrementAndGet()).cacheControl(control).build();
+        }
+        
+        @GET
+        @Path("big")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String big() {
+            CALLS.incrementAndGet();
+            return new String(new char[100]).replace('\0', 'x');
+        }
+    }
+    
+    @Path("uncached")
+    public static class Uncached {
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String get() {
+            return "call " + CALLS.incrementAndGet();
+        }
+    }
+    
+    private ResponseCache cache;
+    private ApplicationHandler handler;
+    
+    @Before
+    public void setup() {
+        CALLS.set(0);
+        cache = new ResponseCache(1024, false);
+        handler = new ApplicationHandler(new ResourceConfig(Cached.class, Uncached.class)
+                .register(new ResponseCacheFeature(cache, 50)));
+    }
+    
+    private ContainerResponse get(final String path, final String ifNoneMatch, final ByteArrayOutputStream out) 
+            throws Exception {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"), 
+                URI.create("http://localhost" + path), "GET", null, new MapPropertiesDelegate());
+        if (null != ifNoneMatch) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return handler.apply(request, out).get();
+    }
+    
+    private String body(final String path) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(200, get(path, null, out).getStatus());
+        return out.toString("UTF-8");
+    }
+    
+    @Test
+    public void secondRequestIsServedFromTheCache() throws Exception {
+        assertEquals("call 1 null", body("/cached"));
+        assertEquals("call 1 null", body("/cached"));
+        
+        assertEquals(1, CALLS.get());
+        assertEquals(1, cache.getStats().hits);
+        assertEquals(1, cache.getStats().stores);
+    }
+    
+    @Test
+    public void queryIsPartOfTheKey() throws Exception {
+        assertEquals("call 1 a", body("/cached?q=a"));
+        assertEquals("call 2 b", body("/cached?q=b"));
+        assertEquals("call 1 a", body("/cached?q=a"));
+    }
+    
+    @Test
+    public void hitKeepsHeadersAndTag() throws Exception {
+        body("/cached/tagged");
+        
+        ContainerResponse hit = get("/cached/tagged", null, new ByteArrayOutputStream());
+        assertEquals(new EntityTag("v1"), hit.getEntityTag());
+        assertEquals("yes", hit.getHeaderString("X-Kept"));
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, hit.getMediaType());
+        assertEquals(1, CALLS.get());
+    }
+    
+    @Test
+    public void matchingTagIsNotModified() throws Exception {
+        body("/cached/tagged");
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(304, get("/cached/tagged", "\"v1\"", out).getStatus());
+        assertEquals(0, out.size());
+        assertEquals(1, CALLS.get());
+    }
+    
+    @Test
+    public void privateAndOversizedResponsesAreNotKept() throws Exception {
+        body("/cached/private");
+        body("/cached/private");
+        body("/cached/big");
+        body("/cached/big");
+        
+        assertEquals(4, CALLS.get());
+        assertEquals(0, cache.getStats().stores);
+    }
+    
+    @Test
+    public void unmarkedMethodsAreLeftAlone() throws Exception {
+        body("/uncached");
+        body("/uncached");
+        
+        assertEquals(2, CALLS.get());
+        assertEquals(0, cache.getStats().misses);
+    }
+    
+    @Test
+    public void clearedCacheCallsTheMethodAgain() throws Exception {
+        body("/cached");
+        cache.clear();
+        
+        assertEquals("call 2 null", body("/cached"));
+    }
+}
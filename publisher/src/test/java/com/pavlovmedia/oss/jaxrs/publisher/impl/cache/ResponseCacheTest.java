@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.ResponseCacheStats;
+
+public class ResponseCacheTest {
+    private static final long NOW = 1_000_000L;
+    private static final long LATER = NOW + 1_000L;
+    
+    private static CachedResponse response(final int size, final boolean offHeap) {
+        byte[] body = new byte[size + 4];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        return new CachedResponse("text/plain", Collections.emptyMap(), null, body, size, offHeap, LATER);
+    }
+    
+    @Test
+    public void keptResponseIsServedUntilItExpires() {
+        ResponseCache cache = new ResponseCache(100, false);
+        CachedResponse response = response(10, false);
+        assertTrue(cache.put("a", response));
+        
+        assertSame(response, cache.get("a", NOW));
+        assertNull(cache.get("a", LATER));
+        assertNull(cache.get("b", NOW));
+        
+        ResponseCacheStats stats = cache.getStats();
+        assertEquals(0, stats.entries);
+        assertEquals(0, stats.bytes);
+        assertEquals(1, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(1, stats.stores);
+        assertEquals(1, stats.expirations);
+    }
+    
+    @Test
+    public void leastRecentlyUsedAreDropped() {
+        ResponseCache cache = new ResponseCache(30, false);
+        cache.put("a", response(10, false));
+        cache.put("b", response(10, false));
+        cache.put("c", response(10, false));
+        cache.get("a", NOW);
+        
+        assertTrue(cache.put("d", response(15, false)));
+        assertNull(cache.get("b", NOW));
+        assertNull(cache.get("c", NOW));
+        assertEquals(25, cache.getStats().bytes);
+        assertEquals(2, cache.getStats().evictions);
+    }
+    
+    @Test
+    public void replacingAKeyDoesNotCountItTwice() {
+        ResponseCache cache = new ResponseCache(30, false);
+        cache.put("a", response(20, false));
+        cache.put("a", response(20, false));
+        
+        assertEquals(1, cache.getStats().entries);
+        assertEquals(20, cache.getStats().bytes);
+        assertEquals(0, cache.getStats().evictions);
+    }
+    
+    @Test
+    public void responsesBiggerThanTheCacheAreNotKept() {
+        ResponseCache cache = new ResponseCache(30, false);
+        cache.put("a", response(10, false));
+        
+        assertFalse(cache.put("b", response(31, false)));
+        assertEquals(1, cache.getStats().entries);
+        assertEquals(0, cache.getStats().evictions);
+    }
+    
+    @Test
+    public void clearDropsEverything() {
+        ResponseCache cache = new ResponseCache(30, false);
+        cache.put("a", response(10, false));
+        cache.clear();
+        
+        assertNull(cache.get("a", NOW));
+        assertEquals(0, cache.getStats().entries);
+        assertEquals(0, cache.getStats().bytes);
+    }
+    
+    @Test
+    public void entityIsWrittenTheSameFromEitherHeap() throws IOException {
+        byte[] expected = new byte[20_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+        for (boolean offHeap : new boolean[] { false, true }) {
+            CachedResponse response = response(expected.length, offHeap);
+            assertEquals(expected.length, response.size());
+            
+            // Written twice to make sure writing doesn't use it up
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                response.writeTo(out);
+                assertArrayEquals(expected, out.toByteArray());
+            }
+        }
+    }
+}
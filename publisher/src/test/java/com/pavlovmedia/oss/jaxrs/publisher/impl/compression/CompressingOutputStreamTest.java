@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressingOutputStreamTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+    private DeflaterPool gzipPool;
+    private DeflaterPool deflatePool;
+    
+    @Before
+    public void setup() {
+        gzipPool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 2);
+        deflatePool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, 2);
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, 1000);
+    }
+    
+    @After
+    public void close() {
+        gzipPool.close();
+        deflatePool.close();
+    }
+    
+    private static byte[] entity(final int size) {
+        byte[] entity = new byte[size];
+        for (int i = 0; i < size; i++) {
+            entity[i] = (byte) ('a' + i % 7);
+        }
+        return entity;
+    }
+    
+    @Test
+    public void smallEntityGoesOutAsItIs() throws IOException {
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 100);
+        stream.write("small".getBytes(StandardCharsets.UTF_8));
+        stream.flush();
+        assertEquals(0, out.size());
+        stream.finish();
+        
+        assertEquals("small", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(1000, headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+    }
+    
+    @Test
+    public void gzipRoundTrips() throws IOException {
+        byte[] entity = entity(20000);
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 100);
+        // Odd sized writes, the first ones below the minimum
+        for (int offset = 0; offset < entity.length; offset += 37) {
+            stream.write(entity, offset, Math.min(37, entity.length - offset));
+        }
+        stream.finish();
+        
+        assertEquals(AcceptEncoding.GZIP, headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNull(headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertArrayEquals(entity, readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+        assertEquals(1, gzipPool.getIdle());
+    }
+    
+    @Test
+    public void gzipFraming() throws Exception {
+        byte[] entity = entity(5000);
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 0);
+        stream.write(entity);
+        stream.finish();
+        byte[] written = out.toByteArray();
+        
+        // Magic, deflate, no flags, no time, no extra flags, unknown OS
+        assertArrayEquals(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0 }, Arrays.copyOf(written, 10));
+        
+        // The trailer is the CRC-32 and then the size, both little endian
+        CRC32 crc = new CRC32();
+        crc.update(entity);
+        ByteBuffer trailer = ByteBuffer.wrap(written, written.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((int) crc.getValue(), trailer.getInt());
+        assertEquals(entity.length, trailer.getInt());
+        
+        // And what is in between is raw deflate
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(written, 10, written.length - 18);
+        assertArrayEquals(entity, inflate(inflater, entity.length));
+    }
+    
+    @Test
+    public void deflateRoundTrips() throws IOException {
+        byte[] entity = entity(20000);
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.DEFLATE, 
+                deflatePool, 100);
+        stream.write(entity);
+        stream.finish();
+        
+        assertEquals(AcceptEncoding.DEFLATE, headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(entity, readAll(new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))));
+    }
+    
+    @Test
+    public void flushPassesEverythingWrittenSoFar() throws Exception {
+        byte[] entity = entity(3000);
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 100);
+        stream.write(entity);
+        stream.flush();
+        
+        // Without finishing, what is out already inflates to the whole entity
+        byte[] written = out.toByteArray();
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(written, 10, written.length - 10);
+        assertArrayEquals(entity, inflate(inflater, entity.length));
+        stream.finish();
+    }
+    
+    @Test
+    public void strongTagGetsTheCoding() throws IOException {
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag("abc"));
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 0);
+        stream.write(entity(10));
+        stream.finish();
+        assertEquals(new EntityTag("abc-gzip"), headers.getFirst(HttpHeaders.ETAG));
+    }
+    
+    @Test
+    public void weakTagIsLeftAlone() throws IOException {
+        headers.putSingle(HttpHeaders.ETAG, new EntityTag("abc", true));
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 0);
+        stream.write(entity(10));
+        stream.finish();
+        assertEquals(new EntityTag("abc", true), headers.getFirst(HttpHeaders.ETAG));
+    }
+    
+    @Test(expected = IOException.class)
+    public void writingAfterFinishFails() throws IOException {
+        CompressingOutputStream stream = new CompressingOutputStream(out, headers, AcceptEncoding.GZIP, gzipPool, 0);
+        stream.finish();
+        stream.write(1);
+    }
+    
+    private static byte[] inflate(final Inflater inflater, final int size) throws Exception {
+        byte[] inflated = new byte[size];
+        int count = 0;
+        while (count < size) {
+            int read = inflater.inflate(inflated, count, size - count);
+            if (0 == read) {
+                break;
+            }
+            count += read;
+        }
+        inflater.end();
+        return Arrays.copyOf(inflated, count);
+    }
+    
+    private static byte[] readAll(final InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
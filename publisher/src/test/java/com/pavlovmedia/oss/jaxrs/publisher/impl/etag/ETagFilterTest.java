@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.HashEntityTag;
+import com.pavlovmedia.oss.jaxrs.publisher.api.VersionedResource;
+
+public class ETagFilterTest {
+    private static final AtomicInteger CALLS = new AtomicInteger();
+    private static volatile String version = "1";
+    
+    @Path("plain")
+    public static class Plain {
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String get() {
+            CALLS.incrementAndGet();
+            return "plain";
+        }
+        
+        @GET
+        @Path("hashed")
+        @HashEntityTag
+        @Produces(MediaType.TEXT_PLAIN)
+        public String hashed() {
+            CALLS.incrementAndGet();
+            return "hashed";
+        }
+        
+        @GET
+        @Path("tagged")
+        @HashEntityTag
+        @Produces(MediaType.TEXT_PLAIN)
+        public Response tagged() {
+            CALLS.incrementAndGet();
+            return Response.ok("tagged").tag("mine").build();
+        }
+    }
+    
+    @Path("hashed")
+    @HashEntityTag
+    public static class Hashed {
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String get() {
+            CALLS.incrementAndGet();
+            return "hashed";
+        }
+    }
+    
+    @Path("versioned")
+    public static class Versioned implements VersionedResource {
+        @Override
+        public String getVersion(final ContainerRequestContext request) {
+            return version;
+        }
+        
+        @GET
+        @Produces(MediaType.TEXT_PLAIN)
+        public String get() {
+            CALLS.incrementAndGet();
+            return "versioned " + version;
+        }
+    }
+    
+    private ApplicationHandler handler;
+    
+    @Before
+    public void setup() {
+        CALLS.set(0);
+        version = "1";
+        handler = new ApplicationHandler(new ResourceConfig(Plain.class, Hashed.class, Versioned.class)
+                .register(new ETagFeature()));
+    }
+    
+    private ContainerResponse get(final String path, final EntityTag ifNoneMatch, final ByteArrayOutputStream out) 
+            throws Exception {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"), 
+                URI.create("http://localhost" + path), "GET", null, new MapPropertiesDelegate());
+        if (null != ifNoneMatch) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.toString());
+        }
+        return handler.apply(request, out).get();
+    }
+    
+    private ContainerResponse get(final String path, final EntityTag ifNoneMatch) throws Exception {
+        return get(path, ifNoneMatch, new ByteArrayOutputStream());
+    }
+    
+    @Test
+    public void unmarkedMethodsAreNotHashed() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerResponse response = get("/plain", null, out);
+        
+        assertEquals(200, response.getStatus());
+        assertNull(response.getEntityTag());
+        assertEquals("plain", out.toString("UTF-8"));
+    }
+    
+    @Test
+    public void markedMethodsAreHashed() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerResponse response = get("/plain/hashed", null, out);
+        
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        assertEquals("hashed", out.toString("UTF-8"));
+        
+        // The same entity from a class that is marked gets the same tag
+        assertEquals(tag, get("/hashed", null).getEntityTag());
+    }
+    
+    @Test
+    public void matchingHashIsNotModified() throws Exception {
+        EntityTag tag = get("/hashed", null).getEntityTag();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerResponse response = get("/hashed", tag, out);
+        assertEquals(304, response.getStatus());
+        assertEquals(tag, response.getEntityTag());
+        assertEquals(0, out.size());
+        
+        // The method still ran, only the entity was saved
+        assertEquals(2, CALLS.get());
+        assertEquals(200, get("/hashed", new EntityTag("other")).getStatus());
+    }
+    
+    @Test
+    public void tagFromTheMethodIsKept() throws Exception {
+        assertEquals(new EntityTag("mine"), get("/plain/tagged", null).getEntityTag());
+        assertEquals(304, get("/plain/tagged", new EntityTag("mine")).getStatus());
+    }
+    
+    @Test
+    public void matchingVersionNeverReachesTheMethod() throws Exception {
+        EntityTag tag = get("/versioned", null).getEntityTag();
+        assertNotNull(tag);
+        assertEquals(1, CALLS.get());
+        
+        assertEquals(304, get("/versioned", tag).getStatus());
+        assertEquals(1, CALLS.get());
+        
+        version = "2";
+        ContainerResponse changed = get("/versioned", tag);
+        assertEquals(200, changed.getStatus());
+        assertEquals(2, CALLS.get());
+        assertNotNull(changed.getEntityTag());
+    }
+}
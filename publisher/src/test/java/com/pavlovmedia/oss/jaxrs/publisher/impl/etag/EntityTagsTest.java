@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.etag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.junit.Test;
+
+public class EntityTagsTest {
+    private static final EntityTag TAG = new EntityTag("abc");
+    
+    @Test
+    public void matchesTheSameTag() {
+        assertTrue(EntityTags.matches("\"abc\"", TAG));
+        assertFalse(EntityTags.matches("\"abd\"", TAG));
+        assertFalse(EntityTags.matches("abc", TAG));
+    }
+    
+    @Test
+    public void matchesAnyTagInTheList() {
+        assertTrue(EntityTags.matches("\"x\", \"abc\" ,\"y\"", TAG));
+        assertFalse(EntityTags.matches("\"x\", \"y\"", TAG));
+    }
+    
+    @Test
+    public void comparisonIsWeak() {
+        assertTrue(EntityTags.matches("W/\"abc\"", TAG));
+        assertTrue(EntityTags.matches("\"abc\"", new EntityTag("abc", true)));
+    }
+    
+    @Test
+    public void starMatchesAnything() {
+        assertTrue(EntityTags.matches("*", TAG));
+        assertTrue(EntityTags.matches("\"x\", *", TAG));
+    }
+    
+    @Test
+    public void nothingToMatch() {
+        assertFalse(EntityTags.matches(null, TAG));
+        assertFalse(EntityTags.matches("\"abc\"", null));
+        assertFalse(EntityTags.matches("", TAG));
+    }
+    
+    @Test
+    public void codingIsIgnoredWhenMatching() {
+        assertTrue(EntityTags.matches("\"abc-gzip\"", TAG));
+        assertTrue(EntityTags.matches("\"abc\"", new EntityTag("abc-deflate")));
+        assertTrue(EntityTags.matches("\"abc-deflate\"", new EntityTag("abc-gzip")));
+        assertFalse(EntityTags.matches("\"abc-br\"", TAG));
+    }
+    
+    @Test
+    public void encodedAddsTheCodingToStrongTags() {
+        assertEquals(new EntityTag("abc-gzip"), EntityTags.encoded(TAG, "gzip"));
+        assertEquals(new EntityTag("abc-gzip"), EntityTags.encoded("\"abc\"", "gzip"));
+        EntityTag weak = new EntityTag("abc", true);
+        assertEquals(weak, EntityTags.encoded(weak, "gzip"));
+    }
+    
+    @Test
+    public void tagsOfPartsAreStable() {
+        assertEquals(EntityTags.of("a", "b"), EntityTags.of("a", "b"));
+        assertNotEquals(EntityTags.of("a", "b"), EntityTags.of("ab"));
+        assertNotEquals(EntityTags.of("a", null), EntityTags.of("a", "null"));
+        assertFalse(EntityTags.of("a").isWeak());
+    }
+}
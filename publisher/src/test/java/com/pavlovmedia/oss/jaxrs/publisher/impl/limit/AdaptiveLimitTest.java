@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointLimit;
+
+public class AdaptiveLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private static AdaptiveLimit limit(final int initial, final int min, final int max) {
+        return new AdaptiveLimit("/test", "GET", initial, min, max, 0.5, 2.0);
+    }
+    
+    /** Lets a number of requests in and keeps them running */
+    private static void fill(final AdaptiveLimit limit, final int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+    }
+    
+    @Test
+    public void startsWithinBounds() {
+        assertEquals(5, limit(1, 5, 10).toLimit().limit);
+        assertEquals(10, limit(50, 5, 10).toLimit().limit);
+    }
+    
+    @Test
+    public void rejectsPastTheLimit() {
+        AdaptiveLimit limit = limit(2, 1, 10);
+        fill(limit, 2);
+        assertFalse(limit.tryAcquire());
+        
+        limit.release(FAST, false);
+        assertTrue(limit.tryAcquire());
+        
+        EndpointLimit stats = limit.toLimit();
+        assertEquals(2, stats.inFlight);
+        assertEquals(3, stats.accepted);
+        assertEquals(1, stats.rejected);
+    }
+    
+    @Test
+    public void growsByAboutOnePerLimitOfRequestsWhileBusy() {
+        AdaptiveLimit limit = limit(4, 1, 100);
+        fill(limit, 3);
+        // Each request adds 1/limit, one at a time with the others still running
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, false);
+        }
+        assertEquals(5, limit.toLimit().limit);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, false);
+        }
+        assertEquals(6, limit.toLimit().limit);
+    }
+    
+    @Test
+    public void doesNotGrowWhileIdle() {
+        AdaptiveLimit limit = limit(10, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, false);
+        }
+        assertEquals(10, limit.toLimit().limit);
+    }
+    
+    @Test
+    public void neverGrowsPastTheMax() {
+        AdaptiveLimit limit = limit(4, 1, 5);
+        fill(limit, 3);
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+        assertEquals(5, limit.toLimit().limit);
+    }
+    
+    @Test
+    public void failureCutsTheLimitOncePerRecentLatency() {
+        AdaptiveLimit limit = limit(20, 1, 100);
+        long slow = TimeUnit.SECONDS.toNanos(10);
+        fill(limit, 2);
+        limit.release(slow, true);
+        assertEquals(10, limit.toLimit().limit);
+        
+        // Right after, the same slow spell doesn't count again
+        limit.release(slow, true);
+        assertEquals(10, limit.toLimit().limit);
+    }
+    
+    @Test
+    public void slowRequestsCutTheLimit() {
+        AdaptiveLimit limit = limit(20, 1, 100);
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+        assertEquals(20, limit.toLimit().limit);
+        
+        // Well past twice the baseline
+        limit.tryAcquire();
+        limit.release(FAST * 50, false);
+        assertEquals(10, limit.toLimit().limit);
+        assertTrue(limit.toLimit().recentNanos > limit.toLimit().baselineNanos * 2);
+    }
+    
+    @Test
+    public void neverShrinksPastTheMin() {
+        AdaptiveLimit limit = limit(4, 3, 100);
+        limit.tryAcquire();
+        limit.release(FAST, true);
+        assertEquals(3, limit.toLimit().limit);
+    }
+}
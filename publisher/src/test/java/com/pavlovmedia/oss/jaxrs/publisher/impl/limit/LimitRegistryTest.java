@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Test;
+
+public class LimitRegistryTest {
+    public static class Item {
+        @GET
+        public String get() {
+            return "item";
+        }
+    }
+    
+    @Path("items")
+    public static class Items {
+        @GET
+        public String list() {
+            return "items";
+        }
+        
+        @Path("{id}")
+        public Item item(@PathParam("id") final String id) {
+            return new Item();
+        }
+    }
+    
+    @Path("other")
+    public static class Other {
+        @Path("item")
+        public Item item() {
+            return new Item();
+        }
+    }
+    
+    private LimitRegistry registry;
+    private ApplicationHandler handler;
+    
+    private void setup(final int limit) {
+        registry = new LimitRegistry(limit, limit, limit, 0.5, 2.0);
+        handler = new ApplicationHandler(new ResourceConfig(Items.class, Other.class)
+                .register(new LimitFeature(registry, 7))
+                .register(new LimitListener(registry)));
+    }
+    
+    private ContainerResponse get(final String path) throws Exception {
+        return handler.apply(new ContainerRequest(URI.create("http://localhost/"), 
+                URI.create("http://localhost" + path), "GET", null, new MapPropertiesDelegate())).get();
+    }
+    
+    private List<String> limits() {
+        return registry.snapshot().stream()
+                .map(l -> l.verb + " " + l.path + " " + l.accepted + " " + l.inFlight)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void finishedRequestsAreReleased() throws Exception {
+        setup(1);
+        assertEquals(200, get("/items").getStatus());
+        assertEquals(200, get("/items").getStatus());
+        
+        assertEquals(Arrays.asList("GET /items 2 0"), limits());
+    }
+    
+    @Test
+    public void fullLimitTurnsRequestsAway() throws Exception {
+        setup(1);
+        assertTrue(registry.limitFor("/items", "GET").tryAcquire());
+        
+        ContainerResponse response = get("/items");
+        assertEquals(503, response.getStatus());
+        assertEquals("7", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, registry.snapshot().get(0).rejected);
+    }
+    
+    @Test
+    public void locatorsKeepTheirOwnLimits() throws Exception {
+        setup(1);
+        // The same resource method behind two locators
+        assertEquals(200, get("/items/1").getStatus());
+        assertEquals(200, get("/other/item").getStatus());
+        assertEquals(200, get("/items/2").getStatus());
+        
+        assertEquals(Arrays.asList("GET /items/{id} 2 0", "GET /other/item 1 0"), limits());
+        
+        // A full limit on one path leaves the other alone
+        assertTrue(registry.limitFor("/other/item", "GET").tryAcquire());
+        assertEquals(503, get("/other/item").getStatus());
+        assertEquals(200, get("/items/3").getStatus());
+    }
+    
+    @Test
+    public void limitsOutliveTheirMethods() throws Exception {
+        setup(2);
+        get("/items");
+        AdaptiveLimit limit = registry.limitFor("/items", "GET");
+        
+        registry.forgetMethods();
+        get("/items");
+        assertSame(limit, registry.limitFor("/items", "GET"));
+        assertEquals(2, registry.snapshot().get(0).accepted);
+    }
+}
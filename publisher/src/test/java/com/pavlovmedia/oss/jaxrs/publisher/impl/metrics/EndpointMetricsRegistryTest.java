@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.WebApplicationException;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
+
+public class EndpointMetricsRegistryTest {
+    public static class Item {
+        @GET
+        public String get() {
+            return "item";
+        }
+    }
+    
+    @Path("items")
+    public static class Items {
+        @GET
+        public String list() {
+            return "items";
+        }
+        
+        @Path("{id}")
+        public Item item(@PathParam("id") final String id) {
+            return new Item();
+        }
+        
+        @GET
+        @Path("broken")
+        public String broken() {
+            throw new WebApplicationException(503);
+        }
+    }
+    
+    @Path("other")
+    public static class Other {
+        @Path("item")
+        public Item item() {
+            return new Item();
+        }
+    }
+    
+    private final EndpointMetricsRegistry registry = new EndpointMetricsRegistry();
+    private ApplicationHandler handler;
+    
+    @Before
+    public void setup() {
+        handler = new ApplicationHandler(new ResourceConfig(Items.class, Other.class)
+                .register(new MetricsListener(registry)));
+    }
+    
+    private int get(final String path) throws Exception {
+        return handler.apply(new ContainerRequest(URI.create("http://localhost/"), 
+                URI.create("http://localhost" + path), "GET", null, new MapPropertiesDelegate()))
+                .get().getStatus();
+    }
+    
+    private List<String> recorded() {
+        return registry.snapshot().stream()
+                .map(m -> m.verb + " " + m.path + " " + m.requests)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void requestsAreCountedByPathAndVerb() throws Exception {
+        assertEquals(200, get("/items"));
+        assertEquals(200, get("/items"));
+        
+        assertEquals(Arrays.asList("GET /items 2"), recorded());
+        EndpointMetrics metrics = registry.snapshot().get(0);
+        assertEquals(0, metrics.errors);
+        assertEquals(0, metrics.inFlight);
+    }
+    
+    @Test
+    public void serverErrorsAreCounted() throws Exception {
+        assertEquals(503, get("/items/broken"));
+        
+        assertEquals(1, registry.snapshot().get(0).errors);
+    }
+    
+    @Test
+    public void locatorsKeepTheirOwnPaths() throws Exception {
+        // The same resource method behind two locators
+        assertEquals(200, get("/items/1"));
+        assertEquals(200, get("/other/item"));
+        assertEquals(200, get("/items/2"));
+        
+        assertEquals(Arrays.asList("GET /items/{id} 2", "GET /other/item 1"), recorded());
+    }
+    
+    @Test
+    public void recordersOutliveTheContainer() throws Exception {
+        assertEquals(200, get("/items"));
+        setup();
+        assertEquals(200, get("/items"));
+        
+        assertEquals(Arrays.asList("GET /items 2"), recorded());
+    }
+    
+    @Test
+    public void pathIsBuiltFromTheMatchedTemplates() {
+        assertEquals("/", EndpointMetricsRegistry.pathOf(Arrays.asList()));
+    }
+}
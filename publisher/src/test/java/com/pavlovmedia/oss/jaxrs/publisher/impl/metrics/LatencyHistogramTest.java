@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        assertEquals(0, LatencyHistogram.lowestOf(0));
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(LatencyHistogram.highestOf(i - 1) + 1, LatencyHistogram.lowestOf(i));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.lowestOf(i)));
+            assertEquals(i, LatencyHistogram.indexOf(LatencyHistogram.highestOf(i)));
+        }
+    }
+    
+    @Test
+    public void bucketsAreNarrow() {
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long low = LatencyHistogram.lowestOf(i);
+            long width = LatencyHistogram.highestOf(i) - low + 1;
+            assertTrue("bucket " + i, width <= Math.max(1, low / 32));
+        }
+    }
+    
+    @Test
+    public void hugeValuesLandInTheLastBucket() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(TimeUnit.HOURS.toNanos(10)));
+    }
+    
+    @Test
+    public void emptySnapshotIsAllZeros() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean());
+        assertEquals(0, snapshot.getValueAt(0.99));
+        assertEquals(0, snapshot.getMax());
+    }
+    
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(7);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(10, snapshot.getTotal());
+        assertEquals(0, snapshot.getValueAt(0.1));
+        assertEquals(3, snapshot.getValueAt(0.5));
+        assertEquals(7, snapshot.getValueAt(1));
+        assertEquals(7, snapshot.getMax());
+    }
+    
+    @Test
+    public void quantilesAreCloseToTheRealValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10_000), snapshot.getMax());
+        assertClose(TimeUnit.MICROSECONDS.toNanos(5_000), snapshot.getValueAt(0.5));
+        assertClose(TimeUnit.MICROSECONDS.toNanos(9_000), snapshot.getValueAt(0.9));
+        assertClose(TimeUnit.MICROSECONDS.toNanos(9_900), snapshot.getValueAt(0.99));
+        assertClose(TimeUnit.MICROSECONDS.toNanos(5_000), snapshot.getMean());
+    }
+    
+    private static void assertClose(final long expected, final long actual) {
+        assertTrue(String.format("expected about %d but was %d", expected, actual), 
+                Math.abs(expected - actual) <= expected * 0.03);
+    }
+}
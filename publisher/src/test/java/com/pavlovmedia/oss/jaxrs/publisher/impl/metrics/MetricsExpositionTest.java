@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointMetrics;
+
+public class MetricsExpositionTest {
+    @Test
+    public void metricsAreWrittenWithLabels() {
+        EndpointMetrics metrics = new EndpointMetrics("/items/{id}", "GET", 4, 1, 2, 
+                2_000_000_000L, 500_000_000L, 500_000_000L, 900_000_000L, 990_000_000L, 999_000_000L, 
+                1_000_000_000L);
+        String text = MetricsExposition.format("/services", Collections.singletonList(metrics));
+        
+        String labels = "{publisher=\"/services\",verb=\"GET\",path=\"/items/{id}\"";
+        assertTrue(text, text.contains("# TYPE jaxrs_requests_total counter\n"));
+        assertTrue(text, text.contains("jaxrs_requests_total" + labels + "} 4\n"));
+        assertTrue(text, text.contains("jaxrs_errors_total" + labels + "} 1\n"));
+        assertTrue(text, text.contains("jaxrs_in_flight" + labels + "} 2\n"));
+        assertTrue(text, text.contains("jaxrs_request_duration_seconds" + labels + ",quantile=\"0.9\"} 0.9\n"));
+        assertTrue(text, text.contains("jaxrs_request_duration_seconds_sum" + labels + "} 2.0\n"));
+        assertTrue(text, text.contains("jaxrs_request_duration_seconds_count" + labels + "} 4\n"));
+    }
+    
+    @Test
+    public void labelsAreEscaped() {
+        EndpointMetrics metrics = new EndpointMetrics("/a\"b\\c", "GET", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        String text = MetricsExposition.format("/services", Collections.singletonList(metrics));
+        
+        assertTrue(text, text.contains("path=\"/a\\\"b\\\\c\""));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.shard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.log.Logger;
+
+import com.pavlovmedia.oss.jaxrs.publisher.impl.JaxReference;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.RecordingHttpService;
+import com.pavlovmedia.oss.jaxrs.publisher.impl.config.ShardMode;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedBundle;
+import com.pavlovmedia.oss.jaxrs.simulation.SimulatedFramework;
+import com.pavlovmedia.oss.jaxrs.simulation.Stubs;
+
+public class ShardManagerTest {
+    private final RecordingHttpService httpService = new RecordingHttpService();
+    private SimulatedFramework framework;
+    private SimulatedBundle first;
+    private SimulatedBundle second;
+    private ShardManager manager;
+    
+    @Before
+    public void setup() {
+        framework = new SimulatedFramework();
+        first = framework.installBundle("first");
+        second = framework.installBundle("second");
+    }
+    
+    @After
+    public void close() {
+        if (null != manager) {
+            manager.close();
+        }
+    }
+    
+    private ShardManager manage(final ShardMode mode) {
+        manager = new ShardManager(httpService, "/services", mode, Collections::emptyMap, 
+                (app, root) -> ResourceConfig.forApplication(app), Stubs.nothing(Logger.class));
+        return manager;
+    }
+    
+    private static JaxReference target(final SimulatedBundle bundle, final Object target) {
+        return new JaxReference(bundle.getBundleContext()
+                .registerService(Object.class.getName(), target, null).getReference(), target);
+    }
+    
+    private static Set<JaxReference> targets(final JaxReference... references) {
+        return new HashSet<>(Arrays.asList(references));
+    }
+    
+    @Test
+    public void pathModeGivesEachSegmentAShard() {
+        manage(ShardMode.PATH);
+        Object provider = new SomeProvider();
+        manager.update(targets(target(first, new Alpha()), target(first, new AlphaToo()), 
+                target(second, new Beta()), target(first, new Templated()), target(second, provider)));
+        
+        assertEquals(new HashSet<>(Arrays.asList("/services", "/services/alpha", "/services/beta")), 
+                httpService.getServlets().keySet());
+        assertEquals(3, manager.getShards().size());
+        // Providers go to every shard, templated paths to the root
+        manager.getShards().values().forEach(shard -> assertTrue(shard.getSingletons().contains(provider)));
+        assertEquals(2, manager.getShards().get("").getSingletons().size());
+        assertEquals(3, manager.getShards().get("alpha").getSingletons().size());
+    }
+    
+    @Test
+    public void unchangedShardsAreLeftAlone() {
+        manage(ShardMode.PATH);
+        JaxReference alpha = target(first, new Alpha());
+        manager.update(targets(alpha));
+        Shard alphaShard = manager.getShards().get("alpha");
+        Set<Object> singletons = alphaShard.getSingletons();
+        
+        manager.update(targets(alpha, target(second, new Beta())));
+        assertSame(alphaShard, manager.getShards().get("alpha"));
+        assertSame(singletons, alphaShard.getSingletons());
+        
+        // Once a segment is empty its shard goes
+        manager.update(targets(alpha));
+        assertEquals(new HashSet<>(Arrays.asList("", "alpha")), manager.getShards().keySet());
+        assertEquals(new HashSet<>(Arrays.asList("/services", "/services/alpha")), 
+                httpService.getServlets().keySet());
+    }
+    
+    @Test
+    public void bundleModeGroupsSegmentsByBundle() {
+        manage(ShardMode.BUNDLE);
+        manager.update(targets(target(first, new Alpha()), target(first, new Beta())));
+        
+        String key = "bundles:" + first.getBundleId();
+        assertEquals(new HashSet<>(Arrays.asList("", key)), manager.getShards().keySet());
+        assertEquals(new HashSet<>(Arrays.asList("/services/alpha", "/services/beta")), 
+                manager.getShards().get(key).getAliases());
+    }
+    
+    @Test
+    public void bundleModeKeepsTheShardWhenItsBundlesChange() {
+        manage(ShardMode.BUNDLE);
+        JaxReference alpha = target(first, new Alpha());
+        manager.update(targets(alpha));
+        Shard shard = manager.getShards().get("bundles:" + first.getBundleId());
+        
+        // Another bundle joins in on the same segment
+        manager.update(targets(alpha, target(second, new AlphaToo())));
+        String key = "bundles:" + first.getBundleId() + "," + second.getBundleId();
+        assertSame(shard, manager.getShards().get(key));
+        assertEquals(key, shard.getKey());
+        assertEquals(2, manager.getShards().size());
+    }
+    
+    @Test
+    public void bundleKeyOutlivesTheService() {
+        manage(ShardMode.BUNDLE);
+        JaxReference alpha = target(first, new Alpha());
+        manager.update(targets(alpha));
+        
+        // Once the service is unregistered the reference no longer knows its bundle
+        first.uninstall();
+        manager.update(targets(alpha));
+        assertTrue(manager.getShards().containsKey("bundles:" + first.getBundleId()));
+    }
+    
+    @Test
+    public void refusedAliasFallsBackToTheRootAndIsRetriedLater() {
+        manage(ShardMode.PATH);
+        httpService.refuse("/services/alpha", true);
+        Alpha alpha = new Alpha();
+        JaxReference alphaTarget = target(first, alpha);
+        manager.update(targets(alphaTarget));
+        
+        assertEquals(Collections.singleton(""), manager.getShards().keySet());
+        assertTrue(manager.getShards().get("").getSingletons().contains(alpha));
+        
+        // Nothing changed, so it stays in the root
+        httpService.refuse("/services/alpha", false);
+        manager.update(targets(alphaTarget));
+        assertEquals(Collections.singleton(""), manager.getShards().keySet());
+        
+        // The segments changed, so it gets another go
+        manager.update(targets(alphaTarget, target(second, new Beta())));
+        assertEquals(new HashSet<>(Arrays.asList("", "alpha", "beta")), manager.getShards().keySet());
+        assertTrue(httpService.getServlets().containsKey("/services/alpha"));
+    }
+    
+    @Test
+    public void closeTakesEverythingDown() {
+        manage(ShardMode.PATH);
+        manager.update(targets(target(first, new Alpha()), target(second, new Beta())));
+        manager.close();
+        assertTrue(manager.getShards().isEmpty());
+        assertTrue(httpService.getServlets().isEmpty());
+    }
+    
+    @Path("alpha")
+    public static class Alpha {
+        @GET
+        public String get() {
+            return "alpha";
+        }
+    }
+    
+    @Path("/alpha/too")
+    public static class AlphaToo {
+        @GET
+        public String get() {
+            return "alpha too";
+        }
+    }
+    
+    @Path("beta/{id}")
+    public static class Beta {
+        @GET
+        public String get() {
+            return "beta";
+        }
+    }
+    
+    @Path("{anything}")
+    public static class Templated {
+        @GET
+        public String get() {
+            return "templated";
+        }
+    }
+    
+    @Provider
+    public static class SomeProvider {
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.swagger.models.Info;
+import io.swagger.models.Swagger;
+
+public class SwaggerDocumentCacheTest {
+    private final AtomicInteger generated = new AtomicInteger();
+    private final BlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+    private SwaggerDocumentCache cache;
+    
+    @After
+    public void close() {
+        if (null != cache) {
+            cache.close();
+        }
+    }
+    
+    private static SwaggerDocument document(final String title) throws IOException {
+        return SwaggerDocument.of(new Swagger().info(new Info().title(title)), false);
+    }
+    
+    @Test
+    public void firstGetWaitsForTheBuild() {
+        cache = new SwaggerDocumentCache(() -> document("v" + generated.incrementAndGet()), failures::add);
+        cache.invalidate();
+        
+        SwaggerDocument document = cache.get();
+        assertTrue(new String(document.get("json").getBytes(false)).contains("\"v1\""));
+        assertSame(document, cache.get());
+        assertEquals(1, cache.getBuilds());
+    }
+    
+    @Test
+    public void invalidationsWhileWaitingAreMerged() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        cache = new SwaggerDocumentCache(() -> {
+            if (1 == generated.incrementAndGet()) {
+                building.countDown();
+                proceed.await();
+            }
+            return document("v" + generated.get());
+        }, failures::add);
+        cache.invalidate();
+        assertTrue(building.await(2, TimeUnit.SECONDS));
+        
+        // The first build is under way, so these all go into one more
+        cache.invalidate();
+        cache.invalidate();
+        cache.invalidate();
+        proceed.countDown();
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (cache.getBuilds() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, cache.getBuilds());
+        assertEquals(2, generated.get());
+    }
+    
+    @Test
+    public void failedBuildKeepsTheLastDocument() throws Exception {
+        cache = new SwaggerDocumentCache(() -> {
+            if (2 == generated.incrementAndGet()) {
+                throw new IOException("broken");
+            }
+            return document("v" + generated.get());
+        }, failures::add);
+        cache.invalidate();
+        SwaggerDocument first = cache.get();
+        
+        cache.invalidate();
+        assertEquals("broken", failures.poll(2, TimeUnit.SECONDS).getMessage());
+        assertSame(first, cache.get());
+        assertEquals(1, cache.getBuilds());
+    }
+    
+    @Test
+    public void nothingIsBuiltOnceClosed() {
+        cache = new SwaggerDocumentCache(() -> document("v" + generated.incrementAndGet()), failures::add);
+        cache.close();
+        
+        cache.invalidate();
+        assertNull(cache.get());
+        assertEquals(0, generated.get());
+    }
+    
+    @Test
+    public void eachFormHasItsOwnStableTag() throws IOException {
+        SwaggerDocument document = document("tagged");
+        SwaggerDocument again = document("tagged");
+        
+        assertEquals(document.get("json").getTag(false), again.get("json").getTag(false));
+        assertNotEquals(document.get("json").getTag(false), document.get("json").getTag(true));
+        assertNotEquals(document.get("json").getTag(false), document.get("yaml").getTag(false));
+        assertNotEquals(document.get("json").getTag(false), document("other").get("json").getTag(false));
+        assertEquals(SwaggerDocument.APPLICATION_YAML_TYPE, document.get("YAML").getType());
+        assertTrue(new String(document.get("yaml").getBytes(false)).contains("title: \"tagged\""));
+        assertEquals(new String(document.get("json").getBytes(false)), gunzip(document.get("json").getBytes(true)));
+    }
+    
+    private static String gunzip(final byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.publisher.impl.swagger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+import org.junit.Test;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.jaxrs.Reader;
+import io.swagger.jaxrs.config.ReaderListener;
+import io.swagger.models.Info;
+import io.swagger.models.Swagger;
+
+public class SwaggerFragmentsTest {
+    @Api("first")
+    @Path("shared")
+    public static class First {
+        @GET
+        @ApiOperation("list")
+        public String list() {
+            return "";
+        }
+    }
+    
+    @Api("second")
+    @Path("shared")
+    public static class Second {
+        @POST
+        @ApiOperation("create")
+        public String create() {
+            return "";
+        }
+    }
+    
+    @Api("third")
+    @Path("third")
+    public static class Third {
+        @GET
+        @ApiOperation("get")
+        public String get() {
+            return "";
+        }
+    }
+    
+    public static class Listener implements ReaderListener {
+        @Override
+        public void beforeScan(final Reader reader, final Swagger swagger) {
+            swagger.setInfo(new Info().title("from the listener"));
+        }
+        
+        @Override
+        public void afterScan(final Reader reader, final Swagger swagger) {
+            swagger.setVendorExtension("x-listener", true);
+        }
+    }
+    
+    private static Set<Class<?>> classes(final Class<?>... classes) {
+        return new HashSet<>(Arrays.asList(classes));
+    }
+    
+    @Test
+    public void sharedPathsAreCombined() {
+        Swagger swagger = new SwaggerFragments().build(classes(First.class, Second.class), Collections.emptySet());
+        
+        io.swagger.models.Path shared = swagger.getPath("/shared");
+        assertNotNull(shared);
+        assertEquals("list", shared.getGet().getSummary());
+        assertEquals("create", shared.getPost().getSummary());
+        assertEquals(2, swagger.getTags().size());
+    }
+    
+    @Test
+    public void onlyNewClassesAreRead() {
+        SwaggerFragments fragments = new SwaggerFragments();
+        fragments.build(classes(First.class, Second.class), Collections.emptySet());
+        assertEquals(2, fragments.getLastRead());
+        
+        Swagger swagger = fragments.build(classes(First.class, Second.class, Third.class), Collections.emptySet());
+        assertEquals(1, fragments.getLastRead());
+        assertEquals(3, fragments.size());
+        assertNotNull(swagger.getPath("/third"));
+    }
+    
+    @Test
+    public void goneClassesAreForgotten() {
+        SwaggerFragments fragments = new SwaggerFragments();
+        fragments.build(classes(First.class, Third.class), Collections.emptySet());
+        
+        Swagger swagger = fragments.build(classes(Third.class), Collections.emptySet());
+        assertEquals(0, fragments.getLastRead());
+        assertEquals(1, fragments.size());
+        assertNull(swagger.getPath("/shared"));
+    }
+    
+    @Test
+    public void changedListenersReadEverythingAgain() {
+        SwaggerFragments fragments = new SwaggerFragments();
+        fragments.build(classes(First.class, Third.class), Collections.emptySet());
+        
+        Swagger swagger = fragments.build(classes(First.class, Third.class), classes(Listener.class));
+        assertEquals(2, fragments.getLastRead());
+        assertEquals("from the listener", swagger.getInfo().getTitle());
+        assertTrue((Boolean) swagger.getVendorExtensions().get("x-listener"));
+    }
+    
+    @Test
+    public void mergedModelCanBeChanged() {
+        SwaggerFragments fragments = new SwaggerFragments();
+        Swagger first = fragments.build(classes(First.class), classes(Listener.class));
+        first.getInfo().setTitle("changed by the caller");
+        
+        Swagger second = fragments.build(classes(First.class), classes(Listener.class));
+        assertEquals(0, fragments.getLastRead());
+        assertEquals("from the listener", second.getInfo().getTitle());
+    }
+    
+    @Test
+    public void documentIsTheSameWhateverTheOrder() throws Exception {
+        SwaggerFragments fragments = new SwaggerFragments();
+        SwaggerDocument one = SwaggerDocument.of(
+                fragments.build(classes(First.class, Second.class), Collections.emptySet()), false);
+        SwaggerDocument two = SwaggerDocument.of(
+                new SwaggerFragments().build(classes(Second.class, First.class), Collections.emptySet()), false);
+        
+        assertEquals(one.get("json").getTag(false), two.get("json").getTag(false));
+    }
+}
@@ -0,0 +1,587 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * A sequence of bundle and service changes that can be replayed against a
+ * {@link SimulatedFramework}. Traces can be generated ({@link #startStorm} and {@link #churn}),
+ * built step by step, read from text or recorded from a real framework with a {@link Recorder}.
+ * <br /><br />
+ * Bundles and services are named by keys that only mean something inside the trace. The text
+ * form has one step per line, anything after a <code>#</code> is a comment:
+ * <pre>
+ * install  &lt;bundle&gt;
+ * register &lt;service&gt; &lt;bundle&gt; &lt;class&gt; [name[:Type]=value ...]
+ * modify   &lt;service&gt; [name[:Type]=value ...]
+ * unregister &lt;service&gt;
+ * uninstall &lt;bundle&gt;
+ * </pre>
+ * Property types are written the way DS component properties are, String (the default),
+ * Integer, Long or Boolean. Values can't contain whitespace.
+ */
+public final class ServiceEventTrace {
+    /** What a step does */
+    public enum Action { INSTALL, REGISTER, MODIFY, UNREGISTER, UNINSTALL }
+    
+    private final List<Step> steps;
+    
+    private ServiceEventTrace(final List<Step> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * A burst of bundles starting at once, every bundle is installed and then each registers
+     * its share of the services. Services are handed out round robin over the bundles and
+     * the classes.
+     * 
+     * @param services the number of services to register
+     * @param bundles the number of bundles registering them
+     * @param classes the classes of the services, each needs a public no argument constructor
+     * @return the trace
+     */
+    public static ServiceEventTrace startStorm(final int services, final int bundles, final Class<?>... classes) {
+        Builder builder = builder();
+        for (int b = 0; b < bundles; b++) {
+            builder.install(bundleKey(b));
+        }
+        for (int s = 0; s < services; s++) {
+            Class<?> clazz = classes[s % classes.length];
+            builder.register("s" + s, bundleKey(s % bundles), clazz.getName(), Collections.emptyMap());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Services coming and going, as a set of bundles keeps cycling through the same
+     * services. Each cycle registers a service per bundle and then unregisters them
+     * again in the same order.
+     * 
+     * @param cycles the number of cycles
+     * @param bundles the number of bundles taking part
+     * @param classes the classes of the services, each needs a public no argument constructor
+     * @return the trace
+     */
+    public static ServiceEventTrace churn(final int cycles, final int bundles, final Class<?>... classes) {
+        Builder builder = builder();
+        for (int b = 0; b < bundles; b++) {
+            builder.install(bundleKey(b));
+        }
+        int next = 0;
+        for (int c = 0; c < cycles; c++) {
+            int first = next;
+            for (int b = 0; b < bundles; b++) {
+                Class<?> clazz = classes[next % classes.length];
+                builder.register("s" + next++, bundleKey(b), clazz.getName(), Collections.emptyMap());
+            }
+            for (int s = first; s < next; s++) {
+                builder.unregister("s" + s);
+            }
+        }
+        return builder.build();
+    }
+    
+    private static String bundleKey(final int index) {
+        return "b" + index;
+    }
+    
+    /**
+     * Reads a trace in the text form
+     * 
+     * @param reader where to read from, it is not closed
+     * @return the trace
+     * @throws IOException if the reader fails or a line can't be understood
+     */
+    public static ServiceEventTrace read(final Reader reader) throws IOException {
+        Builder builder = builder();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int number = 0;
+        while (null != (line = lines.readLine())) {
+            number++;
+            int comment = line.indexOf('#');
+            String[] parts = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            try {
+                switch (Action.valueOf(parts[0].toUpperCase())) {
+                    case INSTALL:
+                        builder.install(parts[1]);
+                        break;
+                    case REGISTER:
+                        builder.register(parts[1], parts[2], parts[3], readProperties(parts, 4));
+                        break;
+                    case MODIFY:
+                        builder.modify(parts[1], readProperties(parts, 2));
+                        break;
+                    case UNREGISTER:
+                        builder.unregister(parts[1]);
+                        break;
+                    case UNINSTALL:
+                        builder.uninstall(parts[1]);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException(String.format("Can't read line %d of the trace: %s", number, line), e);
+            }
+        }
+        return builder.build();
+    }
+    
+    private static Map<String, Object> readProperties(final String[] parts, final int from) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        for (int i = from; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Properties are name=value, not " + parts[i]);
+            }
+            String name = parts[i].substring(0, equals);
+            String value = parts[i].substring(equals + 1);
+            int colon = name.indexOf(':');
+            String type = colon < 0 ? "String" : name.substring(colon + 1);
+            name = colon < 0 ? name : name.substring(0, colon);
+            switch (type) {
+                case "String":
+                    properties.put(name, value);
+                    break;
+                case "Integer":
+                    properties.put(name, Integer.valueOf(value));
+                    break;
+                case "Long":
+                    properties.put(name, Long.valueOf(value));
+                    break;
+                case "Boolean":
+                    properties.put(name, Boolean.valueOf(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown property type " + type);
+            }
+        }
+        return properties;
+    }
+    
+    /**
+     * Writes the trace in the text form that {@link #read(Reader)} understands
+     * 
+     * @param writer where to write to, it is flushed but not closed
+     */
+    public void write(final Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        for (Step step : steps) {
+            StringBuilder line = new StringBuilder(step.action.name().toLowerCase());
+            switch (step.action) {
+                case INSTALL:
+                case UNINSTALL:
+                    line.append(' ').append(step.bundle);
+                    break;
+                case REGISTER:
+                    line.append(' ').append(step.service).append(' ').append(step.bundle)
+                        .append(' ').append(step.className);
+                    break;
+                default:
+                    line.append(' ').append(step.service);
+                    break;
+            }
+            step.properties.forEach((name, value) -> {
+                line.append(' ').append(name);
+                if (!(value instanceof String)) {
+                    line.append(':').append(value.getClass().getSimpleName());
+                }
+                line.append('=').append(value);
+            });
+            out.println(line);
+        }
+        out.flush();
+    }
+    
+    /**
+     * @return the steps, in order
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+    
+    /**
+     * @return the number of service events replaying this causes, counting the
+     *   services that go away because their bundle is uninstalled
+     */
+    public int getServiceEvents() {
+        Map<String, String> live = new HashMap<>();
+        int events = 0;
+        for (Step step : steps) {
+            switch (step.action) {
+                case REGISTER:
+                    live.put(step.service, step.bundle);
+                    events++;
+                    break;
+                case MODIFY:
+                    events++;
+                    break;
+                case UNREGISTER:
+                    live.remove(step.service);
+                    events++;
+                    break;
+                case UNINSTALL:
+                    int before = live.size();
+                    live.values().removeIf(step.bundle::equals);
+                    events += before - live.size();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return events;
+    }
+    
+    /**
+     * Replays the trace, each service is a new instance of its class made with
+     * the public no argument constructor
+     * 
+     * @param framework the framework to replay into
+     */
+    public void replay(final SimulatedFramework framework) {
+        Map<String, Class<?>> classes = new HashMap<>();
+        replay(framework, className -> {
+            try {
+                Class<?> clazz = classes.get(className);
+                if (null == clazz) {
+                    clazz = Class.forName(className);
+                    classes.put(className, clazz);
+                }
+                return clazz.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can't make a service of " + className, e);
+            }
+        });
+    }
+    
+    /**
+     * Replays the trace on the calling thread
+     * 
+     * @param framework the framework to replay into
+     * @param services makes the service object for a class name
+     * @throws IllegalStateException if a step refers to a bundle or service the trace doesn't have
+     */
+    public void replay(final SimulatedFramework framework, final Function<String, Object> services) {
+        Map<String, SimulatedBundle> bundles = new HashMap<>();
+        Map<String, ServiceRegistration<?>> registrations = new HashMap<>();
+        Map<String, String> owners = new HashMap<>();
+        for (Step step : steps) {
+            switch (step.action) {
+                case INSTALL:
+                    bundles.put(step.bundle, framework.installBundle(step.bundle));
+                    break;
+                case REGISTER:
+                    registrations.put(step.service, bundle(bundles, step.bundle).context()
+                            .registerService(step.className, services.apply(step.className), 
+                                    new Hashtable<>(step.properties)));
+                    owners.put(step.service, step.bundle);
+                    break;
+                case MODIFY:
+                    registration(registrations, step.service).setProperties(new Hashtable<>(step.properties));
+                    break;
+                case UNREGISTER:
+                    registration(registrations, step.service).unregister();
+                    registrations.remove(step.service);
+                    break;
+                case UNINSTALL:
+                    bundle(bundles, step.bundle).uninstall();
+                    bundles.remove(step.bundle);
+                    // The framework took the bundle's services down with it
+                    registrations.keySet().removeIf(service -> step.bundle.equals(owners.get(service)));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+    
+    private static SimulatedBundle bundle(final Map<String, SimulatedBundle> bundles, final String key) {
+        SimulatedBundle bundle = bundles.get(key);
+        if (null == bundle) {
+            throw new IllegalStateException("The trace has no installed bundle " + key);
+        }
+        return bundle;
+    }
+    
+    private static ServiceRegistration<?> registration(final Map<String, ServiceRegistration<?>> registrations, 
+            final String key) {
+        ServiceRegistration<?> registration = registrations.get(key);
+        if (null == registration) {
+            throw new IllegalStateException("The trace has no registered service " + key);
+        }
+        return registration;
+    }
+    
+    /**
+     * A single change
+     */
+    public static final class Step {
+        private final Action action;
+        private final String bundle;
+        private final String service;
+        private final String className;
+        private final Map<String, Object> properties;
+        
+        Step(final Action action, final String bundle, final String service, final String className, 
+                final Map<String, Object> properties) {
+            this.action = action;
+            this.bundle = bundle;
+            this.service = service;
+            this.className = className;
+            this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+        }
+        
+        public Action getAction() {
+            return action;
+        }
+        
+        /** @return the bundle key, for installs, uninstalls and registrations */
+        public String getBundle() {
+            return bundle;
+        }
+        
+        /** @return the service key, for anything done to a service */
+        public String getService() {
+            return service;
+        }
+        
+        /** @return the class of the service, for registrations */
+        public String getClassName() {
+            return className;
+        }
+        
+        /** @return the service properties, for registrations and modifications */
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+    
+    /**
+     * Builds a trace, making sure every step refers to something that exists at that point
+     */
+    public static final class Builder {
+        private final List<Step> steps = new ArrayList<>();
+        private final Set<String> bundles = new HashSet<>();
+        private final Map<String, String> services = new HashMap<>();
+        
+        private Builder() { }
+        
+        public Builder install(final String bundle) {
+            if (!bundles.add(Objects.requireNonNull(bundle))) {
+                throw new IllegalArgumentException("Bundle " + bundle + " is already installed");
+            }
+            steps.add(new Step(Action.INSTALL, bundle, null, null, Collections.emptyMap()));
+            return this;
+        }
+        
+        public Builder register(final String service, final String bundle, final String className,
+                final Map<String, Object> properties) {
+            checkBundle(bundle);
+            if (null != services.putIfAbsent(Objects.requireNonNull(service), bundle)) {
+                throw new IllegalArgumentException("Service " + service + " is already registered");
+            }
+            steps.add(new Step(Action.REGISTER, bundle, service, Objects.requireNonNull(className), properties));
+            return this;
+        }
+        
+        public Builder modify(final String service, final Map<String, Object> properties) {
+            checkService(service);
+            steps.add(new Step(Action.MODIFY, null, service, null, properties));
+            return this;
+        }
+        
+        public Builder unregister(final String service) {
+            checkService(service);
+            services.remove(service);
+            steps.add(new Step(Action.UNREGISTER, null, service, null, Collections.emptyMap()));
+            return this;
+        }
+        
+        public Builder uninstall(final String bundle) {
+            checkBundle(bundle);
+            bundles.remove(bundle);
+            services.values().removeIf(bundle::equals);
+            steps.add(new Step(Action.UNINSTALL, bundle, null, null, Collections.emptyMap()));
+            return this;
+        }
+        
+        /** @return true if the bundle is installed at this point of the trace */
+        public boolean isInstalled(final String bundle) {
+            return bundles.contains(bundle);
+        }
+        
+        /** @return true if the service is registered at this point of the trace */
+        public boolean isRegistered(final String service) {
+            return services.containsKey(service);
+        }
+        
+        public ServiceEventTrace build() {
+            return new ServiceEventTrace(steps);
+        }
+        
+        private void checkBundle(final String bundle) {
+            if (!bundles.contains(bundle)) {
+                throw new IllegalArgumentException("Bundle " + bundle + " is not installed");
+            }
+        }
+        
+        private void checkService(final String service) {
+            if (!services.containsKey(service)) {
+                throw new IllegalArgumentException("Service " + service + " is not registered");
+            }
+        }
+    }
+    
+    /**
+     * Records what happens in a framework, real or simulated, as a trace. Bundles are keyed by
+     * symbolic name and services by id, and bundles that were already there are installed the
+     * first time they show up.
+     * <br /><br />
+     * The class recorded for a service is the class of the service object, which means the
+     * recorder gets every service that is registered. Only properties the text form can hold
+     * are kept, and the framework's own ones are left out.
+     */
+    public static final class Recorder implements ServiceListener, BundleListener, AutoCloseable {
+        private static final Set<String> FRAMEWORK_PROPERTIES = new HashSet<>(Arrays.asList(
+                Constants.OBJECTCLASS, Constants.SERVICE_ID, Constants.SERVICE_BUNDLEID, Constants.SERVICE_SCOPE));
+        
+        private final BundleContext context;
+        private final Builder builder = builder();
+        
+        /**
+         * Starts recording
+         * 
+         * @param context the context to listen with
+         */
+        public Recorder(final BundleContext context) {
+            this.context = context;
+            context.addServiceListener(this);
+            context.addBundleListener(this);
+        }
+        
+        @Override
+        public synchronized void serviceChanged(final ServiceEvent event) {
+            ServiceReference<?> reference = event.getServiceReference();
+            String service = "s" + reference.getProperty(Constants.SERVICE_ID);
+            switch (event.getType()) {
+                case ServiceEvent.REGISTERED:
+                    Object object = context.getService(reference);
+                    if (null == object) {
+                        return;
+                    }
+                    try {
+                        builder.register(service, bundle(reference.getBundle()), object.getClass().getName(), 
+                                properties(reference));
+                    } finally {
+                        context.ungetService(reference);
+                    }
+                    break;
+                case ServiceEvent.MODIFIED:
+                    if (builder.isRegistered(service)) {
+                        builder.modify(service, properties(reference));
+                    }
+                    break;
+                case ServiceEvent.UNREGISTERING:
+                    if (builder.isRegistered(service)) {
+                        builder.unregister(service);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        @Override
+        public synchronized void bundleChanged(final BundleEvent event) {
+            if (BundleEvent.UNINSTALLED == event.getType() && builder.isInstalled(event.getBundle().getSymbolicName())) {
+                builder.uninstall(event.getBundle().getSymbolicName());
+            }
+        }
+        
+        private String bundle(final Bundle bundle) {
+            String key = bundle.getSymbolicName();
+            if (!builder.isInstalled(key)) {
+                builder.install(key);
+            }
+            return key;
+        }
+        
+        private static Map<String, Object> properties(final ServiceReference<?> reference) {
+            Map<String, Object> properties = new LinkedHashMap<>();
+            for (String key : reference.getPropertyKeys()) {
+                Object value = reference.getProperty(key);
+                if (!FRAMEWORK_PROPERTIES.contains(key) && key.indexOf(':') < 0 && key.indexOf('=') < 0
+                        && (value instanceof String || value instanceof Integer 
+                                || value instanceof Long || value instanceof Boolean)
+                        && !String.valueOf(value).isEmpty() && !String.valueOf(value).matches(".*[\\s#].*")) {
+                    properties.put(key, value);
+                }
+            }
+            return properties;
+        }
+        
+        /**
+         * @return what has been recorded so far
+         */
+        public synchronized ServiceEventTrace getTrace() {
+            return builder.build();
+        }
+        
+        /**
+         * Stops recording
+         */
+        @Override
+        public void close() {
+            context.removeServiceListener(this);
+            context.removeBundleListener(this);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+
+/**
+ * A bundle in a {@link SimulatedFramework}. It has an id, a name and a state; classes and
+ * resources come from the class path. Lifecycle calls other than updating and uninstalling are not supported.
+ */
+public class SimulatedBundle implements Bundle {
+    private final SimulatedFramework framework;
+    private final long bundleId;
+    private final String symbolicName;
+    private final SimulatedBundleContext context;
+    private volatile long lastModified = System.currentTimeMillis();
+    private volatile int state = Bundle.INSTALLED;
+    
+    SimulatedBundle(final SimulatedFramework framework, final long bundleId, final String symbolicName) {
+        this.framework = framework;
+        this.bundleId = bundleId;
+        this.symbolicName = symbolicName;
+        this.context = new SimulatedBundleContext(framework, this);
+    }
+    
+    void setState(final int state) {
+        this.state = state;
+    }
+    
+    /** Moves the last modified stamp on, it always changes even within the same millisecond */
+    void touch() {
+        lastModified = Math.max(System.currentTimeMillis(), lastModified + 1);
+    }
+    
+    /**
+     * @return the framework this bundle is installed in
+     */
+    public SimulatedFramework getFramework() {
+        return framework;
+    }
+    
+    @Override
+    public int getState() {
+        return state;
+    }
+    
+    @Override
+    public long getBundleId() {
+        return bundleId;
+    }
+    
+    @Override
+    public String getSymbolicName() {
+        return symbolicName;
+    }
+    
+    @Override
+    public String getLocation() {
+        return "simulated:" + symbolicName;
+    }
+    
+    @Override
+    public Version getVersion() {
+        return Version.emptyVersion;
+    }
+    
+    @Override
+    public long getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * @return the context, which only works while the bundle is active
+     */
+    @Override
+    public SimulatedBundleContext getBundleContext() {
+        return Bundle.ACTIVE == state ? context : null;
+    }
+    
+    /**
+     * @return the context whatever state the bundle is in, for the simulation itself
+     */
+    SimulatedBundleContext context() {
+        return context;
+    }
+    
+    @Override
+    public Dictionary<String, String> getHeaders() {
+        Hashtable<String, String> headers = new Hashtable<>();
+        headers.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        headers.put(Constants.BUNDLE_VERSION, getVersion().toString());
+        return headers;
+    }
+    
+    @Override
+    public Dictionary<String, String> getHeaders(final String locale) {
+        return getHeaders();
+    }
+    
+    @Override
+    public ServiceReference<?>[] getRegisteredServices() {
+        List<SimulatedServiceReference> references = framework.registeredBy(this);
+        return references.isEmpty() ? null : references.toArray(new ServiceReference<?>[0]);
+    }
+    
+    @Override
+    public ServiceReference<?>[] getServicesInUse() {
+        return null;
+    }
+    
+    @Override
+    public Class<?> loadClass(final String name) throws ClassNotFoundException {
+        return Class.forName(name, false, SimulatedBundle.class.getClassLoader());
+    }
+    
+    @Override
+    public URL getResource(final String name) {
+        return SimulatedBundle.class.getClassLoader().getResource(name);
+    }
+    
+    @Override
+    public Enumeration<URL> getResources(final String name) throws IOException {
+        return SimulatedBundle.class.getClassLoader().getResources(name);
+    }
+    
+    @Override
+    public URL getEntry(final String path) {
+        return null;
+    }
+    
+    @Override
+    public Enumeration<String> getEntryPaths(final String path) {
+        return null;
+    }
+    
+    @Override
+    public Enumeration<URL> findEntries(final String path, final String filePattern, final boolean recurse) {
+        return null;
+    }
+    
+    @Override
+    public boolean hasPermission(final Object permission) {
+        return true;
+    }
+    
+    @Override
+    public Map<X509Certificate, List<X509Certificate>> getSignerCertificates(final int signersType) {
+        return Collections.emptyMap();
+    }
+    
+    @Override
+    public <A> A adapt(final Class<A> type) {
+        return null;
+    }
+    
+    @Override
+    public File getDataFile(final String filename) {
+        return null;
+    }
+    
+    @Override
+    public void uninstall() {
+        framework.uninstall(this);
+    }
+    
+    @Override
+    public void start(final int options) {
+        throw new UnsupportedOperationException("Simulated bundles are started when they are installed");
+    }
+    
+    @Override
+    public void start() {
+        start(0);
+    }
+    
+    @Override
+    public void stop(final int options) {
+        throw new UnsupportedOperationException("Simulated bundles are stopped by uninstalling them");
+    }
+    
+    @Override
+    public void stop() {
+        stop(0);
+    }
+    
+    /**
+     * There is nothing to read the new content from, an update only stops the bundle,
+     * moves its last modified stamp on and starts it again
+     */
+    @Override
+    public void update(final InputStream input) {
+        framework.update(this);
+    }
+    
+    @Override
+    public void update() {
+        update(null);
+    }
+    
+    @Override
+    public int compareTo(final Bundle other) {
+        return Long.compare(bundleId, other.getBundleId());
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s [%d]", symbolicName, bundleId);
+    }
+}
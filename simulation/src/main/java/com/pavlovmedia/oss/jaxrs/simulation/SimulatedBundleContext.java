@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The context of a {@link SimulatedBundle}. Service factories are not supported, a
+ * service is always the object it was registered with.
+ */
+public class SimulatedBundleContext implements BundleContext {
+    private final SimulatedFramework framework;
+    private final SimulatedBundle bundle;
+    
+    SimulatedBundleContext(final SimulatedFramework framework, final SimulatedBundle bundle) {
+        this.framework = framework;
+        this.bundle = bundle;
+    }
+    
+    @Override
+    public String getProperty(final String key) {
+        return System.getProperty(key);
+    }
+    
+    @Override
+    public SimulatedBundle getBundle() {
+        return bundle;
+    }
+    
+    @Override
+    public Bundle installBundle(final String location, final InputStream input) {
+        return framework.installBundle(location);
+    }
+    
+    @Override
+    public Bundle installBundle(final String location) {
+        return framework.installBundle(location);
+    }
+    
+    @Override
+    public Bundle getBundle(final long id) {
+        return framework.getBundle(id);
+    }
+    
+    @Override
+    public Bundle[] getBundles() {
+        return framework.getBundles().toArray(new Bundle[0]);
+    }
+    
+    @Override
+    public Bundle getBundle(final String location) {
+        return framework.getBundles().stream()
+                .filter(b -> b.getLocation().equals(location))
+                .findFirst()
+                .orElse(null);
+    }
+    
+    @Override
+    public void addServiceListener(final ServiceListener listener, final String filter) 
+            throws InvalidSyntaxException {
+        framework.addServiceListener(bundle, listener, null == filter ? null : framework.filter(filter));
+    }
+    
+    @Override
+    public void addServiceListener(final ServiceListener listener) {
+        framework.addServiceListener(bundle, listener, null);
+    }
+    
+    @Override
+    public void removeServiceListener(final ServiceListener listener) {
+        framework.removeServiceListener(bundle, listener);
+    }
+    
+    @Override
+    public void addBundleListener(final BundleListener listener) {
+        framework.addBundleListener(bundle, listener);
+    }
+    
+    @Override
+    public void removeBundleListener(final BundleListener listener) {
+        framework.removeBundleListener(bundle, listener);
+    }
+    
+    @Override
+    public void addFrameworkListener(final FrameworkListener listener) {
+        // Nothing ever happens to the framework itself
+    }
+    
+    @Override
+    public void removeFrameworkListener(final FrameworkListener listener) {
+        // Nothing ever happens to the framework itself
+    }
+    
+    @Override
+    public ServiceRegistration<?> registerService(final String[] classes, final Object service, 
+            final Dictionary<String, ?> properties) {
+        return framework.register(bundle, classes.clone(), service, properties);
+    }
+    
+    @Override
+    public ServiceRegistration<?> registerService(final String className, final Object service, 
+            final Dictionary<String, ?> properties) {
+        return registerService(new String[] { className }, service, properties);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <S> ServiceRegistration<S> registerService(final Class<S> clazz, final S service, 
+            final Dictionary<String, ?> properties) {
+        return (ServiceRegistration<S>) registerService(clazz.getName(), service, properties);
+    }
+    
+    @Override
+    public <S> ServiceRegistration<S> registerService(final Class<S> clazz, final ServiceFactory<S> factory,
+            final Dictionary<String, ?> properties) {
+        throw new UnsupportedOperationException("Service factories are not simulated");
+    }
+    
+    @Override
+    public ServiceReference<?>[] getServiceReferences(final String clazz, final String filter) 
+            throws InvalidSyntaxException {
+        return getAllServiceReferences(clazz, filter);
+    }
+    
+    /**
+     * There is a single class space, so this finds the same services as 
+     * {@link #getServiceReferences(String, String)}
+     */
+    @Override
+    public ServiceReference<?>[] getAllServiceReferences(final String clazz, final String filter) 
+            throws InvalidSyntaxException {
+        List<SimulatedServiceReference> found = framework.find(clazz, null == filter ? null : framework.filter(filter));
+        // Like a real framework, nothing found is null rather than empty
+        return found.isEmpty() ? null : found.toArray(new ServiceReference<?>[0]);
+    }
+    
+    @Override
+    public ServiceReference<?> getServiceReference(final String clazz) {
+        return framework.find(clazz, null).stream()
+                .max(SimulatedServiceReference::compareTo)
+                .orElse(null);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <S> ServiceReference<S> getServiceReference(final Class<S> clazz) {
+        return (ServiceReference<S>) getServiceReference(clazz.getName());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <S> Collection<ServiceReference<S>> getServiceReferences(final Class<S> clazz, final String filter) 
+            throws InvalidSyntaxException {
+        List<SimulatedServiceReference> found = framework.find(clazz.getName(), 
+                null == filter ? null : framework.filter(filter));
+        return found.stream()
+                .map(reference -> (ServiceReference<S>) (ServiceReference<?>) reference)
+                .collect(Collectors.toList());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <S> S getService(final ServiceReference<S> reference) {
+        return (S) framework.getService(bundle, (SimulatedServiceReference) (ServiceReference<?>) reference);
+    }
+    
+    @Override
+    public boolean ungetService(final ServiceReference<?> reference) {
+        return framework.isRegistered((SimulatedServiceReference) reference);
+    }
+    
+    @Override
+    public <S> ServiceObjects<S> getServiceObjects(final ServiceReference<S> reference) {
+        throw new UnsupportedOperationException("Service objects are not simulated");
+    }
+    
+    @Override
+    public File getDataFile(final String filename) {
+        return null;
+    }
+    
+    @Override
+    public Filter createFilter(final String filter) throws InvalidSyntaxException {
+        return framework.filter(filter);
+    }
+    
+    @Override
+    public String toString() {
+        return "context of " + bundle;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+
+/**
+ * A framework that only exists in memory. It keeps track of bundles, services and
+ * listeners and nothing else: there is no resolving, no class loading of its own
+ * (every bundle loads from the class path) and no security.
+ * <br /><br />
+ * Events are delivered on the thread that caused them, in the order listeners were
+ * added, so the same sequence of calls always produces the same sequence of events.
+ * Service lookups follow the spec, filters are real LDAP filters and the best service
+ * is the one with the highest ranking and then the lowest id.
+ */
+public class SimulatedFramework {
+    /** The id of the system bundle, which also stands in for whoever drives the simulation */
+    public static final long SYSTEM_BUNDLE_ID = 0;
+    
+    private final AtomicLong nextBundleId = new AtomicLong(SYSTEM_BUNDLE_ID);
+    private final AtomicLong nextServiceId = new AtomicLong(1);
+    private final Map<Long, SimulatedBundle> bundles = new ConcurrentSkipListMap<>();
+    private final Map<Long, Registered> services = new ConcurrentSkipListMap<>();
+    private final Map<String, Filter> filters = new ConcurrentHashMap<>();
+    private final List<ServiceListenerEntry> serviceListeners = new CopyOnWriteArrayList<>();
+    private final List<BundleListenerEntry> bundleListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong serviceEvents = new AtomicLong();
+    private final SimulatedBundle systemBundle;
+    
+    public SimulatedFramework() {
+        systemBundle = newBundle("system.bundle");
+        systemBundle.setState(Bundle.ACTIVE);
+    }
+    
+    /**
+     * @return the system bundle, which is always active
+     */
+    public SimulatedBundle getSystemBundle() {
+        return systemBundle;
+    }
+    
+    /**
+     * Installs and starts a bundle, listeners see it as INSTALLED, RESOLVED and STARTED
+     * 
+     * @param symbolicName the symbolic name of the bundle
+     * @return the new bundle, which is active
+     */
+    public SimulatedBundle installBundle(final String symbolicName) {
+        SimulatedBundle bundle = newBundle(symbolicName);
+        fireBundleEvent(BundleEvent.INSTALLED, bundle);
+        bundle.setState(Bundle.RESOLVED);
+        fireBundleEvent(BundleEvent.RESOLVED, bundle);
+        bundle.setState(Bundle.ACTIVE);
+        fireBundleEvent(BundleEvent.STARTED, bundle);
+        return bundle;
+    }
+    
+    /**
+     * @param bundleId the id of a bundle
+     * @return the bundle, or null if there is no such bundle
+     */
+    public SimulatedBundle getBundle(final long bundleId) {
+        return bundles.get(bundleId);
+    }
+    
+    /**
+     * @return every installed bundle, in id order
+     */
+    public Collection<SimulatedBundle> getBundles() {
+        return new ArrayList<>(bundles.values());
+    }
+    
+    /**
+     * @return the number of service events that have been delivered since the framework was made,
+     *   each event counts once no matter how many listeners saw it
+     */
+    public long getServiceEventCount() {
+        return serviceEvents.get();
+    }
+    
+    /**
+     * @return the number of services currently registered
+     */
+    public int getServiceCount() {
+        return services.size();
+    }
+    
+    /**
+     * Makes a filter, the same filter string is only ever parsed once
+     * 
+     * @param filter the LDAP filter
+     * @return the parsed filter
+     * @throws InvalidSyntaxException if the filter can't be parsed
+     */
+    Filter filter(final String filter) throws InvalidSyntaxException {
+        Filter parsed = filters.get(filter);
+        if (null == parsed) {
+            parsed = FrameworkUtil.createFilter(filter);
+            filters.put(filter, parsed);
+        }
+        return parsed;
+    }
+    
+    private SimulatedBundle newBundle(final String symbolicName) {
+        SimulatedBundle bundle = new SimulatedBundle(this, nextBundleId.getAndIncrement(), symbolicName);
+        bundles.put(bundle.getBundleId(), bundle);
+        return bundle;
+    }
+    
+    /**
+     * Stops and uninstalls a bundle. Its services are unregistered, its listeners dropped
+     * and listeners see the bundle as STOPPING, STOPPED, UNRESOLVED and UNINSTALLED.
+     * 
+     * @param bundle the bundle to uninstall
+     */
+    void uninstall(final SimulatedBundle bundle) {
+        if (bundle == systemBundle) {
+            throw new IllegalArgumentException("The system bundle can't be uninstalled");
+        }
+        if (Bundle.UNINSTALLED == bundle.getState()) {
+            throw new IllegalStateException(bundle + " is already uninstalled");
+        }
+        
+        stop(bundle);
+        bundle.setState(Bundle.UNINSTALLED);
+        bundles.remove(bundle.getBundleId());
+        fireBundleEvent(BundleEvent.UNINSTALLED, bundle);
+    }
+    
+    /**
+     * Updates a bundle. It is stopped the same way as for an uninstall, then its last modified
+     * stamp moves on and listeners see it as UPDATED, RESOLVED and STARTED.
+     * 
+     * @param bundle the bundle to update
+     */
+    void update(final SimulatedBundle bundle) {
+        if (bundle == systemBundle) {
+            throw new IllegalArgumentException("The system bundle can't be updated");
+        }
+        if (Bundle.UNINSTALLED == bundle.getState()) {
+            throw new IllegalStateException(bundle + " is uninstalled");
+        }
+        
+        stop(bundle);
+        bundle.touch();
+        fireBundleEvent(BundleEvent.UPDATED, bundle);
+        bundle.setState(Bundle.RESOLVED);
+        fireBundleEvent(BundleEvent.RESOLVED, bundle);
+        bundle.setState(Bundle.ACTIVE);
+        fireBundleEvent(BundleEvent.STARTED, bundle);
+    }
+    
+    /**
+     * Takes a bundle down to INSTALLED, unregistering its services and dropping its listeners
+     */
+    private void stop(final SimulatedBundle bundle) {
+        bundle.setState(Bundle.STOPPING);
+        fireBundleEvent(BundleEvent.STOPPING, bundle);
+        for (SimulatedServiceReference reference : registeredBy(bundle)) {
+            unregister(reference);
+        }
+        serviceListeners.removeIf(entry -> entry.bundle == bundle);
+        bundleListeners.removeIf(entry -> entry.bundle == bundle);
+        bundle.setState(Bundle.RESOLVED);
+        fireBundleEvent(BundleEvent.STOPPED, bundle);
+        bundle.setState(Bundle.INSTALLED);
+        fireBundleEvent(BundleEvent.UNRESOLVED, bundle);
+    }
+    
+    SimulatedRegistration register(final SimulatedBundle bundle, final String[] classes, final Object service,
+            final Dictionary<String, ?> properties) {
+        if (null == classes || 0 == classes.length || null == service) {
+            throw new IllegalArgumentException("A service needs at least one class and an object");
+        }
+        
+        SimulatedServiceReference reference = new SimulatedServiceReference(nextServiceId.getAndIncrement(), 
+                bundle, classes, properties);
+        services.put(reference.getServiceId(), new Registered(reference, service));
+        fireServiceEvent(new ServiceEvent(ServiceEvent.REGISTERED, reference), null);
+        return new SimulatedRegistration(this, reference);
+    }
+    
+    void modify(final SimulatedServiceReference reference, final Dictionary<String, ?> properties) {
+        // Listeners that were interested before the change are told when that ends
+        List<ServiceListenerEntry> matchedBefore = serviceListeners.stream()
+                .filter(entry -> entry.matches(reference))
+                .collect(Collectors.toList());
+        reference.setProperties(reference.getObjectClass(), properties);
+        fireServiceEvent(new ServiceEvent(ServiceEvent.MODIFIED, reference), matchedBefore);
+    }
+    
+    void unregister(final SimulatedServiceReference reference) {
+        if (!services.containsKey(reference.getServiceId())) {
+            return;
+        }
+        // Listeners hear about it while the service can still be used
+        fireServiceEvent(new ServiceEvent(ServiceEvent.UNREGISTERING, reference), null);
+        services.remove(reference.getServiceId());
+        reference.unregistered();
+    }
+    
+    /**
+     * @param bundle the bundle asking
+     * @param reference the service
+     * @return the service object, or null if it is gone
+     */
+    Object getService(final SimulatedBundle bundle, final SimulatedServiceReference reference) {
+        Registered registered = services.get(reference.getServiceId());
+        return null == registered ? null : registered.service;
+    }
+    
+    boolean isRegistered(final SimulatedServiceReference reference) {
+        return services.containsKey(reference.getServiceId());
+    }
+    
+    /**
+     * Finds services, this is what the context lookups come down to
+     * 
+     * @param className the class the service has to be registered under, or null for any
+     * @param filter a filter the service has to match, or null for any
+     * @return the matching references in id order, possibly empty
+     */
+    List<SimulatedServiceReference> find(final String className, final Filter filter) {
+        List<SimulatedServiceReference> found = new ArrayList<>();
+        for (Registered registered : services.values()) {
+            SimulatedServiceReference reference = registered.reference;
+            if ((null == className || registeredUnder(reference, className)) 
+                    && (null == filter || filter.match(reference))) {
+                found.add(reference);
+            }
+        }
+        return found;
+    }
+    
+    List<SimulatedServiceReference> registeredBy(final SimulatedBundle bundle) {
+        return services.values().stream()
+                .map(registered -> registered.reference)
+                .filter(reference -> reference.getBundle() == bundle)
+                .collect(Collectors.toList());
+    }
+    
+    void addServiceListener(final SimulatedBundle bundle, final ServiceListener listener, final Filter filter) {
+        // Adding a listener again just replaces its filter
+        removeServiceListener(bundle, listener);
+        serviceListeners.add(new ServiceListenerEntry(bundle, listener, filter));
+    }
+    
+    void removeServiceListener(final SimulatedBundle bundle, final ServiceListener listener) {
+        serviceListeners.removeIf(entry -> entry.bundle == bundle && entry.listener == listener);
+    }
+    
+    void addBundleListener(final SimulatedBundle bundle, final BundleListener listener) {
+        if (bundleListeners.stream().noneMatch(entry -> entry.bundle == bundle && entry.listener == listener)) {
+            bundleListeners.add(new BundleListenerEntry(bundle, listener));
+        }
+    }
+    
+    void removeBundleListener(final SimulatedBundle bundle, final BundleListener listener) {
+        bundleListeners.removeIf(entry -> entry.bundle == bundle && entry.listener == listener);
+    }
+    
+    /**
+     * Hands a service event to every listener whose filter matches. For a modification the
+     * listeners that matched before and don't any more get a MODIFIED_ENDMATCH instead.
+     */
+    private void fireServiceEvent(final ServiceEvent event, final List<ServiceListenerEntry> matchedBefore) {
+        serviceEvents.incrementAndGet();
+        SimulatedServiceReference reference = (SimulatedServiceReference) event.getServiceReference();
+        for (ServiceListenerEntry entry : serviceListeners) {
+            if (entry.matches(reference)) {
+                entry.listener.serviceChanged(event);
+            } else if (null != matchedBefore && matchedBefore.contains(entry)) {
+                entry.listener.serviceChanged(new ServiceEvent(ServiceEvent.MODIFIED_ENDMATCH, reference));
+            }
+        }
+    }
+    
+    private void fireBundleEvent(final int type, final SimulatedBundle bundle) {
+        BundleEvent event = new BundleEvent(type, bundle);
+        for (BundleListenerEntry entry : bundleListeners) {
+            entry.listener.bundleChanged(event);
+        }
+    }
+    
+    private static boolean registeredUnder(final SimulatedServiceReference reference, final String className) {
+        for (String objectClass : reference.getObjectClass()) {
+            if (Objects.equals(className, objectClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Everything the registry keeps about a service
+     */
+    private static class Registered {
+        private final SimulatedServiceReference reference;
+        private final Object service;
+        
+        Registered(final SimulatedServiceReference reference, final Object service) {
+            this.reference = reference;
+            this.service = service;
+        }
+    }
+    
+    private static class ServiceListenerEntry {
+        private final SimulatedBundle bundle;
+        private final ServiceListener listener;
+        private final Filter filter;
+        
+        ServiceListenerEntry(final SimulatedBundle bundle, final ServiceListener listener, final Filter filter) {
+            this.bundle = bundle;
+            this.listener = listener;
+            this.filter = filter;
+        }
+        
+        boolean matches(final SimulatedServiceReference reference) {
+            return null == filter || filter.match(reference);
+        }
+    }
+    
+    private static class BundleListenerEntry {
+        private final SimulatedBundle bundle;
+        private final BundleListener listener;
+        
+        BundleListenerEntry(final SimulatedBundle bundle, final BundleListener listener) {
+            this.bundle = bundle;
+            this.listener = listener;
+        }
+    }
+}
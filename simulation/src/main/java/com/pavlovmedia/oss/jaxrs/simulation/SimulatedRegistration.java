@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.util.Dictionary;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The registration of a service in a {@link SimulatedFramework}
+ */
+class SimulatedRegistration implements ServiceRegistration<Object> {
+    private final SimulatedFramework framework;
+    private final SimulatedServiceReference reference;
+    private final AtomicBoolean registered = new AtomicBoolean(true);
+    
+    SimulatedRegistration(final SimulatedFramework framework, final SimulatedServiceReference reference) {
+        this.framework = framework;
+        this.reference = reference;
+    }
+    
+    @Override
+    public SimulatedServiceReference getReference() {
+        checkRegistered();
+        return reference;
+    }
+    
+    @Override
+    public void setProperties(final Dictionary<String, ?> properties) {
+        checkRegistered();
+        framework.modify(reference, properties);
+    }
+    
+    @Override
+    public void unregister() {
+        if (!registered.compareAndSet(true, false)) {
+            throw new IllegalStateException("Already unregistered " + reference);
+        }
+        framework.unregister(reference);
+    }
+    
+    private void checkRegistered() {
+        if (!registered.get()) {
+            throw new IllegalStateException("Already unregistered " + reference);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The reference to a service in a {@link SimulatedFramework}. Property names are
+ * case insensitive and references order by ranking and then id, as the spec says.
+ */
+public class SimulatedServiceReference implements ServiceReference<Object> {
+    private final long serviceId;
+    private volatile Map<String, Object> properties;
+    private volatile SimulatedBundle bundle;
+    
+    SimulatedServiceReference(final long serviceId, final SimulatedBundle bundle, final String[] classes,
+            final Dictionary<String, ?> properties) {
+        this.serviceId = serviceId;
+        this.bundle = bundle;
+        setProperties(classes, properties);
+    }
+    
+    /**
+     * Replaces the properties, keeping the ones the framework owns
+     */
+    final void setProperties(final String[] classes, final Dictionary<String, ?> update) {
+        Map<String, Object> next = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (null != update) {
+            Enumeration<String> keys = update.keys();
+            while (keys.hasMoreElements()) {
+                String key = keys.nextElement();
+                next.put(key, update.get(key));
+            }
+        }
+        next.put(Constants.OBJECTCLASS, classes);
+        next.put(Constants.SERVICE_ID, serviceId);
+        next.put(Constants.SERVICE_BUNDLEID, bundle.getBundleId());
+        next.put(Constants.SERVICE_SCOPE, Constants.SCOPE_SINGLETON);
+        properties = next;
+    }
+    
+    /**
+     * Called once the service is gone, a reference has no bundle after that
+     */
+    void unregistered() {
+        bundle = null;
+    }
+    
+    /**
+     * @return the object classes the service was registered under
+     */
+    String[] getObjectClass() {
+        return (String[]) properties.get(Constants.OBJECTCLASS);
+    }
+    
+    long getServiceId() {
+        return serviceId;
+    }
+    
+    int getRanking() {
+        Object ranking = properties.get(Constants.SERVICE_RANKING);
+        return ranking instanceof Integer ? (Integer) ranking : 0;
+    }
+    
+    @Override
+    public Object getProperty(final String key) {
+        return properties.get(key);
+    }
+    
+    @Override
+    public String[] getPropertyKeys() {
+        return properties.keySet().toArray(new String[0]);
+    }
+    
+    @Override
+    public Bundle getBundle() {
+        return bundle;
+    }
+    
+    @Override
+    public Bundle[] getUsingBundles() {
+        return null;
+    }
+    
+    @Override
+    public boolean isAssignableTo(final Bundle other, final String className) {
+        // There is a single class space
+        return true;
+    }
+    
+    /**
+     * Higher ranking is greater, on a tie the lower service id is
+     */
+    @Override
+    public int compareTo(final Object reference) {
+        SimulatedServiceReference other = (SimulatedServiceReference) reference;
+        int byRanking = Integer.compare(getRanking(), other.getRanking());
+        return 0 != byRanking ? byRanking : Long.compare(other.serviceId, serviceId);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("service %d %s", serviceId, String.join(",", getObjectClass()));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+
+import org.osgi.service.http.HttpService;
+import org.osgi.service.log.Logger;
+
+/**
+ * Stand ins for the framework services the publisher needs. They
+ * accept everything and do nothing.
+ */
+public final class Stubs {
+    private Stubs() {
+        // Static utility
+    }
+    
+    /** @return a logger that drops everything */
+    public static Logger logger() {
+        return nothing(Logger.class);
+    }
+    
+    /** @return an HttpService that takes registrations and never starts them */
+    public static HttpService httpService() {
+        return nothing(HttpService.class);
+    }
+    
+    /**
+     * Makes an object of an interface where every method does nothing and
+     * returns the default for its type.
+     * 
+     * @param type the interface
+     * @return the do nothing object
+     */
+    public static <T> T nothing(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] { type }, 
+                (proxy, method, args) -> objectMethod(proxy, method, args)));
+    }
+    
+    /**
+     * Makes an annotation based configuration that returns the defaults
+     * from its annotation, unless they are overridden.
+     * 
+     * @param type the configuration annotation
+     * @param overrides values by method name
+     * @return the configuration
+     */
+    public static <T> T config(final Class<T> type, final Map<String, Object> overrides) {
+        return type.cast(Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] { type }, 
+                (proxy, method, args) -> {
+                    if (overrides.containsKey(method.getName())) {
+                        return overrides.get(method.getName());
+                    }
+                    return null != method.getDefaultValue() 
+                        ? method.getDefaultValue() 
+                        : objectMethod(proxy, method, args);
+                }));
+    }
+    
+    private static Object objectMethod(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "stub " + method.getDeclaringClass().getSimpleName();
+            default:
+                return defaultFor(method.getReturnType());
+        }
+    }
+    
+    /**
+     * @param type a return type
+     * @return what a method that does nothing returns for it
+     */
+    public static Object defaultFor(final Class<?> type) {
+        if (boolean.class == type) {
+            return false;
+        }
+        if (long.class == type) {
+            return 0L;
+        }
+        if (int.class == type) {
+            return 0;
+        }
+        if (Enumeration.class == type) {
+            return Collections.emptyEnumeration();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2017 Pavlov Media
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * An in memory stand in for an OSGi framework: bundles, a service registry with
+ * LDAP filters and ranking, and service and bundle events delivered on the
+ * calling thread. It is deterministic and starts instantly, which makes it a
+ * good place to measure discovery and reloads, and {@link ServiceEventTrace}
+ * can replay generated or recorded runs of events against it.
+ */
+package com.pavlovmedia.oss.jaxrs.simulation;
@@ -17,8 +17,14 @@ package com.pavlovmedia.oss.jaxrs.webconsole;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -31,12 +37,18 @@ import org.apache.felix.webconsole.AbstractWebConsolePlugin;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.log.Logger;
 import org.osgi.service.log.LoggerFactory;
 import org.osgi.service.metatype.annotations.Designate;
 
+import com.pavlovmedia.oss.jaxrs.publisher.api.DiscoveryStats;
 import com.pavlovmedia.oss.jaxrs.publisher.api.EndpointInfo;
 import com.pavlovmedia.oss.jaxrs.publisher.api.Publisher;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadRecord;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ReloadStats;
+import com.pavlovmedia.oss.jaxrs.publisher.api.ResponseCacheStats;
 import com.pavlovmedia.oss.jaxrs.webconsole.config.JaxrsConsoleConfig;
 
 /**
@@ -45,6 +57,9 @@ import com.pavlovmedia.oss.jaxrs.webconsole.config.JaxrsConsoleConfig;
  * <br/><br/>
  * Note that this may work in other OSGi implementations, but has not been
  * tested.
+ * <br/><br/>
+ * One publisher is shown at a time, picked by its path with the
+ * <code>publisher</code> request parameter, the first one by default.
  * 
  * @author Shawn Dempsay {@literal <sdempsay@pavlovmedia.com>}
  *
@@ -60,11 +75,29 @@ public class JaxrsConsole extends AbstractWebConsolePlugin {
     private static final String PAGE_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%s</td><td>%s</td><td>%s</td><td>%s</td><td>%s</td></tr>";
     private static final String PROVIDER_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%s</td><td>%s</td></tr>";
     private static final String FEATURE_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%s</td></tr>";
+    private static final String LIMIT_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%s</td><td>%s</td><td>%d</td>"
+            + "<td>%d</td><td>%d</td><td>%d</td><td>%s</td></tr>";
+    private static final String STAT_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%s</td><td>%s</td></tr>";
+    private static final String RELOAD_ROW_FORMAT = "<tr class=\"%s ui-state-default\"><td>%tF %<tT</td><td>%s</td><td>%d</td>"
+            + "<td>%d</td><td>%d ms</td><td>%d ms</td><td>%d ms</td><td>%s</td></tr>";
     public static final String LABEL = "JAXRS";
     public static final String TITLE = "JAX-RS";
+    public static final String PUBLISHER_PARAMETER = "publisher";
 
-    @Reference
-    Publisher publisher;
+    /** The publishers by path */
+    private final Map<String, Publisher> publishers = new ConcurrentSkipListMap<>();
+    
+    @Reference(name="publisher", cardinality=ReferenceCardinality.MULTIPLE, policy=ReferencePolicy.DYNAMIC)
+    protected void bindPublisher(final Publisher publisher) {
+        // An inhibited publisher never started, so it has nothing to show
+        if (null != publisher.getPath()) {
+            publishers.put(publisher.getPath(), publisher);
+        }
+    }
+    
+    protected void unbindPublisher(final Publisher publisher) {
+        publishers.values().remove(publisher);
+    }
     
     @Override
     public String getLabel() {
@@ -88,16 +121,124 @@ public class JaxrsConsole extends AbstractWebConsolePlugin {
     protected void renderContent(final HttpServletRequest req, final HttpServletResponse res)
             throws ServletException, IOException {
         PrintWriter pw = res.getWriter();
-        renderPageSet(pw);
+        String path = req.getParameter(PUBLISHER_PARAMETER);
+        Publisher publisher = null == path ? null : publishers.get(path);
+        if (null == publisher) {
+            publisher = publishers.values().stream().findFirst().orElse(null);
+        }
+        renderPublishers(pw, publisher);
+        if (null == publisher) {
+            return;
+        }
+        
+        renderPageSet(pw, publisher);
         even.set(false);
-        renderProviderSet(pw);
+        renderProviderSet(pw, publisher);
         even.set(false);
-        renderFeatureSet(pw);
+        renderFeatureSet(pw, publisher);
         even.set(false);
-        renderReaderListenerSet(pw);
+        renderReaderListenerSet(pw, publisher);
+        even.set(false);
+        renderReloadSet(pw, publisher);
+        even.set(false);
+        renderDiscovery(pw, publisher);
+        even.set(false);
+        renderResponseCache(pw, publisher);
+        even.set(false);
+        renderLimits(pw, publisher);
+    }
+    
+    private void renderPublishers(final PrintWriter pw, final Publisher current) throws IOException {
+        if (publishers.isEmpty()) {
+            pw.println("<br/><p class=\"statline ui-state-highlight\">No JAX-RS publishers are running</p>");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("<br/><p class=\"statline ui-state-highlight\">JAX-RS Publishers:");
+        for (Map.Entry<String, Publisher> entry : publishers.entrySet()) {
+            String path = escapeHtml(entry.getKey());
+            if (entry.getValue() == current) {
+                sb.append(" <b>").append(path).append("</b>");
+            } else {
+                sb.append(" <a href=\"?").append(PUBLISHER_PARAMETER).append('=')
+                    .append(URLEncoder.encode(entry.getKey(), "UTF-8")).append("\">").append(path).append("</a>");
+            }
+        }
+        pw.println(sb.append("</p>"));
+    }
+    
+    private void renderReloadSet(final PrintWriter pw, final Publisher publisher) {
+        logger.info("Inside JaxrsConsole's renderReloadSet");
+        ReloadStats stats = publisher.getReloadStats();
+        pw.println(String.format("<br/><p class=\"statline ui-state-highlight\">JAX-RS Reloads: %d reloads, %d failed, "
+                + "%d changes, build mean/max %d/%d ms, watchers mean/max %d/%d ms</p>", 
+                stats.reloads, stats.failures, stats.mergedChanges, 
+                millis(stats.meanBuildNanos()), millis(stats.maxBuildNanos),
+                millis(stats.meanWatcherNanos()), millis(stats.maxWatcherNanos)));
+        pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Time</th><th class=\"header\">Trigger</th>"
+                + "<th class=\"header\">Changes</th><th class=\"header\">Targets</th><th class=\"header\">Build</th>"
+                + "<th class=\"header\">Drain</th><th class=\"header\">Watchers</th><th class=\"header\">Outcome</th></tr></thead>");
+        // Newest first reads better
+        List<ReloadRecord> records = new ArrayList<>(publisher.getReloadHistory());
+        Collections.reverse(records);
+        records.forEach(r -> pw.println(String.format(RELOAD_ROW_FORMAT, rowClass(), r.timestamp, 
+                escapeHtml(r.trigger), r.mergedChanges, r.targets, millis(r.buildNanos), millis(r.drainNanos), 
+                millis(r.watcherNanos), r.succeeded() ? "ok" : escapeHtml(r.failure))));
+        pw.println("</table>");
+    }
+    
+    private void renderDiscovery(final PrintWriter pw, final Publisher publisher) {
+        logger.info("Inside JaxrsConsole's renderDiscovery");
+        DiscoveryStats stats = publisher.getDiscoveryStats();
+        pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Discovery:</p>");
+        pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Statistic</th><th class=\"header\">Value</th></tr></thead>");
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Targets", stats.targets));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Queued events", stats.queueDepth));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Processed events", stats.eventsProcessed));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Cancelled events", stats.eventsCancelled));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Event lag last/max", 
+                millis(stats.lastLagNanos) + " / " + millis(stats.maxLagNanos) + " ms"));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Verdict cache hits/misses", 
+                stats.verdictCacheHits + " / " + stats.verdictCacheMisses));
+        pw.println("</table>");
+    }
+    
+    private void renderResponseCache(final PrintWriter pw, final Publisher publisher) {
+        logger.info("Inside JaxrsConsole's renderResponseCache");
+        ResponseCacheStats stats = publisher.getResponseCacheStats();
+        pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Response Cache:</p>");
+        pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Statistic</th><th class=\"header\">Value</th></tr></thead>");
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Entries", stats.entries));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Size", 
+                stats.bytes / 1024 + " / " + stats.maxBytes / 1024 + " kB"));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Hits/misses", 
+                stats.hits + " / " + stats.misses + String.format(" (%.1f%%)", stats.hitRate() * 100)));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Stores", stats.stores));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Evictions", stats.evictions));
+        pw.println(String.format(STAT_ROW_FORMAT, rowClass(), "Expirations", stats.expirations));
+        pw.println("</table>");
+    }
+    
+    private void renderLimits(final PrintWriter pw, final Publisher publisher) {
+        logger.info("Inside JaxrsConsole's renderLimits");
+        pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Endpoint Limits:</p>");
+        pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Verb</th><th class=\"header\">Path</th>"
+                + "<th class=\"header\">Limit</th><th class=\"header\">In flight</th><th class=\"header\">Accepted</th>"
+                + "<th class=\"header\">Rejected</th><th class=\"header\">Latency baseline/recent</th></tr></thead>");
+        publisher.getEndpointLimits().forEach(l -> pw.println(String.format(LIMIT_ROW_FORMAT, rowClass(), l.verb, 
+                escapeHtml(l.path), l.limit, l.inFlight, l.accepted, l.rejected, 
+                millis(l.baselineNanos) + " / " + millis(l.recentNanos) + " ms")));
+        pw.println("</table>");
+    }
+    
+    private static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+    
+    private static String escapeHtml(final String value) {
+        return null == value ? "" : value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
     }
     
-    private void renderProviderSet(final PrintWriter pw) {
+    private void renderProviderSet(final PrintWriter pw, final Publisher publisher) {
         logger.info("Inside JaxrsConsole's renderProviderSet");
         pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Providers:</p>");
         pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Class</th><th class=\"header\">Interfaces</th></tr></thead>");
@@ -111,7 +252,7 @@ public class JaxrsConsole extends AbstractWebConsolePlugin {
         pw.println("</table>");
     }
     
-    private void renderFeatureSet(final PrintWriter pw) {
+    private void renderFeatureSet(final PrintWriter pw, final Publisher publisher) {
         logger.info("Inside JaxrsConsole's renderFeatureSet");
         pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Features:</p>");
         pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Class</th></tr></thead>");
@@ -121,7 +262,7 @@ public class JaxrsConsole extends AbstractWebConsolePlugin {
         pw.println("</table>");
     }
     
-    private void renderReaderListenerSet(final PrintWriter pw) {
+    private void renderReaderListenerSet(final PrintWriter pw, final Publisher publisher) {
         logger.info("Inside JaxrsConsole's renderReaderListenerSet");
         pw.println("<br/><p class=\"statline ui-state-highlight\">Swagger ReaderListeners:</p>");
         pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Class</th></tr></thead>");
@@ -131,7 +272,7 @@ public class JaxrsConsole extends AbstractWebConsolePlugin {
         pw.println("</table>");
     }
     
-    private void renderPageSet(final PrintWriter pw) {
+    private void renderPageSet(final PrintWriter pw, final Publisher publisher) {
         logger.info("Inside JaxrsConsole's renderPageSet");
         pw.println("<br/><p class=\"statline ui-state-highlight\">JAX-RS Pages:</p>");
         pw.println("<table class=\"nicetable\"><thead><tr><th class=\"header\">Class</th><th class=\"header\">Path</th>"